@@ -1,10 +1,18 @@
 package com.nhlstenden.amazonsimulatie.base;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
-import com.nhlstenden.amazonsimulatie.controllers.Controller;
+import com.nhlstenden.amazonsimulatie.controllers.CheckpointFile;
+import com.nhlstenden.amazonsimulatie.controllers.HeadlessSimulation;
 import com.nhlstenden.amazonsimulatie.controllers.SimulationController;
+import com.nhlstenden.amazonsimulatie.controllers.WorldRegistry;
 import com.nhlstenden.amazonsimulatie.models.World;
+import com.nhlstenden.amazonsimulatie.models.WorldCheckpoint;
 import com.nhlstenden.amazonsimulatie.views.DefaultWebSocketView;
 
 import org.springframework.boot.SpringApplication;
@@ -19,6 +27,7 @@ import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 
 /*
@@ -32,30 +41,140 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 @EnableWebSocket
 public class App extends SpringBootServletInitializer implements WebSocketConfigurer {
 
-    private World world;
+    /** het bestand waar de checkpoints van de standaard wereld in komen, de andere werelden krijgen world-naam.checkpoint */
+    private static final String CHECKPOINT_FILE = "world.checkpoint";
+    /** om de hoeveel ticks er een checkpoint gemaakt wordt, 10 seconden */
+    private static final int CHECKPOINT_INTERVAL = 100;
+
+    /** de namen van de werelden die naast de standaard wereld gestart worden, uit --worlds= */
+    private static final List<String> extraWorlds = new ArrayList<>();
+
     /*
      * De main methode regelt het starten van de Spring applicatie. Dit gebeurd
      * middels SpringApplication.run(). Deze zorgt ervoor dat onze App gerund
      * wordt. Dit kan doordat de class App de class SpringBootServletInitializer
      * extend. Dit is een class van Spring welke een server voor ons maakt.
      * De App class is daardoor dus een server.
+     * Met --headless wordt er geen server gestart, maar draait de simulatie zonder views zo snel
+     * als het kan. Met --ticks=N stopt die na N ticks, met --duration=8h (of 30m, 90s) na zoveel
+     * gesimuleerde tijd. Zonder een van beide wordt een dienst van 8 uur gesimuleerd.
+     * Met --worlds=a,b draaien naast de standaard wereld ook de werelden a en b in dezelfde server.
      */
     public static void main(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--headless")) {
+                runHeadless(args);
+                return;
+            }
+            if (arg.startsWith("--worlds=")) {
+                extraWorlds.addAll(Arrays.asList(arg.substring("--worlds=".length()).split(",")));
+            }
+        }
         SpringApplication.run(App.class, args);
     }
+
+    /*
+     * Draait de simulatie zonder Spring en zonder views, en print daarna hoe snel het ging.
+     */
+    private static void runHeadless(String[] args) {
+        World world = new World(10, 5);
+        world.setParallelUpdate(true);
+        HeadlessSimulation simulation = new HeadlessSimulation(world);
+
+        long ticks = simulation.ticksFor(8, TimeUnit.HOURS);
+        for (String arg : args) {
+            if (arg.startsWith("--ticks=")) {
+                ticks = Long.parseLong(arg.substring("--ticks=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                ticks = simulation.ticksFor(parseSeconds(arg.substring("--duration=".length())), TimeUnit.SECONDS);
+            }
+        }
+
+        simulation.runTicks(ticks);
+        System.out.println(simulation);
+        System.exit(0);
+    }
+
+    /*
+     * Leest een tijdsduur zoals 8h, 30m of 90s, zonder eenheid zijn het seconden.
+     */
+    private static long parseSeconds(String duration) {
+        char unit = duration.charAt(duration.length() - 1);
+        if (Character.isDigit(unit)) {
+            return Long.parseLong(duration);
+        }
+        long amount = Long.parseLong(duration.substring(0, duration.length() - 1));
+        switch (unit) {
+            case 'h':
+                return TimeUnit.HOURS.toSeconds(amount);
+            case 'm':
+                return TimeUnit.MINUTES.toSeconds(amount);
+            case 's':
+                return amount;
+            default:
+                throw new IllegalArgumentException("onbekende eenheid in " + duration + ", gebruik h, m of s");
+        }
+    }
     
-    //De App is de applicatie en heeft de controller voor de simulatie in zich
-    private Controller controller;
+    //De App is de applicatie en heeft de werelden met hun controllers in zich
+    private final WorldRegistry worlds = new WorldRegistry();
 
    /*
     * De constructor wordt uitgevoerd wanneer de app wordt opgebouwd. Je zult alleen
     * geen new App() tegenkomen. Dit doet Spring namelijk al voor je bij
     * SpringApplication.run().
+    * Alle werelden draaien op de gedeelde threads van de WorldRegistry, niet elk op een eigen thread.
     */
     public App() {
-        world = new World(10,5);
-        this.controller = new SimulationController(world);
-        this.controller.start();
+        addWorld(WorldRegistry.DEFAULT_WORLD, CHECKPOINT_FILE);
+        for (String name : extraWorlds) {
+            if (!name.equals(WorldRegistry.DEFAULT_WORLD)) {
+                addWorld(name, "world-" + name + ".checkpoint");
+            }
+        }
+    }
+
+    /*
+     * Start een wereld vanuit zijn laatste checkpoint, of een nieuwe wereld als er geen is, en laat er
+     * elke CHECKPOINT_INTERVAL ticks een checkpoint van maken.
+     */
+    private void addWorld(String name, String checkpointFile) {
+        if (!WorldRegistry.isValidName(name)) {
+            throw new IllegalArgumentException("ongeldige naam voor een wereld: " + name);
+        }
+        World world = null;
+        CheckpointFile checkpoints = null;
+        try {
+            checkpoints = new CheckpointFile(Paths.get(checkpointFile));
+            world = restoreWorld(checkpoints);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (world == null) {
+            world = new World(10,5);
+        }
+        SimulationController simulation = new SimulationController(world);
+        if (checkpoints != null) {
+            simulation.enableCheckpoints(checkpoints, CHECKPOINT_INTERVAL);
+        }
+        worlds.add(name, simulation);
+    }
+
+    /*
+     * Zet de wereld terug uit het laatste checkpoint. Is er geen checkpoint, of kan het niet gelezen
+     * worden, dan wordt null teruggegeven en begint de simulatie opnieuw.
+     */
+    private static World restoreWorld(CheckpointFile checkpoints) {
+        byte[] checkpoint = checkpoints.loadLatest();
+        if (checkpoint == null) {
+            return null;
+        }
+        try {
+            return WorldCheckpoint.restore(checkpoint);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
     /*
@@ -84,7 +203,8 @@ public class App extends SpringBootServletInitializer implements WebSocketConfig
      * Deze class is de standaard WebSocketHandler van dit systeem. Wat hier gebeurd
      * is dat elke keer wanneer een connectie wordt gemaakt met het systeem via een
      * websocket waar deze WebSocketHandler voor is geregistreerd (zie registerWebSocketHandlers),
-     * dan wordt de methode afterConnectionEstablished aangeroepen.
+     * dan wordt de methode afterConnectionEstablished aangeroepen. Met /connectToSimulation?world=naam
+     * kiest de client een wereld, zonder world krijgt hij de standaard wereld.
      */
     private class DefaultWebSocketHandler extends TextWebSocketHandler {
         /*
@@ -92,10 +212,16 @@ public class App extends SpringBootServletInitializer implements WebSocketConfig
          * de server, een nieuwe view aangemaakt voor die connectie. De view is een
          * DefaultWebSocketView en is de view die wordt gebruikt wanneer we een browser als
          * front-end gebruiken. De sesion variabele is het onderdeel waarmee we informatie
-         * kunnen sturen.
+         * kunnen sturen. Bestaat de gekozen wereld niet, dan wordt de verbinding gesloten.
          */
         @Override
-        public void afterConnectionEstablished(WebSocketSession sesion) {
+        public void afterConnectionEstablished(WebSocketSession sesion) throws IOException {
+            String name = UriComponentsBuilder.fromUri(sesion.getUri()).build().getQueryParams().getFirst("world");
+            SimulationController controller = worlds.get(name == null ? WorldRegistry.DEFAULT_WORLD : name);
+            if (controller == null) {
+                sesion.close(CloseStatus.BAD_DATA.withReason("onbekende wereld"));
+                return;
+            }
             controller.addView(new DefaultWebSocketView(sesion));
         }
 
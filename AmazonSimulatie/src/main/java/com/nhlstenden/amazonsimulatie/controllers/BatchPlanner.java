@@ -0,0 +1,234 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathResult;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * plant de paden van veel aanvragers tegelijk op een ForkJoinPool. aanvragen worden verzameld met
+ * {@link #request}, {@link #submit()} start de zoekopdrachten op de achtergrond en {@link #apply()}
+ * geeft de gevonden paden, zodat ze op de grens van een tick toegepast kunnen worden.
+ * aanvragen met dezelfde start en hetzelfde doel worden maar één keer gezocht. elke worker zoekt met
+ * zijn eigen workspace, via {@link GraphController#shortestPath}.
+ * request, submit en apply horen vanuit één thread aangeroepen te worden.
+ * @param <K> het type van de aanvrager, bijvoorbeeld een robot
+ */
+public class BatchPlanner<K> {
+
+    /** onder dit aantal zoekopdrachten wordt een taak niet verder gesplitst */
+    public static final int SEQUENTIAL_THRESHOLD = 4;
+
+    /** sleutel van een aanvraag met een start of doel dat niet in de graaf zit, die krijgt meteen PathResult.notFound() */
+    private static final long NOT_IN_GRAPH = -1L;
+
+    /** de graaf waarop gezocht wordt */
+    private final GraphController graph;
+
+    /** de pool waarop de zoekopdrachten lopen */
+    private final ForkJoinPool pool;
+
+    /** aanvragen voor de volgende batch, per aanvrager de sleutel van start en doel */
+    private Map<K, Long> pending = new LinkedHashMap<>();
+
+    /** de batch die loopt of klaar is maar nog niet toegepast, null als er geen is */
+    private Batch<K> running;
+
+    /** aantal aanvragen dat gepland is */
+    private final AtomicLong requests = new AtomicLong();
+
+    /** aantal zoekopdrachten dat echt gedaan is, na het samenvoegen van gelijke aanvragen */
+    private final AtomicLong searches = new AtomicLong();
+
+    /**
+     * maakt een planner met een eigen pool, met een worker per processor
+     * @param graph de graaf waarop gezocht wordt
+     */
+    public BatchPlanner(GraphController graph){
+        this(graph, new ForkJoinPool());
+    }
+
+    /**
+     * @param graph de graaf waarop gezocht wordt
+     * @param pool de pool waarop gezocht wordt, mag gedeeld worden met andere planners
+     */
+    public BatchPlanner(GraphController graph, ForkJoinPool pool){
+        this.graph = graph;
+        this.pool = pool;
+    }
+
+    /**
+     * vraagt een pad aan voor de volgende batch. een eerdere aanvraag van dezelfde aanvrager die nog
+     * niet gestart is wordt vervangen. zit de start of het eind niet in de graaf, dan krijgt de
+     * aanvrager PathResult.notFound().
+     * @param requester de aanvrager
+     * @param start start node
+     * @param end eind node
+     */
+    public void request(K requester, NodeWeighted start, NodeWeighted end){
+        if (graph.contains(start) && graph.contains(end)){
+            pending.put(requester, key(start.getId(), end.getId()));
+        } else {
+            pending.put(requester, NOT_IN_GRAPH);
+        }
+    }
+
+    /**
+     * @param requester de aanvrager
+     * @return true als de aanvrager een aanvraag heeft die nog niet toegepast is
+     */
+    public boolean isPending(K requester){
+        return pending.containsKey(requester) || (running != null && running.requesters.containsKey(requester));
+    }
+
+    /**
+     * @return true als er geen aanvragen staan en er geen batch loopt of wacht om toegepast te worden
+     */
+    public boolean isIdle(){
+        return pending.isEmpty() && running == null;
+    }
+
+    /**
+     * start het zoeken naar de paden van alle aanvragen op de pool en komt meteen terug. als de vorige
+     * batch nog niet toegepast is blijven de aanvragen staan tot de volgende keer.
+     * @return true als er een batch gestart is
+     */
+    public boolean submit(){
+        if (running != null || pending.isEmpty()){
+            return false;
+        }
+
+        Map<Long, Integer> unique = new LinkedHashMap<>();
+        Map<K, Integer> requesters = new LinkedHashMap<>();
+        for (Map.Entry<K, Long> entry : pending.entrySet()){
+            Integer index = unique.get(entry.getValue());
+            if (index == null){
+                index = unique.size();
+                unique.put(entry.getValue(), index);
+            }
+            requesters.put(entry.getKey(), index);
+        }
+
+        long[] keys = new long[unique.size()];
+        for (Map.Entry<Long, Integer> entry : unique.entrySet()){
+            keys[entry.getValue()] = entry.getKey();
+        }
+        PathResult[] paths = new PathResult[keys.length];
+
+        requests.addAndGet(requesters.size());
+        searches.addAndGet(keys.length);
+        pending = new LinkedHashMap<>();
+        running = new Batch<>(requesters, paths, pool.submit(new PlanTask(keys, paths, 0, keys.length)));
+        return true;
+    }
+
+    /**
+     * wacht tot de gestarte batch klaar is en geeft de paden
+     * @return per aanvrager het gevonden pad of PathResult.notFound(), leeg als er geen batch gestart is
+     */
+    public Map<K, PathResult> apply(){
+        Batch<K> batch = running;
+        if (batch == null){
+            return Collections.emptyMap();
+        }
+        running = null;
+        batch.task.join();
+
+        Map<K, PathResult> results = new HashMap<>();
+        for (Map.Entry<K, Integer> entry : batch.requesters.entrySet()){
+            results.put(entry.getKey(), batch.paths[entry.getValue()]);
+        }
+        return results;
+    }
+
+    /**
+     * plant alle aanvragen en wacht op het resultaat, submit en apply in één keer
+     * @return per aanvrager het gevonden pad of PathResult.notFound()
+     */
+    public Map<K, PathResult> plan(){
+        if (running != null){
+            apply();
+        }
+        submit();
+        return apply();
+    }
+
+    /** @return de pool waarop gezocht wordt */
+    public ForkJoinPool getPool(){
+        return pool;
+    }
+
+    /** @return aantal aanvragen dat gepland is */
+    public long getRequests(){
+        return requests.get();
+    }
+
+    /** @return aantal zoekopdrachten dat gedaan is, minder dan getRequests() als aanvragen samengevoegd zijn */
+    public long getSearches(){
+        return searches.get();
+    }
+
+    private static long key(int start, int end){
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    /**
+     * een gestarte batch: per aanvrager de index van zijn zoekopdracht, en de paden per zoekopdracht
+     */
+    private static final class Batch<K> {
+        private final Map<K, Integer> requesters;
+        private final PathResult[] paths;
+        private final ForkJoinTask<?> task;
+
+        private Batch(Map<K, Integer> requesters, PathResult[] paths, ForkJoinTask<?> task){
+            this.requesters = requesters;
+            this.paths = paths;
+            this.task = task;
+        }
+    }
+
+    /**
+     * zoekt de paden van een deel van de zoekopdrachten, en splitst in tweeën zolang het deel groter
+     * is dan SEQUENTIAL_THRESHOLD
+     */
+    private final class PlanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] keys;
+        private final PathResult[] paths;
+        private final int from;
+        private final int to;
+
+        private PlanTask(long[] keys, PathResult[] paths, int from, int to){
+            this.keys = keys;
+            this.paths = paths;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from <= SEQUENTIAL_THRESHOLD){
+                for (int i = from; i < to; i++){
+                    if (keys[i] == NOT_IN_GRAPH){
+                        paths[i] = PathResult.notFound();
+                        continue;
+                    }
+                    NodeWeighted start = graph.getNode((int) (keys[i] >>> 32));
+                    NodeWeighted end = graph.getNode((int) keys[i]);
+                    paths[i] = graph.shortestPath(start, end);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new PlanTask(keys, paths, from, middle), new PlanTask(keys, paths, middle, to));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * een bestand met checkpoints, als memory mapped bestand met twee vakken. een nieuw checkpoint gaat
+ * altijd in het vak waar niet het laatste checkpoint staat, zodat er altijd een heel checkpoint
+ * overblijft, ook als het schrijven halverwege stopt. elk vak begint met een volgnummer, de lengte en
+ * een checksum; bij het lezen wint het geldige vak met het hoogste volgnummer. het schrijven gebeurt op
+ * een eigen thread, de tick lus geeft alleen een kopie van de toestand mee. is het vorige checkpoint
+ * nog niet weggeschreven, dan wordt het nieuwe overgeslagen in plaats van de tick lus te laten wachten.
+ * past een checkpoint niet meer in een vak, dan worden de vakken groter gemaakt.
+ */
+public class CheckpointFile implements Closeable {
+
+    /** standaard grootte van een vak */
+    public static final int DEFAULT_SLOT_SIZE = 1 << 20;
+
+    /** volgnummer, lengte en checksum voor elk vak */
+    private static final int SLOT_HEADER = 8 + 4 + 8;
+
+    private final FileChannel channel;
+    private final ExecutorService writer;
+    /** true zolang er een checkpoint weggeschreven wordt */
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    private MappedByteBuffer map;
+    private int slotSize;
+    /** volgnummer van het laatste checkpoint in het bestand, 0 als er geen is */
+    private long sequence;
+    /** het vak met het laatste checkpoint, -1 als er geen is */
+    private int latestSlot = -1;
+
+    /**
+     * opent het bestand, of maakt het als het er nog niet is
+     * @param path het bestand
+     * @throws IOException als het bestand niet geopend kan worden
+     */
+    public CheckpointFile(Path path) throws IOException{
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long existing = channel.size();
+        slotSize = (int) Math.max(DEFAULT_SLOT_SIZE, Math.min(Integer.MAX_VALUE, existing / 2));
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * slotSize);
+        for (int slot = 0; slot < 2; slot++){
+            long slotSequence = validSequence(slot);
+            if (slotSequence > sequence){
+                sequence = slotSequence;
+                latestSlot = slot;
+            }
+        }
+
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return het laatste geldige checkpoint in het bestand, of null als er geen is
+     */
+    public synchronized byte[] loadLatest(){
+        return latestSlot < 0 ? null : read(latestSlot);
+    }
+
+    /**
+     * laat een checkpoint op de achtergrond wegschrijven. het checkpoint mag daarna niet meer veranderd worden
+     * @param checkpoint het checkpoint
+     * @return false als het vorige checkpoint nog weggeschreven wordt en dit checkpoint is overgeslagen
+     */
+    public boolean save(final byte[] checkpoint){
+        if (!writing.compareAndSet(false, true)){
+            skipped.incrementAndGet();
+            return false;
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(checkpoint);
+                    saved.incrementAndGet();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    writing.set(false);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * schrijft een checkpoint direct weg op de huidige thread
+     * @param checkpoint het checkpoint
+     * @throws IOException als schrijven mislukt
+     */
+    public synchronized void write(byte[] checkpoint) throws IOException{
+        if (SLOT_HEADER + checkpoint.length > slotSize){
+            grow(SLOT_HEADER + checkpoint.length);
+        }
+        int slot = latestSlot == 0 ? 1 : 0;
+        writeSlot(slot, sequence + 1, checkpoint);
+        sequence++;
+        latestSlot = slot;
+    }
+
+    /**
+     * maakt de vakken groter. het tweede vak schuift daarbij op; staat het laatste checkpoint daar, dan
+     * wordt het eerst naar de nieuwe plaats van het tweede vak gekopieerd, zodat het niet overschreven
+     * wordt als het nieuwe checkpoint in het eerste vak komt
+     */
+    private void grow(int needed) throws IOException{
+        byte[] latest = latestSlot == 1 ? read(1) : null;
+        int size = slotSize;
+        while (size < needed){
+            size = size > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : size * 2;
+        }
+        slotSize = size;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * slotSize);
+        if (latest != null){
+            writeSlot(1, sequence, latest);
+        }
+    }
+
+    /**
+     * schrijft eerst de inhoud en daarna pas het volgnummer, zodat een half geschreven vak niet geldig is
+     */
+    private void writeSlot(int slot, long slotSequence, byte[] data){
+        int offset = slot * slotSize;
+        map.putLong(offset, 0);
+        map.force();
+        ByteBuffer content = map.duplicate();
+        content.position(offset + SLOT_HEADER);
+        content.put(data);
+        map.putInt(offset + 8, data.length);
+        map.putLong(offset + 12, crc(data));
+        map.force();
+        map.putLong(offset, slotSequence);
+        map.force();
+    }
+
+    /**
+     * @return het volgnummer van het vak als het een geldig checkpoint bevat, anders 0
+     */
+    private long validSequence(int slot){
+        int offset = slot * slotSize;
+        long slotSequence = map.getLong(offset);
+        int length = map.getInt(offset + 8);
+        if (slotSequence <= 0 || length < 0 || length > slotSize - SLOT_HEADER){
+            return 0;
+        }
+        byte[] data = read(slot);
+        return crc(data) == map.getLong(offset + 12) ? slotSequence : 0;
+    }
+
+    private byte[] read(int slot){
+        int offset = slot * slotSize;
+        byte[] data = new byte[map.getInt(offset + 8)];
+        ByteBuffer content = map.duplicate();
+        content.position(offset + SLOT_HEADER);
+        content.get(data);
+        return data;
+    }
+
+    private static long crc(byte[] data){
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /** @return aantal checkpoints dat op de achtergrond weggeschreven is */
+    public long getSaved(){
+        return saved.get();
+    }
+
+    /** @return aantal checkpoints dat overgeslagen is omdat het vorige nog weggeschreven werd */
+    public long getSkipped(){
+        return skipped.get();
+    }
+
+    /** @return volgnummer van het laatste checkpoint in het bestand */
+    public synchronized long getSequence(){
+        return sequence;
+    }
+
+    /**
+     * wacht tot het laatste checkpoint weggeschreven is en sluit het bestand
+     * @throws IOException als sluiten mislukt
+     */
+    @Override
+    public void close() throws IOException{
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+}
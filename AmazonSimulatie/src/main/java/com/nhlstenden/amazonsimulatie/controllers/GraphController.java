@@ -2,19 +2,247 @@ package com.nhlstenden.amazonsimulatie.controllers;
 
 import com.nhlstenden.amazonsimulatie.models.EdgeWeighted;
 import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+import com.nhlstenden.amazonsimulatie.pathfinding.CompactGraph;
+import com.nhlstenden.amazonsimulatie.pathfinding.CooperativePlanner;
+import com.nhlstenden.amazonsimulatie.pathfinding.DStarLite;
+import com.nhlstenden.amazonsimulatie.pathfinding.GraphSearch;
+import com.nhlstenden.amazonsimulatie.pathfinding.GridIndex;
+import com.nhlstenden.amazonsimulatie.pathfinding.HierarchicalPlanner;
+import com.nhlstenden.amazonsimulatie.pathfinding.JumpPointSearch;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathResult;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathfindingEngine;
+import com.nhlstenden.amazonsimulatie.pathfinding.RouteCache;
+import com.nhlstenden.amazonsimulatie.pathfinding.SearchStatistics;
+import com.nhlstenden.amazonsimulatie.pathfinding.SearchWorkspace;
+import com.nhlstenden.amazonsimulatie.pathfinding.TimedPath;
+import com.nhlstenden.amazonsimulatie.pathfinding.TrafficHeatmap;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class GraphController implements PropertyChangeListener {
+    /** aantal paden dat de route cache onthoudt */
+    public static final int ROUTE_CACHE_SIZE = 4096;
+
+    /** aantal ticks dat robots vooruit plannen en reserveren bij samenwerkend plannen */
+    public static final int COOPERATIVE_WINDOW = 16;
+
+    /** aantal ticks waarover de drukte per edge geteld wordt */
+    public static final int TRAFFIC_WINDOW = 100;
+
+    /** aantal vakken waarin het venster van de drukte verdeeld is */
+    public static final int TRAFFIC_BUCKETS = 10;
+
+    /** om de zoveel ticks wordt de drukte in de gewichten van de edges verwerkt */
+    public static final int TRAFFIC_FOLD_INTERVAL = 10;
+
+    /** zo vaak over een edge rijden in het venster, heen en terug samen, maakt de edge een keer zijn eigen gewicht zwaarder */
+    public static final int TRAVERSALS_PER_WEIGHT = 10;
+
+    /** een edge wordt door drukte hoogstens zoveel keer zijn eigen gewicht zwaarder */
+    public static final int MAX_CONGESTION = 3;
 
-public class GraphController {
     /** lijst met nodes in de graaf */
     private Set<NodeWeighted> nodes;
 
-    /** lijst met nodes in een array */
-    private NodeWeighted[][] nodeArray = new NodeWeighted[32][32];
+    /** lijst met nodes op volgorde van hun id */
+    private List<NodeWeighted> nodeList;
+
+    /** lijst met nodes in een array, geindexeerd op [x][z], leeg tot populateGraph */
+    private NodeWeighted[][] nodeArray = new NodeWeighted[0][0];
+
+    /** het algoritme dat shortestPath gebruikt */
+    private PathfindingEngine engine;
+
+    /** tellers per zoekalgoritme */
+    private Map<PathfindingEngine, SearchStatistics> statistics;
+
+    /** compacte versie van de graaf waarop gezocht wordt, null als deze opnieuw gebouwd moet worden */
+    private volatile CompactGraph compactGraph;
+
+    /** rooster van de compacte graaf voor jump point search, hoort bij een bepaalde compacte graaf */
+    private volatile GridIndex gridIndex;
+
+    /** zoekstatus per thread, zodat meerdere robots tegelijk een pad kunnen zoeken */
+    private final ThreadLocal<SearchWorkspace> workspaces = new ThreadLocal<>();
+
+    /** cache met eerder gevonden paden voor shortestPath */
+    private final RouteCache routeCache = new RouteCache(ROUTE_CACHE_SIZE);
+
+    /** clusters en ingangen voor hierarchisch zoeken, wordt pas aangemaakt als nodig */
+    private volatile HierarchicalPlanner hierarchicalPlanner;
+
+    /** planner voor robots die samen door ruimte en tijd plannen, wordt pas aangemaakt als nodig */
+    private CooperativePlanner cooperativePlanner;
+
+    /** D* Lite planners van robots, krijgen elke verandering van bezetting en gewicht door */
+    private final List<DStarLite> incrementalPlanners = new CopyOnWriteArrayList<>();
 
-    /** constructor van de graaf, maakt een lege lijst met nodes aan */
+    /** tellers van het opnieuw plannen met D* Lite */
+    private final SearchStatistics incrementalStatistics = new SearchStatistics();
+
+    /** tellers van dezelfde zoekopdrachten als A* ze vanaf nul zou doen, alleen als compareReplanning aan staat */
+    private final SearchStatistics fromScratchStatistics = new SearchStatistics();
+
+    /** tellers van het zoeken naar de dichtstbijzijnde doelen */
+    private final SearchStatistics nearestStatistics = new SearchStatistics();
+
+    /** telt hoe vaak robots over elke edge rijden, hoort bij een bepaalde compacte graaf */
+    private volatile TrafficHeatmap trafficHeatmap;
+
+    /** aantal ticks sinds de drukte voor het laatst in de gewichten verwerkt is */
+    private int ticksSinceFold;
+
+    /** of bij elke replan ook vanaf nul gezocht wordt om de aantallen uitgebreide nodes te vergelijken */
+    private volatile boolean compareReplanning;
+
+    /**
+     * constructor van de graaf, maakt een lege lijst met nodes aan.
+     * zoeken mag vanuit meerdere threads tegelijk, nodes en edges toevoegen niet.
+     */
     public GraphController(){
         nodes = new HashSet<>();
+        nodeList = new ArrayList<>();
+        engine = PathfindingEngine.DIJKSTRA;
+        statistics = new EnumMap<>(PathfindingEngine.class);
+        for (PathfindingEngine e : PathfindingEngine.values()){
+            statistics.put(e, new SearchStatistics());
+        }
+    }
+
+    /** @return het algoritme dat shortestPath gebruikt */
+    public PathfindingEngine getEngine(){
+        return engine;
+    }
+
+    /**
+     * kiest het algoritme voor shortestPath. de route cache wordt geleegd, zodat er geen paden van het
+     * vorige algoritme meer uit komen
+     * @param engine het algoritme dat shortestPath moet gebruiken
+     */
+    public void setEngine(PathfindingEngine engine){
+        if (this.engine != engine){
+            this.engine = engine;
+            routeCache.clear();
+        }
+    }
+
+    /** @return de cache met eerder gevonden paden, met de hit rate */
+    public RouteCache getRouteCache(){
+        return routeCache;
+    }
+
+    /**
+     * geeft de planner waarmee robots samen plannen met een reserveringstabel. als de graaf
+     * opnieuw gebouwd is hoort daar een nieuwe planner bij, zonder reserveringen.
+     * @return de planner op de huidige graaf
+     */
+    public synchronized CooperativePlanner getCooperativePlanner(){
+        CompactGraph graph = getCompactGraph();
+        if (cooperativePlanner == null || cooperativePlanner.getGraph() != graph){
+            cooperativePlanner = new CooperativePlanner(graph, COOPERATIVE_WINDOW);
+        }
+        return cooperativePlanner;
+    }
+
+    /**
+     * plant een pad door ruimte en tijd voor een robot, rekening houdend met de reserveringen
+     * van andere robots, en reserveert het pad voor de komende COOPERATIVE_WINDOW ticks
+     * @param robot id van de robot
+     * @param start de node waar de robot nu staat
+     * @param end de node waar de robot heen moet
+     * @param tick de huidige tick
+     * @return het pad per tick
+     */
+    public TimedPath planCooperative(int robot, NodeWeighted start, NodeWeighted end, int tick){
+        return getCooperativePlanner().plan(robot, start.getId(), end.getId(), tick);
+    }
+
+    /**
+     * maakt een D* Lite planner voor een robot. de planner krijgt alle veranderingen van bezetting en
+     * gewicht in de graaf door, tot deze met removeIncrementalPlanner weer afgemeld wordt.
+     * @param start de node waar de robot staat
+     * @param goal het doel van de robot
+     * @return de planner, te gebruiken met replan
+     * @throws IllegalArgumentException als de start of het doel niet in deze graaf zit
+     */
+    public DStarLite createIncrementalPlanner(NodeWeighted start, NodeWeighted goal){
+        if (!contains(start) || !contains(goal)){
+            throw new IllegalArgumentException("de start en het doel van een planner moeten in de graaf zitten");
+        }
+        DStarLite planner = new DStarLite(getCompactGraph(), start.getId(), goal.getId());
+        incrementalPlanners.add(planner);
+        return planner;
+    }
+
+    /**
+     * meldt een planner af, bijvoorbeeld als de robot zijn doel bereikt heeft
+     * @param planner de planner
+     */
+    public void removeIncrementalPlanner(DStarLite planner){
+        incrementalPlanners.remove(planner);
+    }
+
+    /**
+     * plant opnieuw vanaf de node waar de robot nu staat. alleen het deel van de zoekboom dat door
+     * veranderingen sinds de vorige keer geraakt is wordt opnieuw berekend.
+     * @param planner de planner van de robot
+     * @param current de node waar de robot nu staat
+     * @return het kortste pad van current naar het doel van de planner
+     * @throws IllegalArgumentException als current niet in deze graaf zit
+     */
+    public PathResult replan(DStarLite planner, NodeWeighted current){
+        if (!contains(current)){
+            throw new IllegalArgumentException("node " + current.getName() + " zit niet in de graaf");
+        }
+        CompactGraph graph = getCompactGraph();
+        if (planner.getGraph() != graph){
+            planner.reset(graph);
+        }
+        planner.moveTo(current.getId());
+        PathResult result = planner.path();
+        incrementalStatistics.record(planner.getLastExpanded(), result.isFound());
+
+        if (compareReplanning){
+            SearchWorkspace workspace = workspace(graph);
+            PathResult fromScratch = GraphSearch.shortestPath(graph, current.getId(), planner.getGoal(), true, workspace);
+            fromScratchStatistics.record(workspace.getExpanded(), fromScratch.isFound());
+        }
+        return result;
+    }
+
+    /** @return tellers van het opnieuw plannen met D* Lite */
+    public SearchStatistics getIncrementalStatistics(){
+        return incrementalStatistics;
+    }
+
+    /** @return tellers van A* vanaf nul voor dezelfde zoekopdrachten, gevuld als compareReplanning aan staat */
+    public SearchStatistics getFromScratchStatistics(){
+        return fromScratchStatistics;
+    }
+
+    /** @param compareReplanning true om bij elke replan ook vanaf nul te zoeken, voor de tellers */
+    public void setCompareReplanning(boolean compareReplanning){
+        this.compareReplanning = compareReplanning;
+    }
+
+    /**
+     * @param engine het zoekalgoritme
+     * @return de tellers van het zoekalgoritme
+     */
+    public SearchStatistics getStatistics(PathfindingEngine engine){
+        return statistics.get(engine);
+    }
+
+    /** @return tellers van het zoeken naar de dichtstbijzijnde doelen met {@link #nearest} */
+    public SearchStatistics getNearestStatistics(){
+        return nearestStatistics;
     }
 
     /** @return de array van nodes */
@@ -22,20 +250,33 @@ public class GraphController {
         return nodeArray;
     }
 
-    /** een functie die gebruikt wordt om de node graaf te maken */
+    /** een functie die gebruikt wordt om de node graaf te maken, met de indeling van het standaard magazijn */
     public void populateGraph(){
-        for (int i = 2; i <= 31; i++){
-            for (int j = 2; j <= 31; j++){
-                this.nodeArray[i][j] = new NodeWeighted("(" + i + ";" + j + ")", i, j);
+        populateGraph(WarehouseLayout.defaultLayout());
+    }
+
+    /**
+     * maakt de node graaf van een magazijn indeling. elke cel van de vloer wordt een node, buren
+     * worden verbonden tenzij het allebei rek plaatsen zijn. kost tijd en geheugen lineair in het
+     * aantal cellen.
+     * @param layout de indeling van het magazijn
+     */
+    public void populateGraph(WarehouseLayout layout){
+        nodeArray = new NodeWeighted[layout.getSizeX()][layout.getSizeZ()];
+        for (int i = 0; i < layout.getSizeX(); i++){
+            for (int j = 0; j < layout.getSizeZ(); j++){
+                if (layout.isFloor(i, j)){
+                    this.nodeArray[i][j] = new NodeWeighted("(" + i + ";" + j + ")", i, j);
+                }
             }
         }
 
-        for (int i = 2; i <= 31; i++){
-            for (int j = 2; j <= 31; j++){
-                if (i == 2 || i == 5 || i == 8|| i == 11|| i == 14|| i == 17|| i == 20 || (i >=23 && i<= 30)){
+        for (int i = 0; i < layout.getSizeX(); i++){
+            for (int j = 0; j < layout.getSizeZ(); j++){
+                if (layout.isConnected(i, j, i + 1, j)){
                     this.addEdge(nodeArray[i][j], nodeArray[i+1][j], 1);
                 }
-                if (!(j == 3 || j == 6 || j == 9 || j == 12 || j == 15|| j == 18 || j == 21 || j == 24) && j <= 30){
+                if (layout.isConnected(i, j, i, j + 1)){
                     this.addEdge(nodeArray[i][j], nodeArray[i][j+1], 1);
                 }
             }
@@ -49,14 +290,329 @@ public class GraphController {
      * @param weight gewicht/afstand tussen twee nodes.
      */
     public void addEdge(NodeWeighted source, NodeWeighted destination, int weight){
-        nodes.add(source);
-        nodes.add(destination);
+        addNode(source);
+        addNode(destination);
 
         addEdgeHelper(source, destination, weight);
 
         if (source != destination){
             addEdgeHelper(destination, source, weight);
         }
+        compactGraph = null;
+        routeCache.clear();
+    }
+
+    /**
+     * voegt een node toe aan de graaf en geeft deze een id, als de node er nog niet in zit
+     * @param node de node
+     */
+    private void addNode(NodeWeighted node){
+        if (nodes.add(node)){
+            node.setId(nodeList.size());
+            nodeList.add(node);
+            node.addObserver(this);
+        }
+    }
+
+    /**
+     * geeft de compacte versie van de graaf, en bouwt deze opnieuw als er edges zijn bijgekomen
+     * @return de graaf in CSR vorm, met node id's gelijk aan {@link NodeWeighted#getId()}
+     */
+    public CompactGraph getCompactGraph(){
+        CompactGraph graph = compactGraph;
+        if (graph == null){
+            synchronized (this){
+                graph = compactGraph;
+                if (graph == null){
+                    graph = CompactGraph.fromNodes(nodeList);
+                    compactGraph = graph;
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * geeft het rooster van de compacte graaf, en bouwt dit opnieuw als de compacte graaf veranderd is
+     * @return het rooster, isUniformGrid() is false als de graaf geen rooster met gelijke gewichten is
+     */
+    public GridIndex getGridIndex(){
+        CompactGraph graph = getCompactGraph();
+        GridIndex grid = gridIndex;
+        if (isStale(grid, graph)){
+            synchronized (this){
+                grid = gridIndex;
+                if (isStale(grid, graph)){
+                    grid = GridIndex.of(graph);
+                    gridIndex = grid;
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * een rooster is verouderd als het bij een andere graaf hoort, of als het gelijke gewichten aanneemt
+     * terwijl er een gewicht veranderd is, bijvoorbeeld omdat het gebouwd werd terwijl de eerste edge veranderde
+     */
+    private static boolean isStale(GridIndex grid, CompactGraph graph){
+        return grid == null || grid.getGraph() != graph || (grid.isUniformGrid() && graph.changedWeightCount() > 0);
+    }
+
+    /**
+     * geeft de hierarchische planner van de compacte graaf. de eerste keer, en na het toevoegen van
+     * edges, worden de clusters en de paden tussen hun ingangen berekend.
+     * @return de planner op de huidige graaf
+     */
+    public HierarchicalPlanner getHierarchicalPlanner(){
+        CompactGraph graph = getCompactGraph();
+        HierarchicalPlanner planner = hierarchicalPlanner;
+        if (planner == null || planner.getGraph() != graph){
+            synchronized (this){
+                planner = hierarchicalPlanner;
+                if (planner == null || planner.getGraph() != graph){
+                    planner = new HierarchicalPlanner(graph, HierarchicalPlanner.DEFAULT_CLUSTER_SIZE);
+                    hierarchicalPlanner = planner;
+                }
+            }
+        }
+        return planner;
+    }
+
+    /**
+     * geeft de heatmap met de drukte per edge over de laatste TRAFFIC_WINDOW ticks, ook bedoeld om
+     * de drukte aan operators te tonen. na het toevoegen van edges begint een nieuwe heatmap.
+     * @return de heatmap op de huidige graaf
+     */
+    public TrafficHeatmap getTrafficHeatmap(){
+        CompactGraph graph = getCompactGraph();
+        TrafficHeatmap heatmap = trafficHeatmap;
+        if (heatmap == null || heatmap.getGraph() != graph){
+            synchronized (this){
+                heatmap = trafficHeatmap;
+                if (heatmap == null || heatmap.getGraph() != graph){
+                    heatmap = new TrafficHeatmap(graph, TRAFFIC_WINDOW, TRAFFIC_BUCKETS);
+                    trafficHeatmap = heatmap;
+                }
+            }
+        }
+        return heatmap;
+    }
+
+    /**
+     * telt dat een robot van de ene node naar de andere gereden is
+     * @param from de node waar de robot vandaan kwam
+     * @param to de node waar de robot nu staat
+     */
+    public void recordTraversal(NodeWeighted from, NodeWeighted to){
+        if (contains(from) && contains(to)){
+            getTrafficHeatmap().record(from.getId(), to.getId());
+        }
+    }
+
+    /**
+     * sluit een tick af voor de heatmap, en verwerkt om de TRAFFIC_FOLD_INTERVAL ticks de drukte in de gewichten
+     */
+    public void tickTraffic(){
+        tickTraffic(1);
+    }
+
+    /**
+     * sluit een aantal ticks in een keer af, voor ticks die overgeslagen worden omdat er niets gebeurt.
+     * de drukte wordt op dezelfde momenten verwerkt als bij losse ticks, zodat de gewichten op dezelfde
+     * manier terugzakken. is de heatmap leeg en zijn alle gewichten terug, dan verandert er niets meer
+     * en worden de rest van de ticks in een keer afgesloten
+     * @param ticks aantal ticks
+     */
+    public void tickTraffic(long ticks){
+        TrafficHeatmap heatmap = getTrafficHeatmap();
+        while (ticks > 0){
+            if (heatmap.isQuiet()){
+                heatmap.tick(ticks);
+                ticksSinceFold = (int) ((ticksSinceFold + ticks) % TRAFFIC_FOLD_INTERVAL);
+                return;
+            }
+            long step = Math.min(ticks, TRAFFIC_FOLD_INTERVAL - ticksSinceFold);
+            heatmap.tick(step);
+            ticks -= step;
+            ticksSinceFold += step;
+            if (ticksSinceFold >= TRAFFIC_FOLD_INTERVAL){
+                ticksSinceFold = 0;
+                foldTraffic();
+            }
+        }
+    }
+
+    /**
+     * verwerkt de drukte in de gewichten van de edges waarvan het aantal sinds de vorige keer veranderd
+     * is. een edge en zijn weg terug krijgen hetzelfde gewicht, uit hun drukte samen, zodat de graaf
+     * symmetrisch blijft. een gewicht gaat per keer hoogstens één keer het eigen gewicht omhoog of omlaag,
+     * anders kiezen alle robots tegelijk dezelfde rustige gang en is die de volgende keer de drukste.
+     * elk nieuw gewicht gaat via {@link EdgeWeighted#setWeight(int)}, zodat de compacte graaf, de route
+     * cache en de planners alleen die edge bijwerken.
+     */
+    public void foldTraffic(){
+        TrafficHeatmap heatmap = getTrafficHeatmap();
+        CompactGraph graph = heatmap.getGraph();
+        for (int edge : heatmap.takeChanged()){
+            int source = graph.source(edge);
+            int target = graph.target(edge);
+            int back = graph.findEdge(target, source);
+            int traffic = heatmap.count(edge) + (back >= 0 ? heatmap.count(back) : 0);
+            int congestion = 1 + Math.min(MAX_CONGESTION, traffic / TRAVERSALS_PER_WEIGHT);
+            int current = graph.weight(edge) / heatmap.baseWeight(edge);
+            if (congestion != current){
+                congestion = current + (congestion > current ? 1 : -1);
+                // nog niet op het gewicht dat bij de drukte hoort, de volgende keer verder
+                heatmap.markChanged(edge);
+            }
+
+            setWeight(source, target, heatmap.baseWeight(edge) * congestion);
+            if (back >= 0){
+                setWeight(target, source, heatmap.baseWeight(back) * congestion);
+            }
+        }
+    }
+
+    /**
+     * schrijft de gewichten van alle edges en de bezetting van alle nodes, voor een checkpoint.
+     * de vorm van de graaf zelf volgt uit de indeling van het magazijn
+     * @param out waar het heen gaat
+     * @throws IOException als schrijven mislukt
+     */
+    public void writeState(DataOutput out) throws IOException{
+        out.writeInt(nodeList.size());
+        for (NodeWeighted node : nodeList){
+            out.writeBoolean(node.isOccupied());
+            out.writeInt(node.getEdges().size());
+            for (EdgeWeighted edge : node.getEdges()){
+                out.writeInt(edge.getWeight());
+            }
+        }
+    }
+
+    /**
+     * leest de gewichten en bezetting die met {@link #writeState} geschreven zijn, in een graaf van
+     * dezelfde indeling. de heatmap wordt eerst gemaakt, zodat die de gewichten zonder drukte kent.
+     * de drukte zelf staat niet in het checkpoint; edges die zwaarder zijn dan zonder drukte worden bij
+     * de heatmap als veranderd gemeld, zodat hun gewicht net als na echte drukte weer terugzakt
+     * @param in waar het vandaan komt
+     * @throws IOException als lezen mislukt, of als de graaf een andere vorm heeft
+     */
+    public void readState(DataInput in) throws IOException{
+        TrafficHeatmap heatmap = getTrafficHeatmap();
+        if (in.readInt() != nodeList.size()){
+            throw new IOException("de graaf in het checkpoint heeft een ander aantal nodes");
+        }
+        for (NodeWeighted node : nodeList){
+            if (in.readBoolean() != node.isOccupied()){
+                node.toggleOccupation();
+            }
+            if (in.readInt() != node.getEdges().size()){
+                throw new IOException("node " + node.getName() + " heeft in het checkpoint andere edges");
+            }
+            for (EdgeWeighted edge : node.getEdges()){
+                edge.setWeight(in.readInt());
+            }
+        }
+
+        CompactGraph graph = heatmap.getGraph();
+        for (int edge = 0; edge < graph.edgeCount(); edge++){
+            if (graph.weight(edge) != heatmap.baseWeight(edge)){
+                heatmap.markChanged(edge);
+            }
+        }
+    }
+
+    /**
+     * zet het gewicht van de edge tussen twee nodes, als die er is
+     * @param source begin node id
+     * @param target eind node id
+     * @param weight het nieuwe gewicht
+     */
+    private void setWeight(int source, int target, int weight){
+        for (EdgeWeighted edge : nodeList.get(source).getEdges()){
+            if (edge.getDestination().getId() == target){
+                edge.setWeight(weight);
+                return;
+            }
+        }
+    }
+
+    /**
+     * geeft de workspace van de huidige thread, groot genoeg voor de graaf
+     * @param graph de graaf waarop gezocht gaat worden
+     * @return de workspace
+     */
+    private SearchWorkspace workspace(CompactGraph graph){
+        SearchWorkspace workspace = workspaces.get();
+        if (workspace == null || workspace.capacity() < graph.nodeCount()){
+            workspace = new SearchWorkspace(graph.nodeCount());
+            workspaces.set(workspace);
+        }
+        return workspace;
+    }
+
+    /**
+     * @param id id van een node
+     * @return de node met dat id
+     */
+    public NodeWeighted getNode(int id){
+        return nodeList.get(id);
+    }
+
+    /**
+     * houdt de bezetting en de gewichten in de compacte graaf gelijk aan die van de nodes en edges,
+     * en geeft de veranderingen door aan de route cache en de planners
+     * @param evt het bericht van de node
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (NodeWeighted.OCCUPATION_CHANGED.equals(evt.getPropertyName())){
+            NodeWeighted node = (NodeWeighted) evt.getSource();
+            CompactGraph graph = compactGraph;
+            if (graph != null){
+                graph.setOccupied(node.getId(), node.isOccupied(), node.getOccupancyVersion());
+            }
+            HierarchicalPlanner planner = hierarchicalPlanner;
+            if (planner != null && planner.getGraph() == graph){
+                planner.nodeChanged(node.getId());
+            }
+            if (!node.isOccupied()){
+                routeCache.recordRelease(node.getId(), node.getOccupancyVersion());
+            }
+            for (DStarLite incremental : incrementalPlanners){
+                incremental.nodeChanged(node.getId());
+            }
+        } else if (EdgeWeighted.WEIGHT_CHANGED.equals(evt.getPropertyName())){
+            EdgeWeighted edge = (EdgeWeighted) evt.getSource();
+            CompactGraph graph = compactGraph;
+            if (graph == null){
+                return;
+            }
+            int index = graph.findEdge(edge.getSource().getId(), edge.getDestination().getId());
+            if (index < 0){
+                return;
+            }
+            // jump point search gaat uit van de gewichten waarmee de graaf gemaakt is. het rooster wordt
+            // alleen opnieuw bekeken als de eerste edge daarvan afwijkt of de laatste weer terug is
+            if (graph.setWeight(index, edge.getWeight())){
+                gridIndex = null;
+            }
+            // paden over de edge kunnen duurder zijn, een lichtere edge kan elders een korter pad openen
+            int target = edge.getDestination().getId();
+            graph.touch(target, edge.getWeightVersion());
+            if (edge.getWeight() < (Integer) evt.getOldValue()){
+                routeCache.recordRelease(target, edge.getWeightVersion());
+            }
+            HierarchicalPlanner planner = hierarchicalPlanner;
+            if (planner != null && planner.getGraph() == graph){
+                planner.edgeChanged(index);
+            }
+            for (DStarLite incremental : incrementalPlanners){
+                incremental.edgeChanged(index);
+            }
+        }
     }
 
     /**
@@ -73,20 +629,173 @@ public class GraphController {
             }
         }
 
-        a.getEdges().add(new EdgeWeighted(a, b, weight));
+        EdgeWeighted edge = new EdgeWeighted(a, b, weight);
+        edge.addObserver(this);
+        a.getEdges().add(edge);
     }
 
     /**
-     * dijkstra algoritme om het kortste pad tussen twee nodes te vinden
+     * zoekt het kortste pad tussen twee nodes met het ingestelde algoritme. een pad dat eerder
+     * gevonden is en waarvan de nodes sindsdien niet van bezetting zijn veranderd komt uit de
+     * route cache, zonder te zoeken. de hierarchische planner vindt niet altijd het kortste pad,
+     * zijn paden gaan daarom niet via de cache.
      * @param start start node
      * @param end eind node
-     * @return een hashmap met het kortste pad tussen de twee gegeven nodes
+     * @return het kortste pad tussen de twee gegeven nodes
      */
-    public HashMap<NodeWeighted, NodeWeighted> dijkstraShortestPath(NodeWeighted start, NodeWeighted end) {
+    public PathResult shortestPath(NodeWeighted start, NodeWeighted end) {
+        PathfindingEngine engine = this.engine;
+        if (!contains(start) || !contains(end) || engine == PathfindingEngine.HIERARCHICAL){
+            return search(start, end, engine);
+        }
+
+        long version = NodeWeighted.currentOccupancyVersion();
+        PathResult cached = routeCache.get(getCompactGraph(), start.getId(), end.getId(), version);
+        if (cached != null){
+            return cached;
+        }
+
+        PathResult result = search(start, end, engine);
+        routeCache.put(result, version);
+        return result;
+    }
+
+    /**
+     * dijkstra algoritme om het kortste pad tussen twee nodes te vinden.
+     * de volgende node wordt uit een heap gehaald in plaats van alle nodes af te lopen,
+     * waardoor een zoekopdracht O((V + E) log V) kost in plaats van O(V^2).
+     * bezette nodes worden overgeslagen, net als in {@link #dijkstraShortestPathLinearScan}.
+     * @param start start node
+     * @param end eind node
+     * @return het kortste pad tussen de twee gegeven nodes
+     */
+    public PathResult dijkstraShortestPath(NodeWeighted start, NodeWeighted end) {
+        return search(start, end, PathfindingEngine.DIJKSTRA);
+    }
+
+    /**
+     * A* algoritme om het kortste pad tussen twee nodes te vinden. de manhattan afstand tussen
+     * de coordinaten van een node en de eind node wordt als schatting gebruikt, waardoor vooral
+     * nodes in de richting van de eind node uitgebreid worden. de schatting wordt geschaald met het
+     * laagste gewicht per eenheid afstand, zodat het pad even kort is als bij dijkstra.
+     * @param start start node
+     * @param end eind node
+     * @return het kortste pad tussen de twee gegeven nodes
+     */
+    public PathResult aStarShortestPath(NodeWeighted start, NodeWeighted end) {
+        return search(start, end, PathfindingEngine.A_STAR);
+    }
+
+    /**
+     * jump point search om het kortste pad tussen twee nodes te vinden. op een rooster waarin alle
+     * edges even zwaar zijn worden alleen de nodes uitgebreid waar een pad kan afbuigen, de rest
+     * wordt overgeslagen. anders wordt A* gebruikt. het pad is even kort als bij dijkstra.
+     * @param start start node
+     * @param end eind node
+     * @return het kortste pad tussen de twee gegeven nodes
+     */
+    public PathResult jumpPointShortestPath(NodeWeighted start, NodeWeighted end) {
+        return search(start, end, PathfindingEngine.JUMP_POINT);
+    }
+
+    /**
+     * hierarchisch zoeken naar een pad tussen twee nodes. alleen in het cluster van de start en het eind
+     * wordt node voor node gezocht, daartussen over de vooraf berekende paden tussen de ingangen van de
+     * clusters. het pad is bijna, maar niet altijd, even kort als bij dijkstra.
+     * @param start start node
+     * @param end eind node
+     * @return een pad tussen de twee gegeven nodes
+     */
+    public PathResult hierarchicalPath(NodeWeighted start, NodeWeighted end) {
+        return search(start, end, PathfindingEngine.HIERARCHICAL);
+    }
+
+    /**
+     * zoekt in één keer de k doelen die vanaf de start node het dichtst bij liggen, bijvoorbeeld de
+     * dichtstbijzijnde rekken of vrije dropoff plaatsen voor een robot. er wordt maar één keer
+     * uitgebreid vanaf de start, in plaats van een zoekopdracht per doel.
+     * @param start start node
+     * @param targets de doelen, nodes die niet in deze graaf zitten worden overgeslagen
+     * @param k hoeveel doelen er hoogstens gezocht worden
+     * @return de paden naar de gevonden doelen, van kort naar lang, leeg als er geen doel bereikbaar is
+     */
+    public List<PathResult> nearest(NodeWeighted start, Collection<NodeWeighted> targets, int k) {
+        if (!contains(start)){
+            nearestStatistics.record(0, false);
+            return Collections.emptyList();
+        }
+
+        CompactGraph graph = getCompactGraph();
+        BitSet targetSet = new BitSet(graph.nodeCount());
+        for (NodeWeighted target : targets){
+            if (contains(target)){
+                targetSet.set(target.getId());
+            }
+        }
+
+        SearchWorkspace workspace = workspace(graph);
+        PathResult[] found = GraphSearch.nearest(graph, start.getId(), targetSet, k, workspace);
+        nearestStatistics.record(workspace.getExpanded(), found.length > 0);
+        return Arrays.asList(found);
+    }
+
+    /**
+     * zoekt het kortste pad op de compacte graaf met de workspace van de huidige thread.
+     * bezette nodes worden nooit betreden, de start node mag wel bezet zijn.
+     * @param start start node
+     * @param end eind node
+     * @param searchEngine het zoekalgoritme
+     * @return het kortste pad, of PathResult.notFound()
+     */
+    private PathResult search(NodeWeighted start, NodeWeighted end, PathfindingEngine searchEngine) {
+        SearchStatistics stats = statistics.get(searchEngine);
+        if (!contains(start) || !contains(end)){
+            stats.record(0, false);
+            return PathResult.notFound();
+        }
+
+        CompactGraph graph = getCompactGraph();
+        SearchWorkspace workspace = workspace(graph);
+        PathResult result;
+        if (searchEngine == PathfindingEngine.HIERARCHICAL){
+            HierarchicalPlanner planner = getHierarchicalPlanner();
+            synchronized (planner){
+                result = planner.shortestPath(start.getId(), end.getId());
+                stats.record(planner.getLastExpanded(), result.isFound());
+            }
+            return result;
+        } else if (searchEngine == PathfindingEngine.JUMP_POINT){
+            result = JumpPointSearch.shortestPath(getGridIndex(), start.getId(), end.getId(), workspace);
+        } else {
+            result = GraphSearch.shortestPath(graph, start.getId(), end.getId(),
+                    searchEngine == PathfindingEngine.A_STAR, workspace);
+        }
+
+        stats.record(workspace.getExpanded(), result.isFound());
+        return result;
+    }
+
+    /**
+     * @param node de node
+     * @return true als de node in deze graaf zit
+     */
+    boolean contains(NodeWeighted node){
+        return node.getId() >= 0 && node.getId() < nodeList.size() && nodeList.get(node.getId()) == node;
+    }
+
+    /**
+     * de oorspronkelijke versie van het dijkstra algoritme, die bij elke stap alle nodes
+     * afloopt om de dichtstbijzijnde te vinden. blijft bestaan als referentie voor de benchmark.
+     * @param start start node
+     * @param end eind node
+     * @return het kortste pad tussen de twee gegeven nodes
+     */
+    public PathResult dijkstraShortestPathLinearScan(NodeWeighted start, NodeWeighted end) {
         HashMap<NodeWeighted, NodeWeighted> path = new HashMap<>();
         path.put(start, null);
 
         HashMap<NodeWeighted, Integer> shortestPathMap = new HashMap<>();
+        Set<NodeWeighted> visited = new HashSet<>();
 
         for (NodeWeighted node : nodes) {
             if (node == start){
@@ -100,25 +809,22 @@ public class GraphController {
             path.put(edge.getDestination(), start);
         }
 
-        start.visit();
+        visited.add(start);
 
         while (true) {
-            NodeWeighted currentNode = closestReachableUnvisited(shortestPathMap);
+            NodeWeighted currentNode = closestReachableUnvisited(shortestPathMap, visited);
 
             if (currentNode == null){
-                unvisitNodes();
-                return path;
+                return PathResult.notFound();
             }
 
             if (currentNode == end){
-                printPath(path, shortestPathMap, start, end);
-                unvisitNodes();
-                return path;
+                return toPathResult(path, shortestPathMap, end);
             }
-            currentNode.visit();
+            visited.add(currentNode);
 
             for (EdgeWeighted edge: currentNode.getEdges()) {
-                if (edge.getDestination().isVisited() || edge.getDestination().isOccupied()){
+                if (visited.contains(edge.getDestination()) || edge.getDestination().isOccupied()){
                     continue;
                 }
 
@@ -133,15 +839,16 @@ public class GraphController {
     /**
      * een functie om de node te vinden die het dichtste bij is en ook berijkbaar is.
      * @param shortestPathMap map met alle nodes
+     * @param visited de nodes die al bezocht zijn
      * @return de node die het dichtste bij is, berijkbaar is en niet bezet is.
      */
-    private NodeWeighted closestReachableUnvisited(HashMap<NodeWeighted, Integer> shortestPathMap){
+    private NodeWeighted closestReachableUnvisited(HashMap<NodeWeighted, Integer> shortestPathMap, Set<NodeWeighted> visited){
 
         int shortestDistance = Integer.MAX_VALUE;
         NodeWeighted closestReachableNode = null;
 
         for (NodeWeighted node : nodes){
-            if (node.isVisited() || node.isOccupied()){
+            if (visited.contains(node) || node.isOccupied()){
                 continue;
             }
 
@@ -159,36 +866,22 @@ public class GraphController {
     }
 
     /**
-     * print het kortste pad dat tussen twee nodes zit
+     * zet het pad van de oude dijkstra om naar een PathResult
      * @param path het pad van nodes tussen start en eind
-     * @param shortestPathMap de mpa met nodes en hun kosten
-     * @param start begin node
+     * @param shortestPathMap de map met nodes en hun kosten
      * @param end eind node
+     * @return het pad van start naar end
      */
-    private void printPath(HashMap<NodeWeighted, NodeWeighted> path, HashMap<NodeWeighted, Integer> shortestPathMap, NodeWeighted start, NodeWeighted end){
-        System.out.println("het pad met de kortste afstand tussen " + start.getName() + " en " + end.getName() + " is:");
-
-        NodeWeighted child = end;
-        String nodePath = end.getName();
-        while (true){
-            NodeWeighted parent = path.get(child);
-            if (parent == null){
-                break;
-            }
-            nodePath = parent.getName() + " " + nodePath;
-            child = parent;
+    private PathResult toPathResult(HashMap<NodeWeighted, NodeWeighted> path, HashMap<NodeWeighted, Integer> shortestPathMap, NodeWeighted end){
+        List<NodeWeighted> route = new ArrayList<>();
+        for (NodeWeighted node = end; node != null; node = path.get(node)){
+            route.add(node);
         }
-        System.out.println(nodePath);
-        System.out.println("dit pad kost: " + shortestPathMap.get(end));
-    }
-
-    /**
-     * een functie om alle nodes naar unvisited te zetten na het dijkstra algoritme.
-     */
-    private void unvisitNodes(){
-        for (NodeWeighted node : nodes){
-            node.unvisit();
+        int[] ids = new int[route.size()];
+        for (int i = 0; i < ids.length; i++){
+            ids[i] = route.get(ids.length - 1 - i).getId();
         }
+        return new PathResult(ids, shortestPathMap.get(end));
     }
 
 }
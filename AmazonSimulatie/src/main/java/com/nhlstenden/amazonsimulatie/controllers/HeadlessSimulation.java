@@ -0,0 +1,121 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import java.util.concurrent.TimeUnit;
+
+import com.nhlstenden.amazonsimulatie.models.World;
+
+/**
+ * draait de simulatie zonder webserver en zonder views, met de ticks direct achter elkaar zo snel als
+ * de processor kan. een tick staat voor evenveel gesimuleerde tijd als bij de {@link TickScheduler},
+ * zo kan een hele dienst in een paar seconden gesimuleerd worden. de wereld loopt als discrete event
+ * simulatie, ticks waarin niets gebeurt worden overgeslagen. houdt bij hoeveel ticks per seconde gehaald
+ * zijn, hoeveel ticks echt uitgevoerd zijn, hoeveel rekken verplaatst zijn en hoeveel trucks geholpen zijn.
+ */
+public class HeadlessSimulation {
+
+    /** de wereld die gesimuleerd wordt */
+    private final World world;
+    /** aantal ticks per gesimuleerde seconde */
+    private final int ticksPerSecond;
+
+    private long ticks;
+    private long executedTicks;
+    private long elapsed;
+
+    /**
+     * @param world de wereld, die geen views nodig heeft
+     */
+    public HeadlessSimulation(World world){
+        this(world, TickScheduler.DEFAULT_TICKS_PER_SECOND);
+    }
+
+    /**
+     * @param world de wereld, die geen views nodig heeft
+     * @param ticksPerSecond aantal ticks per gesimuleerde seconde, minstens 1
+     */
+    public HeadlessSimulation(World world, int ticksPerSecond){
+        if (ticksPerSecond < 1){
+            throw new IllegalArgumentException("ticksPerSecond moet minstens 1 zijn");
+        }
+        this.world = world;
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    /**
+     * voert een aantal ticks direct achter elkaar uit, ticks waarin niets gebeurt worden overgeslagen
+     * @param amount aantal ticks
+     */
+    public void runTicks(long amount){
+        long begin = System.nanoTime();
+        executedTicks += world.advance(amount);
+        elapsed += System.nanoTime() - begin;
+        ticks += amount;
+    }
+
+    /**
+     * voert zoveel ticks uit als nodig zijn voor een gesimuleerde tijdsduur
+     * @param duration gesimuleerde tijd
+     * @param unit eenheid van duration
+     */
+    public void runFor(long duration, TimeUnit unit){
+        runTicks(ticksFor(duration, unit));
+    }
+
+    /**
+     * @param duration gesimuleerde tijd
+     * @param unit eenheid van duration
+     * @return aantal ticks voor die tijd, naar boven afgerond
+     */
+    public long ticksFor(long duration, TimeUnit unit){
+        long millis = unit.toMillis(duration);
+        return (millis * ticksPerSecond + 999) / 1000;
+    }
+
+    /** @return aantal uitgevoerde ticks */
+    public long getTicks(){
+        return ticks;
+    }
+
+    /** @return aantal ticks dat echt uitgevoerd is, de rest is overgeslagen omdat er niets gebeurde */
+    public long getExecutedTicks(){
+        return executedTicks;
+    }
+
+    /** @return aantal gebeurtenissen dat uitgevoerd is */
+    public long getEvents(){
+        return world.getEvents().getExecuted();
+    }
+
+    /** @return gesimuleerde tijd in seconden */
+    public double getSimulatedSeconds(){
+        return (double) ticks / ticksPerSecond;
+    }
+
+    /** @return echte tijd die de ticks gekost hebben, in seconden */
+    public double getElapsedSeconds(){
+        return elapsed / 1e9;
+    }
+
+    /** @return aantal ticks per echte seconde */
+    public double getTicksPerSecond(){
+        return elapsed == 0 ? 0 : ticks / getElapsedSeconds();
+    }
+
+    /** @return aantal rekken dat de robots verplaatst hebben */
+    public int getRacksMoved(){
+        return world.getRacksDelivered();
+    }
+
+    /** @return aantal trucks dat geladen en weggestuurd is */
+    public int getTrucksServed(){
+        return world.getTrucksServed();
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%d ticks (%.0f s gesimuleerd, %d uitgevoerd, %d gebeurtenissen) in %.2f s, "
+                        + "%.0f ticks per seconde, %d rekken verplaatst, %d trucks geholpen", ticks, getSimulatedSeconds(),
+                getExecutedTicks(), getEvents(), getElapsedSeconds(), getTicksPerSecond(), getRacksMoved(),
+                getTrucksServed());
+    }
+}
@@ -10,12 +10,18 @@ package com.nhlstenden.amazonsimulatie.controllers;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.nhlstenden.amazonsimulatie.models.EntityStore;
+import com.nhlstenden.amazonsimulatie.models.EventQueue;
 import com.nhlstenden.amazonsimulatie.models.Truck;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
 
-public class LoadingBayController implements Runnable, PropertyChangeListener {
+public class LoadingBayController implements PropertyChangeListener {
     public List<Truck> truckList = new ArrayList<Truck>();
 
     private List<Truck> atBay = new ArrayList<Truck>();
@@ -26,32 +32,112 @@ public class LoadingBayController implements Runnable, PropertyChangeListener {
     private int rackAmount = 50;
     private int packageAmount = 50;
 
+    private int trucksServed = 0;
+
+    private EntityStore store;
+
+    // The clock the packages are loaded on, one per tick
+    private EventQueue events;
+    // The next package load, null when there is nothing to load
+    private EventQueue.Event loading;
+
     public LoadingBayController() {
-        new Thread(this).start();
+        this(WarehouseLayout.defaultLayout());
+    }
 
-        addTruck(10);
-        addTruck(20);
+    /**
+     * Start the loading bay and add a truck for every dock of the layout
+     * @param layout the layout of the warehouse
+     */
+    public LoadingBayController(WarehouseLayout layout) {
+        this(layout, new EntityStore(), new EventQueue());
     }
 
     /**
-     * "Update" function of the LoadingBayController
-     * Checks if there are packages that can be put into the truck
+     * Start the loading bay and add a truck for every dock of the layout
+     * @param layout the layout of the warehouse
+     * @param store the store that keeps the positions of the trucks
+     * @param events the clock the trucks and the loading bay schedule their events on
      */
-    @Override
-    public void run() {
-        while (true) {
-
-            if (packageAmount > 0) {
-                loadPackageOnTruck();
-            }
-
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+    public LoadingBayController(WarehouseLayout layout, EntityStore store, EventQueue events) {
+        this.store = store;
+        this.events = events;
+        for (int dock : layout.getDocks()) {
+            addTruck(dock);
         }
+    }
 
+    /**
+     * Restore the loading bay from a checkpoint, the trucks are looked up in the store
+     * @param store the store read from the checkpoint, with the trucks in it
+     * @param events the clock read from the checkpoint
+     * @param in where the state comes from, written by writeState
+     * @throws IOException when reading fails
+     */
+    public LoadingBayController(EntityStore store, EventQueue events, DataInput in) throws IOException {
+        this.store = store;
+        this.events = events;
+        for (int i = in.readInt(); i > 0; i--) {
+            Truck truck = (Truck) store.entity(in.readInt());
+            truck.addObserver(this);
+            truckList.add(truck);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            atBay.add(truckList.get(in.readInt()));
+        }
+        rackAmount = in.readInt();
+        packageAmount = in.readInt();
+        trucksServed = in.readInt();
+        if (in.readBoolean()) {
+            long time = in.readLong();
+            long sequence = in.readLong();
+            loading = events.restore(time, sequence, loadPackage);
+        }
+    }
+
+    /**
+     * Write the state of the loading bay for a checkpoint, the trucks are written as their id in the store
+     * @param out where the state goes
+     * @throws IOException when writing fails
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(truckList.size());
+        for (Truck truck : truckList) {
+            out.writeInt(truck.getId());
+        }
+        out.writeInt(atBay.size());
+        for (Truck truck : atBay) {
+            out.writeInt(truckList.indexOf(truck));
+        }
+        out.writeInt(rackAmount);
+        out.writeInt(packageAmount);
+        out.writeInt(trucksServed);
+        out.writeBoolean(loading != null);
+        if (loading != null) {
+            out.writeLong(loading.getTime());
+            out.writeLong(loading.getSequence());
+        }
+    }
+
+    /**
+     * Loads one package and schedules the next one for the next tick
+     */
+    private final Runnable loadPackage = new Runnable() {
+        @Override
+        public void run() {
+            loading = null;
+            loadPackageOnTruck();
+            scheduleLoading();
+        }
+    };
+
+    /**
+     * Schedule the next package load for the next tick, when there are packages and a truck to load them into
+     */
+    private void scheduleLoading() {
+        if (loading == null && packageAmount > 0 && atBay.size() > 0) {
+            loading = events.schedule(1, loadPackage);
+        }
     }
 
     /**
@@ -62,7 +148,7 @@ public class LoadingBayController implements Runnable, PropertyChangeListener {
      * @param x
      */
     private void addTruck(double x) {
-        Truck newTruck = new Truck(x, bayLocation, roadLocation);
+        Truck newTruck = new Truck(store, events, x, bayLocation, roadLocation);
         newTruck.addObserver(this);
 
         truckList.add(newTruck);
@@ -107,6 +193,7 @@ public class LoadingBayController implements Runnable, PropertyChangeListener {
         if(atBay.contains(truck) == false) {
             atBay.add(truck);
         } 
+        scheduleLoading();
     }
 
     /**
@@ -120,6 +207,23 @@ public class LoadingBayController implements Runnable, PropertyChangeListener {
         }
 
         truck.sendTruckToRoad();
+        trucksServed++;
+    }
+
+    /**
+     * New packages arrive at the loading bay, they are loaded into the trucks one per tick
+     * @param amount amount of packages that arrive
+     */
+    public void addPackages(int amount) {
+        packageAmount += amount;
+        scheduleLoading();
+    }
+
+    /**
+     * Return the amount of trucks that have been loaded and sent back to the road
+     */
+    public int getTrucksServed() {
+        return trucksServed;
     }
 
     /**
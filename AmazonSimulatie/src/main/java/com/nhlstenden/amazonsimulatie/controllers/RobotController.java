@@ -3,37 +3,178 @@ package com.nhlstenden.amazonsimulatie.controllers;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import com.nhlstenden.amazonsimulatie.models.*;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathResult;
 
-public class RobotController {
+public class RobotController implements PropertyChangeListener {
     private List<Robot> robotList;
     private List<Rack> rackList;
-    private boolean[][] rackLocations = new boolean[28][28];
+    private WarehouseLayout layout;
+    /** dropoff slots that are reserved for a rack a robot is bringing */
+    private boolean[][] rackLocations;
+    private GraphController graph;
+    private EntityStore store;
+    private Random random;
+    private BatchPlanner<Robot> planner;
+    private boolean assignNearest = true;
+    private int racksDelivered;
 
     PropertyChangeSupport pcs = new PropertyChangeSupport(this);
 
+    /**
+     * constructs object with the layout of the default warehouse
+     * @param populateRacksPercentage the percentage of rack slots to be filled
+     * @param amountRobots the amount of robots to be added
+     */
+    public RobotController(int populateRacksPercentage, int amountRobots) {
+        this(WarehouseLayout.defaultLayout(), populateRacksPercentage, amountRobots);
+    }
+
     /**
      * constructs object, sets rackLocations array to false
      * puts racks and robots in the world
+     * @param layout the layout of the warehouse, decides where racks, dropoff and parking are
      * @param populateRacksPercentage the percentage of rack slots to be filled
      * @param amountRobots the amount of robots to be added
      */
-    public RobotController(int populateRacksPercentage, int amountRobots) {
+    public RobotController(WarehouseLayout layout, int populateRacksPercentage, int amountRobots) {
+        this(layout, graphOf(layout), populateRacksPercentage, amountRobots);
+    }
+
+    /**
+     * constructs object, sets rackLocations array to false
+     * puts racks and robots in the world, robots plan their routes on the given graph
+     * @param layout the layout of the warehouse, decides where racks, dropoff and parking are
+     * @param graph the graph of the same layout
+     * @param populateRacksPercentage the percentage of rack slots to be filled
+     * @param amountRobots the amount of robots to be added
+     */
+    public RobotController(WarehouseLayout layout, GraphController graph, int populateRacksPercentage, int amountRobots) {
+        this(layout, graph, new EntityStore(), populateRacksPercentage, amountRobots);
+    }
+
+    /**
+     * constructs object, sets rackLocations array to false
+     * puts racks and robots in the world, robots plan their routes on the given graph
+     * and keep their positions in the given store
+     * @param layout the layout of the warehouse, decides where racks, dropoff and parking are
+     * @param graph the graph of the same layout
+     * @param store the store for the positions of the racks and robots
+     * @param populateRacksPercentage the percentage of rack slots to be filled
+     * @param amountRobots the amount of robots to be added
+     */
+    public RobotController(WarehouseLayout layout, GraphController graph, EntityStore store, int populateRacksPercentage, int amountRobots) {
+        this(layout, graph, store, new Random(), populateRacksPercentage, amountRobots);
+    }
+
+    /**
+     * constructs object, sets rackLocations array to false
+     * puts racks and robots in the world, with the given random deciding where the racks go,
+     * so the same seed gives the same warehouse
+     * @param layout the layout of the warehouse, decides where racks, dropoff and parking are
+     * @param graph the graph of the same layout
+     * @param store the store for the positions of the racks and robots
+     * @param random the random that places the racks
+     * @param populateRacksPercentage the percentage of rack slots to be filled
+     * @param amountRobots the amount of robots to be added
+     */
+    public RobotController(WarehouseLayout layout, GraphController graph, EntityStore store, Random random, int populateRacksPercentage, int amountRobots) {
+        this.layout = layout;
+        this.graph = graph;
+        this.store = store;
+        this.random = random;
+        this.planner = new BatchPlanner<>(graph);
+        robotList = new ArrayList<>();
+        rackList = new ArrayList<>();
+        rackLocations = new boolean[layout.getSizeX()][layout.getSizeZ()];
+
+        populateRobots(amountRobots);
+        populateRacks(populateRacksPercentage);
+    }
+
+    /**
+     * restores the controller from a checkpoint, the robots and racks are looked up in the store
+     * @param layout the layout of the warehouse
+     * @param graph the graph of the same layout
+     * @param store the store read from the checkpoint, with the robots and racks in it
+     * @param in where the state comes from, written by {@link #writeState}
+     * @throws IOException when reading fails
+     */
+    public RobotController(WarehouseLayout layout, GraphController graph, EntityStore store, DataInput in) throws IOException {
+        this.layout = layout;
+        this.graph = graph;
+        this.store = store;
+        this.random = new Random();
+        this.planner = new BatchPlanner<>(graph);
         robotList = new ArrayList<>();
         rackList = new ArrayList<>();
+        rackLocations = new boolean[layout.getSizeX()][layout.getSizeZ()];
 
-        for (int row = 0; row < rackLocations.length; row++) {
-            for (int col = 0; col < rackLocations[row].length; col++) {
-                rackLocations[row][col] = false;
+        for (int i = in.readInt(); i > 0; i--) {
+            Robot robot = (Robot) store.entity(in.readInt());
+            robot.addObserver(this);
+            robotList.add(robot);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            rackList.add((Rack) store.entity(in.readInt()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            rackLocations[in.readInt()][in.readInt()] = true;
+        }
+        racksDelivered = in.readInt();
+        assignNearest = in.readBoolean();
+    }
+
+    /**
+     * writes the state of the controller for a checkpoint, robots and racks are written as their id in the store.
+     * routes that are still being planned are not written, those robots ask again after a restore
+     * @param out where the state goes
+     * @throws IOException when writing fails
+     */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(robotList.size());
+        for (Robot robot : robotList) {
+            out.writeInt(robot.getId());
+        }
+        out.writeInt(rackList.size());
+        for (Rack rack : rackList) {
+            out.writeInt(rack.getId());
+        }
+        List<int[]> reserved = new ArrayList<>();
+        for (int x = 0; x < rackLocations.length; x++) {
+            for (int z = 0; z < rackLocations[x].length; z++) {
+                if (rackLocations[x][z]) {
+                    reserved.add(new int[]{x, z});
+                }
             }
         }
+        out.writeInt(reserved.size());
+        for (int[] slot : reserved) {
+            out.writeInt(slot[0]);
+            out.writeInt(slot[1]);
+        }
+        out.writeInt(racksDelivered);
+        out.writeBoolean(assignNearest);
+    }
 
-        populateRobots(amountRobots);
-        populateRacks(populateRacksPercentage);
+    /**
+     * builds the graph of a layout
+     * @param layout the layout
+     * @return graph with a node for every floor cell
+     */
+    private static GraphController graphOf(WarehouseLayout layout){
+        GraphController graph = new GraphController();
+        graph.populateGraph(layout);
+        return graph;
     }
 
     /**
@@ -42,7 +183,8 @@ public class RobotController {
      * @param z z location of the robot
      */
     public void addRobot(int x, int  z){
-        Robot robot = new Robot(x,z);
+        Robot robot = new Robot(store,x,z);
+        robot.addObserver(this);
         robotList.add(robot);
     }
 
@@ -52,48 +194,47 @@ public class RobotController {
      * @param z z location of the rack
      */
     public void addRack(int x, int z){
-        Rack rack = new Rack(x,z);
+        Rack rack = new Rack(store,x,z);
         rackList.add(rack);
     }
 
     /**
-     * removes rack from rackList, updates racklocations
+     * removes rack from rackList, the rack keeps standing in the store until it is delivered
      * @param rack rack to be removed
      */
     public void removeRack(Rack rack){
         try{
             rackList.remove(rack);
-            updateRackLocations();
         } catch (NullPointerException e){
             e.printStackTrace();
         }
     }
 
     /**
-     * adds the specified amount of robots to the robot spawning area, maximum of 58 robots
+     * adds the specified amount of robots to the robot spawning area, starting with the last parking row,
+     * at most one robot per parking spot
      * @param amountRobots amount of robots to be added
      */
     public void populateRobots(int amountRobots){
-        for(int i = 1; i <= amountRobots; i++){
-            if(i <= 29){
-                addRobot(29,i);
-            } else{
-                addRobot(28, i-29);
+        int added = 0;
+        for (int i = layout.getSizeX() - 1; i >= layout.getParkingX() && added < amountRobots; i--){
+            for (int j = 1; j < layout.getSizeZ() && added < amountRobots; j++){
+                addRobot(i, j);
+                added++;
             }
         }
     }
 
     /**
-     * populates the grid randomly with storage racks, only in permitted areas
+     * populates the grid randomly with storage racks, only in the rack slots of the layout
      * @param percentage percentage of slots to be filled with storage racks
      */
     public void populateRacks(int percentage){
-        Random random = new Random();
         boolean checkgrid,checkrandom;
-        for (int i = 2; i < 25; i++){
-            for (int j = 2; j < 29; j++){
+        for (int i = WarehouseLayout.STORAGE_START; i < layout.getDropoffX(); i++){
+            for (int j = WarehouseLayout.STORAGE_START; j < WarehouseLayout.STORAGE_START + layout.getWidth(); j++){
                 checkrandom = random.nextInt(100)+1 <= percentage;
-                checkgrid = !(i==4||i==7||i==10||i==13||i==16||i==19||i==22||j==15);
+                checkgrid = layout.isRackSlot(i, j);
                 if(checkrandom&&checkgrid){
                     addRack(i,j);
                 }
@@ -102,66 +243,222 @@ public class RobotController {
     }
 
     /**
-     * takes the first rack from the racklist, checks if any robots are available to pick it up, then picks it up
-     * once the robot puts down the rack, delete the rack
+     * collects the racks robots have delivered, gives every idle robot the nearest rack that is still
+     * in the racklist, and starts planning the routes of all robots that need one. the routes are planned
+     * in parallel while the tick finishes, and given to the robots by {@link #applyRoutes()}
+     * @return the racks that were delivered since the last call, to be removed from the world. they are out of
+     * the spatial grid but keep their id in the store, whoever removes them frees it after the views got the
+     * remove command
      */
-    public Rack pickupRack() {
-        int[] dropoffLocation;
-        int racklistsize = rackList.size();
-        if(racklistsize != 0){
-            Rack rack = rackList.get(0);
-            for (Robot robot : robotList) {
-                if (racklistsize != 0 && !robot.isBusy() && !rack.isBusy()) {
-                    dropoffLocation = getDropoffLocation();
-                    if (dropoffLocation != null) {
-                        if (robot.pickup(rack, dropoffLocation[0], dropoffLocation[1])) {
-                            removeRack(rack);
-                            racklistsize--;
-                            return rack;
-                        }
-                    }
+    public List<Rack> pickupRacks() {
+        List<Rack> delivered = new ArrayList<>();
+        Map<NodeWeighted, Rack> available = null;
+        for (Robot robot : robotList) {
+            Rack rack = robot.takeDelivered();
+            if (rack != null) {
+                delivered.add(rack);
+                rackLocations[(int) rack.getX()][(int) rack.getZ()] = false;
+                // the cell is free for the next robot right away, the id only after the remove command
+                if (rack.getStore() == store) {
+                    store.hide(rack.getId());
                 }
+                racksDelivered++;
+            }
+
+            if (!robot.isBusy() && !rackList.isEmpty()) {
+                if (available == null) {
+                    available = availableRacks();
+                }
+                assignRack(robot, available);
+            }
+
+            if (robot.needsRoute() && !planner.isPending(robot)) {
+                planner.request(robot, getNode(robot.getX(), robot.getZ()), getNode(robot.getTargetX(), robot.getTargetZ()));
             }
         }
-        return null;
+        planner.submit();
+        return delivered;
+    }
+
+    /**
+     * checks if the next call to pickupRacks would do nothing, so a tick in which no robot moves can be skipped
+     * @return true if no route is being planned and no robot is waiting for a rack or a route
+     */
+    public boolean isIdle() {
+        if (!planner.isIdle()) {
+            return false;
+        }
+        for (Robot robot : robotList) {
+            if ((!robot.isBusy() && !rackList.isEmpty()) || robot.needsRoute()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * goes through the racklist, checks locations, and sets racklocations accordingly
+     * gives a robot a rack to fetch and a free dropoff slot to bring it to, which stays reserved until
+     * the rack is delivered. with assignNearest the rack nearest to the robot and the slot nearest to the
+     * rack are picked, otherwise the first rack from the racklist and the first free slot
+     * @param robot an idle robot
+     * @param available racks in the racklist by the node they stand on, the assigned rack is removed
      */
-    public void updateRackLocations(){
-        int x,z;
-        for(Rack rack : rackList){
-            x = (int)rack.getX();
-            z = (int)rack.getZ();
-            for (int i = 0; i < 28; i++) {
-                for (int j = 0; j < 28; j++) {
-                    if(x==i&&z==j){
-                        rackLocations[i][j] = true;
-                    }
+    private void assignRack(Robot robot, Map<NodeWeighted, Rack> available) {
+        Rack rack = null;
+        if (!assignNearest) {
+            rack = rackList.get(0);
+        } else {
+            List<PathResult> nearest = graph.nearest(getNode(robot.getX(), robot.getZ()), available.keySet(), 1);
+            if (!nearest.isEmpty()) {
+                rack = available.get(graph.getNode(nearest.get(0).getEnd()));
+            }
+        }
+        if (rack == null) {
+            return;
+        }
+
+        int[] dropoffLocation = assignNearest ? getDropoffLocation(rack) : getDropoffLocation();
+        if (dropoffLocation != null && robot.pickup(rack, dropoffLocation[0], dropoffLocation[1])) {
+            available.remove(getNode(rack.getX(), rack.getZ()));
+            rackLocations[dropoffLocation[0]][dropoffLocation[1]] = true;
+            removeRack(rack);
+        }
+    }
+
+    /**
+     * @return the racks in the racklist by the node they stand on
+     */
+    private Map<NodeWeighted, Rack> availableRacks() {
+        Map<NodeWeighted, Rack> available = new HashMap<>();
+        for (Rack rack : rackList) {
+            available.put(getNode(rack.getX(), rack.getZ()), rack);
+        }
+        return available;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @return the node of the graph at that position
+     */
+    private NodeWeighted getNode(double x, double z) {
+        return graph.getNodeArray()[(int) x][(int) z];
+    }
+
+    /**
+     * waits for the routes planned by the last {@link #pickupRacks()} and gives them to the robots,
+     * to be called at the start of a tick. a robot without a path asks again next tick
+     */
+    public void applyRoutes() {
+        for (Map.Entry<Robot, PathResult> entry : planner.apply().entrySet()) {
+            PathResult path = entry.getValue();
+            if (path.isFound()) {
+                List<NodeWeighted> route = new ArrayList<>(path.length());
+                for (int i = 0; i < path.length(); i++) {
+                    route.add(graph.getNode(path.getNode(i)));
                 }
+                entry.getKey().setRoute(route);
+            }
+        }
+    }
+
+    /**
+     * counts every step of a robot in the traffic heatmap of the graph
+     * @param evt the event of the robot
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (Robot.MOVED.equals(evt.getPropertyName()) && evt.getOldValue() != null) {
+            graph.recordTraversal((NodeWeighted) evt.getOldValue(), (NodeWeighted) evt.getNewValue());
+        }
+    }
+
+    /**
+     * checks if a rack stands on a cell, looked up in the spatial grid of the store.
+     * racks carried by a robot do not count
+     * @param x x coordinate
+     * @param z z coordinate
+     * @return true if a rack stands on the cell
+     */
+    public boolean hasRackAt(int x, int z){
+        for (Rack rack : store.getGrid().at(x, z, Rack.class)) {
+            if (store.parent(rack.getId()) == EntityStore.NONE) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @return true if the dropoff slot is not reserved and no rack stands on it
+     */
+    private boolean isFreeDropoff(int x, int z){
+        return layout.isDropoff(x, z) && !rackLocations[x][z] && !hasRackAt(x, z);
     }
 
     /**
-     * goes through the dropoff area, and checks if there are any racks there, if not, sets the dropofflocation to the first available slot
-     * @return dropofflocation, with x and z
+     * goes through the dropoff area, and checks if there are any racks there or on the way, if not, sets the dropofflocation to the first available slot
+     * @return dropofflocation, with x and z, or null if every slot is taken
      */
     public int[] getDropoffLocation() {
-        int[] dropoffLocation = new int[2];
-
-        outer: for(int i = 25; i < 28; i++){
-            for(int j = 1; j < 28; j++){
-                if(!rackLocations[i][j]){
-                    dropoffLocation[0] = i;
-                    dropoffLocation[1] = j;
-                    break outer;
+        for(int i = layout.getDropoffX(); i < layout.getParkingX(); i++){
+            for(int j = 1; j <= layout.getWidth(); j++){
+                if(isFreeDropoff(i, j)){
+                    return new int[]{i, j};
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * finds the free dropoff slot nearest to a rack, with a single search from the rack
+     * @param rack the rack to be delivered
+     * @return dropofflocation, with x and z, or null if no free slot can be reached
+     */
+    public int[] getDropoffLocation(Rack rack) {
+        List<NodeWeighted> free = new ArrayList<>();
+        for(int i = layout.getDropoffX(); i < layout.getParkingX(); i++){
+            for(int j = 1; j <= layout.getWidth(); j++){
+                if(isFreeDropoff(i, j)){
+                    free.add(getNode(i, j));
                 }
             }
         }
 
-        return dropoffLocation;
+        List<PathResult> nearest = graph.nearest(getNode(rack.getX(), rack.getZ()), free, 1);
+        if (nearest.isEmpty()) {
+            return null;
+        }
+        NodeWeighted slot = graph.getNode(nearest.get(0).getEnd());
+        return new int[]{slot.getX(), slot.getY()};
+    }
+
+    /**
+     * @param assignNearest true to give robots the nearest rack and dropoff slot, false for the first ones
+     */
+    public void setAssignNearest(boolean assignNearest){
+        this.assignNearest = assignNearest;
+    }
+
+    /**
+     * @return amount of racks delivered so far
+     */
+    public int getRacksDelivered(){
+        return racksDelivered;
+    }
+
+    /**
+     * @return average amount of nodes driven by the robots per delivered rack, including driving back
+     */
+    public double getTravelPerRack(){
+        long travelled = 0;
+        for (Robot robot : robotList) {
+            travelled += robot.getDistanceTravelled();
+        }
+        return racksDelivered == 0 ? 0 : (double) travelled / racksDelivered;
     }
 
     //returns rackList
@@ -169,6 +466,31 @@ public class RobotController {
         return rackList;
     }
 
+    //returns the layout of the warehouse
+    public WarehouseLayout getLayout(){
+        return layout;
+    }
+
+    //returns the graph the robots drive on
+    public GraphController getGraph(){
+        return graph;
+    }
+
+    //returns the store with the positions of the racks and robots
+    public EntityStore getStore(){
+        return store;
+    }
+
+    //returns the planner that plans the routes of the robots
+    public BatchPlanner<Robot> getPlanner(){
+        return planner;
+    }
+
+    //replaces the planner, only between two ticks when no batch is being planned
+    public void setPlanner(BatchPlanner<Robot> planner){
+        this.planner = planner;
+    }
+
     //returns robotList
     public List<Robot> getRobotList(){
         return robotList;
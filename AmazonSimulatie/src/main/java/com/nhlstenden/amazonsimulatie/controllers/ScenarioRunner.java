@@ -0,0 +1,123 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import com.nhlstenden.amazonsimulatie.models.Object3D;
+import com.nhlstenden.amazonsimulatie.models.Scenario;
+import com.nhlstenden.amazonsimulatie.models.World;
+
+/**
+ * draait een {@link Scenario} zonder views, met de ticks direct achter elkaar. elk bericht dat de
+ * wereld naar de views zou sturen komt als regel in het event log, met de tick, het commando, de uuid
+ * en de positie en rotatie van het object. van het log wordt een checksum bijgehouden; hetzelfde
+ * scenario geeft altijd hetzelfde log en dus dezelfde checksum, zo kan een scenario als vaste
+ * basis voor metingen gebruikt worden. daarnaast wordt bijgehouden hoe snel de ticks gingen.
+ */
+public class ScenarioRunner {
+
+    /** het scenario */
+    private final Scenario scenario;
+    /** de wereld van het scenario */
+    private final World world;
+    /** waar het log heen gaat, null als alleen de checksum nodig is */
+    private final Writer log;
+    private final CRC32 checksum = new CRC32();
+
+    private long ticks;
+    private long events;
+    private long elapsed;
+
+    /**
+     * @param scenario het scenario
+     */
+    public ScenarioRunner(Scenario scenario){
+        this(scenario, null);
+    }
+
+    /**
+     * @param scenario het scenario
+     * @param log waar het event log heen geschreven wordt, null voor alleen de checksum
+     */
+    public ScenarioRunner(Scenario scenario, Writer log){
+        this.scenario = scenario;
+        this.world = new World(scenario);
+        this.log = log;
+        world.addObserver(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                record(evt.getPropertyName(), (Object3D) evt.getNewValue());
+            }
+        });
+    }
+
+    /**
+     * voert een aantal ticks van het scenario uit. aan het begin van elke tick komen de pakketten
+     * binnen die volgens het schema van het scenario dan aankomen
+     * @param amount aantal ticks
+     */
+    public void run(long amount){
+        long begin = System.nanoTime();
+        for (long i = 0; i < amount; i++){
+            int packages = scenario.packagesArriving(ticks);
+            if (packages > 0){
+                world.deliverPackages(packages);
+            }
+            world.update();
+            world.pickupRack();
+            ticks++;
+        }
+        elapsed += System.nanoTime() - begin;
+    }
+
+    private void record(String command, Object3D object){
+        String line = ticks + " " + command + " " + object.getUUID() + " " + object.getX() + " " + object.getY()
+                + " " + object.getZ() + " " + object.getRotationX() + " " + object.getRotationY() + " "
+                + object.getRotationZ() + "\n";
+        checksum.update(line.getBytes(StandardCharsets.UTF_8));
+        events++;
+        if (log != null){
+            try {
+                log.write(line);
+            } catch (IOException e) {
+                throw new IllegalStateException("schrijven van het event log is mislukt", e);
+            }
+        }
+    }
+
+    /** @return de wereld van het scenario */
+    public World getWorld(){
+        return world;
+    }
+
+    /** @return aantal uitgevoerde ticks */
+    public long getTicks(){
+        return ticks;
+    }
+
+    /** @return aantal berichten in het log */
+    public long getEvents(){
+        return events;
+    }
+
+    /** @return checksum van het log tot nu toe, gelijk voor elke run van hetzelfde scenario */
+    public long getChecksum(){
+        return checksum.getValue();
+    }
+
+    /** @return aantal ticks per echte seconde */
+    public double getTicksPerSecond(){
+        return elapsed == 0 ? 0 : ticks / (elapsed / 1e9);
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%s: %d ticks in %.2f s, %.0f ticks per seconde, %d berichten, %d rekken verplaatst, "
+                        + "%d trucks geholpen, log %08x", scenario, ticks, elapsed / 1e9, getTicksPerSecond(), events,
+                world.getRacksDelivered(), world.getTrucksServed(), getChecksum());
+    }
+}
@@ -7,6 +7,7 @@ import com.nhlstenden.amazonsimulatie.models.Model;
 import com.nhlstenden.amazonsimulatie.models.Object3D;
 import com.nhlstenden.amazonsimulatie.models.Rack;
 import com.nhlstenden.amazonsimulatie.models.World;
+import com.nhlstenden.amazonsimulatie.models.WorldCheckpoint;
 import com.nhlstenden.amazonsimulatie.views.View;
 
 /*
@@ -16,17 +17,62 @@ import com.nhlstenden.amazonsimulatie.views.View;
  */
 public class SimulationController extends Controller {
 
+    private final TickScheduler scheduler;
+    private CheckpointFile checkpoints;
+    private int checkpointInterval;
+    private long ticks;
+
     public SimulationController(Model model) {
+        this(model, TickScheduler.DEFAULT_TICKS_PER_SECOND);
+    }
+
+    /*
+     * Met ticksPerSecond kies je hoe vaak per seconde de wereld geupdate wordt. Elke tick is een
+     * vaste stap in de simulatie, dus dit bepaalt hoe snel de simulatie loopt.
+     */
+    public SimulationController(Model model, int ticksPerSecond) {
         super(model); //Met dit onderdeel roep je de constructor aan van de superclass (Controller)
+        final World world = (World)model;
+        this.scheduler = new TickScheduler(new Runnable() {
+            @Override
+            public void run() {
+                world.update();
+                // de routes worden tijdens het wachten gepland en aan het begin van de volgende tick toegepast
+                world.pickupRack();
+                ticks++;
+                if (checkpoints != null && ticks % checkpointInterval == 0) {
+                    checkpoints.save(WorldCheckpoint.capture(world));
+                }
+            }
+        }, ticksPerSecond, TickScheduler.DEFAULT_MAX_CATCH_UP);
     }
 
     /*
-     * Deze methode wordt aangeroepen wanneer de controller wordt gestart. De methode start een infinite
-     * while-loop op in de thread van de controller. Normaal loopt een applicatie vast in een infinite
-     * loop, maar omdat de controller een eigen thread heeft loopt deze loop eigenlijk naast de rest
-     * van het programma. Elke keer wordt een Thread.sleep() gedaan met 100 als parameter. Dat betekent
-     * 100 miliseconden rust, en daarna gaat de loop verder. Dit betekent dat ongeveer 10 keer per seconden
-     * de wereld wordt geupdate. Dit is dus in feite 10 frames per seconde.
+     * Laat elke intervalTicks ticks een checkpoint van de wereld maken. Het checkpoint wordt tussen twee
+     * ticks gekopieerd en op de thread van het CheckpointFile weggeschreven, zodat de ticks niet wachten.
+     * Moet aangeroepen worden voordat de controller gestart wordt.
+     */
+    public void enableCheckpoints(CheckpointFile checkpoints, int intervalTicks) {
+        if (intervalTicks <= 0) {
+            throw new IllegalArgumentException("intervalTicks moet groter dan 0 zijn");
+        }
+        this.checkpoints = checkpoints;
+        this.checkpointInterval = intervalTicks;
+    }
+
+    /*
+     * Geeft de scheduler die de ticks uitvoert, met de duur van de ticks en hoeveel ze te laat begonnen.
+     */
+    public TickScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /*
+     * Deze methode wordt aangeroepen wanneer de controller wordt gestart. Na drie seconden wordt de
+     * scheduler in de thread van de controller gestart. Die update de wereld een vast aantal keer per
+     * seconde, standaard 10 keer, dus 10 frames per seconde. Elke tick begint op een vast moment op het
+     * schema, hoe lang de vorige tick ook duurde. Loopt de simulatie achter, dan worden een paar ticks
+     * direct achter elkaar ingehaald in plaats van dat de simulatie steeds trager wordt.
      */
     @Override
     public void run() {
@@ -35,18 +81,7 @@ public class SimulationController extends Controller {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-        Model model = this.getModel();
-        World world = (World)model;
-        while (true) {
-            world.pickupRack();
-            model.update();
-
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+        scheduler.run();
     }
 
     @Override
@@ -71,7 +106,9 @@ public class SimulationController extends Controller {
         /*
          * Dit stukje code zorgt ervoor dat wanneer een nieuwe view verbinding maakt, deze view één
          * keer alle objecten krijgt toegestuurd, ook als deze objecten niet updaten. Zo voorkom je
-         * dat de view alleen objecten ziet die worden geupdate (bijvoorbeeld bewegen).
+         * dat de view alleen objecten ziet die worden geupdate (bijvoorbeeld bewegen). De objecten
+         * komen uit de snapshot van de laatste tick, zodat dit vanaf de thread van de websocket kan
+         * zonder op de simulatie te wachten.
          */
         for (Object3D object : this.getModel().getWorldObjectsAsList()) {
             view.update(Model.UPDATE_COMMAND, object);
@@ -0,0 +1,200 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * voert een tick uit met een vast aantal ticks per seconde. elke tick heeft een vast tijdstip op
+ * het schema, los van hoe lang de vorige tick duurde, zodat de simulatie niet uitloopt als een tick
+ * langzaam is. loopt de scheduler achter, dan worden hoogstens maxCatchUp ticks direct achter
+ * elkaar ingehaald; wat daarna nog achterstand is wordt overgeslagen en geteld, zodat een trage
+ * machine niet steeds verder achter raakt. de duur van de ticks en hoe laat ze begonnen worden
+ * bijgehouden. de tellers mogen vanuit elke thread gelezen worden.
+ */
+public class TickScheduler implements Runnable {
+
+    /** standaard aantal ticks per seconde, gelijk aan de oude lus met 100 ms rust */
+    public static final int DEFAULT_TICKS_PER_SECOND = 10;
+
+    /** standaard aantal ticks dat achter elkaar ingehaald mag worden */
+    public static final int DEFAULT_MAX_CATCH_UP = 5;
+
+    /** de tick die uitgevoerd wordt */
+    private final Runnable tick;
+    /** aantal ticks dat achter elkaar ingehaald mag worden */
+    private final int maxCatchUp;
+    /** tijd tussen twee ticks op het schema in nanoseconden */
+    private volatile long period;
+    /** false om de lus te laten stoppen */
+    private volatile boolean running;
+    /** tijdstip van de volgende tick op het schema, van System.nanoTime() */
+    private long next;
+    /** true als het schema begonnen is */
+    private boolean started;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong skippedTicks = new AtomicLong();
+    private final AtomicLong totalDuration = new AtomicLong();
+    private final AtomicLong maxDuration = new AtomicLong();
+    private final AtomicLong totalLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+
+    /**
+     * @param tick de tick die uitgevoerd wordt
+     * @param ticksPerSecond aantal ticks per seconde
+     * @param maxCatchUp aantal ticks dat achter elkaar ingehaald mag worden als de scheduler achterloopt, minstens 1
+     */
+    public TickScheduler(Runnable tick, int ticksPerSecond, int maxCatchUp){
+        if (maxCatchUp < 1){
+            throw new IllegalArgumentException("maxCatchUp moet minstens 1 zijn");
+        }
+        this.tick = tick;
+        this.maxCatchUp = maxCatchUp;
+        setTicksPerSecond(ticksPerSecond);
+    }
+
+    /**
+     * @param tick de tick die uitgevoerd wordt, DEFAULT_TICKS_PER_SECOND keer per seconde
+     */
+    public TickScheduler(Runnable tick){
+        this(tick, DEFAULT_TICKS_PER_SECOND, DEFAULT_MAX_CATCH_UP);
+    }
+
+    /**
+     * verandert het aantal ticks per seconde, gaat in na de volgende tick
+     * @param ticksPerSecond aantal ticks per seconde, minstens 1
+     */
+    public void setTicksPerSecond(int ticksPerSecond){
+        if (ticksPerSecond < 1){
+            throw new IllegalArgumentException("ticksPerSecond moet minstens 1 zijn");
+        }
+        this.period = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+    }
+
+    /** @return aantal ticks per seconde */
+    public int getTicksPerSecond(){
+        return (int) (TimeUnit.SECONDS.toNanos(1) / period);
+    }
+
+    /**
+     * voert ticks uit volgens het schema tot stop() aangeroepen wordt of de thread onderbroken wordt
+     */
+    @Override
+    public void run(){
+        running = true;
+        next = System.nanoTime();
+        started = true;
+        while (running){
+            try {
+                TimeUnit.NANOSECONDS.sleep(runDue());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * voert de ticks uit die volgens het schema nu aan de beurt zijn, hoogstens maxCatchUp, en komt dan
+     * terug in plaats van te wachten. zo kan een pool met een paar threads de ticks van veel schedulers
+     * uitvoeren. de eerste aanroep begint het schema. mag niet door twee threads tegelijk aangeroepen worden
+     * @return nanoseconden tot de volgende tick aan de beurt is
+     */
+    public long runDue(){
+        long now = System.nanoTime();
+        if (!started){
+            next = now;
+            started = true;
+        }
+        int done = 0;
+        while (now >= next && done < maxCatchUp){
+            long lag = now - next;
+            tick.run();
+            long end = System.nanoTime();
+            record(end - now, lag);
+            next += period;
+            done++;
+            now = end;
+        }
+        if (now >= next){
+            // te ver achter om in te halen, de rest wordt overgeslagen
+            long behind = (now - next) / period + 1;
+            skippedTicks.addAndGet(behind);
+            next += behind * period;
+        }
+        return Math.max(0, next - System.nanoTime());
+    }
+
+    /**
+     * laat de lus stoppen na de tick die nu loopt
+     */
+    public void stop(){
+        running = false;
+    }
+
+    private void record(long duration, long lag){
+        ticks.incrementAndGet();
+        totalDuration.addAndGet(duration);
+        totalLag.addAndGet(lag);
+        raise(maxDuration, duration);
+        raise(maxLag, lag);
+    }
+
+    private static void raise(AtomicLong max, long value){
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)){
+            current = max.get();
+        }
+    }
+
+    /** @return aantal uitgevoerde ticks */
+    public long getTicks(){
+        return ticks.get();
+    }
+
+    /** @return aantal ticks dat overgeslagen is omdat de scheduler te ver achter liep */
+    public long getSkippedTicks(){
+        return skippedTicks.get();
+    }
+
+    /** @return gemiddelde duur van een tick in milliseconden */
+    public double getAverageDurationMillis(){
+        long count = ticks.get();
+        return count == 0 ? 0 : totalDuration.get() / 1e6 / count;
+    }
+
+    /** @return langste duur van een tick in milliseconden */
+    public double getMaxDurationMillis(){
+        return maxDuration.get() / 1e6;
+    }
+
+    /** @return hoeveel later dan op het schema een tick gemiddeld begon, in milliseconden */
+    public double getAverageLagMillis(){
+        long count = ticks.get();
+        return count == 0 ? 0 : totalLag.get() / 1e6 / count;
+    }
+
+    /** @return hoeveel later dan op het schema een tick hoogstens begon, in milliseconden */
+    public double getMaxLagMillis(){
+        return maxLag.get() / 1e6;
+    }
+
+    /**
+     * zet alle tellers terug naar 0
+     */
+    public void resetStatistics(){
+        ticks.set(0);
+        skippedTicks.set(0);
+        totalDuration.set(0);
+        maxDuration.set(0);
+        totalLag.set(0);
+        maxLag.set(0);
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%d ticks op %d per seconde, %d overgeslagen, duur gemiddeld %.2f ms (max %.2f), "
+                        + "te laat gemiddeld %.2f ms (max %.2f)", getTicks(), getTicksPerSecond(), getSkippedTicks(),
+                getAverageDurationMillis(), getMaxDurationMillis(), getAverageLagMillis(), getMaxLagMillis());
+    }
+}
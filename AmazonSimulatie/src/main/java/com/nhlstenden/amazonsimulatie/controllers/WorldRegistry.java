@@ -0,0 +1,218 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import com.nhlstenden.amazonsimulatie.models.World;
+
+/**
+ * houdt een aantal werelden met een naam bij, elk met een eigen SimulationController en een eigen
+ * aantal ticks per seconde. de werelden krijgen geen eigen thread, maar delen een pool met een vast
+ * aantal threads. een wereld voert steeds alleen de ticks uit die aan de beurt zijn, hoogstens
+ * maxCatchUp, en zet zichzelf daarna opnieuw in de pool op het tijdstip van zijn volgende tick. de pool
+ * voert altijd de wereld uit die het langst aan de beurt is, zodat een drukke wereld de andere niet
+ * kan laten wachten en elke wereld een eerlijk deel van de threads krijgt. een wereld draait nooit op
+ * twee threads tegelijk. de routes en parallelle updates van alle werelden draaien op een tweede
+ * gedeelde pool, zodat het aantal threads niet meegroeit met het aantal werelden.
+ */
+public class WorldRegistry {
+
+    /** de naam van de wereld waar een client mee verbindt als hij geen wereld kiest */
+    public static final String DEFAULT_WORLD = "default";
+
+    /** toegestane namen, ze komen in bestandsnamen en in de url van de websocket */
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final ScheduledThreadPoolExecutor pool;
+    /** de pool voor de routes en parallelle updates van alle werelden */
+    private final ForkJoinPool workers;
+    private final Map<String, WorldTask> worlds = new LinkedHashMap<>();
+
+    /**
+     * @param threads aantal threads dat de ticks van alle werelden uitvoert, en ook de grootte van de pool voor de routes
+     */
+    public WorldRegistry(int threads){
+        if (threads < 1){
+            throw new IllegalArgumentException("threads moet minstens 1 zijn");
+        }
+        final AtomicInteger count = new AtomicInteger();
+        pool = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "world-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        workers = new ForkJoinPool(threads);
+    }
+
+    /**
+     * een thread per processor
+     */
+    public WorldRegistry(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * voegt een wereld toe, die direct begint te ticken
+     * @param name de naam van de wereld, alleen letters, cijfers, - en _
+     * @param world de wereld
+     * @param ticksPerSecond aantal ticks per seconde van deze wereld
+     * @return de controller van de wereld, om views aan toe te voegen
+     */
+    public synchronized SimulationController add(String name, World world, int ticksPerSecond){
+        return add(name, new SimulationController(world, ticksPerSecond));
+    }
+
+    /**
+     * voegt een wereld toe met zijn controller, die direct begint te ticken. de controller mag niet zelf
+     * met start() gestart zijn
+     * @param name de naam van de wereld, alleen letters, cijfers, - en _
+     * @param controller de controller van de wereld
+     * @return de controller
+     */
+    public synchronized SimulationController add(String name, SimulationController controller){
+        if (!isValidName(name)){
+            throw new IllegalArgumentException("ongeldige naam voor een wereld: " + name);
+        }
+        if (worlds.containsKey(name)){
+            throw new IllegalArgumentException("er is al een wereld met de naam " + name);
+        }
+        ((World) controller.getModel()).setWorkerPool(workers);
+        WorldTask task = new WorldTask(name, controller);
+        worlds.put(name, task);
+        pool.execute(task);
+        return controller;
+    }
+
+    /**
+     * @param name de naam van de wereld
+     * @return de controller van de wereld, of null als er geen wereld met die naam is
+     */
+    public synchronized SimulationController get(String name){
+        WorldTask task = worlds.get(name);
+        return task == null ? null : task.controller;
+    }
+
+    /**
+     * stopt een wereld en haalt hem uit de registry. de tick die nu loopt wordt nog afgemaakt
+     * @param name de naam van de wereld
+     * @return false als er geen wereld met die naam is
+     */
+    public synchronized boolean remove(String name){
+        WorldTask task = worlds.remove(name);
+        if (task == null){
+            return false;
+        }
+        task.stopped = true;
+        return true;
+    }
+
+    /** @return de namen van de werelden, in de volgorde waarin ze toegevoegd zijn */
+    public synchronized List<String> getNames(){
+        return Collections.unmodifiableList(new ArrayList<>(worlds.keySet()));
+    }
+
+    /** @return aantal werelden */
+    public synchronized int size(){
+        return worlds.size();
+    }
+
+    /** @return aantal threads dat de ticks uitvoert */
+    public int getThreads(){
+        return pool.getCorePoolSize();
+    }
+
+    /**
+     * @param name een naam
+     * @return true als de naam als naam van een wereld gebruikt mag worden
+     */
+    public static boolean isValidName(String name){
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    /**
+     * stopt alle werelden en de pool, en wacht tot de ticks die nu lopen klaar zijn
+     * @param timeout hoe lang er hoogstens gewacht wordt
+     * @param unit eenheid van timeout
+     * @return false als er na timeout nog ticks liepen
+     * @throws InterruptedException als de thread onderbroken wordt tijdens het wachten
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException{
+        synchronized (this){
+            for (WorldTask task : worlds.values()){
+                task.stopped = true;
+            }
+            worlds.clear();
+        }
+        pool.shutdownNow();
+        workers.shutdown();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return pool.awaitTermination(timeout, unit)
+                && workers.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized String toString(){
+        StringBuilder builder = new StringBuilder();
+        builder.append(worlds.size()).append(" werelden op ").append(getThreads()).append(" threads");
+        for (WorldTask task : worlds.values()){
+            builder.append(System.lineSeparator()).append(task.name).append(": ").append(task.controller.getScheduler());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * voert de ticks van een wereld uit die aan de beurt zijn en zet zichzelf opnieuw in de pool
+     */
+    private class WorldTask implements Runnable {
+        private final String name;
+        private final SimulationController controller;
+        private volatile boolean stopped;
+
+        private WorldTask(String name, SimulationController controller){
+            this.name = name;
+            this.controller = controller;
+        }
+
+        @Override
+        public void run(){
+            if (stopped){
+                return;
+            }
+            long wait;
+            try {
+                wait = controller.getScheduler().runDue();
+            } catch (RuntimeException e) {
+                // een wereld die halverwege een tick fout ging is niet meer te vertrouwen, de andere draaien door
+                e.printStackTrace();
+                synchronized (WorldRegistry.this){
+                    if (worlds.get(name) == this){
+                        worlds.remove(name);
+                    }
+                }
+                return;
+            }
+            if (!stopped){
+                try {
+                    pool.schedule(this, wait, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // de pool is net gestopt
+                    stopped = true;
+                }
+            }
+        }
+    }
+}
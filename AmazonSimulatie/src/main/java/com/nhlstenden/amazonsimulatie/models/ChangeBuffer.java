@@ -0,0 +1,62 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import java.util.Arrays;
+
+/*
+ * Deze class verzamelt de objecten die in een tick veranderd zijn, met hun volgnummer in de wereld.
+ * De arrays worden elke tick opnieuw gebruikt en groeien alleen als er meer objecten tegelijk
+ * veranderen dan ooit eerder, zodat een gewone tick hier niets alloceert. Sorteren gebeurt op een
+ * long met het volgnummer en de plaats in de buffer, zonder Comparator of boxing. Een object mag er
+ * maar een keer per tick in, dat regelt de ChangeTracker door alleen bij de eerste verandering een
+ * bericht te sturen. Niet thread safe, de World synchroniseert.
+ */
+class ChangeBuffer {
+    private Object3D[] objects = new Object3D[64];
+    private long[] keys = new long[64];
+    private int size;
+
+    /**
+     * adds a changed object
+     * @param object the object
+     * @param order the number of the object in the world, decides the order after sort
+     */
+    void add(Object3D object, int order) {
+        if (size == objects.length) {
+            objects = Arrays.copyOf(objects, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size] = ((long) order << 32) | size;
+        objects[size++] = object;
+    }
+
+    /**
+     * puts the objects in the order of their number in the world
+     */
+    void sort() {
+        Arrays.sort(keys, 0, size);
+    }
+
+    /**
+     * @param index index after sort
+     * @return the object at that place
+     */
+    Object3D get(int index) {
+        return objects[(int) keys[index]];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * empties the buffer, the arrays are kept for the next tick
+     */
+    void clear() {
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,27 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import java.beans.PropertyChangeListener;
+
+/*
+ * Deze interface beschrijft een object in de wereld dat zelf bijhoudt of het veranderd is. Een object
+ * is dirty als er iets aan veranderd is dat de views moeten zien, zoals een positie, en awake als het
+ * in de volgende tick geupdate moet worden. Wordt een object dirty of wakker, dan stuurt het een
+ * DIRTY of AWAKE bericht naar zijn observers, een keer tot de World het object weer schoon maakt of
+ * laat slapen. Zo hoeft de World alleen de objecten te bekijken waar iets mee gebeurt.
+ */
+interface ChangeTracked {
+    String DIRTY = "dirty";
+    String AWAKE = "awake";
+
+    void addObserver(PropertyChangeListener pcl);
+
+    /*
+     * Maakt het object schoon en geeft terug of het dirty was.
+     */
+    boolean takeDirty();
+
+    /*
+     * Laat het object slapen. Het wordt weer wakker zodra er iets met het object gebeurt.
+     */
+    void sleep();
+}
@@ -0,0 +1,52 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeSupport;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Deze class houdt voor een ChangeTracked object bij of het dirty en wakker is, en stuurt de berichten
+ * via de PropertyChangeSupport van het object. De vlaggen zijn atomair, omdat een robot het rek dat hij
+ * draagt kan verplaatsen terwijl de World parallel update. Een bericht wordt alleen gestuurd als een
+ * vlag van false naar true gaat, zo krijgt de World per tick hoogstens een bericht per object. De
+ * berichten worden eenmalig gemaakt en steeds opnieuw verstuurd.
+ */
+class ChangeTracker {
+    private final PropertyChangeSupport pcs;
+    private final PropertyChangeEvent dirtyEvent;
+    private final PropertyChangeEvent awakeEvent;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean awake = new AtomicBoolean(true);
+
+    ChangeTracker(Object source, PropertyChangeSupport pcs) {
+        this.pcs = pcs;
+        this.dirtyEvent = new PropertyChangeEvent(source, ChangeTracked.DIRTY, false, true);
+        this.awakeEvent = new PropertyChangeEvent(source, ChangeTracked.AWAKE, false, true);
+    }
+
+    /**
+     * marks the object as changed, the world will send it to the views after this tick
+     */
+    void markDirty() {
+        if (dirty.compareAndSet(false, true)) {
+            pcs.firePropertyChange(dirtyEvent);
+        }
+    }
+
+    /**
+     * wakes the object up, the world will update it in the next tick
+     */
+    void wake() {
+        if (awake.compareAndSet(false, true)) {
+            pcs.firePropertyChange(awakeEvent);
+        }
+    }
+
+    boolean takeDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    void sleep() {
+        awake.set(false);
+    }
+}
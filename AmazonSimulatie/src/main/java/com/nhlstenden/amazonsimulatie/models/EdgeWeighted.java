@@ -1,6 +1,10 @@
 package com.nhlstenden.amazonsimulatie.models;
 
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+
 public class EdgeWeighted {
+    public static final String WEIGHT_CHANGED = "weight_changed";
 
     /** de node waar de edge begint */
     private NodeWeighted source;
@@ -8,6 +12,10 @@ public class EdgeWeighted {
     private NodeWeighted destination;
     /** hoe ver de twee nodes uit elkaar liggen*/
     private int weight;
+    /** de globale bezettingsversie bij de laatste verandering van het gewicht, 0 als nooit */
+    private volatile long weightVersion;
+    /** luisteraars naar veranderingen van het gewicht, wordt pas aangemaakt bij de eerste luisteraar */
+    private PropertyChangeSupport pcs;
 
     /** constructor voor EdgeWeighted
      * @param s de source node
@@ -19,6 +27,17 @@ public class EdgeWeighted {
         weight = w;
     }
 
+    /**
+     * voegt een luisteraar toe die een bericht krijgt als het gewicht van de edge verandert
+     * @param pcl de luisteraar
+     */
+    public void addObserver(PropertyChangeListener pcl){
+        if (pcs == null){
+            pcs = new PropertyChangeSupport(this);
+        }
+        pcs.addPropertyChangeListener(pcl);
+    }
+
     /**
      *
      * @return source node
@@ -45,10 +64,26 @@ public class EdgeWeighted {
 
     /**
      *
+     * @return de globale bezettingsversie waarop het gewicht voor het laatst veranderd is, 0 als nooit
+     */
+    public long getWeightVersion(){
+        return weightVersion;
+    }
+
+    /**
+     * zet het gewicht, en laat de luisteraars weten als het veranderd is.
+     * hoogt dan ook de globale bezettingsversie op, zodat paden in de route cache opnieuw bekeken worden.
      * @param weight gewicht tussen twee nodes
      */
     public void setWeight(int weight){
+        int old = this.weight;
         this.weight = weight;
+        if (old != weight){
+            weightVersion = NodeWeighted.nextVersion();
+            if (pcs != null){
+                pcs.firePropertyChange(WEIGHT_CHANGED, old, weight);
+            }
+        }
     }
 
     /**
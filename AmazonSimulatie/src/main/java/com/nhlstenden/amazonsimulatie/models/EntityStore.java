@@ -0,0 +1,492 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * bewaart de positie, rotatie en uuid van de objecten in de wereld in parallelle primitieve arrays,
+ * met een entity id als index. een {@link Robot}, {@link Rack} of {@link Truck} is een dunne view
+ * die alleen zijn id en de store kent. zo staan de posities van alle objecten achter elkaar in het
+ * geheugen en is een lus over alle objecten een lus over een paar arrays. een object kan een ouder
+ * hebben, dan volgt het de positie van de ouder bij {@link #followParents()}, zoals een rek op een
+ * robot. id's van verwijderde objecten worden hergebruikt, tot dan houden ze hun laatste waardes.
+ * met {@link #getGrid()} kunnen de objecten op plaats opgezocht worden; het grid wordt bijgewerkt
+ * als een object beweegt. met een eigen Random krijgen de objecten voorspelbare uuid's, zodat een
+ * scenario met dezelfde seed steeds dezelfde uuid's geeft.
+ * de store is niet thread safe voor toevoegen en verwijderen; verschillende id's mogen wel tegelijk
+ * vanuit verschillende threads gelezen en geschreven worden.
+ */
+public class EntityStore {
+
+    /** geen ouder */
+    public static final int NONE = -1;
+
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;
+    private double[] rotationXs;
+    private double[] rotationYs;
+    private double[] rotationZs;
+    /** de twee helften van de uuid per id */
+    private long[] uuidHigh;
+    private long[] uuidLow;
+    /** id van de ouder per id, NONE als het object geen ouder heeft */
+    private int[] parents;
+    /** hoe hoog een object boven zijn ouder staat */
+    private double[] parentOffsetYs;
+    /** aantal kinderen per id, zodat verwijderen alleen naar kinderen zoekt als die er zijn */
+    private int[] childCounts;
+    /** de tracker per id, om een object dirty te maken als het zijn ouder volgt */
+    private ChangeTracker[] trackers;
+    /** het object per id, null als het id vrij is */
+    private Object3D[] owners;
+    /** index op plaats, wordt pas gemaakt als iets het nodig heeft */
+    private volatile SpatialGrid grid;
+
+    /** aantal id's dat ooit uitgegeven is */
+    private int size;
+    /** vrijgekomen id's, als stack */
+    private int[] free = new int[16];
+    private int freeCount;
+    /** random voor de uuid's, null voor UUID.randomUUID() */
+    private final Random random;
+
+    /**
+     * maakt een lege store
+     */
+    public EntityStore(){
+        this(16);
+    }
+
+    /**
+     * @param capacity aantal objecten waarvoor vooraf ruimte gemaakt wordt
+     */
+    public EntityStore(int capacity){
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity aantal objecten waarvoor vooraf ruimte gemaakt wordt
+     * @param random random waarmee de uuid's gemaakt worden, null voor willekeurige uuid's
+     */
+    public EntityStore(int capacity, Random random){
+        this.random = random;
+        capacity = Math.max(1, capacity);
+        xs = new double[capacity];
+        ys = new double[capacity];
+        zs = new double[capacity];
+        rotationXs = new double[capacity];
+        rotationYs = new double[capacity];
+        rotationZs = new double[capacity];
+        uuidHigh = new long[capacity];
+        uuidLow = new long[capacity];
+        parents = new int[capacity];
+        parentOffsetYs = new double[capacity];
+        childCounts = new int[capacity];
+        trackers = new ChangeTracker[capacity];
+        owners = new Object3D[capacity];
+    }
+
+    /**
+     * voegt een object toe met een nieuwe uuid
+     * @return het id van het object
+     */
+    int add(Object3D owner, double x, double y, double z, double rotationX, double rotationY, double rotationZ,
+            ChangeTracker tracker){
+        int id;
+        if (freeCount > 0){
+            id = free[--freeCount];
+        } else {
+            if (size == xs.length){
+                grow(size * 2);
+            }
+            id = size++;
+        }
+        UUID uuid = nextUuid();
+        xs[id] = x;
+        ys[id] = y;
+        zs[id] = z;
+        rotationXs[id] = rotationX;
+        rotationYs[id] = rotationY;
+        rotationZs[id] = rotationZ;
+        uuidHigh[id] = uuid.getMostSignificantBits();
+        uuidLow[id] = uuid.getLeastSignificantBits();
+        parents[id] = NONE;
+        parentOffsetYs[id] = 0;
+        childCounts[id] = 0;
+        trackers[id] = tracker;
+        owners[id] = owner;
+        if (grid != null){
+            grid.update(id);
+        }
+        return id;
+    }
+
+    /**
+     * maakt een uuid van versie 4, met de random van de store als die er is
+     */
+    private UUID nextUuid(){
+        if (random == null){
+            return UUID.randomUUID();
+        }
+        long high = (random.nextLong() & ~0xf000L) | 0x4000L;
+        long low = (random.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return new UUID(high, low);
+    }
+
+    /**
+     * haalt een object uit het grid, zodat het niet meer op zijn plaats gevonden wordt. het id blijft van
+     * het object tot {@link #remove(int)}, zodat zijn uuid nog opgezocht kan worden. voor een object dat
+     * de wereld verlaat voordat de views het remove bericht gekregen hebben.
+     * @param id entity id
+     */
+    public void hide(int id){
+        if (grid != null){
+            grid.remove(id);
+        }
+    }
+
+    /**
+     * geeft het id vrij voor een volgend object. kinderen van het object verliezen hun ouder; alleen als
+     * het object kinderen heeft wordt daarvoor de store afgelopen. een id dat al vrij is wordt overgeslagen.
+     * @param id entity id
+     */
+    public void remove(int id){
+        if (owners[id] == null){
+            return;
+        }
+        if (grid != null){
+            grid.remove(id);
+        }
+        for (int i = 0; i < size && childCounts[id] > 0; i++){
+            if (parents[i] == id){
+                parents[i] = NONE;
+                childCounts[id]--;
+            }
+        }
+        setParent(id, NONE);
+        trackers[id] = null;
+        owners[id] = null;
+        if (freeCount == free.length){
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = id;
+    }
+
+    private void grow(int capacity){
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+        rotationXs = Arrays.copyOf(rotationXs, capacity);
+        rotationYs = Arrays.copyOf(rotationYs, capacity);
+        rotationZs = Arrays.copyOf(rotationZs, capacity);
+        uuidHigh = Arrays.copyOf(uuidHigh, capacity);
+        uuidLow = Arrays.copyOf(uuidLow, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        parentOffsetYs = Arrays.copyOf(parentOffsetYs, capacity);
+        childCounts = Arrays.copyOf(childCounts, capacity);
+        trackers = Arrays.copyOf(trackers, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+    }
+
+    /**
+     * koppelt een object dat uit een checkpoint komt aan zijn id
+     */
+    void bind(int id, Object3D owner, ChangeTracker tracker){
+        owners[id] = owner;
+        trackers[id] = tracker;
+        if (grid != null){
+            grid.update(id);
+        }
+    }
+
+    /**
+     * schrijft alle id's met hun waardes, voor een checkpoint. welk object bij een id hoort wordt
+     * niet geschreven, dat weet de wereld
+     * @param out waar het heen gaat
+     * @throws IOException als schrijven mislukt
+     */
+    public void writeState(DataOutput out) throws IOException{
+        out.writeInt(size);
+        for (int id = 0; id < size; id++){
+            out.writeDouble(xs[id]);
+            out.writeDouble(ys[id]);
+            out.writeDouble(zs[id]);
+            out.writeDouble(rotationXs[id]);
+            out.writeDouble(rotationYs[id]);
+            out.writeDouble(rotationZs[id]);
+            out.writeLong(uuidHigh[id]);
+            out.writeLong(uuidLow[id]);
+            out.writeInt(parents[id]);
+            out.writeDouble(parentOffsetYs[id]);
+        }
+        out.writeInt(freeCount);
+        for (int i = 0; i < freeCount; i++){
+            out.writeInt(free[i]);
+        }
+    }
+
+    /**
+     * leest een store die met {@link #writeState} geschreven is. de id's zijn nog niet gekoppeld aan
+     * objecten, en de vrije id's worden in dezelfde volgorde hergebruikt als in de oude store
+     * @param in waar het vandaan komt
+     * @param random random voor de uuid's van nieuwe objecten, null voor willekeurige uuid's
+     * @return de store
+     * @throws IOException als lezen mislukt
+     */
+    public static EntityStore readState(DataInput in, Random random) throws IOException{
+        int size = in.readInt();
+        EntityStore store = new EntityStore(size, random);
+        store.size = size;
+        for (int id = 0; id < size; id++){
+            store.xs[id] = in.readDouble();
+            store.ys[id] = in.readDouble();
+            store.zs[id] = in.readDouble();
+            store.rotationXs[id] = in.readDouble();
+            store.rotationYs[id] = in.readDouble();
+            store.rotationZs[id] = in.readDouble();
+            store.uuidHigh[id] = in.readLong();
+            store.uuidLow[id] = in.readLong();
+            store.parents[id] = in.readInt();
+            store.parentOffsetYs[id] = in.readDouble();
+        }
+        for (int id = 0; id < size; id++){
+            if (store.parents[id] != NONE){
+                store.childCounts[store.parents[id]]++;
+            }
+        }
+        store.freeCount = in.readInt();
+        store.free = new int[Math.max(16, store.freeCount)];
+        for (int i = 0; i < store.freeCount; i++){
+            store.free[i] = in.readInt();
+        }
+        return store;
+    }
+
+    /**
+     * @param id entity id
+     * @return het object met dit id, of null als het id vrij is
+     */
+    public Object3D entity(int id){
+        return owners[id];
+    }
+
+    /**
+     * geeft het grid met de objecten op plaats, de eerste keer worden alle objecten erin gezet
+     * @return het grid, met cellen van 1 bij 1
+     */
+    public SpatialGrid getGrid(){
+        if (grid == null){
+            synchronized (this){
+                if (grid == null){
+                    SpatialGrid built = new SpatialGrid(this, 1);
+                    for (int id = 0; id < size; id++){
+                        if (owners[id] != null){
+                            built.update(id);
+                        }
+                    }
+                    grid = built;
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * laat een object zijn ouder volgen, en zet het meteen op zijn plaats
+     * @param child id van het kind
+     * @param parent id van de ouder
+     * @param offsetY hoe hoog het kind boven de ouder staat
+     */
+    public void attach(int child, int parent, double offsetY){
+        setParent(child, parent);
+        parentOffsetYs[child] = offsetY;
+        follow(child);
+    }
+
+    /**
+     * zet een object eerst nog op de plaats van zijn ouder en maakt het dan los
+     * @param child id van het kind
+     */
+    public void detach(int child){
+        if (parents[child] != NONE){
+            follow(child);
+            setParent(child, NONE);
+        }
+    }
+
+    private void setParent(int child, int parent){
+        if (parents[child] != NONE){
+            childCounts[parents[child]]--;
+        }
+        parents[child] = parent;
+        if (parent != NONE){
+            childCounts[parent]++;
+        }
+    }
+
+    /**
+     * @param id entity id
+     * @return id van de ouder, of NONE
+     */
+    public int parent(int id){
+        return parents[id];
+    }
+
+    /**
+     * zet alle objecten met een ouder op de positie en rotatie van hun ouder, in een lus over de arrays
+     * @return aantal objecten dat verplaatst is
+     */
+    public int followParents(){
+        int moved = 0;
+        for (int id = 0; id < size; id++){
+            if (parents[id] != NONE && follow(id)){
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    private boolean follow(int id){
+        int parent = parents[id];
+        double y = ys[parent] + parentOffsetYs[id];
+        if (xs[id] == xs[parent] && ys[id] == y && zs[id] == zs[parent] && rotationXs[id] == rotationXs[parent]
+                && rotationYs[id] == rotationYs[parent] && rotationZs[id] == rotationZs[parent]){
+            return false;
+        }
+        xs[id] = xs[parent];
+        ys[id] = y;
+        zs[id] = zs[parent];
+        rotationXs[id] = rotationXs[parent];
+        rotationYs[id] = rotationYs[parent];
+        rotationZs[id] = rotationZs[parent];
+        moved(id);
+        if (trackers[id] != null){
+            trackers[id].markDirty();
+        }
+        return true;
+    }
+
+    /** @return de uuid van een object als string */
+    public String uuid(int id){
+        return new UUID(uuidHigh[id], uuidLow[id]).toString();
+    }
+
+    public double x(int id){
+        return xs[id];
+    }
+
+    public double y(int id){
+        return ys[id];
+    }
+
+    public double z(int id){
+        return zs[id];
+    }
+
+    public double rotationX(int id){
+        return rotationXs[id];
+    }
+
+    public double rotationY(int id){
+        return rotationYs[id];
+    }
+
+    public double rotationZ(int id){
+        return rotationZs[id];
+    }
+
+    /** @return true als de waarde veranderd is */
+    boolean setX(int id, double x){
+        if (xs[id] == x){
+            return false;
+        }
+        xs[id] = x;
+        moved(id);
+        return true;
+    }
+
+    /** @return true als de waarde veranderd is */
+    boolean setY(int id, double y){
+        if (ys[id] == y){
+            return false;
+        }
+        ys[id] = y;
+        return true;
+    }
+
+    /** @return true als de waarde veranderd is */
+    boolean setZ(int id, double z){
+        if (zs[id] == z){
+            return false;
+        }
+        zs[id] = z;
+        moved(id);
+        return true;
+    }
+
+    private void moved(int id){
+        if (grid != null){
+            grid.update(id);
+        }
+    }
+
+    /** @return true als de waarde veranderd is */
+    boolean setRotationX(int id, double rotationX){
+        if (rotationXs[id] == rotationX){
+            return false;
+        }
+        rotationXs[id] = rotationX;
+        return true;
+    }
+
+    /** @return true als de waarde veranderd is */
+    boolean setRotationY(int id, double rotationY){
+        if (rotationYs[id] == rotationY){
+            return false;
+        }
+        rotationYs[id] = rotationY;
+        return true;
+    }
+
+    /** @return true als de waarde veranderd is */
+    boolean setRotationZ(int id, double rotationZ){
+        if (rotationZs[id] == rotationZ){
+            return false;
+        }
+        rotationZs[id] = rotationZ;
+        return true;
+    }
+
+    /**
+     * schrijft positie en rotatie van een reeks objecten achter elkaar in een array, zes waardes per
+     * object, bijvoorbeeld om ze in één keer te versturen of op te slaan
+     * @param ids de entity id's
+     * @param out array van minstens 6 * ids.length waardes
+     */
+    public void writeTransforms(int[] ids, double[] out){
+        for (int i = 0, o = 0; i < ids.length; i++, o += 6){
+            int id = ids[i];
+            out[o] = xs[id];
+            out[o + 1] = ys[id];
+            out[o + 2] = zs[id];
+            out[o + 3] = rotationXs[id];
+            out[o + 4] = rotationYs[id];
+            out[o + 5] = rotationZs[id];
+        }
+    }
+
+    /** @return aantal objecten in de store */
+    public int size(){
+        return size - freeCount;
+    }
+
+    /** @return aantal objecten waarvoor ruimte is zonder de arrays te vergroten */
+    public int capacity(){
+        return xs.length;
+    }
+}
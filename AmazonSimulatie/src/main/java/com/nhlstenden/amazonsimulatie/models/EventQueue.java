@@ -0,0 +1,149 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import java.util.PriorityQueue;
+
+/**
+ * de klok en de gebeurtenissen van de discrete event simulatie. de tijd telt in ticks. in plaats van
+ * elke tick te kijken of er iets moet gebeuren, plant een object een gebeurtenis op de tick waarop het
+ * gebeurt, zoals een truck die bij de loading bay aankomt. gebeurtenissen op dezelfde tick worden
+ * uitgevoerd in de volgorde waarin ze gepland zijn. elke gebeurtenis heeft een volgnummer, zodat een
+ * checkpoint ze op dezelfde plaats in de rij terug kan zetten. niet thread safe, alleen te gebruiken
+ * vanaf de thread die de ticks uitvoert.
+ */
+public class EventQueue {
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    /** de huidige tick */
+    private long now;
+    /** volgnummer van de volgende gebeurtenis die gepland wordt */
+    private long nextSequence;
+    /** aantal uitgevoerde gebeurtenissen */
+    private long executed;
+
+    public EventQueue(){
+        this(0, 0);
+    }
+
+    /**
+     * maakt een rij met een klok die al loopt, voor een checkpoint
+     * @param now de huidige tick
+     * @param nextSequence volgnummer van de volgende gebeurtenis
+     */
+    public EventQueue(long now, long nextSequence){
+        this.now = now;
+        this.nextSequence = nextSequence;
+    }
+
+    /**
+     * plant een gebeurtenis een aantal ticks na nu
+     * @param delay aantal ticks vanaf nu, minstens 0
+     * @param action wat er gebeurt
+     * @return de gebeurtenis, om te annuleren of in een checkpoint te schrijven
+     */
+    public Event schedule(long delay, Runnable action){
+        if (delay < 0){
+            throw new IllegalArgumentException("een gebeurtenis kan niet in het verleden gepland worden");
+        }
+        return restore(now + delay, nextSequence++, action);
+    }
+
+    /**
+     * zet een gebeurtenis uit een checkpoint terug met zijn oude tijd en volgnummer
+     * @param time de tick van de gebeurtenis
+     * @param sequence het volgnummer uit het checkpoint
+     * @param action wat er gebeurt
+     * @return de gebeurtenis
+     */
+    public Event restore(long time, long sequence, Runnable action){
+        Event event = new Event(time, sequence, action);
+        queue.add(event);
+        return event;
+    }
+
+    /**
+     * haalt een geplande gebeurtenis uit de rij
+     * @param event de gebeurtenis
+     * @return false als de gebeurtenis al uitgevoerd of geannuleerd was
+     */
+    public boolean cancel(Event event){
+        return queue.remove(event);
+    }
+
+    /**
+     * zet de klok vooruit en voert op volgorde alle gebeurtenissen uit tot en met die tick, ook die
+     * onderweg gepland worden. tijdens een gebeurtenis staat de klok op de tick van die gebeurtenis
+     * @param time de nieuwe tick, niet eerder dan nu
+     * @return aantal uitgevoerde gebeurtenissen
+     */
+    public int advanceTo(long time){
+        if (time < now){
+            throw new IllegalArgumentException("de klok kan niet terug");
+        }
+        int count = 0;
+        while (!queue.isEmpty() && queue.peek().time <= time){
+            Event event = queue.poll();
+            now = Math.max(now, event.time);
+            event.action.run();
+            count++;
+        }
+        now = time;
+        executed += count;
+        return count;
+    }
+
+    /** @return de huidige tick */
+    public long now(){
+        return now;
+    }
+
+    /** @return de tick van de eerstvolgende gebeurtenis, Long.MAX_VALUE als er geen is */
+    public long nextTime(){
+        return queue.isEmpty() ? Long.MAX_VALUE : queue.peek().time;
+    }
+
+    /** @return volgnummer van de volgende gebeurtenis die gepland wordt */
+    public long getNextSequence(){
+        return nextSequence;
+    }
+
+    /** @return aantal geplande gebeurtenissen */
+    public int size(){
+        return queue.size();
+    }
+
+    /** @return aantal uitgevoerde gebeurtenissen */
+    public long getExecuted(){
+        return executed;
+    }
+
+    /**
+     * een geplande gebeurtenis
+     */
+    public static final class Event implements Comparable<Event> {
+        private final long time;
+        private final long sequence;
+        private final Runnable action;
+
+        private Event(long time, long sequence, Runnable action){
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        /** @return de tick waarop de gebeurtenis gebeurt */
+        public long getTime(){
+            return time;
+        }
+
+        /** @return het volgnummer, bepaalt de volgorde op dezelfde tick */
+        public long getSequence(){
+            return sequence;
+        }
+
+        @Override
+        public int compareTo(Event other){
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -1,21 +1,32 @@
 package com.nhlstenden.amazonsimulatie.models;
 
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NodeWeighted {
+    public static final String OCCUPATION_CHANGED = "occupation_changed";
+
+    /** wordt bij elke verandering van de bezetting van een node, of het gewicht van een edge, opgehoogd */
+    private static final AtomicLong OCCUPANCY_VERSION = new AtomicLong();
 
     /** x coordinaat */
     private int x;
     /** y coordinaat */
     private int y;
+    /** index van de node in de graaf, -1 zolang de node nog niet in een graaf zit */
+    private int id;
     /** naam van de node */
     private String name;
-    /** boolean om bij te houden of de node al gevisit is */
-    private boolean visited;
     /** boolean om bij te houden of de edge bezet is */
     private boolean occupied;
+    /** de waarde van de globale bezettingsversie bij de laatste verandering van deze node */
+    private volatile long occupancyVersion;
     /** lijst met alle edges van de node */
     private LinkedList<EdgeWeighted> edges;
+    /** luisteraars naar veranderingen van de node, wordt pas aangemaakt bij de eerste luisteraar */
+    private PropertyChangeSupport pcs;
 
     /**
      * constructor voor de node
@@ -27,11 +38,22 @@ public class NodeWeighted {
         this.x = x;
         this.y = y;
         this.name = name;
-        visited = false;
+        id = -1;
         occupied = false;
         edges = new LinkedList<>();
     }
 
+    /**
+     * voegt een luisteraar toe die een bericht krijgt als de bezetting van de node verandert
+     * @param pcl de luisteraar
+     */
+    public void addObserver(PropertyChangeListener pcl){
+        if (pcs == null){
+            pcs = new PropertyChangeSupport(this);
+        }
+        pcs.addPropertyChangeListener(pcl);
+    }
+
     /**
      *
      * @return x coordinaat node
@@ -48,6 +70,22 @@ public class NodeWeighted {
         return y;
     }
 
+    /**
+     *
+     * @return index van de node in de graaf, -1 als de node nog niet in een graaf zit
+     */
+    public int getId(){
+        return id;
+    }
+
+    /**
+     * zet de index van de node, wordt gedaan door de graaf als de node wordt toegevoegd
+     * @param id index van de node in de graaf
+     */
+    public void setId(int id){
+        this.id = id;
+    }
+
     /**
      *
      * @return lijst met edges van de node
@@ -66,38 +104,45 @@ public class NodeWeighted {
 
     /**
      *
-     * @return returned of de node al gevisit is
+     * @return returned of de node bezet is
      */
-    public boolean isVisited(){
-        return visited;
+    public boolean isOccupied() {
+        return occupied;
     }
 
     /**
      *
-     * @return returned of de node bezet is
+     * @return de bezettingsversie waarop deze node voor het laatst veranderd is, 0 als nooit
      */
-    public boolean isOccupied() {
-        return occupied;
+    public long getOccupancyVersion() {
+        return occupancyVersion;
     }
 
     /**
-     * zet de visited variable in de node naar true
+     *
+     * @return de huidige globale bezettingsversie
      */
-    public void visit(){
-        visited = true;
+    public static long currentOccupancyVersion() {
+        return OCCUPANCY_VERSION.get();
     }
 
     /**
-     * zet de visited variable in de node naar false
+     * hoogt de globale bezettingsversie op, voor een verandering die geen bezetting is
+     * @return de nieuwe versie
      */
-    public void unvisit(){
-        visited = false;
+    static long nextVersion() {
+        return OCCUPANCY_VERSION.incrementAndGet();
     }
 
     /**
      * zet de occupied variable naar true als deze false is, en vice versa.
+     * hoogt de globale bezettingsversie op en onthoudt deze in de node.
      */
     public void toggleOccupation() {
         occupied = !occupied;
+        occupancyVersion = OCCUPANCY_VERSION.incrementAndGet();
+        if (pcs != null){
+            pcs.firePropertyChange(OCCUPATION_CHANGED, !occupied, occupied);
+        }
     }
 }
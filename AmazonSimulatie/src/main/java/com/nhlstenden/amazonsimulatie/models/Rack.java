@@ -2,19 +2,14 @@ package com.nhlstenden.amazonsimulatie.models;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.UUID;
 
-public class Rack implements Object3D, Updatable {
-    private UUID uuid;
+public class Rack implements Object3D, Updatable, ChangeTracked {
     private PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+    private ChangeTracker tracker = new ChangeTracker(this, pcs);
 
-    private double x = 0;
-    private double y = 0;
-    private double z = 0;
-
-    private double rotationX = 0;
-    private double rotationY = 0;
-    private double rotationZ = 0;
+    /** the store that holds the position, rotation and uuid of the rack */
+    private final EntityStore store;
+    private final int id;
 
     public Rack() {
         this(0, 0, 0, 0, 0, 0);
@@ -29,13 +24,44 @@ public class Rack implements Object3D, Updatable {
         this(x,0,z,rotationX,0,rotationZ);
     }
     public Rack(double x, double y, double z, double rotationX, double rotationY, double rotationZ){
-        this.x = x;
-        this.y = y;
-        this.z = z;
-        this.rotationX = rotationX;
-        this.rotationY = rotationY;
-        this.rotationZ = rotationZ;
-        this.uuid = UUID.randomUUID();
+        this(new EntityStore(1), x, y, z, rotationX, rotationY, rotationZ);
+    }
+    public Rack(EntityStore store, double x, double z){
+        this(store,x,0,z,0,0,0);
+    }
+    public Rack(EntityStore store, double x, double y, double z, double rotationX, double rotationY, double rotationZ){
+        this.store = store;
+        this.id = store.add(this, x, y, z, rotationX, rotationY, rotationZ, tracker);
+    }
+
+    private Rack(EntityStore store, int id){
+        this.store = store;
+        this.id = id;
+        store.bind(id, this, tracker);
+    }
+
+    /**
+     * makes the rack that belongs to an id of a store read from a checkpoint
+     * @param store the store read from the checkpoint
+     * @param id the id of the rack
+     * @return the rack
+     */
+    static Rack restore(EntityStore store, int id){
+        return new Rack(store, id);
+    }
+
+    /**
+     * @return the store that holds the position of the rack
+     */
+    public EntityStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return the id of the rack in its store
+     */
+    public int getId() {
+        return id;
     }
 
     public void addObserver(PropertyChangeListener pcl) {
@@ -50,14 +76,29 @@ public class Rack implements Object3D, Updatable {
         return this.getY() == 0.15;
     }
 
+    /**
+     * a rack does nothing on its own, it is only moved by robots through the setters.
+     * it goes to sleep after its first update, and is sent to the views when a setter changes it
+     * @return false, the rack has nothing to do
+     */
     @Override
     public boolean update() {
-        return true;
+        return false;
+    }
+
+    @Override
+    public boolean takeDirty() {
+        return tracker.takeDirty();
+    }
+
+    @Override
+    public void sleep() {
+        tracker.sleep();
     }
 
     @Override
     public String getUUID() {
-        return this.uuid.toString();
+        return store.uuid(id);
     }
 
     @Override
@@ -73,55 +114,67 @@ public class Rack implements Object3D, Updatable {
 
     @Override
     public double getX() {
-        return this.x;
+        return store.x(id);
     }
 
     public void setX(double x){
-        this.x = x;
+        if (store.setX(id, x)) {
+            tracker.markDirty();
+        }
     }
 
     @Override
     public double getY() {
-        return this.y;
+        return store.y(id);
     }
 
     public void setY(double y){
-        this.y = y;
+        if (store.setY(id, y)) {
+            tracker.markDirty();
+        }
     }
 
     @Override
     public double getZ() {
-        return this.z;
+        return store.z(id);
     }
 
     public void setZ(double z){
-        this.z = z;
+        if (store.setZ(id, z)) {
+            tracker.markDirty();
+        }
     }
 
     @Override
     public double getRotationX() {
-        return this.rotationX;
+        return store.rotationX(id);
     }
 
     public void setRotationX(double rotationX){
-        this.rotationX = rotationX;
+        if (store.setRotationX(id, rotationX)) {
+            tracker.markDirty();
+        }
     }
 
     @Override
     public double getRotationY() {
-        return this.rotationY;
+        return store.rotationY(id);
     }
 
     public void setRotationY(double rotationY){
-        this.rotationY = rotationY;
+        if (store.setRotationY(id, rotationY)) {
+            tracker.markDirty();
+        }
     }
 
     @Override
     public double getRotationZ() {
-        return this.rotationZ;
+        return store.rotationZ(id);
     }
 
     public void setRotationZ(double rotationZ){
-        this.rotationZ = rotationZ;
+        if (store.setRotationZ(id, rotationZ)) {
+            tracker.markDirty();
+        }
     }
 }
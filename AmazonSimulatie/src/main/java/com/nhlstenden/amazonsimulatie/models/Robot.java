@@ -2,29 +2,51 @@ package com.nhlstenden.amazonsimulatie.models;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.UUID;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
 
 /*
  * Deze class stelt een robot voor. Hij impelementeerd de class Object3D, omdat het ook een
  * 3D object is. Ook implementeerd deze class de interface Updatable. Dit is omdat
  * een robot geupdate kan worden binnen de 3D wereld om zich zo voort te bewegen.
  */
-public class Robot implements Object3D, Updatable {
-    private UUID uuid;
-    private PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+public class Robot implements Object3D, Updatable, ChangeTracked {
+    /** fired when the robot drives from one node to the next, with the old and the new node */
+    public static final String MOVED = "moved";
 
-    private double x;
-    private double y;
-    private double z;
+    /** how high a carried rack stands above the robot */
+    private static final double CHILD_OFFSET = 0.15;
 
-    private double rotationX;
-    private double rotationY;
-    private double rotationZ;
+    private PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+    private ChangeTracker tracker = new ChangeTracker(this, pcs);
+
+    /** the store that holds the position, rotation and uuid of the robot */
+    private final EntityStore store;
+    private final int id;
 
     private boolean hasChanged = false;
 
     public Rack child;
 
+    /** nodes the robot still has to drive over, the first one is the next step */
+    private final Deque<NodeWeighted> route = new ArrayDeque<>();
+    /** the node the robot stands on, null until it gets its first route */
+    private NodeWeighted node;
+    /** the rack the robot is fetching or carrying, null if the robot has no work */
+    private Rack task;
+    private int dropoffX;
+    private int dropoffZ;
+    /** the rack the robot has put down at the dropoff, until the controller collects it */
+    private Rack delivered;
+    /** amount of nodes the robot has driven over */
+    private long distanceTravelled;
+
     public Robot() {
         this(0, 0.15, 0, 0, 0, 0);
     }
@@ -38,13 +60,75 @@ public class Robot implements Object3D, Updatable {
         this(x,0.15,z,rotationX,0,rotationZ);
     }
     public Robot(double x, double y, double z, double rotationX, double rotationY, double rotationZ){
-        this.x = x;
-        this.y = y;
-        this.z = z;
-        this.rotationX = rotationX;
-        this.rotationY = rotationY;
-        this.rotationZ = rotationZ;
-        this.uuid = UUID.randomUUID();
+        this(new EntityStore(1), x, y, z, rotationX, rotationY, rotationZ);
+    }
+    public Robot(EntityStore store, double x, double z){
+        this(store,x,0.15,z,0,0,0);
+    }
+    public Robot(EntityStore store, double x, double y, double z, double rotationX, double rotationY, double rotationZ){
+        this.store = store;
+        this.id = store.add(this, x, y, z, rotationX, rotationY, rotationZ, tracker);
+    }
+
+    private Robot(EntityStore store, int id){
+        this.store = store;
+        this.id = id;
+        store.bind(id, this, tracker);
+    }
+
+    /**
+     * makes the robot that belongs to an id of a store read from a checkpoint,
+     * its state is read with {@link #readState}
+     * @param store the store read from the checkpoint
+     * @param id the id of the robot
+     * @return the robot
+     */
+    static Robot restore(EntityStore store, int id){
+        return new Robot(store, id);
+    }
+
+    /**
+     * writes the task and route of the robot for a checkpoint, the position is in the store
+     * @param out where the state goes
+     * @throws IOException when writing fails
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(node == null ? -1 : node.getId());
+        out.writeInt(route.size());
+        for (NodeWeighted next : route) {
+            out.writeInt(next.getId());
+        }
+        out.writeInt(task == null ? -1 : task.getId());
+        out.writeInt(dropoffX);
+        out.writeInt(dropoffZ);
+        out.writeInt(child == null ? -1 : child.getId());
+        out.writeInt(delivered == null ? -1 : delivered.getId());
+        out.writeLong(distanceTravelled);
+    }
+
+    /**
+     * reads the state written by {@link #writeState}, the racks must already be in the store
+     * @param in where the state comes from
+     * @param graph the graph the nodes of the route belong to
+     * @throws IOException when reading fails
+     */
+    void readState(DataInput in, GraphController graph) throws IOException {
+        int nodeId = in.readInt();
+        node = nodeId < 0 ? null : graph.getNode(nodeId);
+        route.clear();
+        for (int i = in.readInt(); i > 0; i--) {
+            route.add(graph.getNode(in.readInt()));
+        }
+        task = rack(in.readInt());
+        dropoffX = in.readInt();
+        dropoffZ = in.readInt();
+        child = rack(in.readInt());
+        delivered = rack(in.readInt());
+        distanceTravelled = in.readLong();
+    }
+
+    private Rack rack(int id){
+        return id < 0 ? null : (Rack) store.entity(id);
     }
 
     /*
@@ -58,84 +142,172 @@ public class Robot implements Object3D, Updatable {
      * moet worden gestuurd. Wordt false teruggegeven, dan betekent dit dat er niks
      * is veranderd, en de informatie hoeft dus niet naar de views te worden gestuurd.
      * (Omdat de informatie niet veranderd is, is deze dus ook nog steeds hetzelfde als
-     * in de view)
+     * in de view) Geeft de robot false terug, dan gaat hij slapen tot hij een nieuwe
+     * taak of route krijgt.
      */
     @Override
     public boolean update() {
+        hasChanged = false;
+        NodeWeighted next = route.poll();
+        if (next != null) {
+            NodeWeighted previous = node;
+            node = next;
+            store.setX(id, next.getX());
+            store.setZ(id, next.getY());
+            distanceTravelled++;
+            hasChanged = true;
+            tracker.markDirty();
+            pcs.firePropertyChange(MOVED, previous, next);
+        }
 
-        if(child != null){
-            child.setX(this.x);
-            child.setY(this.y+0.15);
-            child.setZ(this.z);
-            child.setRotationX(this.rotationX);
-            child.setRotationY(this.rotationY);
-            child.setRotationZ(this.rotationZ);
-            return true;
-        } else if (hasChanged){
-            return true;
-        } else return false;
+        if (task != null && isAt(getTargetX(), getTargetZ())) {
+            if (child == null) {
+                setChild(task);
+            } else {
+                removeChild();
+                delivered = task;
+                task = null;
+            }
+            hasChanged = true;
+        }
 
+        return hasChanged;
     }
 
     public void addObserver(PropertyChangeListener pcl){pcs.addPropertyChangeListener(pcl);}
 
     /**
-     * sets a rack to be child of a robot
-     * @param child rack to become a child
+     * sets a rack to be child of a robot, the rack follows the robot in the store from now on
+     * @param child rack to become a child, must be in the same store as the robot
      */
     public void setChild(Rack child){
+        if (child.getStore() != store) {
+            throw new IllegalArgumentException("the rack is not in the store of the robot");
+        }
         this.child = child;
+        store.attach(child.getId(), id, CHILD_OFFSET);
     }
 
     /**
-     * removes rack from robot
+     * removes rack from robot, the rack is put down where the robot stands
      */
     public void removeChild(){
         if(child != null){
+            store.detach(child.getId());
             child.setY(0);
         }
         child = null;
     }
 
     /**
-     * to be implemented, returns boolean true if the robot is not available for picking up a new rack
-     * @return boolean: true if robot is busy
+     * returns boolean true if the robot is not available for picking up a new rack
+     * @return boolean: true if robot is fetching or carrying a rack, or still driving
      */
     public boolean isBusy(){
-        return false;
+        return task != null || !route.isEmpty();
     }
 
     /**
-     * to be implemented, maneuvers robot to rack, and picks it up, then delivers to the truck
+     * gives the robot the task to drive to the rack, pick it up and deliver it to the dropoff.
+     * the robot drives one node per update along the routes given with {@link #setRoute(List)}
      * @param rack the rack to be picked up
+     * @param dropoffX x coordinate of the dropoff
+     * @param dropoffZ z coordinate of the dropoff
+     * @return true if the task was accepted, false if the robot is busy
      */
     public boolean pickup(Rack rack, int dropoffX, int dropoffZ){
-        double x = rack.getX();
-        double z = rack.getZ();
-        if(moveTo(x,z)) {
-            setChild(rack);
-            if(moveTo(dropoffX,dropoffZ)){
-                removeChild();
-                return true;
-            } else return false;
-        } else return false;
+        if (isBusy()) {
+            return false;
+        }
+        this.task = rack;
+        this.dropoffX = dropoffX;
+        this.dropoffZ = dropoffZ;
+        tracker.wake();
+        return true;
+    }
+
+    /**
+     * @return true if the robot has a task, is not at its target and has no route to drive
+     */
+    public boolean needsRoute(){
+        return task != null && route.isEmpty() && !isAt(getTargetX(), getTargetZ());
     }
 
+    /**
+     * @return x coordinate the robot is heading for, the rack while fetching it and the dropoff while carrying it
+     */
+    public int getTargetX(){
+        return child == null ? (int) task.getX() : dropoffX;
+    }
 
     /**
-     * moves robot to a place, uses pathfinding
-     * @param x x coordinate to move to
-     * @param z z coordinate to move to
-     * @return true once the move has finished
+     * @return z coordinate the robot is heading for, the rack while fetching it and the dropoff while carrying it
      */
-    private boolean moveTo(double x, double z) {
-        System.out.printf("x: %s z: %s\n", x, z);
-        return true;
+    public int getTargetZ(){
+        return child == null ? (int) task.getZ() : dropoffZ;
+    }
+
+    /**
+     * replaces the route of the robot
+     * @param nodes nodes to drive over in order, starting with the node the robot stands on
+     */
+    public void setRoute(List<NodeWeighted> nodes){
+        route.clear();
+        if (!nodes.isEmpty()) {
+            node = nodes.get(0);
+            route.addAll(nodes.subList(1, nodes.size()));
+        }
+        tracker.wake();
+    }
+
+    /**
+     * returns the rack the robot has delivered since the last call, and forgets it
+     * @return the delivered rack, or null
+     */
+    public Rack takeDelivered(){
+        Rack rack = delivered;
+        delivered = null;
+        return rack;
+    }
+
+    /**
+     * @return amount of nodes the robot has driven over since it was made
+     */
+    public long getDistanceTravelled(){
+        return distanceTravelled;
+    }
+
+    @Override
+    public boolean takeDirty() {
+        return tracker.takeDirty();
+    }
+
+    @Override
+    public void sleep() {
+        tracker.sleep();
+    }
+
+    /**
+     * @return the store that holds the position of the robot
+     */
+    public EntityStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return the id of the robot in its store
+     */
+    public int getId() {
+        return id;
+    }
+
+    private boolean isAt(int x, int z){
+        return (int) getX() == x && (int) getZ() == z;
     }
 
     @Override
     public String getUUID() {
-        return this.uuid.toString();
+        return store.uuid(id);
     }
 
     @Override
@@ -151,31 +323,31 @@ public class Robot implements Object3D, Updatable {
 
     @Override
     public double getX() {
-        return this.x;
+        return store.x(id);
     }
 
     @Override
     public double getY() {
-        return this.y;
+        return store.y(id);
     }
 
     @Override
     public double getZ() {
-        return this.z;
+        return store.z(id);
     }
 
     @Override
     public double getRotationX() {
-        return this.rotationX;
+        return store.rotationX(id);
     }
 
     @Override
     public double getRotationY() {
-        return this.rotationY;
+        return store.rotationY(id);
     }
 
     @Override
     public double getRotationZ() {
-        return this.rotationZ;
+        return store.rotationZ(id);
     }
 }
\ No newline at end of file
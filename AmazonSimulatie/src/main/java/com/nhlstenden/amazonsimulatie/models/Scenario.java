@@ -0,0 +1,85 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+/**
+ * describes a simulation run completely, so that running the same scenario twice does exactly the
+ * same work: the seed decides where the racks go and which uuids the objects get, and new packages
+ * arrive at the loading bay on a fixed tick schedule instead of on their own timing.
+ * used to make reproducible worlds with {@link World#World(Scenario)}
+ */
+public class Scenario {
+    private final long seed;
+    private final WarehouseLayout layout;
+    private final int percentageFilled;
+    private final int amountRobots;
+    private final int deliveryInterval;
+    private final int deliverySize;
+
+    /**
+     * @param seed seed for every random choice in the world
+     * @param layout the layout of the warehouse
+     * @param percentageFilled percentage of rack slots to be filled with racks
+     * @param amountRobots amount of robots
+     * @param deliveryInterval every deliveryInterval ticks new packages arrive at the loading bay, 0 for never
+     * @param deliverySize amount of packages that arrive each time
+     */
+    public Scenario(long seed, WarehouseLayout layout, int percentageFilled, int amountRobots, int deliveryInterval,
+                    int deliverySize) {
+        if (deliveryInterval < 0 || deliverySize < 0) {
+            throw new IllegalArgumentException("the truck schedule can not be negative");
+        }
+        this.seed = seed;
+        this.layout = layout;
+        this.percentageFilled = percentageFilled;
+        this.amountRobots = amountRobots;
+        this.deliveryInterval = deliveryInterval;
+        this.deliverySize = deliverySize;
+    }
+
+    /**
+     * the default warehouse with the same amount of racks and robots as the web app,
+     * and a truckload of packages every minute at 10 ticks per second
+     * @param seed seed for every random choice in the world
+     * @return the scenario
+     */
+    public static Scenario defaultScenario(long seed) {
+        return new Scenario(seed, WarehouseLayout.defaultLayout(), 10, 5, 600, Truck.TRUCK_CAPACITY);
+    }
+
+    /**
+     * @param tick the number of the tick, starting at 0
+     * @return amount of packages that arrive at the loading bay at the start of this tick
+     */
+    public int packagesArriving(long tick) {
+        return deliveryInterval > 0 && tick > 0 && tick % deliveryInterval == 0 ? deliverySize : 0;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public WarehouseLayout getLayout() {
+        return layout;
+    }
+
+    public int getPercentageFilled() {
+        return percentageFilled;
+    }
+
+    public int getAmountRobots() {
+        return amountRobots;
+    }
+
+    public int getDeliveryInterval() {
+        return deliveryInterval;
+    }
+
+    public int getDeliverySize() {
+        return deliverySize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("seed %d, %dx%d, %d%% racks, %d robots, %d packages every %d ticks", seed,
+                layout.getSizeX(), layout.getSizeZ(), percentageFilled, amountRobots, deliverySize, deliveryInterval);
+    }
+}
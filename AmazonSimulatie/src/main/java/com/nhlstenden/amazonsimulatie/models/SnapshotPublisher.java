@@ -0,0 +1,202 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * maakt de snapshots van een wereld en zet ze neer voor de lezers. de wereld geeft door welke slots
+ * een nieuw object, een nieuwe positie of geen object meer hebben; publish maakt daar een nieuwe
+ * snapshot van. alleen de chunks met een veranderd slot worden gekopieerd, de rest wordt gedeeld met
+ * de vorige snapshot. is er niets veranderd, dan blijft de vorige snapshot staan.
+ * een snapshot die vervangen is, gaat in de wachtrij retired. heeft geen lezer hem meer open, dan
+ * gaan hij en de chunks die geen andere snapshot meer heeft terug in de voorraad en worden ze voor een
+ * volgende snapshot gebruikt, zodat er zolang lezers hun snapshot op tijd sluiten niets gemaakt hoeft
+ * te worden. een lezer die een snapshot lang open houdt, houdt alleen het hergebruik op: na
+ * MAX_RETIRED snapshots wordt de oudste vergeten en ruimt de garbage collector hem op.
+ * alles behalve acquire wordt alleen aangeroepen door de thread die tickt.
+ */
+class SnapshotPublisher {
+
+    private static final int MAX_RETIRED = 16;
+
+    private volatile WorldSnapshot current;
+    private long version;
+
+    private final ArrayDeque<WorldSnapshot> retired = new ArrayDeque<>();
+    private final ArrayDeque<WorldSnapshot> freeSnapshots = new ArrayDeque<>();
+    private final ArrayDeque<WorldSnapshot.Chunk> freeChunks = new ArrayDeque<>();
+
+    /** slots die vrij zijn, en het aantal slots dat ooit uitgegeven is */
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+    private int slotCount;
+    private int size;
+
+    /** de veranderingen sinds de vorige snapshot, op volgorde. een verwijderd slot heeft geen object */
+    private int[] pendingSlots = new int[16];
+    private Object3D[] pendingObjects = new Object3D[16];
+    private boolean[] pendingAdded = new boolean[16];
+    private int pendingCount;
+
+    /**
+     * geeft een object een slot, vanaf de volgende snapshot staat het erin
+     * @return het slot van het object
+     */
+    int add(Object3D object) {
+        int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : slotCount++;
+        size++;
+        pending(slot, object, true);
+        return slot;
+    }
+
+    /**
+     * de positie of rotatie van het object in een slot is veranderd
+     */
+    void update(int slot, Object3D object) {
+        pending(slot, object, false);
+    }
+
+    /**
+     * haalt het object uit een slot, vanaf de volgende snapshot staat het er niet meer in. het slot
+     * wordt pas na die snapshot weer uitgegeven
+     */
+    void remove(int slot) {
+        size--;
+        pending(slot, null, false);
+    }
+
+    private void pending(int slot, Object3D object, boolean added) {
+        if (pendingCount == pendingSlots.length) {
+            pendingSlots = Arrays.copyOf(pendingSlots, pendingCount * 2);
+            pendingObjects = Arrays.copyOf(pendingObjects, pendingCount * 2);
+            pendingAdded = Arrays.copyOf(pendingAdded, pendingCount * 2);
+        }
+        pendingSlots[pendingCount] = slot;
+        pendingObjects[pendingCount] = object;
+        pendingAdded[pendingCount] = added;
+        pendingCount++;
+    }
+
+    /**
+     * @return de hoogte van het object in een slot volgens de laatste snapshot, NaN als het slot daar nog
+     * niet in staat
+     */
+    double getZ(int slot) {
+        WorldSnapshot snapshot = current;
+        return snapshot == null || slot >= snapshot.getSlotCount() ? Double.NaN : snapshot.getZ(slot);
+    }
+
+    /**
+     * zet een nieuwe snapshot neer met alle veranderingen sinds de vorige, of laat de vorige staan als
+     * er niets veranderd is
+     */
+    void publish(long tick, int racksDelivered, int trucksServed) {
+        reclaim();
+        WorldSnapshot previous = current;
+        if (previous != null && pendingCount == 0 && previous.racksDelivered == racksDelivered
+                && previous.trucksServed == trucksServed) {
+            return;
+        }
+
+        WorldSnapshot next = freeSnapshots.isEmpty() ? new WorldSnapshot() : freeSnapshots.pop();
+        int chunkCount = (slotCount + WorldSnapshot.CHUNK_SIZE - 1) >> WorldSnapshot.CHUNK_SHIFT;
+        if (next.chunks.length != chunkCount) {
+            next.chunks = new WorldSnapshot.Chunk[chunkCount];
+        }
+        int shared = previous == null ? 0 : previous.chunks.length;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            if (chunk < shared) {
+                next.chunks[chunk] = previous.chunks[chunk];
+            } else {
+                next.chunks[chunk] = takeChunk();
+                next.chunks[chunk].clear();
+            }
+        }
+
+        for (int i = 0; i < pendingCount; i++) {
+            int slot = pendingSlots[i];
+            int chunk = slot >> WorldSnapshot.CHUNK_SHIFT;
+            int index = slot & (WorldSnapshot.CHUNK_SIZE - 1);
+            if (chunk < shared && next.chunks[chunk] == previous.chunks[chunk]) {
+                WorldSnapshot.Chunk copy = takeChunk();
+                copy.copyFrom(previous.chunks[chunk]);
+                next.chunks[chunk] = copy;
+            }
+            WorldSnapshot.Chunk target = next.chunks[chunk];
+            Object3D object = pendingObjects[i];
+            if (object == null) {
+                target.uuids[index] = null;
+                target.types[index] = null;
+                freeSlot(slot);
+            } else {
+                if (pendingAdded[i]) {
+                    target.uuids[index] = object.getUUID();
+                    target.types[index] = object.getType();
+                }
+                target.write(index, object);
+            }
+            pendingObjects[i] = null;
+        }
+        pendingCount = 0;
+
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            next.chunks[chunk].refs++;
+        }
+        next.version = ++version;
+        next.tick = tick;
+        next.size = size;
+        next.racksDelivered = racksDelivered;
+        next.trucksServed = trucksServed;
+        current = next;
+
+        if (previous != null) {
+            if (retired.size() == MAX_RETIRED) {
+                retired.poll();
+            }
+            retired.add(previous);
+        }
+    }
+
+    /**
+     * @return de laatste snapshot, open voor de aanroeper tot hij gesloten wordt
+     */
+    WorldSnapshot acquire() {
+        while (true) {
+            WorldSnapshot snapshot = current;
+            snapshot.readers.incrementAndGet();
+            // staat hij er na het aanmelden nog, dan ziet publish de lezer en wordt hij niet hergebruikt
+            if (current == snapshot) {
+                return snapshot;
+            }
+            snapshot.readers.decrementAndGet();
+        }
+    }
+
+    /*
+     * Haalt de vervangen snapshots die geen lezer meer hebben uit de wachtrij, op volgorde. Een chunk gaat
+     * terug in de voorraad als geen enkele snapshot hem nog heeft.
+     */
+    private void reclaim() {
+        while (!retired.isEmpty() && retired.peek().readers.get() == 0) {
+            WorldSnapshot snapshot = retired.poll();
+            for (int chunk = 0; chunk < snapshot.chunks.length; chunk++) {
+                if (--snapshot.chunks[chunk].refs == 0) {
+                    freeChunks.push(snapshot.chunks[chunk]);
+                }
+                snapshot.chunks[chunk] = null;
+            }
+            freeSnapshots.push(snapshot);
+        }
+    }
+
+    private WorldSnapshot.Chunk takeChunk() {
+        return freeChunks.isEmpty() ? new WorldSnapshot.Chunk() : freeChunks.pop();
+    }
+
+    private void freeSlot(int slot) {
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+}
@@ -0,0 +1,273 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * uniform grid over de objecten van een {@link EntityStore}, op hun x en z coordinaat. de wereld
+ * wordt verdeeld in vierkante cellen; per cel staan de id's van de objecten erin. alleen cellen waar
+ * iets in staat bestaan, zodat ook plaatsen buiten het magazijn, zoals de weg van de trucks, werken.
+ * de store werkt het grid bij als een object beweegt, een verplaatsing binnen dezelfde cel kost
+ * niets. vragen naar een punt, een straal of de k dichtstbijzijnde objecten kijken alleen naar de
+ * cellen in de buurt. de methodes zijn synchronized, objecten mogen vanuit meerdere threads bewegen.
+ */
+public class SpatialGrid {
+
+    /** geen cel */
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    private final EntityStore store;
+    private final double cellSize;
+    /** de cellen waar iets in staat, met de gepakte cel coordinaten als sleutel */
+    private final Map<Long, Cell> cells = new HashMap<>();
+    /** de cel per id, NO_CELL als het id niet in het grid staat */
+    private long[] cellOf = new long[0];
+    /** de plaats van het id in de lijst van zijn cel */
+    private int[] slotOf = new int[0];
+    /** aantal objecten in het grid */
+    private int size;
+
+    /** kleinste en grootste cel coordinaten die ooit gebruikt zijn, om zoeken te begrenzen */
+    private int minX = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int minZ = Integer.MAX_VALUE;
+    private int maxZ = Integer.MIN_VALUE;
+
+    /**
+     * @param store de store met de posities
+     * @param cellSize breedte en diepte van een cel
+     */
+    public SpatialGrid(EntityStore store, double cellSize){
+        if (cellSize <= 0){
+            throw new IllegalArgumentException("cellSize moet groter dan 0 zijn");
+        }
+        this.store = store;
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * zet een object in de cel van zijn huidige positie, of laat het staan als het al in die cel staat
+     * @param id entity id
+     */
+    synchronized void update(int id){
+        if (id >= cellOf.length){
+            int capacity = Math.max(id + 1, cellOf.length * 2);
+            int old = cellOf.length;
+            cellOf = Arrays.copyOf(cellOf, capacity);
+            Arrays.fill(cellOf, old, capacity, NO_CELL);
+            slotOf = Arrays.copyOf(slotOf, capacity);
+        }
+        int cellX = cell(store.x(id));
+        int cellZ = cell(store.z(id));
+        long key = key(cellX, cellZ);
+        if (cellOf[id] == key){
+            return;
+        }
+        if (cellOf[id] != NO_CELL){
+            unlink(id);
+        } else {
+            size++;
+        }
+
+        Cell cell = cells.get(key);
+        if (cell == null){
+            cell = new Cell();
+            cells.put(key, cell);
+            minX = Math.min(minX, cellX);
+            maxX = Math.max(maxX, cellX);
+            minZ = Math.min(minZ, cellZ);
+            maxZ = Math.max(maxZ, cellZ);
+        }
+        if (cell.size == cell.ids.length){
+            cell.ids = Arrays.copyOf(cell.ids, cell.size * 2);
+        }
+        slotOf[id] = cell.size;
+        cell.ids[cell.size++] = id;
+        cellOf[id] = key;
+    }
+
+    /**
+     * haalt een object uit het grid
+     * @param id entity id
+     */
+    synchronized void remove(int id){
+        if (id < cellOf.length && cellOf[id] != NO_CELL){
+            unlink(id);
+            cellOf[id] = NO_CELL;
+            size--;
+        }
+    }
+
+    /**
+     * haalt een id uit de lijst van zijn cel, het laatste id van de cel komt op zijn plaats
+     */
+    private void unlink(int id){
+        Cell cell = cells.get(cellOf[id]);
+        int last = cell.ids[--cell.size];
+        cell.ids[slotOf[id]] = last;
+        slotOf[last] = slotOf[id];
+        if (cell.size == 0){
+            cells.remove(cellOf[id]);
+        }
+    }
+
+    /**
+     * @param x x coordinaat
+     * @param z z coordinaat
+     * @param type het soort object, Object3D.class voor alles
+     * @return de objecten van dit soort in de cel van het punt
+     */
+    public synchronized <T extends Object3D> List<T> at(double x, double z, Class<T> type){
+        List<T> found = new ArrayList<>();
+        Cell cell = cells.get(key(cell(x), cell(z)));
+        if (cell != null){
+            for (int i = 0; i < cell.size; i++){
+                Object3D object = store.entity(cell.ids[i]);
+                if (type.isInstance(object)){
+                    found.add(type.cast(object));
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param x x coordinaat van het midden
+     * @param z z coordinaat van het midden
+     * @param radius de straal
+     * @param type het soort object, Object3D.class voor alles
+     * @return de objecten van dit soort binnen de straal, dichtstbijzijnde eerst
+     */
+    public synchronized <T extends Object3D> List<T> within(double x, double z, double radius, Class<T> type){
+        int reach = (int) Math.ceil(radius / cellSize);
+        final List<Integer> found = new ArrayList<>();
+        final List<Double> distances = new ArrayList<>();
+        for (int cellX = cell(x) - reach; cellX <= cell(x) + reach; cellX++){
+            for (int cellZ = cell(z) - reach; cellZ <= cell(z) + reach; cellZ++){
+                collect(cellX, cellZ, x, z, radius, type, found, distances);
+            }
+        }
+        return sorted(found, distances, found.size(), type);
+    }
+
+    /**
+     * zoekt ring voor ring om de cel van het punt, tot er k objecten gevonden zijn en geen verdere
+     * ring meer iets dichterbij kan hebben
+     * @param x x coordinaat
+     * @param z z coordinaat
+     * @param k hoeveel objecten
+     * @param type het soort object, Object3D.class voor alles
+     * @return hoogstens k objecten van dit soort, dichtstbijzijnde eerst
+     */
+    public synchronized <T extends Object3D> List<T> nearest(double x, double z, int k, Class<T> type){
+        List<Integer> found = new ArrayList<>();
+        List<Double> distances = new ArrayList<>();
+        if (k <= 0 || size == 0){
+            return new ArrayList<>();
+        }
+        int centerX = cell(x);
+        int centerZ = cell(z);
+        int maxRing = Math.max(Math.max(centerX - minX, maxX - centerX), Math.max(centerZ - minZ, maxZ - centerZ));
+        for (int ring = 0; ring <= maxRing; ring++){
+            for (int cellX = centerX - ring; cellX <= centerX + ring; cellX++){
+                boolean edge = cellX == centerX - ring || cellX == centerX + ring;
+                for (int cellZ = centerZ - ring; cellZ <= centerZ + ring; cellZ += edge ? 1 : 2 * ring){
+                    collect(cellX, cellZ, x, z, Double.MAX_VALUE, type, found, distances);
+                    if (ring == 0){
+                        break;
+                    }
+                }
+            }
+            // alles in de volgende ring ligt minstens ring cellen ver weg
+            if (found.size() >= k && kthSmallest(distances, k) <= ring * cellSize){
+                break;
+            }
+        }
+        return sorted(found, distances, k, type);
+    }
+
+    private <T extends Object3D> void collect(int cellX, int cellZ, double x, double z, double radius, Class<T> type,
+            List<Integer> found, List<Double> distances){
+        Cell cell = cells.get(key(cellX, cellZ));
+        if (cell == null){
+            return;
+        }
+        for (int i = 0; i < cell.size; i++){
+            int id = cell.ids[i];
+            if (!type.isInstance(store.entity(id))){
+                continue;
+            }
+            double distance = Math.hypot(store.x(id) - x, store.z(id) - z);
+            if (distance <= radius){
+                found.add(id);
+                distances.add(distance);
+            }
+        }
+    }
+
+    private static double kthSmallest(List<Double> distances, int k){
+        double[] sorted = new double[distances.size()];
+        for (int i = 0; i < sorted.length; i++){
+            sorted[i] = distances.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted[k - 1];
+    }
+
+    /**
+     * sorteert de gevonden objecten op afstand, bij gelijke afstand op id zodat de volgorde vast ligt
+     */
+    private <T extends Object3D> List<T> sorted(final List<Integer> found, final List<Double> distances, int limit,
+            Class<T> type){
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < found.size(); i++){
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byDistance = Double.compare(distances.get(a), distances.get(b));
+                return byDistance != 0 ? byDistance : Integer.compare(found.get(a), found.get(b));
+            }
+        });
+        List<T> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, order.size()); i++){
+            result.add(type.cast(store.entity(found.get(order.get(i)))));
+        }
+        return result;
+    }
+
+    private int cell(double coordinate){
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int cellX, int cellZ){
+        return ((long) cellX << 32) | (cellZ & 0xffffffffL);
+    }
+
+    /** @return aantal objecten in het grid */
+    public synchronized int size(){
+        return size;
+    }
+
+    /** @return aantal cellen waar iets in staat */
+    public synchronized int cellCount(){
+        return cells.size();
+    }
+
+    /** @return breedte en diepte van een cel */
+    public double getCellSize(){
+        return cellSize;
+    }
+
+    /** de id's in een cel */
+    private static class Cell {
+        private int[] ids = new int[4];
+        private int size;
+    }
+}
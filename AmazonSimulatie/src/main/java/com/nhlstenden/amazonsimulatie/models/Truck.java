@@ -1,7 +1,7 @@
 /**
  * The Truck script is the logic behind the truck.
  * It communicates with the LoadaingBay to check what it's supossed to do.
- * Furthermore is it an 3D-object and can be updated by the world
+ * Furthermore is it an 3D-object, its trips and unloading are events on the clock of the world
  * 
  * @author  Berber Bouma
  * @version 1.0
@@ -11,20 +11,32 @@ package com.nhlstenden.amazonsimulatie.models;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.UUID;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-public class Truck implements Object3D, Updatable {
+public class Truck implements Object3D, ChangeTracked {
     public static final String LOADING_STATUS = "loading_status";
     public static final String TRUCK_AVAILABLE = "truck_available";
     public static final int TRUCK_CAPACITY = 30;
 
-    private UUID uuid;
+    // Distance the truck drives per tick
+    public static final double SPEED = 0.20;
+
     private PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+    private ChangeTracker tracker = new ChangeTracker(this, pcs);
+
+    // Position in the world, kept in the store
+    private final EntityStore store;
+    private final int id;
 
-    // Position in the world
-    private double x = 0;
-    private double y = 0;
-    private double z = -10;
+    // The clock, the arrival and the unloading of the truck are events on it
+    private final EventQueue events;
+    // The next event of the truck, null while it waits at the bay
+    private EventQueue.Event pending;
+    // Where and when the truck started driving, to interpolate its position
+    private double departZ;
+    private long departTick;
 
     // The location of the loading bay on one axis
     private double destLocation = 0;
@@ -46,11 +58,90 @@ public class Truck implements Object3D, Updatable {
      * @param roadLocation The location of the road (z axis)
      */
     public Truck(double x, double bayLocation, double roadLocation) {
-        this.x = x;
+        this(new EntityStore(1), new EventQueue(), x, bayLocation, roadLocation);
+    }
+
+    /**
+     * Constructor, the truck starts driving towards the loading bay
+     * @param store        The store that keeps the position of the truck
+     * @param events       The clock the truck schedules its arrivals on
+     * @param x            The x location of the robot
+     * @param bayLocation  The location of the loading bay (z axis)
+     * @param roadLocation The location of the road (z axis)
+     */
+    public Truck(EntityStore store, EventQueue events, double x, double bayLocation, double roadLocation) {
+        this.store = store;
+        this.events = events;
+        this.id = store.add(this, x, 0, -10, 0, 0, 0, tracker);
         this.bayLocation = bayLocation;
         this.roadLocation = roadLocation;
-        this.destLocation = bayLocation;
-        this.uuid = UUID.randomUUID();
+        drive(bayLocation);
+    }
+
+    private Truck(EntityStore store, EventQueue events, int id) {
+        this.store = store;
+        this.events = events;
+        this.id = id;
+        store.bind(id, this, tracker);
+    }
+
+    /**
+     * Make the truck that belongs to an id of a store read from a checkpoint,
+     * its state is read with readState
+     * 
+     * @param store  the store read from the checkpoint
+     * @param events the clock read from the checkpoint
+     * @param id     the id of the truck
+     * @return the truck
+     */
+    static Truck restore(EntityStore store, EventQueue events, int id) {
+        return new Truck(store, events, id);
+    }
+
+    /**
+     * Write the state of the truck for a checkpoint, the position is in the store
+     * 
+     * @param out where the state goes
+     * @throws IOException when writing fails
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeDouble(destLocation);
+        out.writeDouble(bayLocation);
+        out.writeDouble(roadLocation);
+        out.writeInt(packageAmount);
+        out.writeBoolean(isLoading);
+        out.writeBoolean(atRoad);
+        out.writeBoolean(bayInControl);
+        out.writeDouble(departZ);
+        out.writeLong(departTick);
+        out.writeBoolean(pending != null);
+        if (pending != null) {
+            out.writeLong(pending.getTime());
+            out.writeLong(pending.getSequence());
+        }
+    }
+
+    /**
+     * Read the state written by writeState, the next event of the truck is put back on the clock
+     * 
+     * @param in where the state comes from
+     * @throws IOException when reading fails
+     */
+    void readState(DataInput in) throws IOException {
+        destLocation = in.readDouble();
+        bayLocation = in.readDouble();
+        roadLocation = in.readDouble();
+        packageAmount = in.readInt();
+        isLoading = in.readBoolean();
+        atRoad = in.readBoolean();
+        bayInControl = in.readBoolean();
+        departZ = in.readDouble();
+        departTick = in.readLong();
+        if (in.readBoolean()) {
+            long time = in.readLong();
+            long sequence = in.readLong();
+            pending = events.restore(time, sequence, isLoading ? unloaded : arrived);
+        }
     }
 
     /**
@@ -64,69 +155,65 @@ public class Truck implements Object3D, Updatable {
     }
 
     /**
-     * Check if you've reached your destination, if so, send a message to
-     * LoadingBayController
+     * Start driving towards a destination, the arrival is scheduled on the clock
      * 
-     * @param destinationZ the location of your destination on one axis
-     * @return true: You've reached your destination false: You haven't reached your
-     *         destination
-     */
-    private boolean reachedDestination(double destinationZ) {
-        if (Math.abs(z - destinationZ) <= 0.25) {
-            if (destinationZ == bayLocation) {
-                isLoading = true;
-            } else {
-                isLoading = true;
-                atRoad = true;
-            }
-
-            return true;
-        }
-
-        return false;
+     * @param destinationZ the location of the destination on one axis
+     */
+    private void drive(double destinationZ) {
+        departZ = getZ();
+        departTick = events.now();
+        destLocation = destinationZ;
+        isLoading = false;
+        atRoad = false;
+        long ticks = (long) Math.ceil(Math.abs(destinationZ - departZ) / SPEED);
+        pending = events.schedule(Math.max(1, ticks), arrived);
     }
 
     /**
-     * Remove a packages from the truck
-     * 
-     * @return true, when the truck is emtpy. Otherwise false
+     * The truck reached its destination and starts unloading, one package per tick
      */
-    private boolean emptyTheTruck() {
-        packageAmount--;
+    private final Runnable arrived = new Runnable() {
+        @Override
+        public void run() {
+            moveTo(destLocation);
+            isLoading = true;
+            atRoad = destLocation == roadLocation;
+            pending = events.schedule(Math.max(1, packageAmount), unloaded);
+        }
+    };
 
-        if (packageAmount <= 0) {
+    /**
+     * The truck is empty, at the road it is refilled with racks and drives back to the bay,
+     * at the bay it tells the LoadingBayController it can be filled with packages
+     */
+    private final Runnable unloaded = new Runnable() {
+        @Override
+        public void run() {
+            pending = null;
             packageAmount = 0;
-
-            return true;
+            if (atRoad) {
+                truckReachedRoad();
+            } else {
+                truckReachedLoadingBay();
+            }
         }
-
-        return false;
-    }
+    };
 
     /**
-     * Empty the truck, when the truck is empty refill truck with new racks and
-     * drive towards loading bay
+     * Refill the empty truck with new racks and drive towards the loading bay
      */
     public void truckReachedRoad() {
-        if (emptyTheTruck()) {
-            packageAmount = TRUCK_CAPACITY; // quick refill of the truck
-            destLocation = bayLocation; // send back towards the bay
-
-            atRoad = false;
-            isLoading = false;
-        }
+        packageAmount = TRUCK_CAPACITY; // quick refill of the truck
+        drive(bayLocation); // send back towards the bay
     }
 
     /**
-     * Empty the truck (new racks for the warehouse) Send a message to the loading
-     * bay to start filling the truck with packages
+     * Send a message to the loading bay to start filling the empty truck with packages
      */
     public void truckReachedLoadingBay() {
-        if (emptyTheTruck()) {
-            // Send message to bay, reached location available for refill
-            bayInControl = true;
-            pcs.firePropertyChange(TRUCK_AVAILABLE, 0, TRUCK_CAPACITY);
-        }
+        // Send message to bay, reached location available for refill
+        bayInControl = true;
+        pcs.firePropertyChange(TRUCK_AVAILABLE, 0, TRUCK_CAPACITY);
     }
 
     /**
@@ -134,9 +221,8 @@ public class Truck implements Object3D, Updatable {
      * and baycontrol to false
      */
     public void sendTruckToRoad() {
-        destLocation = roadLocation;
-        isLoading = false;
         bayInControl = false;
+        drive(roadLocation);
     }
 
     /**
@@ -153,36 +239,53 @@ public class Truck implements Object3D, Updatable {
     }
 
     /**
-     * Update function of the truck, Check if the truck is loading or is at the
-     * destination location
+     * Put the position the truck has reached by now in the store and send it to the views. Only
+     * needed when a view watches the truck drive, otherwise the position is only stored on arrival.
+     * On the tick it departs and the tick it arrives the truck has not moved, then nothing is sent
      */
-    @Override
-    public boolean update() {
-        if (isLoading) {
-            if (atRoad) {
-                truckReachedRoad();
-            } else {
-                // extra check for when the bay is filling the truck
-                if (bayInControl == false) {
-                    truckReachedLoadingBay();
-                }
-            }
-        } else {
-            if (reachedDestination(destLocation) == false) {
-                if (destLocation - z > 0) {
-                    this.z += 0.20;
-                } else {
-                    this.z -= 0.20;
-                }
-            }
+    void interpolate() {
+        if (isDriving()) {
+            moveTo(getZ());
         }
+    }
+
+    /**
+     * Store a new position and mark the truck dirty, if the truck is not already there
+     */
+    private void moveTo(double z) {
+        if (store.z(id) != z) {
+            store.setZ(id, z);
+            tracker.markDirty();
+        }
+    }
 
-        return true;
+    /**
+     * Return true while the truck drives between the road and the bay
+     */
+    public boolean isDriving() {
+        return !isLoading && pending != null;
+    }
+
+    @Override
+    public boolean takeDirty() {
+        return tracker.takeDirty();
+    }
+
+    @Override
+    public void sleep() {
+        tracker.sleep();
+    }
+
+    /**
+     * Return the id of the truck in its store
+     */
+    public int getId() {
+        return id;
     }
 
     @Override
     public String getUUID() {
-        return uuid.toString();
+        return store.uuid(id);
     }
 
     @Override
@@ -195,7 +298,7 @@ public class Truck implements Object3D, Updatable {
      */
     @Override
     public double getX() {
-        return this.x;
+        return store.x(id);
     }
 
     /**
@@ -203,15 +306,20 @@ public class Truck implements Object3D, Updatable {
      */
     @Override
     public double getY() {
-        return this.y;
+        return store.y(id);
     }
 
     /**
-     * Return the z position
+     * Return the z position, while driving interpolated between the departure and the
+     * destination with the clock
      */
     @Override
     public double getZ() {
-        return this.z;
+        if (!isDriving()) {
+            return store.z(id);
+        }
+        double progress = (double) (events.now() - departTick) / (pending.getTime() - departTick);
+        return departZ + (destLocation - departZ) * Math.min(1, progress);
     }
 
     /**
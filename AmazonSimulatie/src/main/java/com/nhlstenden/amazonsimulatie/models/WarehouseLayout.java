@@ -0,0 +1,179 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+/**
+ * Describes the floor plan of a warehouse, from the storage block to the robot parking rows.
+ * Everything is computed from a few parameters, so no per-cell data is stored and a layout
+ * of any size costs constant memory.
+ *
+ * Along the x axis the floor consists of a perimeter lane at x = 1, the storage block of
+ * depth rows starting at x = 2, DROPOFF_ROWS rows of dropoff zone and PARKING_ROWS rows where
+ * robots are parked. Along the z axis the storage block is width columns wide starting at
+ * z = 2, with a perimeter lane on both sides. Inside the storage block every aisleSpacing-th
+ * row is an aisle and every crossAisleSpacing-th column is a cross aisle; all other cells are
+ * rack slots. Robots can only drive onto a rack slot from a cell that is not a rack slot, so
+ * aisleSpacing is at most 3: every slot then lies next to an aisle, the perimeter lane or the
+ * dropoff zone.
+ */
+public class WarehouseLayout {
+    /** x and z coordinate of the first storage cell */
+    public static final int STORAGE_START = 2;
+    /** amount of rows in the dropoff zone */
+    public static final int DROPOFF_ROWS = 3;
+    /** amount of rows where robots are parked */
+    public static final int PARKING_ROWS = 2;
+
+    private final int width;
+    private final int depth;
+    private final int aisleSpacing;
+    private final int crossAisleSpacing;
+    private final int[] docks;
+
+    /**
+     * creates a layout
+     * @param width amount of storage columns along the z axis
+     * @param depth amount of storage rows along the x axis
+     * @param aisleSpacing every aisleSpacing-th storage row is an aisle, 2 or 3
+     * @param crossAisleSpacing every crossAisleSpacing-th storage column is a cross aisle, at least 2
+     * @param docks x positions of the loading docks where trucks arrive
+     */
+    public WarehouseLayout(int width, int depth, int aisleSpacing, int crossAisleSpacing, int... docks) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("width and depth must be at least 1");
+        }
+        if (aisleSpacing < 2 || crossAisleSpacing < 2) {
+            throw new IllegalArgumentException("aisle spacings must be at least 2");
+        }
+        if (aisleSpacing > 3) {
+            throw new IllegalArgumentException("aisle spacing must be at most 3, or racks between the aisles can not be reached");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.aisleSpacing = aisleSpacing;
+        this.crossAisleSpacing = crossAisleSpacing;
+        this.docks = docks.clone();
+    }
+
+    /**
+     * the layout of the original 30 by 30 warehouse
+     * @return layout with 27 columns, 23 rows, an aisle every 3 rows, a cross aisle every 14 columns and docks at 10 and 20
+     */
+    public static WarehouseLayout defaultLayout() {
+        return new WarehouseLayout(27, 23, 3, 14, 10, 20);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getAisleSpacing() {
+        return aisleSpacing;
+    }
+
+    public int getCrossAisleSpacing() {
+        return crossAisleSpacing;
+    }
+
+    /**
+     * @return x positions of the loading docks
+     */
+    public int[] getDocks() {
+        return docks.clone();
+    }
+
+    /**
+     * @return amount of cells along the x axis, coordinates run from 0 up to but not including this
+     */
+    public int getSizeX() {
+        return getParkingX() + PARKING_ROWS;
+    }
+
+    /**
+     * @return amount of cells along the z axis, coordinates run from 0 up to but not including this
+     */
+    public int getSizeZ() {
+        return STORAGE_START + width + 1;
+    }
+
+    /**
+     * @return x coordinate of the first dropoff row
+     */
+    public int getDropoffX() {
+        return STORAGE_START + depth;
+    }
+
+    /**
+     * @return x coordinate of the first parking row
+     */
+    public int getParkingX() {
+        return getDropoffX() + DROPOFF_ROWS;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @return true if the cell is part of the floor robots can drive on, including rack slots
+     */
+    public boolean isFloor(int x, int z) {
+        return x >= 1 && x < getSizeX() && z >= 1 && z < getSizeZ();
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @return true if the cell is in the storage block
+     */
+    public boolean isStorage(int x, int z) {
+        return x >= STORAGE_START && x < getDropoffX() && z >= STORAGE_START && z < STORAGE_START + width;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @return true if a rack can be stored in the cell
+     */
+    public boolean isRackSlot(int x, int z) {
+        return isStorage(x, z)
+                && (x - STORAGE_START) % aisleSpacing != aisleSpacing - 1
+                && (z - STORAGE_START) % crossAisleSpacing != crossAisleSpacing - 1;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @return true if the cell is in the dropoff zone
+     */
+    public boolean isDropoff(int x, int z) {
+        return x >= getDropoffX() && x < getParkingX() && z >= 1 && z <= width;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @return true if a robot can be parked in the cell
+     */
+    public boolean isParking(int x, int z) {
+        return x >= getParkingX() && x < getSizeX() && z >= 1 && z < getSizeZ();
+    }
+
+    /**
+     * @return amount of robots that can be parked, one per parking cell
+     */
+    public int getParkingCapacity() {
+        return PARKING_ROWS * (getSizeZ() - 1);
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @param otherX x coordinate of a neighbouring cell
+     * @param otherZ z coordinate of a neighbouring cell
+     * @return true if robots can drive between the cells; both must be floor and at most one a rack slot
+     */
+    public boolean isConnected(int x, int z, int otherX, int otherZ) {
+        return isFloor(x, z) && isFloor(otherX, otherZ) && !(isRackSlot(x, z) && isRackSlot(otherX, otherZ));
+    }
+}
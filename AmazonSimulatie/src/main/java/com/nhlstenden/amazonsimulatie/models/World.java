@@ -1,12 +1,31 @@
 package com.nhlstenden.amazonsimulatie.models;
 
+import com.nhlstenden.amazonsimulatie.controllers.BatchPlanner;
 import com.nhlstenden.amazonsimulatie.controllers.GraphController;
 import com.nhlstenden.amazonsimulatie.controllers.RobotController;
+import com.nhlstenden.amazonsimulatie.pathfinding.TrafficHeatmap;
 
+import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import com.nhlstenden.amazonsimulatie.controllers.LoadingBayController;
 
@@ -17,6 +36,19 @@ import com.nhlstenden.amazonsimulatie.controllers.LoadingBayController;
  * in het model. Dit betekent dus de logica die het magazijn simuleert.
  */
 public class World implements Model {
+    /*
+     * Bij parallel updaten wordt de lijst met objecten in stukken van zoveel objecten verdeeld.
+     * Met minder objecten dan dit wordt altijd een voor een geupdate.
+     */
+    public static final int UPDATE_CHUNK_SIZE = 256;
+
+    /*
+     * Het soort object in een checkpoint.
+     */
+    private static final byte ROBOT = 1;
+    private static final byte RACK = 2;
+    private static final byte TRUCK = 3;
+
     /*
      * De wereld bestaat uit objecten, vandaar de naam worldObjects. Dit is een lijst
      * van alle objecten in de 3D wereld. Deze objecten zijn in deze voorbeeldcode alleen
@@ -31,21 +63,106 @@ public class World implements Model {
      * Het systeem werkt al as-is, dus dit hoeft niet aangepast te worden.
      */
     PropertyChangeSupport pcs = new PropertyChangeSupport(this);
-    LoadingBayController lbc = new LoadingBayController();
+    LoadingBayController lbc;
     GraphController graph = new GraphController();
     RobotController robotController;
+    WarehouseLayout layout;
+    /*
+     * De posities en rotaties van alle objecten staan in deze store, in arrays achter elkaar.
+     */
+    EntityStore store;
+    /*
+     * De klok van de simulatie in ticks, met de gebeurtenissen die op een tick gepland zijn, zoals een
+     * truck die aankomt of een pakket dat geladen wordt.
+     */
+    EventQueue events;
+    ExecutorService updatePool;
+    boolean parallelUpdate;
+
+    /*
+     * De objecten die in de volgende tick geupdate worden (awake) en de objecten die sinds de vorige
+     * tick veranderd zijn en naar de views moeten (dirty). De objecten melden zichzelf aan via de
+     * tracker, ook vanaf de threads van de pool, daarom gaat alles hiermee via synchronized.
+     * entries geeft elk object een volgnummer, zodat ze altijd op dezelfde volgorde afgehandeld
+     * worden als de lijst met objecten. dirty en publishing wisselen elke tick van plaats, zodat de
+     * buffers steeds opnieuw gebruikt worden.
+     */
+    private final Set<Object3D> awake = new HashSet<>();
+    private ChangeBuffer dirty = new ChangeBuffer();
+    private ChangeBuffer publishing = new ChangeBuffer();
+    private final Map<Object3D, Entry> entries = new IdentityHashMap<>();
+    private int nextOrder;
+
+    /*
+     * Maakt de snapshots die zonder lock gelezen worden. Elk object heeft een vaste plaats in de
+     * snapshots, het publish gedeelte geeft alleen de objecten met een nieuwe toestand door. fired zijn
+     * de objecten waarvan in deze tick een bericht naar de views gaat.
+     */
+    private final SnapshotPublisher snapshots = new SnapshotPublisher();
+    private final List<Entry> fired = new ArrayList<>();
+
+    private final PropertyChangeListener tracker = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            if (ChangeTracked.AWAKE.equals(evt.getPropertyName())) {
+                add(awake, (Object3D) evt.getSource());
+            } else if (ChangeTracked.DIRTY.equals(evt.getPropertyName())) {
+                addDirty((Object3D) evt.getSource());
+            }
+        }
+    };
+
+    private final Comparator<Object3D> byOrder = new Comparator<Object3D>() {
+        @Override
+        public int compare(Object3D a, Object3D b) {
+            return Integer.compare(entries.get(a).order, entries.get(b).order);
+        }
+    };
+
+    /**
+     * initializes class with the layout of the default warehouse
+     * @param percentageFilled percentage of slots to be filled with racks
+     * @param amountRobots amount of robots to be added
+     */
+    public World(int percentageFilled, int amountRobots) {
+        this(WarehouseLayout.defaultLayout(), percentageFilled, amountRobots);
+    }
 
     /**
      * initializes class,
-     * makes a robotController, gives percentageFilled and amountRobots
+     * builds the graph from the layout, makes a robotController, gives percentageFilled and amountRobots
      * gets racklist and robotlist from robotcontroller and adds them to world
+     * @param layout the layout of the warehouse
      * @param percentageFilled percentage of slots to be filled with racks
      * @param amountRobots amount of robots to be added
      */
-    public World(int percentageFilled, int amountRobots) {
+    public World(WarehouseLayout layout, int percentageFilled, int amountRobots) {
+        this(layout, percentageFilled, amountRobots, new Random(), false);
+    }
+
+    /**
+     * initializes class from a scenario, every random choice comes from the seed of the scenario,
+     * so the same scenario always gives the same world with the same uuids
+     * @param scenario the scenario
+     */
+    public World(Scenario scenario) {
+        this(scenario.getLayout(), scenario.getPercentageFilled(), scenario.getAmountRobots(),
+                new Random(scenario.getSeed()), true);
+    }
+
+    /**
+     * @param random decides where the racks go
+     * @param seededUuids true to make the uuids of the objects with random as well
+     */
+    private World(WarehouseLayout layout, int percentageFilled, int amountRobots, Random random, boolean seededUuids) {
         this.worldObjects = new ArrayList<>();
-        robotController = new RobotController(percentageFilled,amountRobots);
-        graph.populateGraph();
+        this.layout = layout;
+        this.store = new EntityStore(16, seededUuids ? random : null);
+        this.events = new EventQueue();
+        lbc = new LoadingBayController(layout, store, events);
+        graph.populateGraph(layout);
+        robotController = new RobotController(layout, graph, store, random, percentageFilled, amountRobots);
+        updatePool = robotController.getPlanner().getPool();
 
         for (Truck truck : lbc.truckList) {
             addObject(truck);
@@ -59,51 +176,566 @@ public class World implements Model {
             addObject(robot);
         }
 
+        publishSnapshot();
+    }
+
+    /*
+     * Maakt een wereld uit de onderdelen die uit een checkpoint gelezen zijn, zie readState.
+     */
+    private World(WarehouseLayout layout, GraphController graph, EntityStore store, EventQueue events,
+                  LoadingBayController lbc, RobotController robotController) {
+        this.worldObjects = new ArrayList<>();
+        this.layout = layout;
+        this.graph = graph;
+        this.store = store;
+        this.events = events;
+        this.lbc = lbc;
+        this.robotController = robotController;
+        updatePool = robotController.getPlanner().getPool();
+    }
+
+    /*
+     * Schrijft de hele toestand van de wereld, voor een checkpoint: de indeling, de gewichten van de
+     * graaf, de store met alle posities, de klok, de objecten op volgorde met hun eigen toestand en hun
+     * geplande gebeurtenissen, de loading bay,
+     * de robot controller en welke objecten wakker zijn. Routes die nog gepland worden en de drukte in
+     * de heatmap worden niet geschreven; robots zonder route vragen na het herstellen opnieuw een route.
+     * Moet tussen twee ticks aangeroepen worden.
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(layout.getWidth());
+        out.writeInt(layout.getDepth());
+        out.writeInt(layout.getAisleSpacing());
+        out.writeInt(layout.getCrossAisleSpacing());
+        int[] docks = layout.getDocks();
+        out.writeInt(docks.length);
+        for (int dock : docks) {
+            out.writeInt(dock);
+        }
+
+        graph.writeState(out);
+        store.writeState(out);
+        out.writeLong(events.now());
+        out.writeLong(events.getNextSequence());
+
+        out.writeInt(worldObjects.size());
+        for (Object3D object : worldObjects) {
+            if (object instanceof Robot) {
+                out.writeByte(ROBOT);
+                out.writeInt(((Robot) object).getId());
+            } else if (object instanceof Rack) {
+                out.writeByte(RACK);
+                out.writeInt(((Rack) object).getId());
+            } else if (object instanceof Truck) {
+                out.writeByte(TRUCK);
+                out.writeInt(((Truck) object).getId());
+            } else {
+                throw new IOException("kan " + object.getType() + " niet in een checkpoint schrijven");
+            }
+        }
+        for (Object3D object : worldObjects) {
+            if (object instanceof Robot) {
+                ((Robot) object).writeState(out);
+            } else if (object instanceof Truck) {
+                ((Truck) object).writeState(out);
+            }
+        }
+
+        lbc.writeState(out);
+        robotController.writeState(out);
+
+        List<Object3D> active;
+        synchronized (this) {
+            active = new ArrayList<>(awake);
+        }
+        Map<Object3D, Integer> index = new IdentityHashMap<>();
+        for (int i = 0; i < worldObjects.size(); i++) {
+            index.put(worldObjects.get(i), i);
+        }
+        // op volgorde, zodat dezelfde wereld altijd hetzelfde checkpoint geeft
+        int[] activeIndices = new int[active.size()];
+        for (int i = 0; i < activeIndices.length; i++) {
+            activeIndices[i] = index.get(active.get(i));
+        }
+        Arrays.sort(activeIndices);
+        out.writeInt(activeIndices.length);
+        for (int activeIndex : activeIndices) {
+            out.writeInt(activeIndex);
+        }
+    }
+
+    /*
+     * Leest een wereld die met writeState geschreven is. De objecten houden hun uuid, zodat views na een
+     * herstart dezelfde objecten terugzien.
+     */
+    static World readState(DataInput in) throws IOException {
+        int width = in.readInt();
+        int depth = in.readInt();
+        int aisleSpacing = in.readInt();
+        int crossAisleSpacing = in.readInt();
+        int[] docks = new int[in.readInt()];
+        for (int i = 0; i < docks.length; i++) {
+            docks[i] = in.readInt();
+        }
+        WarehouseLayout layout = new WarehouseLayout(width, depth, aisleSpacing, crossAisleSpacing, docks);
+
+        GraphController graph = new GraphController();
+        graph.populateGraph(layout);
+        graph.readState(in);
+        EntityStore store = EntityStore.readState(in, null);
+        long now = in.readLong();
+        EventQueue events = new EventQueue(now, in.readLong());
+
+        List<Object3D> objects = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            byte type = in.readByte();
+            int id = in.readInt();
+            switch (type) {
+                case ROBOT:
+                    objects.add(Robot.restore(store, id));
+                    break;
+                case RACK:
+                    objects.add(Rack.restore(store, id));
+                    break;
+                case TRUCK:
+                    objects.add(Truck.restore(store, events, id));
+                    break;
+                default:
+                    throw new IOException("onbekend soort object " + type + " in het checkpoint");
+            }
+        }
+        for (Object3D object : objects) {
+            if (object instanceof Robot) {
+                ((Robot) object).readState(in, graph);
+            } else if (object instanceof Truck) {
+                ((Truck) object).readState(in);
+            }
+        }
+
+        LoadingBayController lbc = new LoadingBayController(store, events, in);
+        RobotController robotController = new RobotController(layout, graph, store, in);
+        World world = new World(layout, graph, store, events, lbc, robotController);
+        for (Object3D object : objects) {
+            world.addObject(object);
+        }
+
+        // alles begint wakker in addObject, alleen de objecten die wakker waren blijven dat
+        Set<Object3D> active = Collections.newSetFromMap(new IdentityHashMap<Object3D, Boolean>());
+        for (int i = in.readInt(); i > 0; i--) {
+            active.add(objects.get(in.readInt()));
+        }
+        for (Object3D object : objects) {
+            if (!active.contains(object) && object instanceof ChangeTracked) {
+                ((ChangeTracked) object).sleep();
+                synchronized (world) {
+                    world.awake.remove(object);
+                }
+            }
+        }
+        world.publishSnapshot();
+        return world;
+    }
+
+    /**
+     * @return the layout of the warehouse
+     */
+    public WarehouseLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return amount of racks the robots have delivered so far
+     */
+    public int getRacksDelivered() {
+        return robotController.getRacksDelivered();
+    }
+
+    /**
+     * @return amount of trucks that have been loaded and sent back to the road so far
+     */
+    public int getTrucksServed() {
+        return lbc.getTrucksServed();
+    }
+
+    /**
+     * new packages arrive at the loading bay, the trucks are loaded with them
+     * @param amount amount of packages
+     */
+    public void deliverPackages(int amount) {
+        lbc.addPackages(amount);
+    }
+
+    /**
+     * @return the heatmap with the traffic per edge over the last ticks, for operators
+     */
+    public TrafficHeatmap getTrafficHeatmap() {
+        return graph.getTrafficHeatmap();
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @param radius the radius around the point
+     * @return the objects within the radius of the point, nearest first, looked up in the spatial grid
+     */
+    public List<Object3D> getObjectsNear(double x, double z, double radius) {
+        return proxies(store.getGrid().within(x, z, radius, Object3D.class));
+    }
+
+    /**
+     * @param x x coordinate
+     * @param z z coordinate
+     * @param amount how many objects
+     * @return at most amount objects nearest to the point, nearest first, looked up in the spatial grid
+     */
+    public List<Object3D> getNearestObjects(double x, double z, int amount) {
+        return proxies(store.getGrid().nearest(x, z, amount, Object3D.class));
+    }
+
+    private synchronized List<Object3D> proxies(List<Object3D> objects) {
+        List<Object3D> proxies = new ArrayList<>(objects.size());
+        for (Object3D object : objects) {
+            Entry entry = entries.get(object);
+            proxies.add(entry != null ? entry.proxy : new ProxyObject3D(object));
+        }
+        return proxies;
     }
 
     /**
-     * takes an Object3D object, and adds it to the worldObjects list
+     * takes an Object3D object, and adds it to the worldObjects list, it is in the snapshot from the next tick on
      * @param object object to be added
      */
     public void addObject(Object3D object){
         this.worldObjects.add(object);
+        synchronized (this) {
+            Entry entry = new Entry(object, nextOrder++, snapshots.add(object));
+            entries.put(object, entry);
+        }
+        if (object instanceof ChangeTracked) {
+            ((ChangeTracked)object).addObserver(tracker);
+        }
+        if (object instanceof Updatable) {
+            add(awake, object);
+        }
     }
 
     /**
-     * calls pickupRack method on robotController, fires remove command to server on the object that gets removed
+     * takes an Object3D object out of the world, it is no longer updated or sent to the views,
+     * it is gone from the snapshot from the next tick on
+     * @param object object to be removed
+     */
+    public void removeObject(Object3D object){
+        detach(object);
+        release(object);
+    }
+
+    /*
+     * Haalt een object uit de lijsten van de wereld. Geeft de entry van het object, of null als het
+     * object niet in de wereld was.
+     */
+    private Entry detach(Object3D object) {
+        this.worldObjects.remove(object);
+        Entry entry;
+        synchronized (this) {
+            awake.remove(object);
+            // staat het object nog in dirty, dan wordt het daar overgeslagen omdat het geen entry meer heeft
+            entry = entries.remove(object);
+        }
+        if (entry != null) {
+            snapshots.remove(entry.slot);
+        }
+        return entry;
+    }
+
+    /*
+     * Geeft de plaats van een rek in de store vrij, pas nadat de views het remove bericht gekregen hebben.
+     */
+    private void release(Object3D object) {
+        if (object instanceof Rack && ((Rack)object).getStore() == store) {
+            store.remove(((Rack)object).getId());
+        }
+    }
+
+    /**
+     * calls pickupRacks method on robotController, fires remove command to server on the racks that have been delivered.
+     * the racks are taken out of the snapshot before the remove commands are fired, so a view that connects
+     * in between never gets a rack that is already gone
      */
     public void pickupRack() {
-        Rack rack = robotController.pickupRack();
-        if(rack != null) {
-            worldObjects.remove(rack);
+        List<Rack> racks = robotController.pickupRacks();
+        if (racks.isEmpty()) {
+            return;
+        }
+        List<Entry> removed = new ArrayList<>(racks.size());
+        for (Rack rack : racks) {
+            Entry entry = detach(rack);
+            if (entry != null) {
+                removed.add(entry);
+            }
+        }
+        publishSnapshot();
+        for (Entry entry : removed) {
             try {
-                if (rack.update()) {
-                    pcs.firePropertyChange(Model.REMOVE_COMMAND, null, new ProxyObject3D(rack));
-                }
+                pcs.firePropertyChange(entry.removeEvent);
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
+        for (Rack rack : racks) {
+            release(rack);
+        }
     }
 
     /*
      * Deze methode wordt gebruikt om de wereld te updaten. Wanneer deze methode wordt aangeroepen,
-     * wordt op elk object in de wereld de methode update aangeroepen. Wanneer deze true teruggeeft
-     * betekent dit dat het onderdeel daadwerkelijk geupdate is (er is iets veranderd, zoals een positie).
-     * Als dit zo is moet dit worden geupdate, en wordt er via het pcs systeem een notificatie gestuurd
-     * naar de controller die luisterd. Wanneer de updatemethode van het onderdeel false teruggeeft,
-     * is het onderdeel niet veranderd en hoeft er dus ook geen signaal naar de controller verstuurd
-     * te worden.
+     * wordt op elk object dat wakker is de methode update aangeroepen. Wanneer deze true teruggeeft
+     * betekent dit dat het onderdeel daadwerkelijk iets gedaan heeft, en blijft het wakker voor de
+     * volgende tick. Geeft de updatemethode false terug, dan gaat het onderdeel slapen tot er weer
+     * iets mee gebeurt, bijvoorbeeld een robot die een nieuwe route krijgt. Daarna worden alleen de
+     * objecten die dirty zijn (er is iets veranderd, zoals een positie) via het pcs systeem naar de
+     * controller gestuurd. Zo hangt het aantal berichten af van hoeveel er gebeurt en niet van hoeveel
+     * rekken er in het magazijn staan. Elk object heeft een proxy en een bericht die eenmalig gemaakt
+     * zijn, zodat het versturen geen nieuwe objecten kost. Aan het begin van de tick krijgen de robots eerst de routes die
+     * sinds de vorige tick gepland zijn en gaat de klok een tick verder, met de gebeurtenissen die op
+     * die tick gepland zijn, zoals trucks die aankomen en pakketten die geladen worden. Na de updates
+     * volgen de rekken op de robots in een keer hun robot. Kijkt er een view mee, dan krijgen rijdende
+     * trucks hun positie van deze tick, anders wordt die alleen bij aankomst opgeslagen. Met de berichten
+     * wordt ook de snapshot van deze tick neergezet, zie publish. Aan het eind wordt de drukte op de edges
+     * bijgewerkt.
      */
     @Override
     public void update() {
-        for (Object3D object : this.worldObjects) {
-            if(object instanceof Updatable) {
+        robotController.applyRoutes();
+        events.advanceTo(events.now() + 1);
+
+        /*
+         * Een object gaat eerst slapen en wordt pas weer wakker als zijn update true teruggeeft of als
+         * er tijdens de update iets mee gebeurt. Zo wordt een object dat tijdens de update gewekt wordt
+         * niet overgeslagen.
+         */
+        List<Object3D> active = take(awake);
+        for (Object3D object : active) {
+            ((ChangeTracked)object).sleep();
+        }
+        if (parallelUpdate && active.size() > UPDATE_CHUNK_SIZE) {
+            updateParallel(active);
+        } else {
+            for (Object3D object : active) {
                 if (((Updatable)object).update()) {
-                    pcs.firePropertyChange(Model.UPDATE_COMMAND, null, new ProxyObject3D(object));
+                    add(awake, object);
                 }
             }
         }
+        store.followParents();
+        if (pcs.hasListeners(Model.UPDATE_COMMAND)) {
+            for (Truck truck : lbc.truckList) {
+                truck.interpolate();
+            }
+        }
+
+        publish();
+        graph.tickTraffic();
+    }
+
+    /*
+     * Parallelle versie van de lus in update. De lijst wordt in stukken verdeeld die tegelijk op de
+     * pool geupdate worden. Elk stuk verzamelt de objecten die wakker blijven in een eigen lijst. Welke
+     * objecten naar de views gaan volgt daarna uit de dirty buffer, op volgorde van de lijst met
+     * objecten, zodat de views precies dezelfde berichten in dezelfde volgorde krijgen als bij een voor
+     * een updaten.
+     */
+    private void updateParallel(final List<Object3D> active) {
+        List<Callable<List<Object3D>>> chunks = new ArrayList<>();
+        for (int start = 0; start < active.size(); start += UPDATE_CHUNK_SIZE) {
+            final int from = start;
+            final int to = Math.min(start + UPDATE_CHUNK_SIZE, active.size());
+            chunks.add(new Callable<List<Object3D>>() {
+                @Override
+                public List<Object3D> call() {
+                    List<Object3D> stillAwake = new ArrayList<>();
+                    for (int i = from; i < to; i++) {
+                        Object3D object = active.get(i);
+                        if (((Updatable)object).update()) {
+                            stillAwake.add(object);
+                        }
+                    }
+                    return stillAwake;
+                }
+            });
+        }
+
+        try {
+            for (Future<List<Object3D>> chunk : updatePool.invokeAll(chunks)) {
+                for (Object3D object : chunk.get()) {
+                    add(awake, object);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("updaten van de wereld is mislukt", e.getCause());
+        }
+    }
+
+    /*
+     * Laat de wereld een aantal ticks verder lopen als discrete event simulatie. Ticks waarin niets
+     * gebeurt, omdat er geen object wakker is, de robots op niets wachten en er geen gebeurtenis gepland
+     * is, worden niet uitgevoerd: de klok springt in een keer naar de volgende gebeurtenis. Zo kost een
+     * lange headless run tijd naar hoeveel er gebeurt en niet naar het aantal ticks. Een tick die wel
+     * uitgevoerd wordt is precies dezelfde als update gevolgd door pickupRack, dus de wereld komt op
+     * dezelfde toestand uit als wanneer elke tick uitgevoerd was. Geeft het aantal uitgevoerde ticks.
+     */
+    public long advance(long ticks) {
+        long end = events.now() + ticks;
+        long executed = 0;
+        while (events.now() < end) {
+            if (isIdle()) {
+                long skip = Math.min(events.nextTime(), end + 1) - events.now() - 1;
+                if (skip > 0) {
+                    events.advanceTo(events.now() + skip);
+                    graph.tickTraffic(skip);
+                    publishSnapshot();
+                    continue;
+                }
+            }
+            update();
+            pickupRack();
+            executed++;
+        }
+        return executed;
+    }
+
+    /*
+     * Geeft true als een tick nu niets zou doen behalve de klok en de drukte laten doorlopen.
+     */
+    private boolean isIdle() {
+        synchronized (this) {
+            if (!awake.isEmpty() || !dirty.isEmpty()) {
+                return false;
+            }
+        }
+        return robotController.isIdle();
+    }
+
+    /**
+     * @return the clock of the world, with the amount of ticks that have passed
+     */
+    public EventQueue getEvents() {
+        return events;
+    }
+
+    /*
+     * Stuurt de objecten die sinds de vorige keer veranderd zijn naar de views, op volgorde van de lijst
+     * met objecten. De buffers wisselen van plaats, zodat objecten die tijdens het versturen veranderen
+     * in de volgende tick meegaan. Eerst krijgen de veranderde objecten een nieuwe toestand en wordt de
+     * snapshot van deze tick neergezet, daarna pas gaan de berichten weg. Een view die tussendoor
+     * verbinding maakt, krijgt zo de berichten die hij mist in ieder geval in de snapshot mee.
+     */
+    private void publish() {
+        ChangeBuffer changed;
+        synchronized (this) {
+            changed = dirty;
+            dirty = publishing;
+            publishing = changed;
+        }
+        changed.sort();
+        for (int i = 0; i < changed.size(); i++) {
+            Object3D object = changed.get(i);
+            Entry entry = entries.get(object);
+            if (entry != null && ((ChangeTracked)object).takeDirty()) {
+                snapshots.update(entry.slot, object);
+                fired.add(entry);
+            }
+        }
+        changed.clear();
+        publishSnapshot();
+        try {
+            for (int i = 0; i < fired.size(); i++) {
+                pcs.firePropertyChange(fired.get(i).updateEvent);
+            }
+        } finally {
+            fired.clear();
+        }
+    }
+
+    /*
+     * Zet de snapshot van de huidige toestand neer voor de lezers, zie SnapshotPublisher. Is er sinds de
+     * vorige niets veranderd, dan blijft die staan. Trucks die rijden hebben zonder views geen dirty
+     * positie, hun toestand wordt hier bijgewerkt als ze verder gereden zijn.
+     */
+    private void publishSnapshot() {
+        for (int i = 0; i < lbc.truckList.size(); i++) {
+            Truck truck = lbc.truckList.get(i);
+            Entry entry = entries.get(truck);
+            if (entry != null && truck.isDriving() && snapshots.getZ(entry.slot) != truck.getZ()) {
+                snapshots.update(entry.slot, truck);
+            }
+        }
+        snapshots.publish(events.now(), robotController.getRacksDelivered(), lbc.getTrucksServed());
+    }
+
+    /**
+     * gives the state of all objects at the end of the last tick that changed something. it can be read
+     * from any thread without locking while the world keeps ticking, and does not change until it is
+     * closed, for example with try-with-resources. it must not be read after closing
+     * @return the latest snapshot, open for the caller
+     */
+    public WorldSnapshot acquireSnapshot() {
+        return snapshots.acquire();
+    }
+
+    private synchronized void add(Set<Object3D> set, Object3D object) {
+        if (entries.containsKey(object)) {
+            set.add(object);
+        }
+    }
+
+    private synchronized void addDirty(Object3D object) {
+        Entry entry = entries.get(object);
+        if (entry != null) {
+            dirty.add(object, entry.order);
+        }
+    }
+
+    /*
+     * Haalt alle objecten uit een set, op volgorde van de lijst met objecten.
+     */
+    private List<Object3D> take(Set<Object3D> set) {
+        List<Object3D> objects;
+        synchronized (this) {
+            objects = new ArrayList<>(set);
+            set.clear();
+        }
+        Collections.sort(objects, byOrder);
+        return objects;
+    }
+
+    /**
+     * @return amount of objects that will be updated in the next tick, the rest is asleep
+     */
+    public synchronized int getAwakeCount() {
+        return awake.size();
+    }
+
+    /*
+     * Zet parallel updaten aan of uit. Parallel gebruikt alle processors als er veel objecten zijn,
+     * de views krijgen dezelfde berichten als wanneer de objecten een voor een geupdate worden.
+     */
+    public void setParallelUpdate(boolean parallelUpdate) {
+        this.parallelUpdate = parallelUpdate;
+    }
+
+    /*
+     * Laat de routes en de parallelle updates op een pool draaien die met andere werelden gedeeld wordt,
+     * in plaats van de eigen pool van de planner. Moet aangeroepen worden voordat de wereld gaat ticken.
+     */
+    public void setWorkerPool(ForkJoinPool pool) {
+        BatchPlanner<Robot> old = robotController.getPlanner();
+        robotController.setPlanner(new BatchPlanner<Robot>(graph, pool));
+        updatePool = pool;
+        if (old.getPool() != pool) {
+            old.getPool().shutdown();
+        }
     }
 
     /*
@@ -115,18 +747,37 @@ public class World implements Model {
     }
 
     /*
-     * Deze methode geeft een lijst terug van alle objecten in de wereld. De lijst is echter wel
-     * van ProxyObject3D objecten, voor de veiligheid. Zo kan de informatie wel worden gedeeld, maar
-     * kan er niks aangepast worden.
+     * Deze methode geeft een lijst terug van alle objecten in de wereld. De lijst komt uit de laatste
+     * snapshot en bevat kopieen van de objecten, voor de veiligheid. Zo kan de informatie wel worden
+     * gedeeld, maar kan er niks aangepast worden. De lijst verandert niet, zodat de view er zonder lock
+     * doorheen kan lopen terwijl de wereld verder tickt, en alle posities zijn van dezelfde tick.
      */
     @Override
     public List<Object3D> getWorldObjectsAsList() {
-        ArrayList<Object3D> returnList = new ArrayList<>();
-
-        for(Object3D object : this.worldObjects) {
-            returnList.add(new ProxyObject3D(object));
+        try (WorldSnapshot snapshot = acquireSnapshot()) {
+            return snapshot.getObjects();
         }
+    }
+
+    /*
+     * Wat de wereld eenmalig per object maakt om het naar de views te sturen: het volgnummer, de proxy
+     * die de views krijgen en de berichten met die proxy erin. Een PropertyChangeEvent verandert niet,
+     * dus hetzelfde bericht kan elke tick opnieuw verstuurd worden. Daarnaast de plaats van het object in
+     * de snapshots.
+     */
+    private final class Entry {
+        private final int order;
+        private final ProxyObject3D proxy;
+        private final PropertyChangeEvent updateEvent;
+        private final PropertyChangeEvent removeEvent;
+        private final int slot;
 
-        return returnList;
+        private Entry(Object3D object, int order, int slot) {
+            this.order = order;
+            this.proxy = new ProxyObject3D(object);
+            this.updateEvent = new PropertyChangeEvent(World.this, Model.UPDATE_COMMAND, null, proxy);
+            this.removeEvent = new PropertyChangeEvent(World.this, Model.REMOVE_COMMAND, null, proxy);
+            this.slot = slot;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/*
+ * Deze class zet een World om in een compact binair checkpoint en terug. Het checkpoint begint met
+ * een vaste code en een versie, zodat een oud of kapot bestand herkend wordt in plaats van een halve
+ * wereld op te leveren. Wat er in staat beschrijft World.writeState. Een checkpoint maken kopieert
+ * alleen de toestand naar een byte array en kan dus tussen twee ticks gebeuren; het wegschrijven naar
+ * een bestand doet CheckpointFile op een eigen thread.
+ */
+public class WorldCheckpoint {
+    /** "AWCP" */
+    private static final int MAGIC = 0x41574350;
+    private static final int VERSION = 2;
+
+    private WorldCheckpoint() {
+    }
+
+    /**
+     * copies the state of the world into a checkpoint, to be called between two ticks
+     * @param world the world
+     * @return the checkpoint
+     */
+    public static byte[] capture(World world) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            world.writeState(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("het checkpoint van de wereld kon niet gemaakt worden", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * builds the world from a checkpoint made by {@link #capture}
+     * @param checkpoint the checkpoint
+     * @return the world, in the state it was in when the checkpoint was made
+     * @throws IOException when the checkpoint is not a checkpoint of this version
+     */
+    public static World restore(byte[] checkpoint) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(checkpoint))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("dit is geen checkpoint van een wereld");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("checkpoint versie " + version + " wordt niet ondersteund");
+            }
+            return World.readState(in);
+        }
+    }
+}
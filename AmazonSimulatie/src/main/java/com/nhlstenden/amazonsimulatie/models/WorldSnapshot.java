@@ -0,0 +1,255 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * een vaste kopie van alle objecten in de wereld aan het eind van een tick. de wereld zet na elke tick
+ * waarin iets veranderd is een nieuwe snapshot neer met een enkele volatile schrijfactie, zodat views,
+ * http endpoints en analyses hem zonder lock kunnen lezen terwijl de simulatie doortickt. een lezer
+ * haalt een snapshot op met {@link World#acquireSnapshot()} en sluit hem als hij klaar is, het liefst
+ * met try-with-resources. zolang de snapshot open is verandert hij niet; na het sluiten mag hij niet
+ * meer gelezen worden, want de wereld gebruikt de arrays dan opnieuw voor een volgende snapshot.
+ * elk object heeft een vaste plaats (slot). de posities staan in primitieve arrays in stukken van
+ * CHUNK_SIZE slots; een nieuwe snapshot kopieert alleen de stukken waarin iets veranderd is en deelt
+ * de rest met de vorige. een slot zonder object heeft geen uuid.
+ */
+public final class WorldSnapshot implements AutoCloseable {
+
+    static final int CHUNK_SHIFT = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /** waarden per slot in de chunks: positie en rotatie */
+    private static final int FIELDS = 6;
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int Z = 2;
+    private static final int ROTATION_X = 3;
+    private static final int ROTATION_Y = 4;
+    private static final int ROTATION_Z = 5;
+
+    /** aantal lezers dat de snapshot open heeft */
+    final AtomicInteger readers = new AtomicInteger();
+
+    /*
+     * Worden alleen geschreven door de thread die tickt, voordat de snapshot neergezet wordt, of nadat
+     * hij uit de roulatie is en geen lezer hem meer open heeft.
+     */
+    long version;
+    long tick;
+    int size;
+    int racksDelivered;
+    int trucksServed;
+    Chunk[] chunks = new Chunk[0];
+
+    WorldSnapshot() {
+    }
+
+    /** @return volgnummer van de snapshot, elke nieuwe snapshot van dezelfde wereld heeft een hoger nummer */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return de tick waarop de snapshot gemaakt is. een tick waarin niets veranderde geeft geen nieuwe
+     * snapshot, dan blijft deze staan
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /** @return aantal objecten */
+    public int size() {
+        return size;
+    }
+
+    /** @return aantal slots, de slots gaan van 0 tot dit aantal, niet in elk slot staat een object */
+    public int getSlotCount() {
+        return chunks.length << CHUNK_SHIFT;
+    }
+
+    /**
+     * @param slot een slot
+     * @return true als er in het slot een object staat
+     */
+    public boolean has(int slot) {
+        return getUUID(slot) != null;
+    }
+
+    /**
+     * @param slot een slot
+     * @return de uuid van het object in het slot, null als er geen object staat
+     */
+    public String getUUID(int slot) {
+        return chunks[slot >> CHUNK_SHIFT].uuids[slot & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * @param slot een slot
+     * @return het type van het object in het slot
+     */
+    public String getType(int slot) {
+        return chunks[slot >> CHUNK_SHIFT].types[slot & (CHUNK_SIZE - 1)];
+    }
+
+    public double getX(int slot) {
+        return value(slot, X);
+    }
+
+    public double getY(int slot) {
+        return value(slot, Y);
+    }
+
+    public double getZ(int slot) {
+        return value(slot, Z);
+    }
+
+    public double getRotationX(int slot) {
+        return value(slot, ROTATION_X);
+    }
+
+    public double getRotationY(int slot) {
+        return value(slot, ROTATION_Y);
+    }
+
+    public double getRotationZ(int slot) {
+        return value(slot, ROTATION_Z);
+    }
+
+    private double value(int slot, int field) {
+        return chunks[slot >> CHUNK_SHIFT].values[(slot & (CHUNK_SIZE - 1)) * FIELDS + field];
+    }
+
+    /**
+     * @return een kopie van alle objecten op volgorde van slot, die ook na het sluiten gebruikt kan worden
+     */
+    public List<Object3D> getObjects() {
+        List<Object3D> objects = new ArrayList<>(size);
+        for (int slot = 0, slots = getSlotCount(); slot < slots; slot++) {
+            if (has(slot)) {
+                objects.add(new ObjectState(this, slot));
+            }
+        }
+        return objects;
+    }
+
+    /** @return aantal rekken dat de robots tot deze tick afgeleverd hebben */
+    public int getRacksDelivered() {
+        return racksDelivered;
+    }
+
+    /** @return aantal trucks dat tot deze tick geladen en teruggestuurd is */
+    public int getTrucksServed() {
+        return trucksServed;
+    }
+
+    /**
+     * geeft de snapshot terug aan de wereld, daarna mag hij niet meer gelezen worden
+     */
+    @Override
+    public void close() {
+        readers.decrementAndGet();
+    }
+
+    /**
+     * een stuk van CHUNK_SIZE slots. een chunk wordt gedeeld door alle snapshots die hem hebben; het
+     * aantal daarvan staat in refs, dat alleen de thread die tickt bijhoudt
+     */
+    static final class Chunk {
+        final String[] uuids = new String[CHUNK_SIZE];
+        final String[] types = new String[CHUNK_SIZE];
+        final double[] values = new double[CHUNK_SIZE * FIELDS];
+        int refs;
+
+        void copyFrom(Chunk other) {
+            System.arraycopy(other.uuids, 0, uuids, 0, CHUNK_SIZE);
+            System.arraycopy(other.types, 0, types, 0, CHUNK_SIZE);
+            System.arraycopy(other.values, 0, values, 0, values.length);
+        }
+
+        void clear() {
+            Arrays.fill(uuids, null);
+            Arrays.fill(types, null);
+        }
+
+        /**
+         * schrijft de positie en rotatie van een object in een slot van deze chunk
+         */
+        void write(int index, Object3D object) {
+            int offset = index * FIELDS;
+            values[offset + X] = object.getX();
+            values[offset + Y] = object.getY();
+            values[offset + Z] = object.getZ();
+            values[offset + ROTATION_X] = object.getRotationX();
+            values[offset + ROTATION_Y] = object.getRotationY();
+            values[offset + ROTATION_Z] = object.getRotationZ();
+        }
+    }
+
+    /**
+     * de toestand van een object in een snapshot, gekopieerd zodat hij ook na het sluiten geldig blijft
+     */
+    private static final class ObjectState implements Object3D {
+        private final String uuid;
+        private final String type;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final double rotationX;
+        private final double rotationY;
+        private final double rotationZ;
+
+        private ObjectState(WorldSnapshot snapshot, int slot) {
+            this.uuid = snapshot.getUUID(slot);
+            this.type = snapshot.getType(slot);
+            this.x = snapshot.getX(slot);
+            this.y = snapshot.getY(slot);
+            this.z = snapshot.getZ(slot);
+            this.rotationX = snapshot.getRotationX(slot);
+            this.rotationY = snapshot.getRotationY(slot);
+            this.rotationZ = snapshot.getRotationZ(slot);
+        }
+
+        @Override
+        public String getUUID() {
+            return uuid;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public double getX() {
+            return x;
+        }
+
+        @Override
+        public double getY() {
+            return y;
+        }
+
+        @Override
+        public double getZ() {
+            return z;
+        }
+
+        @Override
+        public double getRotationX() {
+            return rotationX;
+        }
+
+        @Override
+        public double getRotationY() {
+            return rotationY;
+        }
+
+        @Override
+        public double getRotationZ() {
+            return rotationZ;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import com.nhlstenden.amazonsimulatie.models.EdgeWeighted;
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * compacte versie van de graaf in compressed sparse row vorm. nodes zijn int id's, de edges
+ * van node n staan op de plaatsen offsets[n] t/m offsets[n + 1] - 1 in targets en weights.
+ * alles staat in primitieve arrays, zodat een zoekopdracht geen objecten hoeft te volgen.
+ * het grid van 1000x1000 nodes uit PathfindingBenchmark, met 2,7 miljoen edges, kost 53 MB, zoals
+ * memoryBytes() het telt en de benchmark het laat zien.
+ * de structuur verandert niet, de gewichten en de bezetting wel. de inkomende edges per node
+ * worden pas gemaakt als iets ze nodig heeft.
+ */
+public class CompactGraph {
+
+    /** begin van de edges per node, lengte is aantal nodes + 1 */
+    private final int[] offsets;
+    /** eind node van elke edge */
+    private final int[] targets;
+    /** gewicht van elke edge */
+    private final int[] weights;
+    /** gewicht van elke edge toen de graaf gemaakt werd */
+    private final int[] baseWeights;
+    /** aantal edges waarvan het gewicht nu anders is dan in baseWeights */
+    private volatile int changedWeights;
+    /** x coordinaat per node */
+    private final int[] xs;
+    /** y coordinaat per node */
+    private final int[] ys;
+    /** of een node bezet is */
+    private final boolean[] occupied;
+    /** bezettingsversie waarop een node voor het laatst veranderd is */
+    private final long[] occupancyVersions;
+    /** het laagste gewicht per eenheid manhattan afstand over alle edges, voor de A* schatting */
+    private volatile int heuristicScale;
+
+    /** begin van de inkomende edges per node in inEdges, wordt pas gemaakt als nodig */
+    private int[] inOffsets;
+    /** begin node van de inkomende edges, op dezelfde plaats als in inEdges */
+    private int[] inSources;
+    /** index van de inkomende edges, per eind node achter elkaar */
+    private volatile int[] inEdges;
+
+    /**
+     * maakt een compacte graaf van arrays die al in CSR vorm staan
+     * @param offsets begin van de edges per node, lengte aantal nodes + 1
+     * @param targets eind node per edge
+     * @param weights gewicht per edge
+     * @param xs x coordinaat per node
+     * @param ys y coordinaat per node
+     */
+    public CompactGraph(int[] offsets, int[] targets, int[] weights, int[] xs, int[] ys){
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.baseWeights = weights.clone();
+        this.xs = xs;
+        this.ys = ys;
+        this.occupied = new boolean[xs.length];
+        this.occupancyVersions = new long[xs.length];
+
+        int scale = Integer.MAX_VALUE;
+        for (int node = 0; node < xs.length; node++){
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++){
+                int distance = Math.abs(xs[node] - xs[targets[edge]]) + Math.abs(ys[node] - ys[targets[edge]]);
+                if (distance > 0){
+                    scale = Math.min(scale, weights[edge] / distance);
+                }
+            }
+        }
+        this.heuristicScale = scale == Integer.MAX_VALUE ? 0 : scale;
+    }
+
+    /**
+     * bouwt een compacte graaf uit de nodes en edges van de graaf. de id van elke node moet
+     * gelijk zijn aan zijn plaats in de lijst.
+     * @param nodes de nodes op volgorde van id
+     * @return de compacte graaf
+     */
+    public static CompactGraph fromNodes(List<NodeWeighted> nodes){
+        int nodeCount = nodes.size();
+        int[] offsets = new int[nodeCount + 1];
+        int[] xs = new int[nodeCount];
+        int[] ys = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++){
+            NodeWeighted node = nodes.get(i);
+            offsets[i + 1] = offsets[i] + node.getEdges().size();
+            xs[i] = node.getX();
+            ys[i] = node.getY();
+        }
+
+        int[] targets = new int[offsets[nodeCount]];
+        int[] weights = new int[offsets[nodeCount]];
+        for (int i = 0; i < nodeCount; i++){
+            int edge = offsets[i];
+            for (EdgeWeighted e : nodes.get(i).getEdges()){
+                targets[edge] = e.getDestination().getId();
+                weights[edge] = e.getWeight();
+                edge++;
+            }
+        }
+
+        CompactGraph graph = new CompactGraph(offsets, targets, weights, xs, ys);
+        for (int i = 0; i < nodeCount; i++){
+            graph.occupied[i] = nodes.get(i).isOccupied();
+            graph.occupancyVersions[i] = nodes.get(i).getOccupancyVersion();
+        }
+        return graph;
+    }
+
+    /** @return aantal nodes */
+    public int nodeCount(){
+        return xs.length;
+    }
+
+    /** @return aantal (gerichte) edges */
+    public int edgeCount(){
+        return targets.length;
+    }
+
+    /**
+     * @param node node id
+     * @return index van de eerste edge van de node
+     */
+    public int firstEdge(int node){
+        return offsets[node];
+    }
+
+    /**
+     * @param node node id
+     * @return index na de laatste edge van de node
+     */
+    public int endEdge(int node){
+        return offsets[node + 1];
+    }
+
+    /**
+     * @param edge edge index
+     * @return eind node van de edge
+     */
+    public int target(int edge){
+        return targets[edge];
+    }
+
+    /**
+     * @param edge edge index
+     * @return gewicht van de edge
+     */
+    public int weight(int edge){
+        return weights[edge];
+    }
+
+    /**
+     * @param source begin node id
+     * @param target eind node id
+     * @return index van de edge van source naar target, of -1 als die er niet is
+     */
+    public int findEdge(int source, int target){
+        for (int edge = offsets[source]; edge < offsets[source + 1]; edge++){
+            if (targets[edge] == target){
+                return edge;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * verandert het gewicht van een edge. als het nieuwe gewicht lager is dan de A* schatting
+     * aanneemt wordt de schatting verlaagd, zodat deze de echte kosten niet overschat.
+     * @param edge edge index
+     * @param weight het nieuwe gewicht
+     * @return true als hierdoor de eerste edge een ander gewicht kreeg dan toen de graaf gemaakt werd,
+     * of de laatste edge weer zijn oude gewicht terugkreeg
+     */
+    public synchronized boolean setWeight(int edge, int weight){
+        boolean wasChanged = weights[edge] != baseWeights[edge];
+        boolean isChanged = weight != baseWeights[edge];
+        int before = changedWeights;
+        if (wasChanged != isChanged){
+            changedWeights += isChanged ? 1 : -1;
+        }
+        weights[edge] = weight;
+        int distance = manhattan(source(edge), targets[edge]);
+        if (distance > 0 && weight / distance < heuristicScale){
+            heuristicScale = weight / distance;
+        }
+        return (before == 0) != (changedWeights == 0);
+    }
+
+    /** @return aantal edges waarvan het gewicht anders is dan toen de graaf gemaakt werd */
+    public int changedWeightCount(){
+        return changedWeights;
+    }
+
+    /**
+     * zoekt de begin node van een edge op in de offsets, in O(log n)
+     * @param edge edge index
+     * @return begin node van de edge
+     */
+    public int source(int edge){
+        int low = 0;
+        int high = xs.length - 1;
+        while (low < high){
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= edge){
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param node node id
+     * @return index in de inkomende edges van de eerste edge naar de node
+     */
+    public int firstInEdge(int node){
+        buildReverseEdges();
+        return inOffsets[node];
+    }
+
+    /**
+     * @param node node id
+     * @return index na de laatste inkomende edge van de node
+     */
+    public int endInEdge(int node){
+        buildReverseEdges();
+        return inOffsets[node + 1];
+    }
+
+    /**
+     * @param index index tussen firstInEdge en endInEdge
+     * @return de edge index van de inkomende edge
+     */
+    public int inEdge(int index){
+        return inEdges[index];
+    }
+
+    /**
+     * @param index index tussen firstInEdge en endInEdge
+     * @return de begin node van de inkomende edge
+     */
+    public int inSource(int index){
+        return inSources[index];
+    }
+
+    /**
+     * maakt de inkomende edges per node, de eerste keer dat ze nodig zijn
+     */
+    private void buildReverseEdges(){
+        if (inEdges != null){
+            return;
+        }
+        synchronized (this){
+            if (inEdges != null){
+                return;
+            }
+            int nodeCount = xs.length;
+            int[] offsetsIn = new int[nodeCount + 1];
+            for (int edge = 0; edge < targets.length; edge++){
+                offsetsIn[targets[edge] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++){
+                offsetsIn[node + 1] += offsetsIn[node];
+            }
+            int[] fill = Arrays.copyOf(offsetsIn, nodeCount);
+            int[] edgesIn = new int[targets.length];
+            int[] sourcesIn = new int[targets.length];
+            for (int node = 0; node < nodeCount; node++){
+                for (int edge = offsets[node]; edge < offsets[node + 1]; edge++){
+                    int index = fill[targets[edge]]++;
+                    edgesIn[index] = edge;
+                    sourcesIn[index] = node;
+                }
+            }
+            inOffsets = offsetsIn;
+            inSources = sourcesIn;
+            inEdges = edgesIn;
+        }
+    }
+
+    /**
+     * @param node node id
+     * @return x coordinaat van de node
+     */
+    public int x(int node){
+        return xs[node];
+    }
+
+    /**
+     * @param node node id
+     * @return y coordinaat van de node
+     */
+    public int y(int node){
+        return ys[node];
+    }
+
+    /**
+     * @param node node id
+     * @return true als de node bezet is
+     */
+    public boolean isOccupied(int node){
+        return occupied[node];
+    }
+
+    /**
+     * @param node node id
+     * @param value of de node bezet is
+     * @param version de bezettingsversie van de verandering
+     */
+    public void setOccupied(int node, boolean value, long version){
+        occupied[node] = value;
+        occupancyVersions[node] = version;
+    }
+
+    /**
+     * markeert een node als veranderd zonder de bezetting te wijzigen, bijvoorbeeld omdat een edge
+     * naar de node een ander gewicht heeft. paden over de node in de route cache vervallen dan.
+     * @param node node id
+     * @param version de globale versie van de verandering
+     */
+    public void touch(int node, long version){
+        occupancyVersions[node] = version;
+    }
+
+    /**
+     * @param node node id
+     * @return de bezettingsversie waarop de node voor het laatst veranderd is
+     */
+    public long occupancyVersion(int node){
+        return occupancyVersions[node];
+    }
+
+    /**
+     * @return hoeveel de A* schatting per stap manhattan afstand mag rekenen zonder de echte kosten te overschatten
+     */
+    public int heuristicScale(){
+        return heuristicScale;
+    }
+
+    /**
+     * @param a node id
+     * @param b node id
+     * @return de manhattan afstand tussen de coordinaten van twee nodes
+     */
+    public int manhattan(int a, int b){
+        return Math.abs(xs[a] - xs[b]) + Math.abs(ys[a] - ys[b]);
+    }
+
+    /**
+     * @return geschat geheugengebruik van de arrays in bytes
+     */
+    public long memoryBytes(){
+        return 4L * (offsets.length + targets.length + weights.length + baseWeights.length + xs.length + ys.length)
+                + occupied.length + 8L * occupancyVersions.length;
+    }
+}
@@ -0,0 +1,272 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * plant paden voor meerdere robots die elkaar niet mogen raken (windowed cooperative A*).
+ * robots plannen na elkaar. elk pad wordt voor de komende window ticks in een
+ * {@link ReservationTable} gezet, en een robot die daarna plant zoekt door ruimte en tijd:
+ * hij mag wachten en mag door een node rijden die op dat moment niet gereserveerd is.
+ * robots die zo plannen zetten hun eigen node dus niet op bezet; bezette nodes in de graaf
+ * gelden als vaste obstakels. een robot moet opnieuw plannen voordat zijn venster op is,
+ * anders vervallen zijn reserveringen. alle methodes zijn synchronized.
+ */
+public class CooperativePlanner {
+
+    /** de graaf waarop gepland wordt */
+    private final CompactGraph graph;
+    /** aantal ticks vooruit dat een robot plant en reserveert */
+    private final int window;
+    /** reserveringen van alle robots */
+    private final ReservationTable reservations = new ReservationTable();
+    /** het huidige pad per robot */
+    private final Map<Integer, TimedPath> plans = new HashMap<>();
+    /** tellers van de zoekopdrachten */
+    private final SearchStatistics statistics = new SearchStatistics();
+
+    /** (tijd, node) naar index van de toestand in de arrays hieronder */
+    private final LongIntHashMap stateIndex = new LongIntHashMap(1024);
+    private int[] stateNode = new int[1024];
+    private int[] stateTime = new int[1024];
+    private int[] stateParent = new int[1024];
+    private int[] stateCost = new int[1024];
+    private boolean[] stateClosed = new boolean[1024];
+    private int stateCount;
+
+    /** open lijst, (f << 32) | toestand */
+    private long[] open = new long[1024];
+    private int openSize;
+
+    /**
+     * @param graph de graaf waarop gepland wordt
+     * @param window aantal ticks vooruit dat een robot plant en reserveert
+     */
+    public CooperativePlanner(CompactGraph graph, int window){
+        this.graph = graph;
+        this.window = window;
+    }
+
+    /** @return de graaf waarop gepland wordt */
+    public CompactGraph getGraph(){
+        return graph;
+    }
+
+    /** @return aantal ticks vooruit dat een robot plant */
+    public int getWindow(){
+        return window;
+    }
+
+    /** @return tellers van de zoekopdrachten */
+    public SearchStatistics getStatistics(){
+        return statistics;
+    }
+
+    /**
+     * @param robot id van de robot
+     * @return het huidige pad van de robot, of null
+     */
+    public synchronized TimedPath getPlan(int robot){
+        return plans.get(robot);
+    }
+
+    /**
+     * @param node node id
+     * @param tick de tick
+     * @return de robot die de node op die tick gereserveerd heeft, of ReservationTable.NONE
+     */
+    public synchronized int holder(int node, int tick){
+        return reservations.holder(node, tick);
+    }
+
+    /** @return aantal reserveringen */
+    public synchronized int reservationCount(){
+        return reservations.size();
+    }
+
+    /**
+     * plant een pad voor een robot voor de komende window ticks en reserveert het. het vorige
+     * pad van de robot wordt eerst vrijgegeven.
+     * @param robot id van de robot, 0 of hoger
+     * @param start de node waar de robot op startTick staat
+     * @param goal de node waar de robot heen moet
+     * @param startTick de huidige tick
+     * @return het geplande pad. als het venster niet gevuld kan worden loopt het pad tot de
+     * laatste tick die wel gehaald kan worden, en moet de robot op die tick opnieuw plannen
+     */
+    public synchronized TimedPath plan(int robot, int start, int goal, int startTick){
+        release(robot);
+
+        int scale = graph.heuristicScale();
+        beginSearch();
+        addState(start, 0, -1, 0, scale * graph.manhattan(start, goal));
+
+        int expanded = 0;
+        int terminal = -1;
+        int deepest = 0;
+        while (openSize > 0){
+            int state = (int) pollOpen();
+            if (stateClosed[state]){
+                continue;
+            }
+            stateClosed[state] = true;
+            expanded++;
+
+            int node = stateNode[state];
+            int time = stateTime[state];
+            if (time > stateTime[deepest]){
+                deepest = state;
+            }
+            if ((node == goal && canPark(robot, goal, startTick + time, startTick + window)) || time == window){
+                terminal = state;
+                break;
+            }
+
+            int tick = startTick + time;
+            int cost = stateCost[state];
+            if (reservations.isFree(node, tick + 1, robot)){
+                addState(node, time + 1, state, cost + 1, scale * graph.manhattan(node, goal));
+            }
+            for (int edge = graph.firstEdge(node), last = graph.endEdge(node); edge < last; edge++){
+                int next = graph.target(edge);
+                if (graph.isOccupied(next) || !reservations.isFree(next, tick + 1, robot)){
+                    continue;
+                }
+                // twee robots mogen niet van plaats wisselen over dezelfde edge
+                int other = reservations.holder(next, tick);
+                if (other != ReservationTable.NONE && other != robot && reservations.holder(node, tick + 1) == other){
+                    continue;
+                }
+                addState(next, time + 1, state, cost + graph.weight(edge), scale * graph.manhattan(next, goal));
+            }
+        }
+
+        TimedPath path = buildPath(terminal >= 0 ? terminal : deepest, goal, startTick);
+        statistics.record(expanded, path.reachesGoal());
+        for (int tick = path.getStartTick(); tick <= path.getEndTick(); tick++){
+            reservations.reserve(path.nodeAt(tick), tick, robot);
+        }
+        plans.put(robot, path);
+        return path;
+    }
+
+    /**
+     * geeft het pad en de reserveringen van een robot vrij
+     * @param robot id van de robot
+     */
+    public synchronized void release(int robot){
+        TimedPath old = plans.remove(robot);
+        if (old != null){
+            for (int tick = old.getStartTick(); tick <= old.getEndTick(); tick++){
+                reservations.release(old.nodeAt(tick), tick, robot);
+            }
+        }
+    }
+
+    /**
+     * een robot mag alleen op het doel stoppen als niemand het doel tot het eind van het venster nodig heeft
+     */
+    private boolean canPark(int robot, int goal, int fromTick, int lastTick){
+        for (int tick = fromTick; tick <= lastTick; tick++){
+            if (!reservations.isFree(goal, tick, robot)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * maakt het pad naar een eindtoestand. een robot die op zijn doel aankomt blijft daar
+     * tot het eind van het venster staan.
+     */
+    private TimedPath buildPath(int terminal, int goal, int startTick){
+        boolean atGoal = stateNode[terminal] == goal;
+        int length = atGoal ? window + 1 : stateTime[terminal] + 1;
+        int[] nodes = new int[length];
+        Arrays.fill(nodes, stateNode[terminal]);
+        for (int state = terminal; state != -1; state = stateParent[state]){
+            nodes[stateTime[state]] = stateNode[state];
+        }
+        return new TimedPath(startTick, nodes, atGoal);
+    }
+
+    private void beginSearch(){
+        stateIndex.clear();
+        stateCount = 0;
+        openSize = 0;
+    }
+
+    /**
+     * voegt een toestand toe of verlaagt de kosten van een bestaande toestand
+     */
+    private void addState(int node, int time, int parent, int cost, int estimate){
+        long key = (long) time * graph.nodeCount() + node;
+        int state = stateIndex.get(key, -1);
+        if (state >= 0){
+            if (stateClosed[state] || cost >= stateCost[state]){
+                return;
+            }
+        } else {
+            state = stateCount++;
+            if (state == stateNode.length){
+                growStates();
+            }
+            stateIndex.put(key, state);
+            stateNode[state] = node;
+            stateTime[state] = time;
+            stateClosed[state] = false;
+        }
+        stateParent[state] = parent;
+        stateCost[state] = cost;
+        pushOpen(((long) (cost + estimate) << 32) | state);
+    }
+
+    private void growStates(){
+        int capacity = stateNode.length * 2;
+        stateNode = Arrays.copyOf(stateNode, capacity);
+        stateTime = Arrays.copyOf(stateTime, capacity);
+        stateParent = Arrays.copyOf(stateParent, capacity);
+        stateCost = Arrays.copyOf(stateCost, capacity);
+        stateClosed = Arrays.copyOf(stateClosed, capacity);
+    }
+
+    private void pushOpen(long value){
+        if (openSize == open.length){
+            open = Arrays.copyOf(open, openSize * 2);
+        }
+        int index = openSize++;
+        while (index > 0){
+            int parent = (index - 1) >>> 1;
+            if (open[parent] <= value){
+                break;
+            }
+            open[index] = open[parent];
+            index = parent;
+        }
+        open[index] = value;
+    }
+
+    /** @return de toestand met de laagste f, de f zelf valt weg */
+    private long pollOpen(){
+        long top = open[0];
+        long last = open[--openSize];
+        int index = 0;
+        int half = openSize >>> 1;
+        while (index < half){
+            int child = 2 * index + 1;
+            if (child + 1 < openSize && open[child + 1] < open[child]){
+                child++;
+            }
+            if (open[child] >= last){
+                break;
+            }
+            open[index] = open[child];
+            index = child;
+        }
+        if (openSize > 0){
+            open[index] = last;
+        }
+        return top & 0xffffffffL;
+    }
+}
@@ -0,0 +1,416 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * D* Lite voor één robot. zoekt achteruit vanaf het doel en houdt per node de afstand tot het doel
+ * bij (g) en een vooruitblik op die afstand via de buren (rhs). als een node van bezetting verandert
+ * of een edge een ander gewicht krijgt worden alleen de nodes die daardoor een andere afstand
+ * krijgen opnieuw uitgerekend, in plaats van opnieuw te zoeken vanaf de start.
+ * veranderingen worden met {@link #nodeChanged(int)} en {@link #edgeChanged(int)} doorgegeven en
+ * bij de volgende aanroep van {@link #path()} verwerkt. alleen nodes die de zoekopdracht heeft
+ * bekeken krijgen een plaats in het geheugen. alle methodes zijn synchronized.
+ */
+public class DStarLite {
+
+    /** afstand als er geen pad is */
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    /** de graaf */
+    private CompactGraph graph;
+    /** de node waar de robot nu staat */
+    private int start;
+    /** de node waar de robot stond toen km voor het laatst bijgewerkt is */
+    private int last;
+    /** het doel */
+    private final int goal;
+    /** opgetelde schatting van de afstand die de robot al gereden heeft, houdt de sleutels in de heap geldig */
+    private int km;
+    /** de schaal van de schatting waarmee de sleutels berekend zijn */
+    private int scale;
+
+    /** node naar plaats in de arrays hieronder */
+    private final LongIntHashMap stateIndex = new LongIntHashMap(64);
+    private int[] stateNode = new int[64];
+    private int[] g = new int[64];
+    private int[] rhs = new int[64];
+    /** sleutel waarmee de node in de heap hoort te staan, -1 als de node niet in de heap staat */
+    private long[] queued = new long[64];
+    private int stateCount;
+
+    /** heap met (sleutel, toestand), oude items worden overgeslagen als de sleutel niet meer klopt */
+    private long[] heapKeys = new long[64];
+    private int[] heapStates = new int[64];
+    private int heapSize;
+
+    /** nodes waarvan de bezetting veranderd is sinds de laatste zoekopdracht */
+    private int[] changedNodes = new int[16];
+    private int changedNodeCount;
+    /** edges waarvan het gewicht veranderd is sinds de laatste zoekopdracht */
+    private int[] changedEdges = new int[16];
+    private int changedEdgeCount;
+
+    /** aantal uitgebreide nodes in de laatste aanroep van path */
+    private int lastExpanded;
+
+    /**
+     * @param graph de graaf
+     * @param start de node waar de robot staat
+     * @param goal het doel
+     */
+    public DStarLite(CompactGraph graph, int start, int goal){
+        this.graph = graph;
+        this.start = start;
+        this.goal = goal;
+        initialize();
+    }
+
+    /** @return de graaf waarop gezocht wordt */
+    public synchronized CompactGraph getGraph(){
+        return graph;
+    }
+
+    /** @return de node waar de robot staat */
+    public synchronized int getStart(){
+        return start;
+    }
+
+    /** @return het doel */
+    public int getGoal(){
+        return goal;
+    }
+
+    /** @return aantal uitgebreide nodes in de laatste aanroep van path */
+    public synchronized int getLastExpanded(){
+        return lastExpanded;
+    }
+
+    /** @return aantal nodes waarvoor een afstand onthouden wordt */
+    public synchronized int stateCount(){
+        return stateCount;
+    }
+
+    /**
+     * begint opnieuw op een andere graaf, bijvoorbeeld als de graaf opnieuw gebouwd is
+     * @param graph de nieuwe graaf, met dezelfde node id's
+     */
+    public synchronized void reset(CompactGraph graph){
+        this.graph = graph;
+        initialize();
+    }
+
+    /**
+     * de robot is naar een andere node gereden
+     * @param node de node waar de robot nu staat
+     */
+    public synchronized void moveTo(int node){
+        start = node;
+    }
+
+    /**
+     * de bezetting van een node is veranderd, alle edges naar die node hebben andere kosten
+     * @param node node id
+     */
+    public synchronized void nodeChanged(int node){
+        changedNodes = push(changedNodes, changedNodeCount++, node);
+    }
+
+    /**
+     * het gewicht van een edge is veranderd
+     * @param edge edge index in de graaf
+     */
+    public synchronized void edgeChanged(int edge){
+        changedEdges = push(changedEdges, changedEdgeCount++, edge);
+    }
+
+    /**
+     * verwerkt de veranderingen sinds de vorige aanroep en geeft het kortste pad vanaf de huidige node
+     * @return het kortste pad naar het doel, of notFound
+     */
+    public synchronized PathResult path(){
+        lastExpanded = 0;
+        if (scale != graph.heuristicScale()){
+            // met een andere schatting kloppen de sleutels in de heap niet meer
+            initialize();
+        }
+        km += h(last, start);
+        last = start;
+
+        for (int i = 0; i < changedNodeCount; i++){
+            int node = changedNodes[i];
+            for (int in = graph.firstInEdge(node), end = graph.endInEdge(node); in < end; in++){
+                repair(graph.inSource(in));
+            }
+        }
+        for (int i = 0; i < changedEdgeCount; i++){
+            repair(graph.source(changedEdges[i]));
+        }
+        changedNodeCount = 0;
+        changedEdgeCount = 0;
+
+        computeShortestPath();
+        return extractPath();
+    }
+
+    private void initialize(){
+        stateIndex.clear();
+        stateCount = 0;
+        heapSize = 0;
+        km = 0;
+        last = start;
+        scale = graph.heuristicScale();
+        changedNodeCount = 0;
+        changedEdgeCount = 0;
+        int state = state(goal);
+        rhs[state] = 0;
+        enqueue(state);
+    }
+
+    /**
+     * rekent de vooruitblik van een node opnieuw uit nadat de kosten van zijn edges veranderd zijn
+     */
+    private void repair(int node){
+        int state = stateIndex.get(node, -1);
+        // een node die nog nooit bekeken is heeft geen buur met een bekende afstand
+        if (state < 0 || node == goal){
+            return;
+        }
+        rhs[state] = bestSuccessor(node);
+        updateVertex(state);
+    }
+
+    private void computeShortestPath(){
+        while (true){
+            long top = peek();
+            int startState = stateIndex.get(start, -1);
+            long startKey = startState < 0 ? Long.MAX_VALUE : key(startState);
+            boolean startInconsistent = startState >= 0 && rhs[startState] > g[startState];
+            if (top == Long.MAX_VALUE || (top >= startKey && !startInconsistent)){
+                return;
+            }
+
+            int state = heapStates[0];
+            popHeap();
+            long newKey = key(state);
+            if (top < newKey){
+                queued[state] = newKey;
+                pushHeap(newKey, state);
+                continue;
+            }
+            queued[state] = -1;
+            lastExpanded++;
+
+            int node = stateNode[state];
+            if (g[state] > rhs[state]){
+                g[state] = rhs[state];
+                for (int in = graph.firstInEdge(node), end = graph.endInEdge(node); in < end; in++){
+                    int predecessor = graph.inSource(in);
+                    if (predecessor == goal){
+                        continue;
+                    }
+                    int previous = state(predecessor);
+                    int cost = add(cost(graph.inEdge(in), node), g[state]);
+                    if (cost < rhs[previous]){
+                        rhs[previous] = cost;
+                        updateVertex(previous);
+                    }
+                }
+            } else {
+                int oldG = g[state];
+                g[state] = INFINITE;
+                if (node != goal){
+                    rhs[state] = bestSuccessor(node);
+                }
+                updateVertex(state);
+                for (int in = graph.firstInEdge(node), end = graph.endInEdge(node); in < end; in++){
+                    int predecessor = graph.inSource(in);
+                    if (predecessor == goal){
+                        continue;
+                    }
+                    int previous = state(predecessor);
+                    if (rhs[previous] == add(cost(graph.inEdge(in), node), oldG)){
+                        rhs[previous] = bestSuccessor(predecessor);
+                        updateVertex(previous);
+                    }
+                }
+            }
+        }
+    }
+
+    private PathResult extractPath(){
+        int startState = stateIndex.get(start, -1);
+        if (startState < 0 || rhs[startState] == INFINITE){
+            return PathResult.notFound();
+        }
+        int[] nodes = new int[16];
+        int length = 0;
+        int cost = 0;
+        int node = start;
+        nodes[length++] = node;
+        while (node != goal){
+            int bestEdge = -1;
+            int best = INFINITE;
+            for (int edge = graph.firstEdge(node), end = graph.endEdge(node); edge < end; edge++){
+                int value = add(cost(edge, graph.target(edge)), g(graph.target(edge)));
+                if (value < best){
+                    best = value;
+                    bestEdge = edge;
+                }
+            }
+            if (bestEdge < 0 || length > graph.nodeCount()){
+                return PathResult.notFound();
+            }
+            cost += graph.weight(bestEdge);
+            node = graph.target(bestEdge);
+            if (length == nodes.length){
+                nodes = Arrays.copyOf(nodes, length * 2);
+            }
+            nodes[length++] = node;
+        }
+        return new PathResult(Arrays.copyOf(nodes, length), cost);
+    }
+
+    /**
+     * @return de laagste kosten via een buur naar het doel
+     */
+    private int bestSuccessor(int node){
+        int best = INFINITE;
+        for (int edge = graph.firstEdge(node), end = graph.endEdge(node); edge < end; edge++){
+            best = Math.min(best, add(cost(edge, graph.target(edge)), g(graph.target(edge))));
+        }
+        return best;
+    }
+
+    private void updateVertex(int state){
+        if (g[state] != rhs[state]){
+            long key = key(state);
+            if (queued[state] != key){
+                queued[state] = key;
+                pushHeap(key, state);
+            }
+        } else {
+            queued[state] = -1;
+        }
+    }
+
+    private void enqueue(int state){
+        queued[state] = key(state);
+        pushHeap(queued[state], state);
+    }
+
+    /**
+     * kosten om over een edge naar target te rijden, bezette nodes kunnen niet betreden worden
+     */
+    private int cost(int edge, int target){
+        return graph.isOccupied(target) ? INFINITE : graph.weight(edge);
+    }
+
+    private int h(int a, int b){
+        return scale * graph.manhattan(a, b);
+    }
+
+    /**
+     * de sleutel van een node: eerst min(g, rhs) + schatting + km, bij gelijkspel min(g, rhs)
+     */
+    private long key(int state){
+        int value = Math.min(g[state], rhs[state]);
+        if (value == INFINITE){
+            return Long.MAX_VALUE;
+        }
+        long first = (long) value + h(start, stateNode[state]) + km;
+        return (first << 32) | value;
+    }
+
+    private int g(int node){
+        int state = stateIndex.get(node, -1);
+        return state < 0 ? INFINITE : g[state];
+    }
+
+    private static int add(int a, int b){
+        return a == INFINITE || b == INFINITE ? INFINITE : a + b;
+    }
+
+    /**
+     * @return de plaats van de node in de arrays, nieuwe nodes krijgen g = rhs = oneindig
+     */
+    private int state(int node){
+        int state = stateIndex.get(node, -1);
+        if (state >= 0){
+            return state;
+        }
+        state = stateCount++;
+        if (state == stateNode.length){
+            int capacity = state * 2;
+            stateNode = Arrays.copyOf(stateNode, capacity);
+            g = Arrays.copyOf(g, capacity);
+            rhs = Arrays.copyOf(rhs, capacity);
+            queued = Arrays.copyOf(queued, capacity);
+        }
+        stateIndex.put(node, state);
+        stateNode[state] = node;
+        g[state] = INFINITE;
+        rhs[state] = INFINITE;
+        queued[state] = -1;
+        return state;
+    }
+
+    /**
+     * @return de laagste geldige sleutel in de heap, Long.MAX_VALUE als de heap leeg is
+     */
+    private long peek(){
+        while (heapSize > 0 && queued[heapStates[0]] != heapKeys[0]){
+            popHeap();
+        }
+        return heapSize == 0 ? Long.MAX_VALUE : heapKeys[0];
+    }
+
+    private void pushHeap(long key, int state){
+        if (heapSize == heapKeys.length){
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapStates = Arrays.copyOf(heapStates, heapSize * 2);
+        }
+        int index = heapSize++;
+        while (index > 0){
+            int parent = (index - 1) >>> 1;
+            if (heapKeys[parent] <= key){
+                break;
+            }
+            heapKeys[index] = heapKeys[parent];
+            heapStates[index] = heapStates[parent];
+            index = parent;
+        }
+        heapKeys[index] = key;
+        heapStates[index] = state;
+    }
+
+    private void popHeap(){
+        long key = heapKeys[--heapSize];
+        int state = heapStates[heapSize];
+        int index = 0;
+        int half = heapSize >>> 1;
+        while (index < half){
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]){
+                child++;
+            }
+            if (heapKeys[child] >= key){
+                break;
+            }
+            heapKeys[index] = heapKeys[child];
+            heapStates[index] = heapStates[child];
+            index = child;
+        }
+        if (heapSize > 0){
+            heapKeys[index] = key;
+            heapStates[index] = state;
+        }
+    }
+
+    private static int[] push(int[] values, int index, int value){
+        if (index == values.length){
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[index] = value;
+        return values;
+    }
+}
@@ -0,0 +1,111 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * dijkstra en A* op een {@link CompactGraph}. alle zoekstatus staat in een {@link SearchWorkspace},
+ * de graaf zelf wordt niet aangepast. meerdere threads kunnen dus tegelijk op dezelfde graaf
+ * zoeken, zolang elke thread zijn eigen workspace gebruikt.
+ */
+public final class GraphSearch {
+
+    private GraphSearch(){
+    }
+
+    /**
+     * zoekt het kortste pad van start naar end. bezette nodes worden nooit betreden, de start node
+     * mag wel bezet zijn.
+     * @param graph de graaf
+     * @param start start node id
+     * @param end eind node id
+     * @param useHeuristic true voor A* met de manhattan afstand, false voor dijkstra
+     * @param workspace workspace met minstens graph.nodeCount() plaatsen
+     * @return het gevonden pad, of notFound. het aantal uitgebreide nodes staat daarna in de workspace
+     */
+    public static PathResult shortestPath(CompactGraph graph, int start, int end, boolean useHeuristic,
+                                          SearchWorkspace workspace){
+        int scale = useHeuristic ? graph.heuristicScale() : 0;
+        IndexedMinHeap heap = workspace.heap();
+
+        workspace.begin();
+        workspace.reach(start, 0, -1);
+        heap.offer(start, scale * graph.manhattan(start, end));
+
+        while (!heap.isEmpty()){
+            int current = heap.poll();
+            workspace.settle(current);
+
+            if (current == end){
+                return workspace.pathTo(end);
+            }
+
+            int currentDistance = workspace.distance(current);
+            for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++){
+                int next = graph.target(edge);
+                if (workspace.isSettled(next) || graph.isOccupied(next)){
+                    continue;
+                }
+
+                int newDistance = currentDistance + graph.weight(edge);
+                if (newDistance < workspace.distance(next)){
+                    workspace.reach(next, newDistance, current);
+                    heap.offer(next, newDistance + scale * graph.manhattan(next, end));
+                }
+            }
+        }
+        return PathResult.notFound();
+    }
+
+    /**
+     * zoekt met één keer dijkstra de k doelen die vanaf start het dichtst bij liggen, in plaats van een
+     * zoekopdracht per doel. stopt zodra er k doelen uitgebreid zijn. bezette nodes worden nooit
+     * betreden, de start node mag wel bezet zijn.
+     * @param graph de graaf
+     * @param start start node id
+     * @param targets de node id's van de doelen
+     * @param k hoeveel doelen er hoogstens gezocht worden
+     * @param workspace workspace met minstens graph.nodeCount() plaatsen
+     * @return de paden naar de gevonden doelen, van kort naar lang, hoogstens k en leeg als er geen doel
+     * bereikbaar is. het aantal uitgebreide nodes staat daarna in de workspace
+     */
+    public static PathResult[] nearest(CompactGraph graph, int start, BitSet targets, int k, SearchWorkspace workspace){
+        PathResult[] found = new PathResult[Math.max(0, Math.min(k, targets.cardinality()))];
+        IndexedMinHeap heap = workspace.heap();
+        int count = 0;
+
+        workspace.begin();
+        if (found.length == 0){
+            return found;
+        }
+        workspace.reach(start, 0, -1);
+        heap.offer(start, 0);
+
+        while (!heap.isEmpty()){
+            int current = heap.poll();
+            workspace.settle(current);
+
+            if (targets.get(current)){
+                found[count++] = workspace.pathTo(current);
+                if (count == found.length){
+                    return found;
+                }
+            }
+
+            int currentDistance = workspace.distance(current);
+            for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++){
+                int next = graph.target(edge);
+                if (workspace.isSettled(next) || graph.isOccupied(next)){
+                    continue;
+                }
+
+                int newDistance = currentDistance + graph.weight(edge);
+                if (newDistance < workspace.distance(next)){
+                    workspace.reach(next, newDistance, current);
+                    heap.offer(next, newDistance);
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
@@ -0,0 +1,215 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * legt de nodes van een {@link CompactGraph} op een rooster, zodat {@link JumpPointSearch} met
+ * cellen en richtingen kan rekenen in plaats van met edges. dat kan alleen als elke node een eigen
+ * coordinaat heeft en alle edges even zwaar zijn, in beide richtingen bestaan en tussen twee buren
+ * op het rooster lopen. anders is {@link #isUniformGrid()} false. zolang een edge een ander gewicht
+ * heeft dan toen de compacte graaf gemaakt werd, bijvoorbeeld door drukte, is het ook geen rooster.
+ * richting 0 en 1 liggen langs de as met de meeste edges, richting 2 en 3 dwars daarop.
+ */
+public class GridIndex {
+
+    /** cel zonder node */
+    public static final int NO_NODE = -1;
+
+    /** een rooster mag hoogstens zoveel cellen per node hebben, anders kost het te veel geheugen */
+    private static final int MAX_CELLS_PER_NODE = 4;
+
+    /** de graaf */
+    private final CompactGraph graph;
+    /** of de graaf een rooster met gelijke gewichten is */
+    private final boolean uniformGrid;
+    /** kleinste x coordinaat */
+    private final int minX;
+    /** kleinste y coordinaat */
+    private final int minY;
+    /** aantal cellen langs de y as */
+    private final int height;
+    /** node id per cel, cel = (x - minX) * height + (y - minY) */
+    private final int[] cells;
+    /** per cel een bit per richting waarin een edge loopt */
+    private final byte[] moves;
+    /** verschil in cel index per richting */
+    private final int[] steps;
+    /** richting 0 t/m 3 per richting +x, -x, +y, -y */
+    private final int[] directions;
+    /** gewicht van elke edge */
+    private final int weight;
+
+    private GridIndex(CompactGraph graph, boolean uniformGrid, int minX, int minY, int height, int[] cells,
+                      byte[] moves, int[] steps, int[] directions, int weight){
+        this.graph = graph;
+        this.uniformGrid = uniformGrid;
+        this.minX = minX;
+        this.minY = minY;
+        this.height = height;
+        this.cells = cells;
+        this.moves = moves;
+        this.steps = steps;
+        this.directions = directions;
+        this.weight = weight;
+    }
+
+    /**
+     * maakt het rooster van een graaf, kost O(nodes + edges)
+     * @param graph de graaf
+     * @return het rooster, of een index waarvan isUniformGrid() false is
+     */
+    public static GridIndex of(CompactGraph graph){
+        int nodeCount = graph.nodeCount();
+        // de controller bouwt het rooster pas opnieuw als alle gewichten terug zijn, dus tot dan geen rooster
+        if (nodeCount == 0 || graph.changedWeightCount() > 0){
+            return notAGrid(graph);
+        }
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int node = 0; node < nodeCount; node++){
+            minX = Math.min(minX, graph.x(node));
+            minY = Math.min(minY, graph.y(node));
+            maxX = Math.max(maxX, graph.x(node));
+            maxY = Math.max(maxY, graph.y(node));
+        }
+        int height = maxY - minY + 1;
+        long area = (long) (maxX - minX + 1) * height;
+        if (area > (long) MAX_CELLS_PER_NODE * nodeCount){
+            return notAGrid(graph);
+        }
+
+        int[] cells = new int[(int) area];
+        Arrays.fill(cells, NO_NODE);
+        for (int node = 0; node < nodeCount; node++){
+            int cell = (graph.x(node) - minX) * height + graph.y(node) - minY;
+            if (cells[cell] != NO_NODE){
+                return notAGrid(graph);
+            }
+            cells[cell] = node;
+        }
+
+        // eerst de bits voor +x, -x, +y, -y, daarna omnummeren zodat 0 en 1 langs de drukste as liggen
+        byte[] moves = new byte[cells.length];
+        int weight = -1;
+        int alongX = 0;
+        int alongY = 0;
+        for (int node = 0; node < nodeCount; node++){
+            int cell = (graph.x(node) - minX) * height + graph.y(node) - minY;
+            for (int edge = graph.firstEdge(node), last = graph.endEdge(node); edge < last; edge++){
+                int dx = graph.x(graph.target(edge)) - graph.x(node);
+                int dy = graph.y(graph.target(edge)) - graph.y(node);
+                if (Math.abs(dx) + Math.abs(dy) != 1 || graph.weight(edge) <= 0
+                        || (weight != -1 && graph.weight(edge) != weight)){
+                    return notAGrid(graph);
+                }
+                weight = graph.weight(edge);
+                int raw = dx == 1 ? 0 : dx == -1 ? 1 : dy == 1 ? 2 : 3;
+                moves[cell] |= 1 << raw;
+                if (dx != 0){
+                    alongX++;
+                } else {
+                    alongY++;
+                }
+            }
+        }
+
+        int[] directions = alongX >= alongY ? new int[]{0, 1, 2, 3} : new int[]{2, 3, 0, 1};
+        int[] rawSteps = {height, -height, 1, -1};
+        int[] steps = new int[4];
+        for (int raw = 0; raw < 4; raw++){
+            steps[directions[raw]] = rawSteps[raw];
+        }
+        for (int cell = 0; cell < moves.length; cell++){
+            int bits = moves[cell];
+            int mapped = 0;
+            for (int raw = 0; raw < 4; raw++){
+                if ((bits & (1 << raw)) != 0){
+                    mapped |= 1 << directions[raw];
+                }
+            }
+            moves[cell] = (byte) mapped;
+        }
+
+        // elke edge moet ook terug bestaan
+        for (int cell = 0; cell < moves.length; cell++){
+            for (int direction = 0; direction < 4; direction++){
+                if ((moves[cell] & (1 << direction)) != 0
+                        && (moves[cell + steps[direction]] & (1 << opposite(direction))) == 0){
+                    return notAGrid(graph);
+                }
+            }
+        }
+        return new GridIndex(graph, true, minX, minY, height, cells, moves, steps, directions, weight);
+    }
+
+    private static GridIndex notAGrid(CompactGraph graph){
+        return new GridIndex(graph, false, 0, 0, 0, null, null, null, null, 0);
+    }
+
+    /**
+     * @param direction een richting
+     * @return de tegenovergestelde richting
+     */
+    public static int opposite(int direction){
+        return direction ^ 1;
+    }
+
+    /** @return de graaf waarvan dit het rooster is */
+    public CompactGraph getGraph(){
+        return graph;
+    }
+
+    /** @return true als alle nodes op een rooster liggen met gelijke gewichten */
+    public boolean isUniformGrid(){
+        return uniformGrid;
+    }
+
+    /** @return het gewicht van elke edge */
+    public int getWeight(){
+        return weight;
+    }
+
+    /**
+     * @param node node id
+     * @return de cel van de node
+     */
+    public int cell(int node){
+        return (graph.x(node) - minX) * height + graph.y(node) - minY;
+    }
+
+    /**
+     * @param cell een cel
+     * @return de node in de cel, of NO_NODE
+     */
+    public int node(int cell){
+        return cells[cell];
+    }
+
+    /**
+     * @param direction een richting
+     * @return het verschil in cel index van een stap in die richting
+     */
+    public int step(int direction){
+        return steps[direction];
+    }
+
+    /**
+     * @param cell een cel met een node
+     * @param direction een richting
+     * @return true als er een edge in die richting loopt en de buur niet bezet is
+     */
+    public boolean canMove(int cell, int direction){
+        return (moves[cell] & (1 << direction)) != 0 && !graph.isOccupied(cells[cell + steps[direction]]);
+    }
+
+    /**
+     * @param from node id
+     * @param to node id op dezelfde rij of kolom
+     * @return de richting van from naar to
+     */
+    public int direction(int from, int to){
+        int dx = graph.x(to) - graph.x(from);
+        int dy = graph.y(to) - graph.y(from);
+        return directions[dx > 0 ? 0 : dx < 0 ? 1 : dy > 0 ? 2 : 3];
+    }
+}
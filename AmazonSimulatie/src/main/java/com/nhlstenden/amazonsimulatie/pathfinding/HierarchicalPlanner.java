@@ -0,0 +1,571 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * hierarchisch zoeken (HPA*). de graaf wordt op coordinaten in vierkante clusters verdeeld.
+ * waar edges tussen twee clusters een aaneengesloten stuk grens vormen komen ingangen, met een
+ * node aan beide kanten. per cluster worden de kortste paden tussen alle ingangen binnen het
+ * cluster vooraf berekend. een zoekopdracht zoekt alleen in het cluster van de start en van het
+ * eind naar de ingangen, en zoekt verder over de ingangen en de vooraf berekende paden.
+ * de kosten hangen dus af van het aantal clusters op de route en niet van het aantal nodes.
+ *
+ * de paden zijn bijna, maar niet altijd, even kort als bij dijkstra. korte afstanden en graven met
+ * edges die maar in één richting bestaan worden met gewone A* gezocht, net als een route die over
+ * de ingangen niet gevonden wordt.
+ *
+ * als de bezetting van een node verandert moet {@link #nodeChanged(int)} aangeroepen worden, en
+ * {@link #edgeChanged(int)} als een gewicht verandert. alleen het cluster van die node of edge wordt dan opnieuw berekend, bij de eerste zoekopdracht die het
+ * cluster nodig heeft. alle methodes zijn synchronized.
+ */
+public class HierarchicalPlanner {
+
+    /** standaard zijde van een cluster */
+    public static final int DEFAULT_CLUSTER_SIZE = 16;
+
+    /** een aaneengesloten stuk grens van minstens zoveel edges krijgt meerdere ingangen, anders één in het midden */
+    private static final int LONG_ENTRANCE = 6;
+
+    /** afstand tussen de ingangen op een lang stuk grens, kleiner geeft kortere paden maar meer ingangen */
+    private static final int ENTRANCE_SPACING = 4;
+
+    /** afstand als er geen pad is */
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /** de graaf */
+    private final CompactGraph graph;
+    /** zijde van een cluster */
+    private final int clusterSize;
+    /** edges die niet terug bestaan met hetzelfde gewicht, zolang er een is wordt met A* gezocht */
+    private final BitSet asymmetric;
+    /** cluster per node */
+    private final int[] clusterOf;
+    /** de clusters */
+    private final Cluster[] clusters;
+
+    /** node id per ingang */
+    private final int[] entranceNode;
+    /** cluster per ingang */
+    private final int[] entranceCluster;
+    /** plaats van de ingang in zijn cluster */
+    private final int[] entranceLocal;
+    /** ingang per node, -1 als de node geen ingang is */
+    private final int[] entranceOf;
+    /** begin van de edges naar andere clusters per ingang, lengte aantal ingangen + 1 */
+    private final int[] linkOffsets;
+    /** ingang aan de andere kant van elke edge naar een ander cluster */
+    private final int[] linkTargets;
+    /** gewicht van elke edge naar een ander cluster */
+    private final int[] linkWeights;
+
+    /** zoekstatus in het start cluster */
+    private final SearchWorkspace startWorkspace;
+    /** zoekstatus in het eind cluster */
+    private final SearchWorkspace goalWorkspace;
+    /** zoekstatus voor het opnieuw berekenen van clusters en voor gewone A* */
+    private final SearchWorkspace localWorkspace;
+    /** zoekstatus over de ingangen, met twee extra plaatsen voor start en eind */
+    private final SearchWorkspace abstractWorkspace;
+
+    /** tellers van de zoekopdrachten */
+    private final SearchStatistics statistics = new SearchStatistics();
+    /** aantal uitgebreide nodes in de laatste zoekopdracht */
+    private int lastExpanded;
+    /** aantal keer dat een cluster opnieuw berekend is */
+    private long clusterRefreshes;
+
+    /**
+     * de ingangen van één cluster en de paden daartussen
+     */
+    private static class Cluster {
+        /** ingangen van het cluster */
+        int[] entrances = new int[0];
+        /** kosten van ingang i naar ingang j op plaats i * k + j */
+        int[] costs;
+        /** pad van ingang i naar ingang j op plaats i * k + j, null als er geen pad is */
+        PathResult[] paths;
+        /** de bezetting in het cluster is veranderd sinds de paden berekend zijn */
+        boolean dirty = true;
+    }
+
+    /**
+     * verdeelt de graaf in clusters en berekent de paden tussen de ingangen
+     * @param graph de graaf
+     * @param clusterSize zijde van een cluster in coordinaten
+     */
+    public HierarchicalPlanner(final CompactGraph graph, int clusterSize){
+        this.graph = graph;
+        this.clusterSize = clusterSize;
+        int nodeCount = graph.nodeCount();
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE, maxX = Integer.MIN_VALUE;
+        for (int node = 0; node < nodeCount; node++){
+            minX = Math.min(minX, graph.x(node));
+            minY = Math.min(minY, graph.y(node));
+            maxX = Math.max(maxX, graph.x(node));
+            maxY = Math.max(maxY, graph.y(node));
+        }
+        int clustersY = nodeCount == 0 ? 0 : (maxY - minY) / clusterSize + 1;
+        int clustersX = nodeCount == 0 ? 0 : (maxX - minX) / clusterSize + 1;
+        clusterOf = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++){
+            clusterOf[node] = (graph.x(node) - minX) / clusterSize * clustersY + (graph.y(node) - minY) / clusterSize;
+        }
+        clusters = new Cluster[clustersX * clustersY];
+        for (int i = 0; i < clusters.length; i++){
+            clusters[i] = new Cluster();
+        }
+
+        asymmetric = asymmetricEdges(graph);
+
+        // alle edges tussen clusters, op volgorde van clusterpaar en plaats langs de grens
+        List<Integer> crossing = new ArrayList<>();
+        for (int node = 0; node < nodeCount; node++){
+            for (int edge = graph.firstEdge(node), last = graph.endEdge(node); edge < last; edge++){
+                int target = graph.target(edge);
+                if (clusterOf[node] != clusterOf[target] && node < target){
+                    crossing.add(edge);
+                }
+            }
+        }
+        final int[] sources = sourcesOf(graph);
+        Collections.sort(crossing, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int result = Long.compare(pairKey(sources[a], graph.target(a)), pairKey(sources[b], graph.target(b)));
+                return result != 0 ? result : Integer.compare(alongBorder(sources[a], graph.target(a)), alongBorder(sources[b], graph.target(b)));
+            }
+        });
+
+        // kies per aaneengesloten stuk grens de edges waar een ingang komt
+        entranceOf = new int[nodeCount];
+        Arrays.fill(entranceOf, -1);
+        List<Integer> nodesOfEntrances = new ArrayList<>();
+        List<int[]> links = new ArrayList<>();
+        int runStart = 0;
+        for (int i = 1; i <= crossing.size(); i++){
+            if (i < crossing.size() && continuesRun(sources, crossing.get(i - 1), crossing.get(i))){
+                continue;
+            }
+            int length = i - runStart;
+            if (length >= LONG_ENTRANCE){
+                for (int j = runStart; j < i - 1; j += ENTRANCE_SPACING){
+                    addLink(sources, crossing.get(j), nodesOfEntrances, links);
+                }
+                addLink(sources, crossing.get(i - 1), nodesOfEntrances, links);
+            } else {
+                addLink(sources, crossing.get(runStart + length / 2), nodesOfEntrances, links);
+            }
+            runStart = i;
+        }
+
+        int entranceCount = nodesOfEntrances.size();
+        entranceNode = new int[entranceCount];
+        entranceCluster = new int[entranceCount];
+        entranceLocal = new int[entranceCount];
+        int[] perCluster = new int[clusters.length];
+        for (int entrance = 0; entrance < entranceCount; entrance++){
+            entranceNode[entrance] = nodesOfEntrances.get(entrance);
+            entranceCluster[entrance] = clusterOf[entranceNode[entrance]];
+            entranceLocal[entrance] = perCluster[entranceCluster[entrance]]++;
+        }
+        for (int c = 0; c < clusters.length; c++){
+            clusters[c].entrances = new int[perCluster[c]];
+        }
+        for (int entrance = 0; entrance < entranceCount; entrance++){
+            clusters[entranceCluster[entrance]].entrances[entranceLocal[entrance]] = entrance;
+        }
+
+        linkOffsets = new int[entranceCount + 1];
+        for (int[] link : links){
+            linkOffsets[link[0] + 1]++;
+            linkOffsets[link[1] + 1]++;
+        }
+        for (int entrance = 0; entrance < entranceCount; entrance++){
+            linkOffsets[entrance + 1] += linkOffsets[entrance];
+        }
+        linkTargets = new int[linkOffsets[entranceCount]];
+        linkWeights = new int[linkOffsets[entranceCount]];
+        int[] fill = Arrays.copyOf(linkOffsets, entranceCount);
+        for (int[] link : links){
+            linkTargets[fill[link[0]]] = link[1];
+            linkWeights[fill[link[0]]++] = link[2];
+            linkTargets[fill[link[1]]] = link[0];
+            linkWeights[fill[link[1]]++] = link[2];
+        }
+
+        startWorkspace = new SearchWorkspace(nodeCount);
+        goalWorkspace = new SearchWorkspace(nodeCount);
+        localWorkspace = new SearchWorkspace(nodeCount);
+        abstractWorkspace = new SearchWorkspace(entranceCount + 2);
+
+        for (int c = 0; c < clusters.length; c++){
+            refresh(c);
+        }
+        clusterRefreshes = 0;
+    }
+
+    /** @return de graaf */
+    public CompactGraph getGraph(){
+        return graph;
+    }
+
+    /** @return zijde van een cluster */
+    public int getClusterSize(){
+        return clusterSize;
+    }
+
+    /** @return aantal clusters */
+    public int clusterCount(){
+        return clusters.length;
+    }
+
+    /** @return aantal ingangen over alle clusters */
+    public int entranceCount(){
+        return entranceNode.length;
+    }
+
+    /** @return tellers van de zoekopdrachten */
+    public SearchStatistics getStatistics(){
+        return statistics;
+    }
+
+    /** @return aantal uitgebreide nodes en ingangen in de laatste zoekopdracht */
+    public synchronized int getLastExpanded(){
+        return lastExpanded;
+    }
+
+    /** @return aantal keer dat een cluster opnieuw berekend is na een verandering van de bezetting */
+    public synchronized long getClusterRefreshes(){
+        return clusterRefreshes;
+    }
+
+    /**
+     * laat weten dat de bezetting van een node veranderd is. het cluster van de node wordt
+     * opnieuw berekend als een zoekopdracht het nodig heeft.
+     * @param node node id
+     */
+    public synchronized void nodeChanged(int node){
+        clusters[clusterOf[node]].dirty = true;
+    }
+
+    /**
+     * laat weten dat het gewicht van een edge veranderd is. de clusters aan beide kanten worden
+     * opnieuw berekend als een zoekopdracht ze nodig heeft. zolang de edge terug een ander gewicht
+     * heeft wordt met gewone A* gezocht.
+     * @param edge edge index in de graaf
+     */
+    public synchronized void edgeChanged(int edge){
+        int source = graph.source(edge);
+        int target = graph.target(edge);
+        clusters[clusterOf[source]].dirty = true;
+        clusters[clusterOf[target]].dirty = true;
+
+        int from = entranceOf[source];
+        int to = entranceOf[target];
+        if (from >= 0 && to >= 0){
+            for (int link = linkOffsets[from]; link < linkOffsets[from + 1]; link++){
+                if (linkTargets[link] == to){
+                    linkWeights[link] = graph.weight(edge);
+                }
+            }
+        }
+        int back = graph.findEdge(target, source);
+        boolean differs = back < 0 || graph.weight(back) != graph.weight(edge);
+        asymmetric.set(edge, differs);
+        if (back >= 0){
+            asymmetric.set(back, differs);
+        }
+    }
+
+    /**
+     * zoekt een pad van start naar end. bezette nodes worden nooit betreden, de start node mag wel bezet zijn.
+     * @param start start node id
+     * @param end eind node id
+     * @return het gevonden pad, of notFound
+     */
+    public synchronized PathResult shortestPath(int start, int end){
+        lastExpanded = 0;
+        PathResult result = null;
+        if (asymmetric.isEmpty() && graph.manhattan(start, end) > 2 * clusterSize){
+            result = abstractSearch(start, end);
+        }
+        if (result == null){
+            result = GraphSearch.shortestPath(graph, start, end, true, localWorkspace);
+            lastExpanded += localWorkspace.getExpanded();
+        }
+        statistics.record(lastExpanded, result.isFound());
+        return result;
+    }
+
+    /**
+     * zoekt over de ingangen
+     * @return het pad, of null als er over de ingangen geen pad is
+     */
+    private PathResult abstractSearch(int start, int end){
+        int startCluster = clusterOf[start];
+        int goalCluster = clusterOf[end];
+        if (graph.isOccupied(end)){
+            return PathResult.notFound();
+        }
+        searchCluster(startWorkspace, start, startCluster);
+        searchCluster(goalWorkspace, end, goalCluster);
+        lastExpanded += startWorkspace.getExpanded() + goalWorkspace.getExpanded();
+
+        int startState = entranceNode.length;
+        int goalState = startState + 1;
+        int scale = graph.heuristicScale();
+        SearchWorkspace workspace = abstractWorkspace;
+        IndexedMinHeap heap = workspace.heap();
+        workspace.begin();
+        workspace.reach(startState, 0, -1);
+        heap.offer(startState, scale * graph.manhattan(start, end));
+
+        while (!heap.isEmpty()){
+            int state = heap.poll();
+            workspace.settle(state);
+            if (state == goalState){
+                lastExpanded += workspace.getExpanded();
+                return buildPath(start, end, workspace.distance(goalState));
+            }
+
+            int distance = workspace.distance(state);
+            if (state == startState){
+                for (int entrance : clusters[startCluster].entrances){
+                    relax(state, entrance, startWorkspace.distance(entranceNode[entrance]), distance, end);
+                }
+                continue;
+            }
+
+            int cluster = entranceCluster[state];
+            Cluster data = fresh(cluster);
+            int k = data.entrances.length;
+            int local = entranceLocal[state];
+            for (int j = 0; j < k; j++){
+                relax(state, data.entrances[j], data.costs[local * k + j], distance, end);
+            }
+            for (int link = linkOffsets[state]; link < linkOffsets[state + 1]; link++){
+                relax(state, linkTargets[link], linkWeights[link], distance, end);
+            }
+            if (cluster == goalCluster){
+                int toGoal = goalWorkspace.distance(entranceNode[state]);
+                if (toGoal != UNREACHABLE && distance + toGoal < workspace.distance(goalState)){
+                    workspace.reach(goalState, distance + toGoal, state);
+                    heap.offer(goalState, distance + toGoal);
+                }
+            }
+        }
+        lastExpanded += workspace.getExpanded();
+        return null;
+    }
+
+    private void relax(int state, int entrance, int cost, int distance, int end){
+        if (cost == UNREACHABLE || entrance == state || abstractWorkspace.isSettled(entrance)
+                || graph.isOccupied(entranceNode[entrance])){
+            return;
+        }
+        int newDistance = distance + cost;
+        if (newDistance < abstractWorkspace.distance(entrance)){
+            abstractWorkspace.reach(entrance, newDistance, state);
+            abstractWorkspace.heap().offer(entrance, newDistance
+                    + graph.heuristicScale() * graph.manhattan(entranceNode[entrance], end));
+        }
+    }
+
+    /**
+     * zet de ingangen van het gevonden pad om naar nodes. alleen het begin en eind komen uit de
+     * zoekopdrachten in het start en eind cluster, de rest uit de vooraf berekende paden.
+     */
+    private PathResult buildPath(int start, int end, int cost){
+        int goalState = entranceNode.length + 1;
+        List<Integer> states = new ArrayList<>();
+        for (int state = abstractWorkspace.parent(goalState); state != entranceNode.length; state = abstractWorkspace.parent(state)){
+            states.add(state);
+        }
+        Collections.reverse(states);
+
+        int[] nodes = new int[16];
+        int length = 0;
+        PathResult first = startWorkspace.pathTo(entranceNode[states.get(0)]);
+        for (int i = 0; i < first.length(); i++){
+            nodes = append(nodes, length++, first.getNode(i));
+        }
+        for (int i = 1; i < states.size(); i++){
+            int from = states.get(i - 1);
+            int to = states.get(i);
+            if (entranceCluster[from] == entranceCluster[to]){
+                Cluster data = clusters[entranceCluster[from]];
+                PathResult part = data.paths[entranceLocal[from] * data.entrances.length + entranceLocal[to]];
+                for (int j = 1; j < part.length(); j++){
+                    nodes = append(nodes, length++, part.getNode(j));
+                }
+            } else {
+                nodes = append(nodes, length++, entranceNode[to]);
+            }
+        }
+        // het zoeken in het eind cluster begon bij end, dat stuk wordt achterstevoren gevolgd
+        PathResult last = goalWorkspace.pathTo(entranceNode[states.get(states.size() - 1)]);
+        for (int i = last.length() - 2; i >= 0; i--){
+            nodes = append(nodes, length++, last.getNode(i));
+        }
+        return new PathResult(Arrays.copyOf(nodes, length), cost);
+    }
+
+    private static int[] append(int[] nodes, int index, int node){
+        if (index == nodes.length){
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        nodes[index] = node;
+        return nodes;
+    }
+
+    /**
+     * @param cluster cluster index
+     * @return het cluster, opnieuw berekend als de bezetting erin veranderd is
+     */
+    private Cluster fresh(int cluster){
+        Cluster data = clusters[cluster];
+        if (data.dirty){
+            refresh(cluster);
+            clusterRefreshes++;
+        }
+        return data;
+    }
+
+    /**
+     * berekent de kortste paden binnen een cluster tussen alle ingangen
+     */
+    private void refresh(int cluster){
+        Cluster data = clusters[cluster];
+        int k = data.entrances.length;
+        data.costs = new int[k * k];
+        data.paths = new PathResult[k * k];
+        Arrays.fill(data.costs, UNREACHABLE);
+        for (int i = 0; i < k; i++){
+            int from = entranceNode[data.entrances[i]];
+            if (graph.isOccupied(from)){
+                continue;
+            }
+            searchCluster(localWorkspace, from, cluster);
+            lastExpanded += localWorkspace.getExpanded();
+            for (int j = 0; j < k; j++){
+                int to = entranceNode[data.entrances[j]];
+                if (localWorkspace.distance(to) != UNREACHABLE){
+                    data.costs[i * k + j] = localWorkspace.distance(to);
+                    data.paths[i * k + j] = localWorkspace.pathTo(to);
+                }
+            }
+        }
+        data.dirty = false;
+    }
+
+    /**
+     * dijkstra vanaf source over de nodes van één cluster, zonder doel
+     */
+    private void searchCluster(SearchWorkspace workspace, int source, int cluster){
+        IndexedMinHeap heap = workspace.heap();
+        workspace.begin();
+        workspace.reach(source, 0, -1);
+        heap.offer(source, 0);
+        while (!heap.isEmpty()){
+            int current = heap.poll();
+            workspace.settle(current);
+            int distance = workspace.distance(current);
+            for (int edge = graph.firstEdge(current), last = graph.endEdge(current); edge < last; edge++){
+                int next = graph.target(edge);
+                if (clusterOf[next] != cluster || workspace.isSettled(next) || graph.isOccupied(next)){
+                    continue;
+                }
+                int newDistance = distance + graph.weight(edge);
+                if (newDistance < workspace.distance(next)){
+                    workspace.reach(next, newDistance, current);
+                    heap.offer(next, newDistance);
+                }
+            }
+        }
+    }
+
+    /**
+     * maakt van een edge tussen twee clusters een ingang aan beide kanten
+     */
+    private void addLink(int[] sources, int edge, List<Integer> nodesOfEntrances, List<int[]> links){
+        links.add(new int[]{entrance(sources[edge], nodesOfEntrances), entrance(graph.target(edge), nodesOfEntrances),
+                graph.weight(edge)});
+    }
+
+    private int entrance(int node, List<Integer> nodesOfEntrances){
+        if (entranceOf[node] == -1){
+            entranceOf[node] = nodesOfEntrances.size();
+            nodesOfEntrances.add(node);
+        }
+        return entranceOf[node];
+    }
+
+    /**
+     * twee edges horen bij hetzelfde stuk grens als ze dezelfde clusters verbinden en naast elkaar liggen
+     */
+    private boolean continuesRun(int[] sources, int previous, int edge){
+        return pairKey(sources[previous], graph.target(previous)) == pairKey(sources[edge], graph.target(edge))
+                && alongBorder(sources[edge], graph.target(edge)) - alongBorder(sources[previous], graph.target(previous)) == 1
+                && graph.manhattan(lowSide(sources[previous], graph.target(previous)), lowSide(sources[edge], graph.target(edge))) == 1;
+    }
+
+    /**
+     * @return sleutel van de twee clusters die een edge verbindt, gelijk voor beide richtingen
+     */
+    private long pairKey(int a, int b){
+        return ((long) Math.min(clusterOf[a], clusterOf[b]) << 32) | Math.max(clusterOf[a], clusterOf[b]);
+    }
+
+    /**
+     * @return de node van een edge in het cluster met de laagste index
+     */
+    private int lowSide(int a, int b){
+        return clusterOf[a] < clusterOf[b] ? a : b;
+    }
+
+    /**
+     * @return de coordinaat van een edge langs de grens die hij kruist
+     */
+    private int alongBorder(int a, int b){
+        return graph.x(a) == graph.x(b) ? graph.x(a) : graph.y(a);
+    }
+
+    /**
+     * @return de begin node van elke edge
+     */
+    private static int[] sourcesOf(CompactGraph graph){
+        int[] sources = new int[graph.edgeCount()];
+        for (int node = 0; node < graph.nodeCount(); node++){
+            for (int edge = graph.firstEdge(node), last = graph.endEdge(node); edge < last; edge++){
+                sources[edge] = node;
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * @return true als elke edge ook terug bestaat met hetzelfde gewicht
+     */
+    private static BitSet asymmetricEdges(CompactGraph graph){
+        BitSet asymmetric = new BitSet(graph.edgeCount());
+        for (int node = 0; node < graph.nodeCount(); node++){
+            for (int edge = graph.firstEdge(node), last = graph.endEdge(node); edge < last; edge++){
+                int target = graph.target(edge);
+                boolean found = false;
+                for (int back = graph.firstEdge(target), end = graph.endEdge(target); back < end && !found; back++){
+                    found = graph.target(back) == node && graph.weight(back) == graph.weight(edge);
+                }
+                if (!found){
+                    asymmetric.set(edge);
+                }
+            }
+        }
+        return asymmetric;
+    }
+}
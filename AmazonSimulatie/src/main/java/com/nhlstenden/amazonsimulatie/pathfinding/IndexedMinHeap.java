@@ -0,0 +1,158 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * binaire min-heap over node id's (0 t/m capacity - 1) met decrease-key.
+ * per id wordt de positie in de heap bijgehouden, zodat een id maar één keer in de heap
+ * kan zitten en een kortere afstand in O(log n) doorgevoerd kan worden.
+ * bij gelijke sleutels gaat het kleinste id voor, zodat de zoekvolgorde vast ligt.
+ */
+public class IndexedMinHeap {
+
+    /** de heap zelf, bevat id's */
+    private int[] heap;
+    /** positie van elk id in de heap, -1 als het id niet in de heap zit */
+    private int[] position;
+    /** sleutel (afstand) van elk id */
+    private int[] keys;
+    /** aantal id's in de heap */
+    private int size;
+
+    /**
+     * maakt een lege heap aan
+     * @param capacity het aantal id's dat de heap kan bevatten
+     */
+    public IndexedMinHeap(int capacity){
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new int[capacity];
+        Arrays.fill(position, -1);
+        size = 0;
+    }
+
+    /**
+     *
+     * @return het aantal id's dat de heap kan bevatten
+     */
+    public int capacity(){
+        return position.length;
+    }
+
+    /**
+     *
+     * @return true als de heap leeg is
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     *
+     * @return het aantal id's in de heap
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @param id het id
+     * @return true als het id in de heap zit
+     */
+    public boolean contains(int id){
+        return position[id] >= 0;
+    }
+
+    /**
+     * @param id het id
+     * @return de huidige sleutel van het id
+     */
+    public int keyOf(int id){
+        return keys[id];
+    }
+
+    /**
+     * voegt een id toe, of verlaagt de sleutel als het id al in de heap zit.
+     * een hogere sleutel voor een id dat al in de heap zit wordt genegeerd.
+     * @param id het id
+     * @param key de sleutel
+     */
+    public void offer(int id, int key){
+        if (position[id] >= 0){
+            if (key < keys[id]){
+                keys[id] = key;
+                siftUp(position[id]);
+            }
+            return;
+        }
+        keys[id] = key;
+        heap[size] = id;
+        position[id] = size;
+        siftUp(size);
+        size++;
+    }
+
+    /**
+     * haalt het id met de kleinste sleutel uit de heap
+     * @return het id met de kleinste sleutel
+     */
+    public int poll(){
+        int top = heap[0];
+        size--;
+        position[top] = -1;
+        if (size > 0){
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * maakt de heap leeg. kost alleen tijd voor de id's die nog in de heap zitten.
+     */
+    public void clear(){
+        for (int i = 0; i < size; i++){
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private boolean less(int a, int b){
+        return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+    }
+
+    private void siftUp(int index){
+        int id = heap[index];
+        while (index > 0){
+            int parent = (index - 1) >>> 1;
+            if (!less(id, heap[parent])){
+                break;
+            }
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = id;
+        position[id] = index;
+    }
+
+    private void siftDown(int index){
+        int id = heap[index];
+        int half = size >>> 1;
+        while (index < half){
+            int child = 2 * index + 1;
+            if (child + 1 < size && less(heap[child + 1], heap[child])){
+                child++;
+            }
+            if (!less(heap[child], id)){
+                break;
+            }
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = id;
+        position[id] = index;
+    }
+}
@@ -0,0 +1,172 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+/**
+ * jump point search op een {@link GridIndex} met vier richtingen. langs richting 0 en 1 wordt
+ * rechtdoor gesprongen tot het doel of een node met een gedwongen buur: een buur dwars op de
+ * richting die niet even snel via de vorige node te bereiken is. langs richting 2 en 3 wordt bij
+ * elke stap ook rechtdoor gekeken, en stopt de sprong waar dat iets vindt. alleen de nodes waar
+ * een sprong stopt komen in de heap, de nodes daartussen worden alleen bekeken.
+ * paden hebben dezelfde kosten als bij dijkstra. als de graaf geen rooster met gelijke gewichten
+ * is wordt gewone A* gebruikt.
+ */
+public final class JumpPointSearch {
+
+    /** er is geen sprongpunt gevonden */
+    private static final int NONE = -1;
+
+    private JumpPointSearch(){
+    }
+
+    /**
+     * zoekt het kortste pad van start naar end. bezette nodes worden nooit betreden, de start node
+     * mag wel bezet zijn.
+     * @param grid het rooster van de graaf
+     * @param start start node id
+     * @param end eind node id
+     * @param workspace workspace met minstens graph.nodeCount() plaatsen
+     * @return het gevonden pad met alle nodes, ook die tussen de sprongpunten, of notFound.
+     * het aantal uitgebreide sprongpunten staat daarna in de workspace
+     */
+    public static PathResult shortestPath(GridIndex grid, int start, int end, SearchWorkspace workspace){
+        CompactGraph graph = grid.getGraph();
+        if (!grid.isUniformGrid()){
+            return GraphSearch.shortestPath(graph, start, end, true, workspace);
+        }
+
+        int goal = grid.cell(end);
+        IndexedMinHeap heap = workspace.heap();
+        workspace.begin();
+        workspace.reach(start, 0, -1);
+        heap.offer(start, grid.getWeight() * graph.manhattan(start, end));
+
+        while (!heap.isEmpty()){
+            int current = heap.poll();
+            workspace.settle(current);
+
+            if (current == end){
+                return fillGaps(grid, workspace.pathTo(end));
+            }
+
+            int cell = grid.cell(current);
+            int parent = workspace.parent(current);
+            if (parent == -1){
+                for (int direction = 0; direction < 4; direction++){
+                    push(grid, workspace, current, end, jump(grid, cell, direction, goal));
+                }
+                continue;
+            }
+
+            int direction = grid.direction(parent, current);
+            if (direction < 2){
+                push(grid, workspace, current, end, scan(grid, cell, direction, goal));
+                int previous = cell - grid.step(direction);
+                for (int side = 2; side < 4; side++){
+                    if (isForced(grid, previous, cell, direction, side)){
+                        push(grid, workspace, current, end, sweep(grid, cell, side, goal));
+                    }
+                }
+            } else {
+                push(grid, workspace, current, end, sweep(grid, cell, direction, goal));
+                push(grid, workspace, current, end, scan(grid, cell, 0, goal));
+                push(grid, workspace, current, end, scan(grid, cell, 1, goal));
+            }
+        }
+        return PathResult.notFound();
+    }
+
+    /**
+     * voegt een sprongpunt toe aan de heap als het via current korter bereikt wordt
+     */
+    private static void push(GridIndex grid, SearchWorkspace workspace, int current, int end, int jumpCell){
+        if (jumpCell == NONE){
+            return;
+        }
+        CompactGraph graph = grid.getGraph();
+        int next = grid.node(jumpCell);
+        if (workspace.isSettled(next)){
+            return;
+        }
+        int distance = workspace.distance(current) + grid.getWeight() * graph.manhattan(current, next);
+        if (distance < workspace.distance(next)){
+            workspace.reach(next, distance, current);
+            workspace.heap().offer(next, distance + grid.getWeight() * graph.manhattan(next, end));
+        }
+    }
+
+    private static int jump(GridIndex grid, int cell, int direction, int goal){
+        return direction < 2 ? scan(grid, cell, direction, goal) : sweep(grid, cell, direction, goal);
+    }
+
+    /**
+     * springt rechtdoor langs richting 0 of 1
+     * @return de cel waar de sprong stopt, of NONE
+     */
+    private static int scan(GridIndex grid, int cell, int direction, int goal){
+        int step = grid.step(direction);
+        int previous = cell;
+        while (grid.canMove(previous, direction)){
+            int next = previous + step;
+            if (next == goal || isForced(grid, previous, next, direction, 2) || isForced(grid, previous, next, direction, 3)){
+                return next;
+            }
+            previous = next;
+        }
+        return NONE;
+    }
+
+    /**
+     * springt langs richting 2 of 3 en kijkt bij elke stap rechtdoor naar beide kanten
+     * @return de cel waar de sprong stopt, of NONE
+     */
+    private static int sweep(GridIndex grid, int cell, int direction, int goal){
+        int step = grid.step(direction);
+        int previous = cell;
+        while (grid.canMove(previous, direction)){
+            int next = previous + step;
+            if (next == goal || scan(grid, next, 0, goal) != NONE || scan(grid, next, 1, goal) != NONE){
+                return next;
+            }
+            previous = next;
+        }
+        return NONE;
+    }
+
+    /**
+     * een buur van cell dwars op de richting is gedwongen als die er is, maar niet even snel
+     * bereikt kan worden door eerst vanaf previous opzij te gaan
+     * @param previous de cel voor cell
+     * @param cell de cel
+     * @param direction de richting van previous naar cell
+     * @param side de richting dwars daarop
+     */
+    private static boolean isForced(GridIndex grid, int previous, int cell, int direction, int side){
+        return grid.canMove(cell, side)
+                && !(grid.canMove(previous, side) && grid.canMove(previous + grid.step(side), direction));
+    }
+
+    /**
+     * vult de nodes tussen de sprongpunten in, die liggen steeds op een rechte lijn
+     */
+    private static PathResult fillGaps(GridIndex grid, PathResult jumpPoints){
+        CompactGraph graph = grid.getGraph();
+        int length = 1;
+        for (int i = 1; i < jumpPoints.length(); i++){
+            length += graph.manhattan(jumpPoints.getNode(i - 1), jumpPoints.getNode(i));
+        }
+
+        int[] nodes = new int[length];
+        nodes[0] = jumpPoints.getStart();
+        int index = 1;
+        for (int i = 1; i < jumpPoints.length(); i++){
+            int from = jumpPoints.getNode(i - 1);
+            int to = jumpPoints.getNode(i);
+            int step = grid.step(grid.direction(from, to));
+            int cell = grid.cell(from);
+            for (int k = graph.manhattan(from, to); k > 0; k--){
+                cell += step;
+                nodes[index++] = grid.node(cell);
+            }
+        }
+        return new PathResult(nodes, jumpPoints.getCost());
+    }
+}
@@ -0,0 +1,159 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * hash map van long naar int zonder boxing, met open addressing en lineair zoeken.
+ * bij verwijderen worden de volgende sleutels teruggeschoven, zodat er geen grafstenen nodig zijn.
+ * niet thread-safe.
+ */
+public class LongIntHashMap {
+
+    /** markeert een lege plaats, deze sleutel kan dus niet opgeslagen worden */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * @param expectedSize aantal sleutels dat verwacht wordt
+     */
+    public LongIntHashMap(int expectedSize){
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+    }
+
+    /** @return aantal sleutels in de map */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @param key de sleutel
+     * @param missing waarde die teruggegeven wordt als de sleutel er niet in zit
+     * @return de waarde bij de sleutel, of missing
+     */
+    public int get(long key, int missing){
+        int slot = slot(key);
+        while (keys[slot] != EMPTY){
+            if (keys[slot] == key){
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missing;
+    }
+
+    /**
+     * @param key de sleutel
+     * @return true als de sleutel in de map zit
+     */
+    public boolean containsKey(long key){
+        int slot = slot(key);
+        while (keys[slot] != EMPTY){
+            if (keys[slot] == key){
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * slaat een waarde op bij een sleutel, een bestaande waarde wordt overschreven
+     * @param key de sleutel, niet Long.MIN_VALUE
+     * @param value de waarde
+     */
+    public void put(long key, int value){
+        int slot = slot(key);
+        while (keys[slot] != EMPTY){
+            if (keys[slot] == key){
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size * 2 > keys.length){
+            grow();
+        }
+    }
+
+    /**
+     * verwijdert een sleutel
+     * @param key de sleutel
+     * @return true als de sleutel in de map zat
+     */
+    public boolean remove(long key){
+        int slot = slot(key);
+        while (keys[slot] != EMPTY){
+            if (keys[slot] == key){
+                shiftBack(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * maakt de map leeg
+     */
+    public void clear(){
+        if (size > 0){
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+
+    /**
+     * schuift de sleutels na een verwijderde plaats terug, zodat elke sleutel vindbaar blijft
+     */
+    private void shiftBack(int free){
+        int slot = free;
+        while (true){
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == EMPTY){
+                break;
+            }
+            int home = slot(key);
+            // de sleutel mag alleen terug als zijn eigen plaats niet tussen free en slot ligt
+            boolean between = free <= slot ? (free < home && home <= slot) : (free < home || home <= slot);
+            if (!between){
+                keys[free] = key;
+                values[free] = values[slot];
+                free = slot;
+            }
+        }
+        keys[free] = EMPTY;
+    }
+
+    private void grow(){
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++){
+            if (oldKeys[i] != EMPTY){
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private int slot(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
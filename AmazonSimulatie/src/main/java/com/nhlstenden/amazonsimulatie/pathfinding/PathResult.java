@@ -0,0 +1,96 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * het resultaat van een zoekopdracht: de node id's van het pad, van start tot en met eind,
+ * en de totale kosten. een PathResult verandert niet meer nadat het gemaakt is, en mag dus
+ * gedeeld worden tussen threads.
+ */
+public final class PathResult {
+
+    /** resultaat voor als er geen pad is */
+    private static final PathResult NOT_FOUND = new PathResult(new int[0], -1);
+
+    /** node id's van start tot en met eind */
+    private final int[] nodes;
+    /** totale kosten van het pad, -1 als er geen pad is */
+    private final int cost;
+
+    /**
+     * @param nodes node id's van start tot en met eind, de array wordt niet gekopieerd
+     * @param cost totale kosten van het pad
+     */
+    public PathResult(int[] nodes, int cost){
+        this.nodes = nodes;
+        this.cost = cost;
+    }
+
+    /**
+     * @return het resultaat voor als er geen pad is
+     */
+    public static PathResult notFound(){
+        return NOT_FOUND;
+    }
+
+    /**
+     *
+     * @return true als er een pad gevonden is
+     */
+    public boolean isFound(){
+        return cost >= 0;
+    }
+
+    /**
+     *
+     * @return totale kosten van het pad, -1 als er geen pad is
+     */
+    public int getCost(){
+        return cost;
+    }
+
+    /**
+     *
+     * @return aantal nodes op het pad, inclusief start en eind
+     */
+    public int length(){
+        return nodes.length;
+    }
+
+    /**
+     * @param index plaats op het pad, 0 is de start node
+     * @return het node id op die plaats
+     */
+    public int getNode(int index){
+        return nodes[index];
+    }
+
+    /**
+     *
+     * @return id van de start node
+     */
+    public int getStart(){
+        return nodes[0];
+    }
+
+    /**
+     *
+     * @return id van de eind node
+     */
+    public int getEnd(){
+        return nodes[nodes.length - 1];
+    }
+
+    /**
+     *
+     * @return een kopie van de node id's van het pad
+     */
+    public int[] toArray(){
+        return nodes.clone();
+    }
+
+    @Override
+    public String toString(){
+        return isFound() ? Arrays.toString(nodes) + " kost " + cost : "geen pad";
+    }
+}
@@ -0,0 +1,21 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+/**
+ * de zoekalgoritmes waaruit de graaf kan kiezen om een pad te vinden.
+ */
+public enum PathfindingEngine {
+    /** dijkstra met een heap, vindt altijd het kortste pad */
+    DIJKSTRA,
+    /** A* met de manhattan afstand tussen de coordinaten van de nodes als schatting */
+    A_STAR,
+    /**
+     * jump point search, slaat op een rooster met gelijke gewichten de nodes op rechte stukken over.
+     * gebruikt A* als de graaf geen rooster is
+     */
+    JUMP_POINT,
+    /**
+     * hierarchisch zoeken over clusters en hun ingangen, voor lange routes op grote vloeren.
+     * de paden zijn bijna even kort als bij dijkstra
+     */
+    HIERARCHICAL
+}
@@ -0,0 +1,68 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+/**
+ * houdt bij welke robot welke node op welke tick gereserveerd heeft. een robot die een pad plant
+ * reserveert elke node van dat pad op de tick waarop hij er staat, zodat andere robots daar
+ * omheen kunnen plannen of op hem kunnen wachten. niet thread-safe.
+ */
+public class ReservationTable {
+
+    /** geen robot */
+    public static final int NONE = -1;
+
+    /** (tick, node) naar robot */
+    private final LongIntHashMap reservations = new LongIntHashMap(1024);
+
+    /**
+     * @param node node id
+     * @param tick de tick
+     * @return de robot die de node op die tick gereserveerd heeft, of NONE
+     */
+    public int holder(int node, int tick){
+        return reservations.get(key(node, tick), NONE);
+    }
+
+    /**
+     * @param node node id
+     * @param tick de tick
+     * @param robot de robot die de node wil gebruiken
+     * @return true als de node op die tick vrij is of al van deze robot is
+     */
+    public boolean isFree(int node, int tick, int robot){
+        int holder = holder(node, tick);
+        return holder == NONE || holder == robot;
+    }
+
+    /**
+     * reserveert een node op een tick voor een robot
+     * @param node node id
+     * @param tick de tick
+     * @param robot de robot
+     */
+    public void reserve(int node, int tick, int robot){
+        reservations.put(key(node, tick), robot);
+    }
+
+    /**
+     * geeft een reservering vrij, als deze van de robot is
+     * @param node node id
+     * @param tick de tick
+     * @param robot de robot
+     */
+    public void release(int node, int tick, int robot){
+        if (holder(node, tick) == robot){
+            reservations.remove(key(node, tick));
+        }
+    }
+
+    /**
+     * @return aantal reserveringen
+     */
+    public int size(){
+        return reservations.size();
+    }
+
+    private static long key(int node, int tick){
+        return ((long) tick << 32) | (node & 0xffffffffL);
+    }
+}
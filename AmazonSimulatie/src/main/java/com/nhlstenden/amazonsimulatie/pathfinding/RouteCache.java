@@ -0,0 +1,195 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache met gevonden paden, met (start, eind) als sleutel. een pad blijft geldig zolang geen
+ * van de nodes op het pad van bezetting is veranderd sinds het pad opgeslagen of gecontroleerd is.
+ * een node die vrij komt kan ergens anders een korter pad openen, daarom worden vrijgekomen nodes
+ * ook bijgehouden: een pad vervalt als zo'n node dicht genoeg bij start en eind ligt om het pad
+ * korter te kunnen maken. een edge die zwaarder wordt telt als een verandering van de node waar
+ * de edge heen loopt, een edge die lichter wordt als het vrijkomen van die node. zo vervallen
+ * alleen de paden die door een nieuw gewicht korter of duurder kunnen worden. alle methodes zijn
+ * synchronized, de cache mag door meerdere threads gebruikt worden.
+ */
+public class RouteCache {
+
+    /** aantal vrijgekomen nodes dat onthouden wordt */
+    private static final int RELEASE_LOG_SIZE = 1024;
+
+    /** maximaal aantal paden in de cache */
+    private final int capacity;
+    /** de paden, in volgorde van laatste gebruik */
+    private final LinkedHashMap<Long, CachedRoute> entries;
+
+    /** ring buffer met de id's van vrijgekomen nodes */
+    private final int[] releasedNodes = new int[RELEASE_LOG_SIZE];
+    /** ring buffer met de bezettingsversie waarop de nodes vrij kwamen, oplopend */
+    private final long[] releaseVersions = new long[RELEASE_LOG_SIZE];
+    /** aantal vrijgekomen nodes dat ooit is toegevoegd */
+    private long releaseCount;
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    /**
+     * @param capacity maximaal aantal paden in de cache
+     */
+    public RouteCache(final int capacity){
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Long, CachedRoute>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedRoute> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * zoekt een geldig pad in de cache. een pad dat niet meer geldig is wordt verwijderd.
+     * @param graph de graaf met de huidige bezetting
+     * @param start start node id
+     * @param end eind node id
+     * @param version de huidige globale bezettingsversie
+     * @return het pad, of null als er geen geldig pad in de cache zit
+     */
+    public synchronized PathResult get(CompactGraph graph, int start, int end, long version){
+        Long key = key(start, end);
+        CachedRoute entry = entries.get(key);
+        if (entry == null){
+            misses++;
+            return null;
+        }
+        if (!isValid(graph, entry)){
+            entries.remove(key);
+            invalidations++;
+            misses++;
+            return null;
+        }
+        entry.version = version;
+        hits++;
+        return entry.path;
+    }
+
+    /**
+     * slaat een gevonden pad op
+     * @param path het pad
+     * @param version de globale bezettingsversie van voor de zoekopdracht
+     */
+    public synchronized void put(PathResult path, long version){
+        if (path.isFound()){
+            entries.put(key(path.getStart(), path.getEnd()), new CachedRoute(path, version));
+        }
+    }
+
+    /**
+     * onthoudt dat een node vrij is gekomen, of dat een edge naar de node lichter is geworden
+     * @param node node id
+     * @param version de bezettingsversie van de verandering
+     */
+    public synchronized void recordRelease(int node, long version){
+        int slot = (int) (releaseCount % RELEASE_LOG_SIZE);
+        releasedNodes[slot] = node;
+        releaseVersions[slot] = version;
+        releaseCount++;
+    }
+
+    /**
+     * gooit alle paden weg, bijvoorbeeld als de graaf zelf veranderd is
+     */
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+    /**
+     * controleert of een pad nog geldig is
+     */
+    private boolean isValid(CompactGraph graph, CachedRoute entry){
+        PathResult path = entry.path;
+        // de start node zelf mag veranderen, daar staat de robot op
+        for (int i = 1; i < path.length(); i++){
+            if (graph.occupancyVersion(path.getNode(i)) > entry.version){
+                return false;
+            }
+        }
+
+        long oldest = Math.max(0, releaseCount - RELEASE_LOG_SIZE);
+        for (long i = releaseCount - 1; i >= oldest; i--){
+            int slot = (int) (i % RELEASE_LOG_SIZE);
+            if (releaseVersions[slot] <= entry.version){
+                return true;
+            }
+            int node = releasedNodes[slot];
+            long detour = (long) graph.heuristicScale()
+                    * (graph.manhattan(path.getStart(), node) + graph.manhattan(node, path.getEnd()));
+            if (detour < path.getCost()){
+                return false;
+            }
+        }
+        // als de log is overgelopen sinds het pad is gecontroleerd, is er misschien een node gemist
+        return oldest == 0;
+    }
+
+    private static Long key(int start, int end){
+        return ((long) start << 32) | (end & 0xffffffffL);
+    }
+
+    /** @return maximaal aantal paden in de cache */
+    public int getCapacity(){
+        return capacity;
+    }
+
+    /** @return aantal paden in de cache */
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    /** @return aantal keer dat een geldig pad uit de cache kwam */
+    public synchronized long getHits(){
+        return hits;
+    }
+
+    /** @return aantal keer dat er gezocht moest worden */
+    public synchronized long getMisses(){
+        return misses;
+    }
+
+    /** @return aantal paden dat vervallen is door een verandering in bezetting */
+    public synchronized long getInvalidations(){
+        return invalidations;
+    }
+
+    /** @return deel van de opvragingen dat uit de cache kwam, tussen 0 en 1 */
+    public synchronized double getHitRate(){
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * zet de tellers terug naar 0
+     */
+    public synchronized void resetStatistics(){
+        hits = 0;
+        misses = 0;
+        invalidations = 0;
+    }
+
+    @Override
+    public synchronized String toString(){
+        return String.format("%d/%d paden, hit rate %.1f%%, %d vervallen", entries.size(), capacity,
+                getHitRate() * 100, invalidations);
+    }
+
+    /** een opgeslagen pad met de bezettingsversie waarop het voor het laatst geldig was */
+    private static class CachedRoute {
+        private final PathResult path;
+        private long version;
+
+        private CachedRoute(PathResult path, long version){
+            this.path = path;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * tellers voor een zoekalgoritme: hoeveel zoekopdrachten er zijn gedaan en hoeveel nodes
+ * daarbij uitgebreid zijn. hiermee is te zien hoeveel van de graaf een algoritme doorzoekt.
+ * de tellers mogen vanuit meerdere threads opgehoogd worden.
+ */
+public class SearchStatistics {
+
+    /** aantal zoekopdrachten */
+    private final AtomicLong queries = new AtomicLong();
+    /** aantal zoekopdrachten waarbij een pad gevonden is */
+    private final AtomicLong pathsFound = new AtomicLong();
+    /** totaal aantal uitgebreide nodes */
+    private final AtomicLong expandedNodes = new AtomicLong();
+
+    /**
+     * registreert een afgeronde zoekopdracht
+     * @param expanded aantal nodes dat uitgebreid is
+     * @param found true als er een pad gevonden is
+     */
+    public void record(int expanded, boolean found){
+        queries.incrementAndGet();
+        expandedNodes.addAndGet(expanded);
+        if (found){
+            pathsFound.incrementAndGet();
+        }
+    }
+
+    /**
+     *
+     * @return aantal zoekopdrachten
+     */
+    public long getQueries(){
+        return queries.get();
+    }
+
+    /**
+     *
+     * @return aantal zoekopdrachten waarbij een pad gevonden is
+     */
+    public long getPathsFound(){
+        return pathsFound.get();
+    }
+
+    /**
+     *
+     * @return totaal aantal uitgebreide nodes
+     */
+    public long getExpandedNodes(){
+        return expandedNodes.get();
+    }
+
+    /**
+     *
+     * @return gemiddeld aantal uitgebreide nodes per zoekopdracht
+     */
+    public double getAverageExpandedNodes(){
+        long q = queries.get();
+        return q == 0 ? 0 : (double) expandedNodes.get() / q;
+    }
+
+    /**
+     * zet alle tellers terug naar 0
+     */
+    public void reset(){
+        queries.set(0);
+        pathsFound.set(0);
+        expandedNodes.set(0);
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%d zoekopdrachten, %d paden gevonden, gemiddeld %.1f nodes uitgebreid",
+                getQueries(), getPathsFound(), getAverageExpandedNodes());
+    }
+}
@@ -0,0 +1,145 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * de zoekstatus van één zoekopdracht: afstand, vorige node en of een node al afgehandeld is.
+ * in plaats van alle arrays na elke zoekopdracht leeg te maken krijgt elke zoekopdracht een
+ * nieuw generatienummer. een waarde telt alleen als de stempel van de node gelijk is aan de
+ * huidige generatie, dus opnieuw beginnen kost O(1). een workspace is niet thread-safe,
+ * elke thread gebruikt zijn eigen workspace.
+ */
+public class SearchWorkspace {
+
+    /** generatie waarin de afstand en vorige node van een node gezet zijn */
+    private final int[] reached;
+    /** generatie waarin een node afgehandeld is */
+    private final int[] settled;
+    /** afstand vanaf de start per node */
+    private final int[] distance;
+    /** vorige node op het pad per node */
+    private final int[] parent;
+    /** heap voor de open nodes */
+    private final IndexedMinHeap heap;
+    /** huidige generatie */
+    private int generation;
+    /** aantal uitgebreide nodes in de laatste zoekopdracht */
+    private int expanded;
+
+    /**
+     * @param capacity aantal nodes in de graaf
+     */
+    public SearchWorkspace(int capacity){
+        reached = new int[capacity];
+        settled = new int[capacity];
+        distance = new int[capacity];
+        parent = new int[capacity];
+        heap = new IndexedMinHeap(capacity);
+        generation = 0;
+    }
+
+    /**
+     *
+     * @return aantal nodes waarvoor deze workspace ruimte heeft
+     */
+    public int capacity(){
+        return reached.length;
+    }
+
+    /**
+     * begint een nieuwe zoekopdracht, alle nodes zijn daarna onbereikt
+     */
+    public void begin(){
+        heap.clear();
+        expanded = 0;
+        generation++;
+        if (generation == Integer.MAX_VALUE){
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * @param node node id
+     * @return afstand vanaf de start, Integer.MAX_VALUE als de node nog niet bereikt is
+     */
+    public int distance(int node){
+        return reached[node] == generation ? distance[node] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param node node id
+     * @return de vorige node op het pad, -1 als die er niet is
+     */
+    public int parent(int node){
+        return reached[node] == generation ? parent[node] : -1;
+    }
+
+    /**
+     * slaat een (kortere) afstand op voor een node
+     * @param node node id
+     * @param value afstand vanaf de start
+     * @param previous de vorige node op het pad, -1 voor de start
+     */
+    public void reach(int node, int value, int previous){
+        reached[node] = generation;
+        distance[node] = value;
+        parent[node] = previous;
+    }
+
+    /**
+     * @param node node id
+     * @return true als de node al afgehandeld is
+     */
+    public boolean isSettled(int node){
+        return settled[node] == generation;
+    }
+
+    /**
+     * markeert een node als afgehandeld en telt deze als uitgebreid
+     * @param node node id
+     */
+    public void settle(int node){
+        settled[node] = generation;
+        expanded++;
+    }
+
+    /**
+     *
+     * @return de heap voor de open nodes
+     */
+    public IndexedMinHeap heap(){
+        return heap;
+    }
+
+    /**
+     *
+     * @return aantal uitgebreide nodes in de laatste zoekopdracht
+     */
+    public int getExpanded(){
+        return expanded;
+    }
+
+    /**
+     * maakt het pad naar een bereikte node door de vorige nodes terug te volgen
+     * @param end de eind node
+     * @return het pad van de start naar end, of notFound als end niet bereikt is
+     */
+    public PathResult pathTo(int end){
+        if (reached[end] != generation){
+            return PathResult.notFound();
+        }
+        int length = 1;
+        for (int node = parent[end]; node != -1; node = parent[node]){
+            length++;
+        }
+        int[] nodes = new int[length];
+        int node = end;
+        for (int i = length - 1; i >= 0; i--){
+            nodes[i] = node;
+            node = parent[node];
+        }
+        return new PathResult(nodes, distance[end]);
+    }
+}
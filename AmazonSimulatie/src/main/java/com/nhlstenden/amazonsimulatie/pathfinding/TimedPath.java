@@ -0,0 +1,55 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+/**
+ * een pad door de tijd: op tick startTick + i staat de robot op node i. een robot die wacht
+ * staat dus meerdere ticks achter elkaar op dezelfde node.
+ */
+public final class TimedPath {
+
+    /** de tick van de eerste node */
+    private final int startTick;
+    /** de node per tick */
+    private final int[] nodes;
+    /** true als het pad bij het doel eindigt */
+    private final boolean reachesGoal;
+
+    /**
+     * @param startTick de tick van de eerste node
+     * @param nodes de node per tick, de array wordt niet gekopieerd
+     * @param reachesGoal true als het pad bij het doel eindigt
+     */
+    public TimedPath(int startTick, int[] nodes, boolean reachesGoal){
+        this.startTick = startTick;
+        this.nodes = nodes;
+        this.reachesGoal = reachesGoal;
+    }
+
+    /** @return de tick van de eerste node */
+    public int getStartTick(){
+        return startTick;
+    }
+
+    /** @return de laatste tick waarvoor het pad een node heeft */
+    public int getEndTick(){
+        return startTick + nodes.length - 1;
+    }
+
+    /** @return aantal ticks in het pad */
+    public int length(){
+        return nodes.length;
+    }
+
+    /**
+     * @param tick de tick
+     * @return de node op die tick. voor het pad is dat de eerste node, daarna de laatste
+     */
+    public int nodeAt(int tick){
+        int index = Math.max(0, Math.min(nodes.length - 1, tick - startTick));
+        return nodes[index];
+    }
+
+    /** @return true als het pad bij het doel eindigt, false als het doel nog buiten het venster ligt */
+    public boolean reachesGoal(){
+        return reachesGoal;
+    }
+}
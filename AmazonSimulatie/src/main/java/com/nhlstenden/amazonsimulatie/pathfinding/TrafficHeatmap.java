@@ -0,0 +1,254 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * telt hoe vaak robots over elke edge van een {@link CompactGraph} rijden, over een schuivend venster
+ * van de laatste ticks. het venster bestaat uit een aantal vakken van even veel ticks; als het venster
+ * opschuift wordt het oudste vak leeggemaakt. een vak bevat alleen de edges waarover in dat vak
+ * gereden is, met hun aantal, zodat opschuiven en geheugen alleen kosten wat er gereden is en niet
+ * het aantal edges keer het aantal vakken.
+ * edges waarvan het aantal veranderd is worden onthouden tot {@link #takeChanged()}, zodat alleen
+ * hun gewicht opnieuw berekend hoeft te worden. de methodes zijn synchronized, zodat de drukte ook
+ * vanuit een andere thread bekeken kan worden.
+ */
+public class TrafficHeatmap {
+
+    /** de graaf */
+    private final CompactGraph graph;
+    /** gewicht van elke edge toen de heatmap gemaakt werd, zonder drukte */
+    private final int[] baseWeights;
+    /** per vak de edges die erin geteld zijn */
+    private final int[][] bucketEdges;
+    /** per vak het aantal keer over de edge op dezelfde plaats in bucketEdges gereden */
+    private final int[][] bucketCounts;
+    /** per vak het aantal edges in bucketEdges */
+    private final int[] bucketSizes;
+    /** per edge de plaats in bucketEdges van het huidige vak, alleen geldig als daar de edge ook staat */
+    private final int[] slots;
+    /** aantal keer over elke edge gereden in het hele venster */
+    private final int[] totals;
+    /** edges waarvan het aantal veranderd is sinds de laatste takeChanged */
+    private final BitSet changed;
+    /** aantal ticks per vak */
+    private final int ticksPerBucket;
+
+    /** het vak waarin nu geteld wordt */
+    private int bucket;
+    /** aantal ticks dat al in het huidige vak geteld is */
+    private int ticksInBucket;
+    /** aantal keer dat er in het hele venster over een edge gereden is */
+    private long traversals;
+
+    /**
+     * @param graph de graaf, de gewichten die de graaf nu heeft gelden als gewicht zonder drukte
+     * @param windowTicks aantal ticks dat het venster lang is
+     * @param bucketCount in hoeveel vakken het venster verdeeld wordt, meer is preciezer en kost meer geheugen
+     */
+    public TrafficHeatmap(CompactGraph graph, int windowTicks, int bucketCount){
+        if (bucketCount < 1 || windowTicks < bucketCount){
+            throw new IllegalArgumentException("het venster moet minstens één tick per vak hebben");
+        }
+        int edgeCount = graph.edgeCount();
+        this.graph = graph;
+        this.baseWeights = new int[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++){
+            baseWeights[edge] = graph.weight(edge);
+        }
+        this.bucketEdges = new int[bucketCount][16];
+        this.bucketCounts = new int[bucketCount][16];
+        this.bucketSizes = new int[bucketCount];
+        this.slots = new int[edgeCount];
+        this.totals = new int[edgeCount];
+        this.changed = new BitSet(edgeCount);
+        this.ticksPerBucket = windowTicks / bucketCount;
+    }
+
+    /** @return de graaf waarvan de edges geteld worden */
+    public CompactGraph getGraph(){
+        return graph;
+    }
+
+    /**
+     * telt dat er een robot over een edge gereden is
+     * @param edge edge index
+     */
+    public synchronized void record(int edge){
+        int size = bucketSizes[bucket];
+        int slot = slots[edge];
+        if (slot < size && bucketEdges[bucket][slot] == edge){
+            bucketCounts[bucket][slot]++;
+        } else {
+            if (size == bucketEdges[bucket].length){
+                bucketEdges[bucket] = Arrays.copyOf(bucketEdges[bucket], size * 2);
+                bucketCounts[bucket] = Arrays.copyOf(bucketCounts[bucket], size * 2);
+            }
+            bucketEdges[bucket][size] = edge;
+            bucketCounts[bucket][size] = 1;
+            bucketSizes[bucket] = size + 1;
+            slots[edge] = size;
+        }
+        totals[edge]++;
+        traversals++;
+        changed.set(edge);
+    }
+
+    /**
+     * telt dat er een robot van source naar target gereden is
+     * @param source begin node id
+     * @param target eind node id
+     * @return false als er geen edge tussen de nodes is
+     */
+    public boolean record(int source, int target){
+        int edge = graph.findEdge(source, target);
+        if (edge < 0){
+            return false;
+        }
+        record(edge);
+        return true;
+    }
+
+    /**
+     * sluit een tick af. als het huidige vak vol is schuift het venster op en vervalt het oudste vak.
+     */
+    public void tick(){
+        tick(1);
+    }
+
+    /**
+     * sluit een aantal ticks in een keer af. het venster schuift net zo vaak op als bij evenveel losse
+     * ticks, maar nadat alle vakken leeg zijn schuift alleen het huidige vak nog door
+     * @param ticks aantal ticks
+     */
+    public synchronized void tick(long ticks){
+        long total = ticksInBucket + ticks;
+        long shifts = total / ticksPerBucket;
+        ticksInBucket = (int) (total % ticksPerBucket);
+        for (long i = 0; i < Math.min(shifts, bucketEdges.length); i++){
+            shift();
+        }
+        if (shifts > bucketEdges.length){
+            bucket = (int) ((bucket + shifts - bucketEdges.length) % bucketEdges.length);
+        }
+    }
+
+    /**
+     * schuift het venster een vak op, het oudste vak vervalt
+     */
+    private void shift(){
+        bucket = (bucket + 1) % bucketEdges.length;
+
+        int[] edges = bucketEdges[bucket];
+        int[] counts = bucketCounts[bucket];
+        for (int i = 0; i < bucketSizes[bucket]; i++){
+            int edge = edges[i];
+            totals[edge] -= counts[i];
+            traversals -= counts[i];
+            changed.set(edge);
+        }
+        bucketSizes[bucket] = 0;
+    }
+
+    /**
+     * @return true als er in het venster nergens gereden is en er geen edge meer veranderd is,
+     *         dan verandert opschuiven niets meer
+     */
+    public synchronized boolean isQuiet(){
+        return traversals == 0 && changed.isEmpty();
+    }
+
+    /**
+     * @param edge edge index
+     * @return aantal keer dat er in het venster over de edge gereden is
+     */
+    public synchronized int count(int edge){
+        return totals[edge];
+    }
+
+    /**
+     * @param edge edge index
+     * @return het gewicht van de edge zonder drukte
+     */
+    public int baseWeight(int edge){
+        return baseWeights[edge];
+    }
+
+    /**
+     * geeft de edges waarvan het aantal veranderd is sinds de vorige keer, en begint opnieuw te onthouden
+     * @return edge indexen, oplopend
+     */
+    public synchronized int[] takeChanged(){
+        int[] edges = new int[changed.cardinality()];
+        int i = 0;
+        for (int edge = changed.nextSetBit(0); edge >= 0; edge = changed.nextSetBit(edge + 1)){
+            edges[i++] = edge;
+        }
+        changed.clear();
+        return edges;
+    }
+
+    /**
+     * laat een edge bij de volgende takeChanged terugkomen, ook als het aantal niet veranderd is
+     * @param edge edge index
+     */
+    public synchronized void markChanged(int edge){
+        changed.set(edge);
+    }
+
+    /**
+     * telt per node hoe vaak er in het venster heen gereden is, om de drukte op de vloer te tonen
+     * @return aantal per node id
+     */
+    public synchronized int[] nodeCounts(){
+        int[] counts = new int[graph.nodeCount()];
+        for (int edge = 0; edge < totals.length; edge++){
+            counts[graph.target(edge)] += totals[edge];
+        }
+        return counts;
+    }
+
+    /**
+     * @param amount hoeveel edges
+     * @return de drukste edges in het venster, drukste eerst, hoogstens amount en alleen edges met verkeer
+     */
+    public synchronized int[] busiestEdges(int amount){
+        // aantal en edge samen in een long, zodat sorteren op aantal geen objecten kost
+        long[] busy = new long[totals.length];
+        int size = 0;
+        for (int edge = 0; edge < totals.length; edge++){
+            if (totals[edge] > 0){
+                busy[size++] = ((long) totals[edge] << 32) | edge;
+            }
+        }
+        Arrays.sort(busy, 0, size);
+        int[] busiest = new int[Math.max(0, Math.min(amount, size))];
+        for (int i = 0; i < busiest.length; i++){
+            busiest[i] = (int) busy[size - 1 - i];
+        }
+        return busiest;
+    }
+
+    /** @return aantal keer dat er in het venster over een edge gereden is, alle edges samen */
+    public synchronized long getTraversals(){
+        return traversals;
+    }
+
+    /** @return aantal ticks dat het venster lang is */
+    public int getWindowTicks(){
+        return ticksPerBucket * bucketEdges.length;
+    }
+
+    @Override
+    public synchronized String toString(){
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%d keer over een edge gereden in %d ticks", traversals, getWindowTicks()));
+        for (int edge : busiestEdges(5)){
+            int source = graph.source(edge);
+            int target = graph.target(edge);
+            builder.append(String.format(", (%d;%d)->(%d;%d) %d", graph.x(source), graph.y(source),
+                    graph.x(target), graph.y(target), totals[edge]));
+        }
+        return builder.toString();
+    }
+}
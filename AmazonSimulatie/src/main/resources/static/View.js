@@ -264,7 +264,7 @@ window.onload = function () {
     init();
 
     //Socket communication: makes a websocket, and parses commands from there, then executes them
-    socket = new WebSocket("ws://" + window.location.hostname + ":" + window.location.port + "/connectToSimulation");
+    socket = new WebSocket("ws://" + window.location.hostname + ":" + window.location.port + "/connectToSimulation" + window.location.search);
     socket.onmessage = function (event) {
         //Parses command from the websocket connection
         const command = parseCommand(event.data);
@@ -0,0 +1,124 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.controllers.BatchPlanner;
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathfindingEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * plant de routes van een hele vloot robots in één tick, eerst één voor één op de simulatie thread
+ * en daarna met de {@link BatchPlanner} op pools met steeds meer workers. een deel van de robots
+ * vraagt dezelfde route aan als een andere robot, die worden maar één keer gezocht.
+ * elke ronde gebruikt nieuwe routes, zodat de route cache niet meetelt.
+ * starten met: java -cp target/classes:target/test-classes
+ * com.nhlstenden.amazonsimulatie.benchmark.BatchPlanningBenchmark [aantal rondes]
+ */
+public class BatchPlanningBenchmark {
+
+    /** breedte en diepte van het magazijn */
+    private static final int SIZE = 300;
+    /** aantal robots dat in een tick een route aanvraagt */
+    private static final int[] FLEETS = {100, 400, 1600};
+    /** deel van de robots dat dezelfde route aanvraagt als een andere robot */
+    private static final double DUPLICATES = 0.1;
+
+    public static void main(String[] args){
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        WarehouseLayout layout = new WarehouseLayout(SIZE, SIZE, 3, 14, SIZE / 2);
+        GraphController graph = new GraphController();
+        graph.populateGraph(layout);
+        graph.setEngine(PathfindingEngine.A_STAR);
+
+        List<NodeWeighted> floor = new ArrayList<>();
+        for (NodeWeighted[] row : graph.getNodeArray()){
+            for (NodeWeighted node : row){
+                if (node != null){
+                    floor.add(node);
+                }
+            }
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Integer> workers = new ArrayList<>();
+        for (int parallelism = 1; parallelism < processors; parallelism *= 2){
+            workers.add(parallelism);
+        }
+        workers.add(processors);
+
+        Random random = new Random(SIZE);
+        System.out.printf("%d processors, magazijn %dx%d%n", processors, SIZE, SIZE);
+        System.out.printf("%8s %8s %12s %14s %10s%n", "robots", "workers", "zoekopdr.", "ms per tick", "sneller");
+        for (int fleet : FLEETS){
+            // opwarmen zodat de JIT de code al gecompileerd heeft
+            sequential(graph, requests(floor, fleet, random));
+
+            double sequential = 0;
+            for (int round = 0; round < rounds; round++){
+                sequential += sequential(graph, requests(floor, fleet, random));
+            }
+            sequential /= rounds;
+            System.out.printf("%8d %8s %12d %14.2f %10s%n", fleet, "serieel", fleet, sequential, "");
+
+            for (int parallelism : workers){
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                BatchPlanner<Integer> planner = new BatchPlanner<>(graph, pool);
+                batch(planner, requests(floor, fleet, random));
+
+                double elapsed = 0;
+                long searches = planner.getSearches();
+                for (int round = 0; round < rounds; round++){
+                    elapsed += batch(planner, requests(floor, fleet, random));
+                }
+                elapsed /= rounds;
+                System.out.printf("%8d %8d %12d %14.2f %9.1fx%n", fleet, parallelism,
+                        (planner.getSearches() - searches) / rounds, elapsed, sequential / elapsed);
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @return tijd in milliseconden om alle routes één voor één te zoeken
+     */
+    private static double sequential(GraphController graph, NodeWeighted[][] requests){
+        long begin = System.nanoTime();
+        for (NodeWeighted[] request : requests){
+            graph.shortestPath(request[0], request[1]);
+        }
+        return (System.nanoTime() - begin) / 1e6;
+    }
+
+    /**
+     * @return tijd in milliseconden om alle routes met de batch planner te zoeken
+     */
+    private static double batch(BatchPlanner<Integer> planner, NodeWeighted[][] requests){
+        long begin = System.nanoTime();
+        for (int robot = 0; robot < requests.length; robot++){
+            planner.request(robot, requests[robot][0], requests[robot][1]);
+        }
+        planner.plan();
+        return (System.nanoTime() - begin) / 1e6;
+    }
+
+    /**
+     * kiest een willekeurige start en doel per robot, een deel van de robots krijgt dezelfde als een eerdere robot
+     */
+    private static NodeWeighted[][] requests(List<NodeWeighted> floor, int fleet, Random random){
+        NodeWeighted[][] requests = new NodeWeighted[fleet][];
+        for (int robot = 0; robot < fleet; robot++){
+            if (robot > 0 && random.nextDouble() < DUPLICATES){
+                requests[robot] = requests[random.nextInt(robot)];
+            } else {
+                requests[robot] = new NodeWeighted[]{floor.get(random.nextInt(floor.size())),
+                        floor.get(random.nextInt(floor.size()))};
+            }
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,95 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.pathfinding.CompactGraph;
+import com.nhlstenden.amazonsimulatie.pathfinding.CooperativePlanner;
+import com.nhlstenden.amazonsimulatie.pathfinding.TimedPath;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * meet hoeveel routes per seconde de cooperative planner kan plannen voor vloten van 50, 500
+ * en 5000 robots. elke robot rijdt naar een willekeurig doel, krijgt bij aankomst een nieuw doel
+ * en plant opnieuw als zijn halve venster voorbij is. controleert ook dat geen twee robots op
+ * dezelfde tick op dezelfde node staan. starten met: java -cp target/classes:target/test-classes
+ * com.nhlstenden.amazonsimulatie.benchmark.CooperativePlannerBenchmark [ticks]
+ */
+public class CooperativePlannerBenchmark {
+
+    /** vlootgroottes die getest worden */
+    private static final int[] FLEETS = {50, 500, 5000};
+    /** zijde van het grid */
+    private static final int GRID_SIZE = 300;
+    /** aantal ticks vooruit dat robots plannen */
+    private static final int WINDOW = 16;
+
+    public static void main(String[] args){
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        CompactGraph graph = GridGraphs.compactAisleGrid(GRID_SIZE);
+
+        System.out.printf("grid %dx%d, venster %d ticks, %d ticks gesimuleerd%n", GRID_SIZE, GRID_SIZE, WINDOW, ticks);
+        System.out.printf("%8s %10s %12s %14s %12s %12s%n", "robots", "routes", "routes/s", "exp/route", "aangekomen", "botsingen");
+        for (int fleet : FLEETS){
+            run(graph, fleet, ticks);
+        }
+    }
+
+    private static void run(CompactGraph graph, int fleet, int ticks){
+        CooperativePlanner planner = new CooperativePlanner(graph, WINDOW);
+        Random random = new Random(fleet);
+        int[] position = distinctNodes(graph, fleet, random);
+        int[] goal = distinctNodes(graph, fleet, random);
+
+        // eerst houdt elke robot zijn startplek vast, zodat robots die eerder plannen er niet doorheen rijden
+        for (int robot = 0; robot < fleet; robot++){
+            planner.plan(robot, position[robot], position[robot], 0);
+        }
+        planner.getStatistics().reset();
+
+        long planningTime = 0;
+        int routes = 0;
+        int arrivals = 0;
+        int collisions = 0;
+        for (int tick = 0; tick < ticks; tick++){
+            for (int robot = 0; robot < fleet; robot++){
+                if (position[robot] == goal[robot]){
+                    arrivals++;
+                    goal[robot] = random.nextInt(graph.nodeCount());
+                }
+                TimedPath plan = planner.getPlan(robot);
+                if (plan == null || tick - plan.getStartTick() >= WINDOW / 2 || tick == plan.getEndTick()
+                        || (plan.reachesGoal() && plan.nodeAt(plan.getEndTick()) != goal[robot])){
+                    long begin = System.nanoTime();
+                    planner.plan(robot, position[robot], goal[robot], tick);
+                    planningTime += System.nanoTime() - begin;
+                    routes++;
+                }
+            }
+
+            Set<Integer> occupied = new HashSet<>();
+            for (int robot = 0; robot < fleet; robot++){
+                position[robot] = planner.getPlan(robot).nodeAt(tick + 1);
+                if (!occupied.add(position[robot])){
+                    collisions++;
+                }
+            }
+        }
+
+        System.out.printf("%8d %10d %12.0f %14.1f %12d %12d%n", fleet, routes, routes / (planningTime / 1e9),
+                planner.getStatistics().getAverageExpandedNodes(), arrivals, collisions);
+    }
+
+    private static int[] distinctNodes(CompactGraph graph, int amount, Random random){
+        Set<Integer> used = new HashSet<>();
+        int[] nodes = new int[amount];
+        for (int i = 0; i < amount; i++){
+            int node;
+            do {
+                node = random.nextInt(graph.nodeCount());
+            } while (!used.add(node));
+            nodes[i] = node;
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,84 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.pathfinding.CompactGraph;
+
+import java.util.Arrays;
+
+/**
+ * maakt grotere grids voor de benchmarks. het grid heeft dezelfde opbouw als een magazijn:
+ * over elke rij kan gereden worden, tussen de rijen alleen via een dwarspad om de drie kolommen.
+ */
+final class GridGraphs {
+
+    private GridGraphs(){
+    }
+
+    /**
+     * vult een graaf met een grid van size bij size nodes, alle edges hebben gewicht 1
+     * @param graph de graaf die gevuld wordt
+     * @param size aantal nodes per zijde
+     * @return de nodes, geindexeerd op [x][y]
+     */
+    static NodeWeighted[][] aisleGrid(GraphController graph, int size){
+        NodeWeighted[][] grid = new NodeWeighted[size][size];
+        for (int x = 0; x < size; x++){
+            for (int y = 0; y < size; y++){
+                grid[x][y] = new NodeWeighted("(" + x + ";" + y + ")", x, y);
+            }
+        }
+        for (int x = 0; x < size; x++){
+            for (int y = 0; y < size; y++){
+                if (y + 1 < size){
+                    graph.addEdge(grid[x][y], grid[x][y + 1], 1);
+                }
+                if (x + 1 < size && y % 3 == 0){
+                    graph.addEdge(grid[x][y], grid[x + 1][y], 1);
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * maakt hetzelfde grid als {@link #aisleGrid}, maar direct als compacte graaf zonder
+     * NodeWeighted objecten, zodat ook grids van miljoenen nodes passen. node id = x * size + y
+     * @param size aantal nodes per zijde
+     * @return de compacte graaf
+     */
+    static CompactGraph compactAisleGrid(int size){
+        int nodeCount = size * size;
+        int[] offsets = new int[nodeCount + 1];
+        int[] xs = new int[nodeCount];
+        int[] ys = new int[nodeCount];
+        for (int x = 0; x < size; x++){
+            for (int y = 0; y < size; y++){
+                int node = x * size + y;
+                xs[node] = x;
+                ys[node] = y;
+                int degree = 0;
+                if (y > 0) degree++;
+                if (y + 1 < size) degree++;
+                if (y % 3 == 0 && x > 0) degree++;
+                if (y % 3 == 0 && x + 1 < size) degree++;
+                offsets[node + 1] = offsets[node] + degree;
+            }
+        }
+
+        int[] targets = new int[offsets[nodeCount]];
+        int[] weights = new int[offsets[nodeCount]];
+        for (int x = 0; x < size; x++){
+            for (int y = 0; y < size; y++){
+                int node = x * size + y;
+                int edge = offsets[node];
+                if (y > 0) targets[edge++] = node - 1;
+                if (y + 1 < size) targets[edge++] = node + 1;
+                if (y % 3 == 0 && x > 0) targets[edge++] = node - size;
+                if (y % 3 == 0 && x + 1 < size) targets[edge++] = node + size;
+            }
+        }
+        Arrays.fill(weights, 1);
+        return new CompactGraph(offsets, targets, weights, xs, ys);
+    }
+}
@@ -0,0 +1,112 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+import com.nhlstenden.amazonsimulatie.pathfinding.HierarchicalPlanner;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathResult;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathfindingEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * vergelijkt hierarchisch zoeken met A* voor routes van een rek naar de dropoff zone, op steeds
+ * grotere magazijnen. daarna wordt de bezetting van een aantal nodes veranderd, zodat ook het
+ * opnieuw berekenen van clusters meetelt. starten met: java -Xmx2g -cp target/classes:target/test-classes
+ * com.nhlstenden.amazonsimulatie.benchmark.HierarchicalBenchmark [aantal zoekopdrachten]
+ */
+public class HierarchicalBenchmark {
+
+    /** breedte en diepte van de magazijnen die getest worden */
+    private static final int[] SIZES = {50, 100, 250, 500};
+    /** aantal nodes waarvan de bezetting verandert voor de tweede ronde */
+    private static final int TOGGLES = 200;
+
+    public static void main(String[] args){
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        System.out.printf("%10s %9s %8s %10s %10s %10s %9s %11s %11s %10s %12s%n", "magazijn", "nodes", "clusters",
+                "opbouw ms", "A* ms/q", "HPA ms/q", "sneller", "A* exp/q", "HPA exp/q", "kosten", "na wissel ms");
+        for (int size : SIZES){
+            WarehouseLayout layout = new WarehouseLayout(size, size, 3, 14, size / 3, 2 * size / 3);
+            GraphController graph = new GraphController();
+            graph.populateGraph(layout);
+            NodeWeighted[][] pairs = rackToDock(graph, layout, queries, new Random(size));
+
+            long begin = System.nanoTime();
+            HierarchicalPlanner planner = graph.getHierarchicalPlanner();
+            double build = (System.nanoTime() - begin) / 1e6;
+
+            // opwarmen zodat de JIT de code al gecompileerd heeft
+            run(graph, pairs, PathfindingEngine.A_STAR, null);
+            run(graph, pairs, PathfindingEngine.HIERARCHICAL, null);
+            graph.getStatistics(PathfindingEngine.A_STAR).reset();
+            graph.getStatistics(PathfindingEngine.HIERARCHICAL).reset();
+
+            long[] aStarCosts = new long[1];
+            long[] hierarchicalCosts = new long[1];
+            double aStar = run(graph, pairs, PathfindingEngine.A_STAR, aStarCosts);
+            double hierarchical = run(graph, pairs, PathfindingEngine.HIERARCHICAL, hierarchicalCosts);
+            double aStarExpanded = graph.getStatistics(PathfindingEngine.A_STAR).getAverageExpandedNodes();
+            double hierarchicalExpanded = graph.getStatistics(PathfindingEngine.HIERARCHICAL).getAverageExpandedNodes();
+
+            Random random = new Random(-size);
+            for (int i = 0; i < TOGGLES; i++){
+                int x = 1 + random.nextInt(layout.getSizeX() - 1);
+                int z = 1 + random.nextInt(layout.getSizeZ() - 1);
+                graph.getNodeArray()[x][z].toggleOccupation();
+            }
+            double afterToggles = run(graph, pairs, PathfindingEngine.HIERARCHICAL, null);
+
+            System.out.printf("%10s %9d %8d %10.0f %10.3f %10.3f %8.1fx %11.0f %11.0f %9.3fx %12.3f%n",
+                    size + "x" + size, graph.getCompactGraph().nodeCount(), planner.clusterCount(), build,
+                    aStar, hierarchical, aStar / hierarchical, aStarExpanded, hierarchicalExpanded,
+                    (double) hierarchicalCosts[0] / aStarCosts[0], afterToggles);
+        }
+    }
+
+    /**
+     * voert alle zoekopdrachten uit
+     * @param costs hier wordt de som van de kosten in gezet, mag null zijn
+     * @return gemiddelde tijd per zoekopdracht in milliseconden
+     */
+    private static double run(GraphController graph, NodeWeighted[][] pairs, PathfindingEngine engine, long[] costs){
+        long total = 0;
+        long begin = System.nanoTime();
+        for (NodeWeighted[] pair : pairs){
+            PathResult path = engine == PathfindingEngine.HIERARCHICAL
+                    ? graph.hierarchicalPath(pair[0], pair[1])
+                    : graph.aStarShortestPath(pair[0], pair[1]);
+            total += Math.max(0, path.getCost());
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (costs != null){
+            costs[0] = total;
+        }
+        return elapsed / 1e6 / pairs.length;
+    }
+
+    /**
+     * kiest willekeurige routes van een rek plaats naar een plaats in de dropoff zone
+     */
+    private static NodeWeighted[][] rackToDock(GraphController graph, WarehouseLayout layout, int amount, Random random){
+        List<NodeWeighted> racks = new ArrayList<>();
+        List<NodeWeighted> dropoff = new ArrayList<>();
+        for (int x = 0; x < layout.getSizeX(); x++){
+            for (int z = 0; z < layout.getSizeZ(); z++){
+                if (layout.isRackSlot(x, z)){
+                    racks.add(graph.getNodeArray()[x][z]);
+                } else if (layout.isDropoff(x, z)){
+                    dropoff.add(graph.getNodeArray()[x][z]);
+                }
+            }
+        }
+        NodeWeighted[][] pairs = new NodeWeighted[amount][];
+        for (int i = 0; i < amount; i++){
+            pairs[i] = new NodeWeighted[]{racks.get(random.nextInt(racks.size())), dropoff.get(random.nextInt(dropoff.size()))};
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,99 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+import com.nhlstenden.amazonsimulatie.models.EdgeWeighted;
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+import com.nhlstenden.amazonsimulatie.pathfinding.DStarLite;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathResult;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathfindingEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * laat robots elke tick één stap rijden terwijl er nodes bezet en vrij komen en gewichten veranderen.
+ * elke robot plant elke tick opnieuw met D* Lite, en ter vergelijking ook vanaf nul met A*.
+ * starten met: java -cp target/classes:target/test-classes
+ * com.nhlstenden.amazonsimulatie.benchmark.IncrementalReplanningBenchmark [ticks]
+ */
+public class IncrementalReplanningBenchmark {
+
+    /** breedte en diepte van het magazijn */
+    private static final int SIZE = 150;
+    /** aantal robots */
+    private static final int ROBOTS = 50;
+    /** aantal nodes dat per tick van bezetting wisselt */
+    private static final int TOGGLES_PER_TICK = 10;
+    /** aantal edges dat per tick een ander gewicht krijgt */
+    private static final int WEIGHT_CHANGES_PER_TICK = 5;
+
+    public static void main(String[] args){
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        WarehouseLayout layout = new WarehouseLayout(SIZE, SIZE, 3, 14, SIZE / 2);
+        GraphController graph = new GraphController();
+        graph.populateGraph(layout);
+        Random random = new Random(SIZE);
+
+        List<NodeWeighted> floor = new ArrayList<>();
+        for (NodeWeighted[] row : graph.getNodeArray()){
+            for (NodeWeighted node : row){
+                if (node != null){
+                    floor.add(node);
+                }
+            }
+        }
+
+        NodeWeighted[] position = new NodeWeighted[ROBOTS];
+        DStarLite[] planners = new DStarLite[ROBOTS];
+        for (int robot = 0; robot < ROBOTS; robot++){
+            position[robot] = floor.get(random.nextInt(floor.size()));
+            planners[robot] = graph.createIncrementalPlanner(position[robot], floor.get(random.nextInt(floor.size())));
+        }
+
+        long incrementalTime = 0;
+        long fromScratchTime = 0;
+        int arrivals = 0;
+        for (int tick = 0; tick < ticks; tick++){
+            for (int i = 0; i < TOGGLES_PER_TICK; i++){
+                floor.get(random.nextInt(floor.size())).toggleOccupation();
+            }
+            for (int i = 0; i < WEIGHT_CHANGES_PER_TICK; i++){
+                NodeWeighted node = floor.get(random.nextInt(floor.size()));
+                if (!node.getEdges().isEmpty()){
+                    EdgeWeighted edge = node.getEdges().get(random.nextInt(node.getEdges().size()));
+                    edge.setWeight(1 + random.nextInt(5));
+                }
+            }
+
+            for (int robot = 0; robot < ROBOTS; robot++){
+                NodeWeighted goal = graph.getNode(planners[robot].getGoal());
+                long begin = System.nanoTime();
+                PathResult path = graph.replan(planners[robot], position[robot]);
+                long middle = System.nanoTime();
+                graph.aStarShortestPath(position[robot], goal);
+                fromScratchTime += System.nanoTime() - middle;
+                incrementalTime += middle - begin;
+
+                if (path.isFound() && path.length() > 1){
+                    position[robot] = graph.getNode(path.getNode(1));
+                }
+                if (position[robot] == goal || !path.isFound()){
+                    arrivals += path.isFound() ? 1 : 0;
+                    graph.removeIncrementalPlanner(planners[robot]);
+                    planners[robot] = graph.createIncrementalPlanner(position[robot], floor.get(random.nextInt(floor.size())));
+                }
+            }
+        }
+
+        int replans = ticks * ROBOTS;
+        System.out.printf("magazijn %dx%d, %d robots, %d ticks, %d nodes en %d gewichten per tick veranderd, %d keer aangekomen%n",
+                SIZE, SIZE, ROBOTS, ticks, TOGGLES_PER_TICK, WEIGHT_CHANGES_PER_TICK, arrivals);
+        System.out.printf("%-12s %14s %12s%n", "", "exp/replan", "ms/replan");
+        System.out.printf("%-12s %14.1f %12.4f%n", "D* Lite", graph.getIncrementalStatistics().getAverageExpandedNodes(),
+                incrementalTime / 1e6 / replans);
+        System.out.printf("%-12s %14.1f %12.4f%n", "A* vanaf nul", graph.getStatistics(PathfindingEngine.A_STAR).getAverageExpandedNodes(),
+                fromScratchTime / 1e6 / replans);
+    }
+}
@@ -0,0 +1,81 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.pathfinding.CompactGraph;
+import com.nhlstenden.amazonsimulatie.pathfinding.GraphSearch;
+import com.nhlstenden.amazonsimulatie.pathfinding.GridIndex;
+import com.nhlstenden.amazonsimulatie.pathfinding.JumpPointSearch;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathResult;
+import com.nhlstenden.amazonsimulatie.pathfinding.SearchWorkspace;
+
+import java.util.Random;
+
+/**
+ * vergelijkt jump point search met dijkstra op grids van 30x30 tot 2000x2000, en controleert dat
+ * beide even lange paden vinden. voor de grootste grids is meer geheugen nodig, bijvoorbeeld -Xmx2g.
+ * starten met: java -Xmx2g -cp target/classes:target/test-classes
+ * com.nhlstenden.amazonsimulatie.benchmark.JumpPointBenchmark [aantal zoekopdrachten]
+ */
+public class JumpPointBenchmark {
+
+    /** grid groottes die getest worden */
+    private static final int[] SIZES = {30, 60, 120, 250, 500, 1000, 2000};
+
+    public static void main(String[] args){
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        System.out.printf("%10s %10s %16s %16s %10s %14s %14s%n", "grid", "nodes",
+                "dijkstra (ms/q)", "JPS (ms/q)", "sneller", "dijkstra exp/q", "JPS exp/q");
+        for (int size : SIZES){
+            CompactGraph graph = GridGraphs.compactAisleGrid(size);
+            GridIndex grid = GridIndex.of(graph);
+            SearchWorkspace workspace = new SearchWorkspace(graph.nodeCount());
+            int[][] pairs = randomPairs(graph, queries, new Random(size));
+
+            // opwarmen zodat de JIT de code al gecompileerd heeft
+            run(grid, pairs, false, workspace, null);
+            run(grid, pairs, true, workspace, null);
+
+            int[] dijkstraCosts = new int[queries];
+            int[] jumpPointCosts = new int[queries];
+            long[] dijkstra = run(grid, pairs, false, workspace, dijkstraCosts);
+            long[] jumpPoint = run(grid, pairs, true, workspace, jumpPointCosts);
+            for (int i = 0; i < queries; i++){
+                if (dijkstraCosts[i] != jumpPointCosts[i]){
+                    System.out.println("verschillende kosten voor " + pairs[i][0] + " -> " + pairs[i][1]);
+                }
+            }
+
+            System.out.printf("%10s %10d %16.3f %16.3f %9.1fx %14.0f %14.0f%n", size + "x" + size, graph.nodeCount(),
+                    dijkstra[0] / 1e6 / queries, jumpPoint[0] / 1e6 / queries, (double) dijkstra[0] / jumpPoint[0],
+                    (double) dijkstra[1] / queries, (double) jumpPoint[1] / queries);
+        }
+    }
+
+    /**
+     * voert alle zoekopdrachten uit
+     * @param costs hier komen de kosten per zoekopdracht in, mag null zijn
+     * @return totale tijd in nanoseconden en totaal aantal uitgebreide nodes
+     */
+    private static long[] run(GridIndex grid, int[][] pairs, boolean jumpPoint, SearchWorkspace workspace, int[] costs){
+        long expanded = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < pairs.length; i++){
+            PathResult path = jumpPoint
+                    ? JumpPointSearch.shortestPath(grid, pairs[i][0], pairs[i][1], workspace)
+                    : GraphSearch.shortestPath(grid.getGraph(), pairs[i][0], pairs[i][1], false, workspace);
+            expanded += workspace.getExpanded();
+            if (costs != null){
+                costs[i] = path.getCost();
+            }
+        }
+        return new long[]{System.nanoTime() - begin, expanded};
+    }
+
+    private static int[][] randomPairs(CompactGraph graph, int amount, Random random){
+        int[][] pairs = new int[amount][];
+        for (int i = 0; i < amount; i++){
+            pairs[i] = new int[]{random.nextInt(graph.nodeCount()), random.nextInt(graph.nodeCount())};
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,124 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.pathfinding.CompactGraph;
+import com.nhlstenden.amazonsimulatie.pathfinding.GraphSearch;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathResult;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathfindingEngine;
+import com.nhlstenden.amazonsimulatie.pathfinding.SearchWorkspace;
+
+import java.util.Random;
+
+/**
+ * vergelijkt de dijkstra met heap en A* met de oorspronkelijke dijkstra die alle nodes afloopt,
+ * op steeds grotere grids. starten met: java -cp target/classes:target/test-classes
+ * com.nhlstenden.amazonsimulatie.benchmark.PathfindingBenchmark [aantal zoekopdrachten]
+ */
+public class PathfindingBenchmark {
+
+    /** grid groottes die getest worden */
+    private static final int[] SIZES = {30, 60, 90, 120, 180, 240, 480};
+    /** boven deze grootte duurt de oude versie te lang en wordt deze overgeslagen */
+    private static final int LINEAR_SCAN_LIMIT = 120;
+
+    /** zijde van het grid waarvan de grootte van de compacte graaf gemeten wordt */
+    private static final int COMPACT_SIZE = 1000;
+
+    /** de oude dijkstra, die geen eigen PathfindingEngine waarde heeft */
+    private static final PathfindingEngine LINEAR_SCAN = null;
+
+    public static void main(String[] args){
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        System.out.printf("%8s %10s %14s %14s %14s %12s %12s%n", "grid", "nodes",
+                "heap (ms/q)", "A* (ms/q)", "scan (ms/q)", "heap exp/q", "A* exp/q");
+        for (int size : SIZES){
+            GraphController graph = new GraphController();
+            NodeWeighted[][] grid = GridGraphs.aisleGrid(graph, size);
+            NodeWeighted[][] pairs = randomPairs(grid, queries, new Random(size));
+
+            // opwarmen zodat de JIT de code al gecompileerd heeft
+            run(graph, pairs, PathfindingEngine.DIJKSTRA);
+            run(graph, pairs, PathfindingEngine.A_STAR);
+            resetStatistics(graph);
+
+            double heap = run(graph, pairs, PathfindingEngine.DIJKSTRA);
+            double aStar = run(graph, pairs, PathfindingEngine.A_STAR);
+
+            String scan = "-";
+            if (size <= LINEAR_SCAN_LIMIT){
+                scan = String.format("%.3f", run(graph, pairs, LINEAR_SCAN));
+            }
+            System.out.printf("%8s %10d %14.3f %14.3f %14s %12.0f %12.0f%n", size + "x" + size, size * size,
+                    heap, aStar, scan,
+                    graph.getStatistics(PathfindingEngine.DIJKSTRA).getAverageExpandedNodes(),
+                    graph.getStatistics(PathfindingEngine.A_STAR).getAverageExpandedNodes());
+        }
+
+        compactGraphRun(queries);
+    }
+
+    /**
+     * bouwt een grid van een miljoen nodes direct als compacte graaf en zoekt daarop
+     */
+    private static void compactGraphRun(int queries){
+        CompactGraph graph = GridGraphs.compactAisleGrid(COMPACT_SIZE);
+        int n = graph.nodeCount();
+        SearchWorkspace workspace = new SearchWorkspace(n);
+        Random random = new Random(COMPACT_SIZE);
+
+        long expanded = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < queries; i++){
+            GraphSearch.shortestPath(graph, random.nextInt(n), random.nextInt(n), true, workspace);
+            expanded += workspace.getExpanded();
+        }
+        double perQuery = (System.nanoTime() - begin) / 1e6 / queries;
+
+        System.out.printf("%ncompacte graaf %dx%d: %d nodes, %d edges, %.1f MB, A* %.3f ms/q, %.0f exp/q%n",
+                COMPACT_SIZE, COMPACT_SIZE, n, graph.edgeCount(), graph.memoryBytes() / 1e6,
+                perQuery, (double) expanded / queries);
+    }
+
+    private static void resetStatistics(GraphController graph){
+        for (PathfindingEngine engine : PathfindingEngine.values()){
+            graph.getStatistics(engine).reset();
+        }
+    }
+
+    /**
+     * voert alle zoekopdrachten uit
+     * @return gemiddelde tijd per zoekopdracht in milliseconden
+     */
+    private static double run(GraphController graph, NodeWeighted[][] pairs, PathfindingEngine engine){
+        long sink = 0;
+        long begin = System.nanoTime();
+        for (NodeWeighted[] pair : pairs){
+            PathResult path;
+            if (engine == LINEAR_SCAN){
+                path = graph.dijkstraShortestPathLinearScan(pair[0], pair[1]);
+            } else {
+                graph.setEngine(engine);
+                path = graph.shortestPath(pair[0], pair[1]);
+            }
+            sink += path.getCost();
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (sink <= 0){
+            System.out.println("geen paden gevonden");
+        }
+        return elapsed / 1e6 / pairs.length;
+    }
+
+    private static NodeWeighted[][] randomPairs(NodeWeighted[][] grid, int amount, Random random){
+        NodeWeighted[][] pairs = new NodeWeighted[amount][];
+        for (int i = 0; i < amount; i++){
+            pairs[i] = new NodeWeighted[]{
+                    grid[random.nextInt(grid.length)][random.nextInt(grid.length)],
+                    grid[random.nextInt(grid.length)][random.nextInt(grid.length)]
+            };
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,50 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.controllers.RobotController;
+import com.nhlstenden.amazonsimulatie.models.Rack;
+import com.nhlstenden.amazonsimulatie.models.Robot;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+
+/**
+ * laat een vloot robots rekken naar de dropoff zone brengen, een keer met het eerste rek uit de lijst
+ * en de eerste vrije dropoff plaats, en een keer met het dichtstbijzijnde rek en de dichtstbijzijnde
+ * vrije plaats. geeft het aantal gebrachte rekken en de afgelegde afstand per rek.
+ * starten met: java -cp target/classes:target/test-classes
+ * com.nhlstenden.amazonsimulatie.benchmark.RackAssignmentBenchmark [ticks]
+ */
+public class RackAssignmentBenchmark {
+
+    /** breedte en diepte van het magazijn */
+    private static final int SIZE = 100;
+    /** aantal robots */
+    private static final int ROBOTS = 100;
+    /** percentage van de rek plaatsen met een rek */
+    private static final int FILLED = 30;
+
+    public static void main(String[] args){
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 1500;
+        WarehouseLayout layout = new WarehouseLayout(SIZE, SIZE, 3, 14, SIZE / 2);
+
+        System.out.printf("%12s %10s %14s %8s%n", "toewijzing", "rekken", "afstand/rek", "ms");
+        for (boolean nearest : new boolean[]{false, true}){
+            RobotController robots = new RobotController(layout, FILLED, ROBOTS);
+            robots.setAssignNearest(nearest);
+
+            long begin = System.nanoTime();
+            for (int tick = 0; tick < ticks; tick++){
+                robots.applyRoutes();
+                for (Robot robot : robots.getRobotList()){
+                    robot.update();
+                }
+                for (Rack rack : robots.pickupRacks()){
+                    robots.getStore().remove(rack.getId());
+                }
+            }
+            robots.applyRoutes();
+            robots.getPlanner().getPool().shutdown();
+
+            System.out.printf("%12s %10d %14.1f %8.0f%n", nearest ? "dichtstbij" : "eerste",
+                    robots.getRacksDelivered(), robots.getTravelPerRack(), (System.nanoTime() - begin) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.controllers.ScenarioRunner;
+import com.nhlstenden.amazonsimulatie.models.Scenario;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+
+/**
+ * draait hetzelfde scenario een paar keer en geeft per run de doorvoer en de checksum van het event
+ * log. de checksums moeten gelijk zijn, anders doet de simulatie niet elke keer hetzelfde werk en
+ * zeggen verschillen in snelheid niets. de eerste run warmt ook de JIT op.
+ * starten met: java -cp target/classes:target/test-classes
+ * com.nhlstenden.amazonsimulatie.benchmark.ScenarioBenchmark [ticks] [seed]
+ */
+public class ScenarioBenchmark {
+
+    /** breedte en diepte van het magazijn */
+    private static final int SIZE = 100;
+    /** aantal robots */
+    private static final int ROBOTS = 200;
+    /** percentage van de rek plaatsen met een rek */
+    private static final int FILLED = 30;
+    /** aantal runs */
+    private static final int RUNS = 3;
+
+    public static void main(String[] args){
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        Scenario scenario = new Scenario(seed, new WarehouseLayout(SIZE, SIZE, 3, 14, SIZE / 2), FILLED, ROBOTS, 600, 30);
+
+        Long first = null;
+        boolean same = true;
+        for (int run = 0; run < RUNS; run++){
+            ScenarioRunner runner = new ScenarioRunner(scenario);
+            runner.run(ticks);
+            System.out.println(runner);
+            if (first == null){
+                first = runner.getChecksum();
+            } else {
+                same &= first == runner.getChecksum();
+            }
+        }
+        System.out.println(same ? "alle runs deden hetzelfde" : "runs verschillen, het scenario is niet deterministisch");
+    }
+}
@@ -0,0 +1,72 @@
+package com.nhlstenden.amazonsimulatie.benchmark;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+import com.nhlstenden.amazonsimulatie.controllers.RobotController;
+import com.nhlstenden.amazonsimulatie.models.Rack;
+import com.nhlstenden.amazonsimulatie.models.Robot;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+import com.nhlstenden.amazonsimulatie.pathfinding.TrafficHeatmap;
+
+/**
+ * laat een vloot robots rekken brengen, een keer met vaste gewichten en een keer waarbij de drukte
+ * uit de heatmap elke paar ticks in de gewichten verwerkt wordt. geeft de drukte die een robot
+ * gemiddeld op een edge tegenkomt: het aantal keer dat er in het venster over de edge gereden is,
+ * gewogen naar hoe vaak er over de edge gereden is. gemeten aan het eind van elk venster.
+ * starten met: java -cp target/classes:target/test-classes
+ * com.nhlstenden.amazonsimulatie.benchmark.TrafficBenchmark [ticks]
+ */
+public class TrafficBenchmark {
+
+    /** breedte en diepte van het magazijn */
+    private static final int SIZE = 100;
+    /** aantal robots */
+    private static final int ROBOTS = 200;
+    /** percentage van de rek plaatsen met een rek */
+    private static final int FILLED = 30;
+
+    public static void main(String[] args){
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        WarehouseLayout layout = new WarehouseLayout(SIZE, SIZE, 3, 14, SIZE / 2);
+
+        System.out.printf("%10s %8s %12s %10s %8s%n", "gewichten", "rekken", "afstand/rek", "drukte", "ms");
+        for (boolean congestion : new boolean[]{false, true}){
+            RobotController robots = new RobotController(layout, FILLED, ROBOTS);
+            GraphController graph = robots.getGraph();
+            TrafficHeatmap heatmap = graph.getTrafficHeatmap();
+
+            long squares = 0;
+            long traversals = 0;
+            long begin = System.nanoTime();
+            for (int tick = 0; tick < ticks; tick++){
+                robots.applyRoutes();
+                for (Robot robot : robots.getRobotList()){
+                    robot.update();
+                }
+                if (congestion){
+                    graph.tickTraffic();
+                } else {
+                    heatmap.tick();
+                }
+                for (Rack rack : robots.pickupRacks()){
+                    robots.getStore().remove(rack.getId());
+                }
+
+                if ((tick + 1) % heatmap.getWindowTicks() == 0){
+                    for (int edge = 0; edge < heatmap.getGraph().edgeCount(); edge++){
+                        long count = heatmap.count(edge);
+                        squares += count * count;
+                        traversals += count;
+                    }
+                }
+            }
+            robots.applyRoutes();
+            robots.getPlanner().getPool().shutdown();
+            double elapsed = (System.nanoTime() - begin) / 1e6;
+
+            System.out.printf("%10s %8d %12.1f %10.2f %8.0f%n", congestion ? "drukte" : "vast",
+                    robots.getRacksDelivered(), robots.getTravelPerRack(), (double) squares / Math.max(1, traversals),
+                    elapsed);
+            System.out.println("           " + heatmap);
+        }
+    }
+}
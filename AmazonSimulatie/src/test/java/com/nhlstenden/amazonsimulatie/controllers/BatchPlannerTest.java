@@ -0,0 +1,99 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * de batch planner geeft elke aanvrager hetzelfde pad als een losse zoekopdracht
+ */
+public class BatchPlannerTest {
+
+    private static final int REQUESTERS = 100;
+
+    private GraphController graph;
+    private List<NodeWeighted> floor;
+    private ForkJoinPool pool;
+    private BatchPlanner<Integer> planner;
+
+    @Before
+    public void setUp(){
+        graph = new GraphController();
+        graph.populateGraph(new WarehouseLayout(40, 40, 3, 14, 20));
+        floor = GraphControllerTest.nodes(graph);
+        pool = new ForkJoinPool(4);
+        planner = new BatchPlanner<>(graph, pool);
+    }
+
+    @After
+    public void tearDown(){
+        pool.shutdown();
+    }
+
+    @Test
+    public void groupedRequestsGetTheSamePathsAsSingleSearches(){
+        Random random = new Random(REQUESTERS);
+        NodeWeighted[] starts = new NodeWeighted[REQUESTERS];
+        NodeWeighted[] ends = new NodeWeighted[REQUESTERS];
+        for (int i = 0; i < REQUESTERS; i++){
+            // een kwart vraagt hetzelfde aan als de aanvrager ervoor
+            boolean same = i > 0 && i % 4 == 0;
+            starts[i] = same ? starts[i - 1] : floor.get(random.nextInt(floor.size()));
+            ends[i] = same ? ends[i - 1] : floor.get(random.nextInt(floor.size()));
+            planner.request(i, starts[i], ends[i]);
+        }
+
+        Map<Integer, PathResult> paths = planner.plan();
+        assertEquals(REQUESTERS, paths.size());
+        assertEquals(REQUESTERS, planner.getRequests());
+        assertTrue(planner.getSearches() < planner.getRequests());
+        for (int i = 0; i < REQUESTERS; i++){
+            PathResult path = paths.get(i);
+            assertEquals(graph.dijkstraShortestPath(starts[i], ends[i]).getCost(), path.getCost());
+            assertEquals(starts[i].getId(), path.getStart());
+            assertEquals(ends[i].getId(), path.getEnd());
+        }
+        assertTrue(planner.isIdle());
+    }
+
+    @Test
+    public void requestsOutsideTheGraphAreNotFound(){
+        NodeWeighted outside = new NodeWeighted("buiten", 0, 0);
+        planner.request(0, outside, floor.get(0));
+        planner.request(1, floor.get(0), outside);
+        planner.request(2, floor.get(0), floor.get(floor.size() - 1));
+
+        Map<Integer, PathResult> paths = planner.plan();
+        assertSame(PathResult.notFound(), paths.get(0));
+        assertSame(PathResult.notFound(), paths.get(1));
+        assertTrue(paths.get(2).isFound());
+    }
+
+    @Test
+    public void requestsWaitWhileABatchIsRunning(){
+        planner.request(0, floor.get(0), floor.get(1));
+        assertTrue(planner.submit());
+        planner.request(1, floor.get(1), floor.get(2));
+        assertFalse(planner.submit());
+        assertTrue(planner.isPending(1));
+
+        assertEquals(1, planner.apply().size());
+        assertTrue(planner.submit());
+        assertTrue(planner.apply().containsKey(1));
+        assertFalse(planner.isPending(1));
+    }
+}
@@ -0,0 +1,106 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * een checkpoint file geeft na opnieuw openen het laatste checkpoint dat helemaal weggeschreven is
+ */
+public class CheckpointFileTest {
+
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException{
+        path = Files.createTempFile("checkpoints", ".bin");
+        Files.delete(path);
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void newFileHasNoCheckpoint() throws IOException{
+        try (CheckpointFile file = new CheckpointFile(path)){
+            assertNull(file.loadLatest());
+            assertEquals(0, file.getSequence());
+        }
+    }
+
+    @Test
+    public void reopenedFileGivesTheLatestCheckpoint() throws IOException{
+        try (CheckpointFile file = new CheckpointFile(path)){
+            file.write(checkpoint(1000, 1));
+            file.write(checkpoint(2000, 2));
+            file.write(checkpoint(500, 3));
+        }
+        try (CheckpointFile file = new CheckpointFile(path)){
+            assertEquals(3, file.getSequence());
+            assertArrayEquals(checkpoint(500, 3), file.loadLatest());
+        }
+    }
+
+    @Test
+    public void savedCheckpointIsWrittenBeforeClosing() throws IOException{
+        try (CheckpointFile file = new CheckpointFile(path)){
+            file.write(checkpoint(1000, 1));
+            file.save(checkpoint(1000, 2));
+        }
+        try (CheckpointFile file = new CheckpointFile(path)){
+            assertArrayEquals(checkpoint(1000, 2), file.loadLatest());
+        }
+    }
+
+    @Test
+    public void checkpointLargerThanASlotGrowsTheFile() throws IOException{
+        byte[] large = checkpoint(3 * CheckpointFile.DEFAULT_SLOT_SIZE, 7);
+        try (CheckpointFile file = new CheckpointFile(path)){
+            file.write(checkpoint(1000, 1));
+            file.write(large);
+            assertArrayEquals(large, file.loadLatest());
+        }
+        try (CheckpointFile file = new CheckpointFile(path)){
+            assertArrayEquals(large, file.loadLatest());
+            file.write(checkpoint(1000, 8));
+        }
+        try (CheckpointFile file = new CheckpointFile(path)){
+            assertArrayEquals(checkpoint(1000, 8), file.loadLatest());
+        }
+    }
+
+    @Test
+    public void damagedCheckpointFallsBackToThePreviousOne() throws IOException{
+        try (CheckpointFile file = new CheckpointFile(path)){
+            file.write(checkpoint(1000, 1));
+            file.write(checkpoint(1000, 2));
+        }
+        // het tweede checkpoint staat in het tweede vak, half weggeschreven door een crash
+        try (RandomAccessFile raw = new RandomAccessFile(path.toFile(), "rw")){
+            raw.seek(CheckpointFile.DEFAULT_SLOT_SIZE + 500);
+            raw.write(0);
+        }
+        try (CheckpointFile file = new CheckpointFile(path)){
+            assertEquals(1, file.getSequence());
+            assertArrayEquals(checkpoint(1000, 1), file.loadLatest());
+        }
+    }
+
+    private static byte[] checkpoint(int length, int value){
+        byte[] checkpoint = new byte[length];
+        Arrays.fill(checkpoint, (byte) value);
+        return checkpoint;
+    }
+}
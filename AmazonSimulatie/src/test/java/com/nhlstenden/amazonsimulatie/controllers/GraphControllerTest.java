@@ -0,0 +1,367 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import com.nhlstenden.amazonsimulatie.models.EdgeWeighted;
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+import com.nhlstenden.amazonsimulatie.pathfinding.DStarLite;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathResult;
+import com.nhlstenden.amazonsimulatie.pathfinding.PathfindingEngine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * de zoekalgoritmes van de graaf geven geldige paden die even lang zijn als met dijkstra
+ */
+public class GraphControllerTest {
+
+    private static final int SIZE = 60;
+    private static final int QUERIES = 200;
+
+    private GraphController graph;
+    private List<NodeWeighted> floor;
+    private Random random;
+
+    @Before
+    public void setUp(){
+        graph = new GraphController();
+        graph.populateGraph(new WarehouseLayout(SIZE, SIZE, 3, 14, SIZE / 2));
+        floor = nodes(graph);
+        random = new Random(SIZE);
+    }
+
+    @Test
+    public void heapDijkstraMatchesLinearScan(){
+        // de lineaire versie is kwadratisch, daarom een kleiner magazijn
+        graph = new GraphController();
+        graph.populateGraph(new WarehouseLayout(SIZE / 2, SIZE / 2, 3, 14, SIZE / 4));
+        floor = nodes(graph);
+        for (int i = 0; i < QUERIES / 4; i++){
+            NodeWeighted start = randomNode();
+            NodeWeighted end = randomNode();
+            PathResult heap = graph.dijkstraShortestPath(start, end);
+            PathResult scan = graph.dijkstraShortestPathLinearScan(start, end);
+            assertTrue(heap.isFound());
+            assertEquals(scan.getCost(), heap.getCost());
+            assertEquals(heap.getCost(), cost(heap));
+            assertEquals(start.getId(), heap.getStart());
+            assertEquals(end.getId(), heap.getEnd());
+        }
+    }
+
+    @Test
+    public void dijkstraGoesAroundOccupiedNodes(){
+        NodeWeighted[] ends = farApart();
+        PathResult free = graph.dijkstraShortestPath(ends[0], ends[1]);
+        NodeWeighted blocked = graph.getNode(free.getNode(free.length() / 2));
+        blocked.toggleOccupation();
+
+        PathResult around = graph.dijkstraShortestPath(ends[0], ends[1]);
+        assertTrue(around.isFound());
+        assertTrue(around.getCost() >= free.getCost());
+        for (int node : around.toArray()){
+            assertTrue(node != blocked.getId());
+        }
+        assertEquals(graph.dijkstraShortestPathLinearScan(ends[0], ends[1]).getCost(), around.getCost());
+    }
+
+    @Test
+    public void aStarFindsDijkstraCostWithFewerExpansions(){
+        for (int i = 0; i < QUERIES; i++){
+            NodeWeighted start = randomNode();
+            NodeWeighted end = randomNode();
+            PathResult aStar = graph.aStarShortestPath(start, end);
+            assertEquals(graph.dijkstraShortestPath(start, end).getCost(), aStar.getCost());
+            assertEquals(aStar.getCost(), cost(aStar));
+        }
+        assertTrue(graph.getStatistics(PathfindingEngine.A_STAR).getExpandedNodes()
+                < graph.getStatistics(PathfindingEngine.DIJKSTRA).getExpandedNodes());
+    }
+
+    @Test
+    public void aStarStaysOptimalWithHeavierEdges(){
+        for (int i = 0; i < 100; i++){
+            NodeWeighted node = randomNode();
+            for (EdgeWeighted edge : node.getEdges()){
+                edge.setWeight(1 + random.nextInt(5));
+            }
+        }
+        for (int i = 0; i < QUERIES; i++){
+            NodeWeighted start = randomNode();
+            NodeWeighted end = randomNode();
+            assertEquals(graph.dijkstraShortestPath(start, end).getCost(), graph.aStarShortestPath(start, end).getCost());
+        }
+    }
+
+    @Test
+    public void jumpPointSearchFindsDijkstraCost(){
+        for (int i = 0; i < 20; i++){
+            randomNode().toggleOccupation();
+        }
+        for (int i = 0; i < QUERIES; i++){
+            NodeWeighted start = randomNode();
+            NodeWeighted end = randomNode();
+            PathResult jumpPoint = graph.jumpPointShortestPath(start, end);
+            assertEquals(graph.dijkstraShortestPath(start, end).getCost(), jumpPoint.getCost());
+            if (jumpPoint.isFound()){
+                assertEquals(jumpPoint.getCost(), cost(jumpPoint));
+            }
+        }
+        assertTrue(graph.getStatistics(PathfindingEngine.JUMP_POINT).getExpandedNodes()
+                < graph.getStatistics(PathfindingEngine.DIJKSTRA).getExpandedNodes());
+    }
+
+    @Test
+    public void jumpPointSearchStaysOptimalWithHeavierEdges(){
+        randomNode().getEdges().getFirst().setWeight(5);
+        for (int i = 0; i < QUERIES; i++){
+            NodeWeighted start = randomNode();
+            NodeWeighted end = randomNode();
+            assertEquals(graph.dijkstraShortestPath(start, end).getCost(), graph.jumpPointShortestPath(start, end).getCost());
+        }
+    }
+
+    @Test
+    public void hierarchicalPathIsValidAndNotShorterThanDijkstra(){
+        int optimal = 0;
+        for (int i = 0; i < QUERIES; i++){
+            NodeWeighted start = randomNode();
+            NodeWeighted end = randomNode();
+            PathResult hierarchical = graph.hierarchicalPath(start, end);
+            int dijkstra = graph.dijkstraShortestPath(start, end).getCost();
+            assertTrue(hierarchical.isFound());
+            assertEquals(hierarchical.getCost(), cost(hierarchical));
+            assertTrue(hierarchical.getCost() >= dijkstra);
+            if (hierarchical.getCost() == dijkstra){
+                optimal++;
+            }
+        }
+        // bijna optimaal: de meeste paden zijn even kort
+        assertTrue(optimal > QUERIES / 2);
+    }
+
+    @Test
+    public void hierarchicalPathsAreNotCached(){
+        graph.setEngine(PathfindingEngine.HIERARCHICAL);
+        NodeWeighted[] ends = farApart();
+        assertTrue(graph.shortestPath(ends[0], ends[1]).isFound());
+        assertEquals(0, graph.getRouteCache().size());
+    }
+
+    @Test
+    public void incrementalReplanningMatchesSearchFromScratch(){
+        NodeWeighted[] position = new NodeWeighted[10];
+        DStarLite[] planners = new DStarLite[position.length];
+        for (int robot = 0; robot < position.length; robot++){
+            position[robot] = randomNode();
+            planners[robot] = graph.createIncrementalPlanner(position[robot], randomNode());
+        }
+
+        for (int tick = 0; tick < 50; tick++){
+            for (int i = 0; i < 5; i++){
+                NodeWeighted node = randomNode();
+                EdgeWeighted edge = node.getEdges().get(random.nextInt(node.getEdges().size()));
+                edge.setWeight(1 + random.nextInt(5));
+            }
+            randomNode().toggleOccupation();
+            for (int robot = 0; robot < position.length; robot++){
+                NodeWeighted goal = graph.getNode(planners[robot].getGoal());
+                PathResult path = graph.replan(planners[robot], position[robot]);
+                assertEquals(graph.dijkstraShortestPath(position[robot], goal).getCost(), path.getCost());
+                if (path.length() > 1){
+                    position[robot] = graph.getNode(path.getNode(1));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void incrementalPlannerNeedsNodesOfTheGraph(){
+        graph.createIncrementalPlanner(randomNode(), new NodeWeighted("buiten", 0, 0));
+    }
+
+    @Test
+    public void nearestFindsTheSameTargetsAsASearchPerTarget(){
+        for (int i = 0; i < 20; i++){
+            randomNode().toggleOccupation();
+        }
+        for (int i = 0; i < QUERIES / 10; i++){
+            NodeWeighted start = randomNode();
+            List<NodeWeighted> targets = new ArrayList<>();
+            for (int t = 0; t < 30; t++){
+                targets.add(randomNode());
+            }
+            targets.add(new NodeWeighted("buiten", 0, 0));
+
+            // een doel dat twee keer in de lijst staat telt één keer
+            List<Integer> costs = new ArrayList<>();
+            for (NodeWeighted target : new HashSet<>(targets)){
+                PathResult path = graph.dijkstraShortestPath(start, target);
+                if (path.isFound()){
+                    costs.add(path.getCost());
+                }
+            }
+            Collections.sort(costs);
+
+            List<PathResult> nearest = graph.nearest(start, targets, 5);
+            assertEquals(Math.min(5, costs.size()), nearest.size());
+            for (int n = 0; n < nearest.size(); n++){
+                PathResult path = nearest.get(n);
+                assertEquals(start.getId(), path.getStart());
+                assertTrue(targets.contains(graph.getNode(path.getEnd())));
+                assertEquals(costs.get(n).intValue(), path.getCost());
+                assertEquals(path.getCost(), cost(path));
+            }
+        }
+    }
+
+    @Test
+    public void queriesFromSeveralThreadsGiveTheSameResults() throws Exception{
+        final NodeWeighted[] starts = new NodeWeighted[QUERIES];
+        final NodeWeighted[] ends = new NodeWeighted[QUERIES];
+        final PathResult[] expected = new PathResult[QUERIES];
+        for (int i = 0; i < QUERIES; i++){
+            starts[i] = randomNode();
+            ends[i] = randomNode();
+            expected[i] = graph.aStarShortestPath(starts[i], ends[i]);
+        }
+
+        final PathResult[][] results = new PathResult[4][QUERIES];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t++){
+            final PathResult[] own = results[t];
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < QUERIES; i++){
+                        own[i] = graph.aStarShortestPath(starts[i], ends[i]);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads){
+            thread.join();
+        }
+
+        for (PathResult[] own : results){
+            for (int i = 0; i < QUERIES; i++){
+                assertTrue(own[i] != null);
+                assertEquals(expected[i].getCost(), own[i].getCost());
+                assertEquals(expected[i].getCost(), cost(own[i]));
+            }
+        }
+    }
+
+    @Test
+    public void cachedPathIsDroppedWhenANodeOnItIsOccupied(){
+        NodeWeighted[] ends = farApart();
+        PathResult first = graph.shortestPath(ends[0], ends[1]);
+        assertSame(first, graph.shortestPath(ends[0], ends[1]));
+        assertEquals(1, graph.getRouteCache().getHits());
+
+        NodeWeighted blocked = graph.getNode(first.getNode(first.length() / 2));
+        blocked.toggleOccupation();
+        PathResult around = graph.shortestPath(ends[0], ends[1]);
+        assertNotSame(first, around);
+        assertTrue(around.getCost() >= first.getCost());
+        for (int node : around.toArray()){
+            assertTrue(node != blocked.getId());
+        }
+        assertEquals(1, graph.getRouteCache().getInvalidations());
+
+        // de node komt vrij, dan mag de omweg niet meer uit de cache komen
+        blocked.toggleOccupation();
+        assertEquals(first.getCost(), graph.shortestPath(ends[0], ends[1]).getCost());
+    }
+
+    @Test
+    public void cachedPathIsDroppedWhenAnEdgeGetsHeavier(){
+        NodeWeighted[] ends = farApart();
+        PathResult first = graph.shortestPath(ends[0], ends[1]);
+        NodeWeighted from = graph.getNode(first.getNode(0));
+        int next = first.getNode(1);
+        for (EdgeWeighted edge : from.getEdges()){
+            if (edge.getDestination().getId() == next){
+                edge.setWeight(edge.getWeight() + 100);
+            }
+        }
+        PathResult after = graph.shortestPath(ends[0], ends[1]);
+        assertNotSame(first, after);
+        assertEquals(graph.dijkstraShortestPath(ends[0], ends[1]).getCost(), after.getCost());
+    }
+
+    @Test
+    public void switchingEngineClearsRouteCache(){
+        NodeWeighted[] ends = farApart();
+        graph.shortestPath(ends[0], ends[1]);
+        assertEquals(1, graph.getRouteCache().size());
+
+        graph.setEngine(PathfindingEngine.A_STAR);
+        assertEquals(0, graph.getRouteCache().size());
+        assertEquals(graph.dijkstraShortestPath(ends[0], ends[1]).getCost(), graph.shortestPath(ends[0], ends[1]).getCost());
+        assertEquals(1, graph.getRouteCache().size());
+    }
+
+    /**
+     * @return alle nodes van de vloer van een graaf
+     */
+    static List<NodeWeighted> nodes(GraphController graph){
+        List<NodeWeighted> nodes = new ArrayList<>();
+        for (NodeWeighted[] row : graph.getNodeArray()){
+            for (NodeWeighted node : row){
+                if (node != null){
+                    nodes.add(node);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    private NodeWeighted randomNode(){
+        return floor.get(random.nextInt(floor.size()));
+    }
+
+    /**
+     * @return een start en eind met een pad van minstens SIZE lang, zodat er onderweg iets te blokkeren is
+     */
+    private NodeWeighted[] farApart(){
+        while (true){
+            NodeWeighted start = randomNode();
+            NodeWeighted end = randomNode();
+            PathResult path = graph.dijkstraShortestPath(start, end);
+            if (path.isFound() && path.length() > SIZE){
+                return new NodeWeighted[]{start, end};
+            }
+        }
+    }
+
+    /**
+     * @return de som van de gewichten van de edges op het pad, faalt als twee opeenvolgende nodes geen edge hebben
+     */
+    private int cost(PathResult path){
+        int cost = 0;
+        for (int i = 1; i < path.length(); i++){
+            EdgeWeighted step = null;
+            for (EdgeWeighted edge : graph.getNode(path.getNode(i - 1)).getEdges()){
+                if (edge.getDestination().getId() == path.getNode(i)){
+                    step = edge;
+                }
+            }
+            assertTrue("geen edge tussen " + path.getNode(i - 1) + " en " + path.getNode(i), step != null);
+            cost += step.getWeight();
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,50 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import com.nhlstenden.amazonsimulatie.models.Scenario;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * hetzelfde scenario geeft elke keer dezelfde berichten, een ander seed andere
+ */
+public class ScenarioRunnerTest {
+
+    private static final int TICKS = 600;
+
+    @Test
+    public void sameSeedGivesTheSameLog(){
+        StringWriter firstLog = new StringWriter();
+        StringWriter secondLog = new StringWriter();
+        ScenarioRunner first = new ScenarioRunner(scenario(11), firstLog);
+        ScenarioRunner second = new ScenarioRunner(scenario(11), secondLog);
+        first.run(TICKS);
+        second.run(TICKS / 2);
+        second.run(TICKS / 2);
+
+        assertTrue(first.getEvents() > 0);
+        assertTrue(first.getWorld().getRacksDelivered() > 0);
+        assertEquals(first.getEvents(), second.getEvents());
+        assertEquals(first.getChecksum(), second.getChecksum());
+        assertEquals(firstLog.toString(), secondLog.toString());
+        assertEquals(first.getWorld().getRacksDelivered(), second.getWorld().getRacksDelivered());
+    }
+
+    @Test
+    public void otherSeedGivesAnotherLog(){
+        ScenarioRunner first = new ScenarioRunner(scenario(11));
+        ScenarioRunner other = new ScenarioRunner(scenario(12));
+        first.run(TICKS);
+        other.run(TICKS);
+        assertTrue(first.getChecksum() != other.getChecksum());
+    }
+
+    private static Scenario scenario(long seed){
+        return new Scenario(seed, new WarehouseLayout(40, 30, 3, 14, 15, 30), 30, 30, 200, 20);
+    }
+}
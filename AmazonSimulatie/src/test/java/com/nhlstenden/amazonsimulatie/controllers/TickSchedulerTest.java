@@ -0,0 +1,79 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * de scheduler houdt het schema aan, ook als een tick tijd kost, en slaat over wat hij niet kan inhalen
+ */
+public class TickSchedulerTest {
+
+    @Test
+    public void slowTicksDoNotMakeTheScheduleDrift() throws Exception{
+        // een tick van 5 ms met 10 ms rust erna zou 66 ticks per seconde halen in plaats van 100
+        TickScheduler scheduler = new TickScheduler(sleep(5), 100, TickScheduler.DEFAULT_MAX_CATCH_UP);
+        run(scheduler, 1000);
+        assertTrue("ticks: " + scheduler.getTicks(), scheduler.getTicks() >= 85 && scheduler.getTicks() <= 102);
+        assertEquals(0, scheduler.getSkippedTicks());
+        assertTrue(scheduler.getAverageDurationMillis() >= 5);
+    }
+
+    @Test
+    public void ticksThatCanNotBeCaughtUpAreSkipped() throws Exception{
+        TickScheduler scheduler = new TickScheduler(sleep(30), 100, 2);
+        run(scheduler, 600);
+        assertTrue(scheduler.getSkippedTicks() > 0);
+        assertTrue(scheduler.getTicks() + scheduler.getSkippedTicks() >= 55);
+        assertTrue(scheduler.getMaxLagMillis() < 150);
+    }
+
+    @Test
+    public void runDueOnlyRunsTheTicksThatAreDue(){
+        final AtomicInteger count = new AtomicInteger();
+        TickScheduler scheduler = new TickScheduler(new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        }, 1, 5);
+        long wait = scheduler.runDue();
+        assertEquals(1, count.get());
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(500));
+        scheduler.runDue();
+        assertEquals(1, count.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ticksPerSecondMustBePositive(){
+        new TickScheduler(sleep(0), 0, 1);
+    }
+
+    private static Runnable sleep(final long millis){
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    /**
+     * laat de scheduler een tijd op een eigen thread lopen
+     */
+    private static void run(TickScheduler scheduler, long millis) throws InterruptedException{
+        Thread thread = new Thread(scheduler);
+        thread.start();
+        Thread.sleep(millis);
+        scheduler.stop();
+        thread.join();
+    }
+}
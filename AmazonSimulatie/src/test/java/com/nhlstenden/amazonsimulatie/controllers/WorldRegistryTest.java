@@ -0,0 +1,117 @@
+package com.nhlstenden.amazonsimulatie.controllers;
+
+import com.nhlstenden.amazonsimulatie.models.World;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * de werelden ticken elk op hun eigen snelheid op een gedeelde pool, en een wereld die fout gaat
+ * houdt de andere niet tegen
+ */
+public class WorldRegistryTest {
+
+    private WorldRegistry registry;
+
+    @Before
+    public void setUp(){
+        registry = new WorldRegistry(2);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException{
+        registry.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void worldsTickAtTheirOwnRate() throws InterruptedException{
+        SimulationController slow = registry.add("slow", new World(0, 5), 10);
+        SimulationController fast = registry.add("fast", new World(0, 5), 50);
+        SimulationController other = registry.add("other", new World(0, 5), 50);
+        Thread.sleep(1000);
+
+        long slowTicks = slow.getScheduler().getTicks();
+        long fastTicks = fast.getScheduler().getTicks();
+        assertTrue("ticks: " + slowTicks, slowTicks >= 7 && slowTicks <= 12);
+        assertTrue("ticks: " + fastTicks, fastTicks >= 35 && fastTicks <= 52);
+        assertTrue(other.getScheduler().getTicks() >= 35);
+        assertEquals(3, registry.size());
+        assertEquals(2, registry.getThreads());
+    }
+
+    @Test
+    public void failingWorldIsRemovedAndTheOthersKeepTicking() throws InterruptedException{
+        SimulationController healthy = registry.add("healthy", new World(0, 5), 50);
+        registry.add("broken", new World(0, 5) {
+            @Override
+            public void update(){
+                throw new IllegalStateException("kapotte wereld");
+            }
+        }, 50);
+        Thread.sleep(300);
+        assertEquals(Arrays.asList("healthy"), registry.getNames());
+        assertNull(registry.get("broken"));
+
+        long ticks = healthy.getScheduler().getTicks();
+        Thread.sleep(300);
+        assertTrue(healthy.getScheduler().getTicks() > ticks);
+    }
+
+    @Test
+    public void removedWorldStopsTicking() throws InterruptedException{
+        SimulationController first = registry.add("first", new World(0, 5), 50);
+        SimulationController second = registry.add("second", new World(0, 5), 50);
+        assertSame(first, registry.get("first"));
+        assertEquals(Arrays.asList("first", "second"), registry.getNames());
+        Thread.sleep(200);
+
+        assertTrue(registry.remove("first"));
+        assertFalse(registry.remove("first"));
+        assertNull(registry.get("first"));
+        assertEquals(Arrays.asList("second"), registry.getNames());
+        // de tick die nog liep mag afgemaakt worden
+        Thread.sleep(100);
+        long ticks = first.getScheduler().getTicks();
+        long secondTicks = second.getScheduler().getTicks();
+        Thread.sleep(300);
+        assertEquals(ticks, first.getScheduler().getTicks());
+        assertTrue(second.getScheduler().getTicks() > secondTicks);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateNameIsRejected(){
+        registry.add("world", new World(0, 5), 10);
+        registry.add("world", new World(0, 5), 10);
+    }
+
+    @Test
+    public void onlySafeNamesAreValid(){
+        assertTrue(WorldRegistry.isValidName(WorldRegistry.DEFAULT_WORLD));
+        assertTrue(WorldRegistry.isValidName("hal-2_b"));
+        assertFalse(WorldRegistry.isValidName(null));
+        assertFalse(WorldRegistry.isValidName(""));
+        assertFalse(WorldRegistry.isValidName("../hal"));
+        assertFalse(WorldRegistry.isValidName("hal 2"));
+    }
+
+    @Test
+    public void shutdownStopsAllWorlds() throws InterruptedException{
+        SimulationController world = registry.add("world", new World(0, 5), 50);
+        Thread.sleep(100);
+        assertTrue(registry.shutdown(5, TimeUnit.SECONDS));
+        assertEquals(0, registry.size());
+        long ticks = world.getScheduler().getTicks();
+        Thread.sleep(100);
+        assertEquals(ticks, world.getScheduler().getTicks());
+    }
+}
@@ -0,0 +1,86 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * kinderen volgen hun ouder, en verliezen hun ouder als die verwijderd wordt
+ */
+public class EntityStoreTest {
+
+    private EntityStore store;
+    private Robot robot;
+    private Rack carried;
+    private Rack standing;
+
+    @Before
+    public void setUp(){
+        store = new EntityStore();
+        robot = new Robot(store, 4, 0, 6, 0, 90, 0);
+        carried = new Rack(store, 1, 2);
+        standing = new Rack(store, 8, 9);
+        store.attach(carried.getId(), robot.getId(), 0.5);
+    }
+
+    @Test
+    public void childFollowsItsParent(){
+        assertEquals(4.0, store.x(carried.getId()), 0);
+        assertEquals(0.5, store.y(carried.getId()), 0);
+        assertEquals(90.0, store.rotationY(carried.getId()), 0);
+
+        store.setX(robot.getId(), 5);
+        assertEquals(1, store.followParents());
+        assertEquals(5.0, store.x(carried.getId()), 0);
+        assertEquals(0, store.followParents());
+        assertEquals(8.0, store.x(standing.getId()), 0);
+    }
+
+    @Test
+    public void removedParentLeavesItsChildrenBehind(){
+        store.remove(robot.getId());
+        assertEquals(EntityStore.NONE, store.parent(carried.getId()));
+        assertNull(store.entity(robot.getId()));
+
+        // het vrije id krijgt een nieuw object zonder kinderen
+        Robot next = new Robot(store, 0, 0);
+        assertEquals(robot.getId(), next.getId());
+        assertSame(next, store.entity(next.getId()));
+        store.setX(next.getId(), 3);
+        assertEquals(0, store.followParents());
+        assertEquals(4.0, store.x(carried.getId()), 0);
+    }
+
+    @Test
+    public void detachedChildIsNotReleasedWithItsOldParent(){
+        store.detach(carried.getId());
+        store.attach(carried.getId(), standing.getId(), 1);
+        store.remove(robot.getId());
+        assertEquals(standing.getId(), store.parent(carried.getId()));
+        store.remove(standing.getId());
+        assertEquals(EntityStore.NONE, store.parent(carried.getId()));
+    }
+
+    @Test
+    public void restoredStoreStillReleasesChildren() throws IOException{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        store.writeState(new DataOutputStream(bytes));
+        EntityStore restored = EntityStore.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), null);
+        Robot owner = Robot.restore(restored, robot.getId());
+        Rack.restore(restored, carried.getId());
+
+        assertEquals(robot.getId(), restored.parent(carried.getId()));
+        assertEquals(store.uuid(carried.getId()), restored.uuid(carried.getId()));
+        restored.remove(owner.getId());
+        assertEquals(EntityStore.NONE, restored.parent(carried.getId()));
+    }
+}
@@ -0,0 +1,120 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * gebeurtenissen worden op volgorde van tijd uitgevoerd, en op dezelfde tick in de volgorde waarin ze gepland zijn
+ */
+public class EventQueueTest {
+
+    @Test
+    public void eventsRunInOrderOfTimeAndThenOfScheduling(){
+        EventQueue events = new EventQueue();
+        List<String> log = new ArrayList<>();
+        events.schedule(5, record(log, events, "c"));
+        events.schedule(2, record(log, events, "a"));
+        events.schedule(5, record(log, events, "d"));
+        events.schedule(2, record(log, events, "b"));
+        assertEquals(2, events.nextTime());
+        assertEquals(4, events.size());
+
+        assertEquals(4, events.advanceTo(10));
+        assertEquals(Arrays.asList("a@2", "b@2", "c@5", "d@5"), log);
+        assertEquals(10, events.now());
+        assertEquals(Long.MAX_VALUE, events.nextTime());
+        assertEquals(4, events.getExecuted());
+    }
+
+    @Test
+    public void advanceToOnlyRunsEventsUpToThatTick(){
+        EventQueue events = new EventQueue();
+        List<String> log = new ArrayList<>();
+        events.schedule(3, record(log, events, "a"));
+        events.schedule(7, record(log, events, "b"));
+
+        assertEquals(0, events.advanceTo(2));
+        assertEquals(1, events.advanceTo(3));
+        assertEquals(Arrays.asList("a@3"), log);
+        assertEquals(3, events.now());
+        assertEquals(7, events.nextTime());
+        assertEquals(0, events.advanceTo(6));
+        assertEquals(1, events.advanceTo(7));
+        assertEquals(Arrays.asList("a@3", "b@7"), log);
+    }
+
+    @Test
+    public void eventsScheduledDuringAdvanceRunInTheSameAdvance(){
+        final EventQueue events = new EventQueue();
+        final List<String> log = new ArrayList<>();
+        events.schedule(1, new Runnable() {
+            @Override
+            public void run() {
+                log.add("eerste@" + events.now());
+                events.schedule(0, record(log, events, "direct"));
+                events.schedule(4, record(log, events, "later"));
+                events.schedule(20, record(log, events, "te laat"));
+            }
+        });
+        assertEquals(3, events.advanceTo(10));
+        assertEquals(Arrays.asList("eerste@1", "direct@1", "later@5"), log);
+        assertEquals(21, events.nextTime());
+    }
+
+    @Test
+    public void cancelledEventDoesNotRun(){
+        EventQueue events = new EventQueue();
+        List<String> log = new ArrayList<>();
+        EventQueue.Event cancelled = events.schedule(1, record(log, events, "a"));
+        events.schedule(2, record(log, events, "b"));
+        assertTrue(events.cancel(cancelled));
+        assertFalse(events.cancel(cancelled));
+        events.advanceTo(5);
+        assertEquals(Arrays.asList("b@2"), log);
+    }
+
+    @Test
+    public void restoredEventsKeepTheirPlaceInTheQueue(){
+        // een checkpoint op tick 4 met de volgnummers 0 tot 3 al uitgedeeld
+        EventQueue events = new EventQueue(4, 3);
+        List<String> log = new ArrayList<>();
+        events.schedule(2, record(log, events, "nieuw"));
+        events.restore(6, 2, record(log, events, "oud"));
+        events.restore(5, 0, record(log, events, "eerst"));
+        events.advanceTo(6);
+        assertEquals(Arrays.asList("eerst@5", "oud@6", "nieuw@6"), log);
+        assertEquals(4, events.getNextSequence());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void clockCanNotGoBack(){
+        EventQueue events = new EventQueue();
+        events.advanceTo(5);
+        events.advanceTo(4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void eventCanNotBeScheduledInThePast(){
+        new EventQueue().schedule(-1, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    private static Runnable record(final List<String> log, final EventQueue events, final String name){
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add(name + "@" + events.now());
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * het grid vindt dezelfde objecten als alle objecten aflopen, ook nadat ze bewogen hebben
+ */
+public class SpatialGridTest {
+
+    private static final int OBJECTS = 500;
+    private static final int QUERIES = 200;
+
+    private EntityStore store;
+    private List<Object3D> objects;
+    private Random random;
+
+    @Before
+    public void setUp(){
+        store = new EntityStore();
+        objects = new ArrayList<>();
+        random = new Random(OBJECTS);
+        for (int i = 0; i < OBJECTS; i++){
+            // ook objecten buiten het magazijn, zoals trucks op de weg
+            double x = random.nextInt(60) - 10;
+            double z = random.nextInt(60) - 10;
+            objects.add(i % 5 == 0 ? new Robot(store, x, z) : new Rack(store, x, z));
+        }
+    }
+
+    @Test
+    public void queriesMatchAllObjects(){
+        check(store.getGrid());
+    }
+
+    @Test
+    public void queriesMatchAllObjectsAfterMovingAndRemoving(){
+        SpatialGrid grid = store.getGrid();
+        for (int i = 0; i < OBJECTS; i += 3){
+            int id = id(objects.get(i));
+            store.setX(id, store.x(id) + random.nextInt(9) - 4);
+            store.setZ(id, store.z(id) + random.nextDouble() * 20);
+        }
+        for (int i = OBJECTS - 1; i >= 0; i -= 7){
+            store.remove(id(objects.remove(i)));
+        }
+        assertEquals(objects.size(), grid.size());
+        check(grid);
+    }
+
+    private void check(SpatialGrid grid){
+        for (int q = 0; q < QUERIES; q++){
+            double x = random.nextDouble() * 60 - 10;
+            double z = random.nextDouble() * 60 - 10;
+            double radius = random.nextDouble() * 8;
+
+            List<Double> expected = new ArrayList<>();
+            List<Double> expectedRobots = new ArrayList<>();
+            HashSet<Object3D> inside = new HashSet<>();
+            List<Object3D> sameCell = new ArrayList<>();
+            for (Object3D object : objects){
+                double distance = distance(object, x, z);
+                if (distance <= radius){
+                    inside.add(object);
+                }
+                expected.add(distance);
+                if (object instanceof Robot){
+                    expectedRobots.add(distance);
+                }
+                if (cell(grid, object.getX()) == cell(grid, x) && cell(grid, object.getZ()) == cell(grid, z)){
+                    sameCell.add(object);
+                }
+            }
+            Collections.sort(expected);
+            Collections.sort(expectedRobots);
+
+            List<Object3D> within = grid.within(x, z, radius, Object3D.class);
+            assertEquals(inside, new HashSet<>(within));
+            assertSorted(within, x, z);
+
+            List<Object3D> nearest = grid.nearest(x, z, 10, Object3D.class);
+            assertEquals(Math.min(10, objects.size()), nearest.size());
+            for (int i = 0; i < nearest.size(); i++){
+                assertEquals(expected.get(i), distance(nearest.get(i), x, z), 1e-9);
+            }
+            List<Robot> robots = grid.nearest(x, z, 3, Robot.class);
+            for (int i = 0; i < robots.size(); i++){
+                assertEquals(expectedRobots.get(i), distance(robots.get(i), x, z), 1e-9);
+            }
+
+            assertEquals(new HashSet<>(sameCell), new HashSet<>(grid.at(x, z, Object3D.class)));
+        }
+    }
+
+    private static void assertSorted(List<? extends Object3D> found, double x, double z){
+        for (int i = 1; i < found.size(); i++){
+            assertTrue(distance(found.get(i - 1), x, z) <= distance(found.get(i), x, z));
+        }
+    }
+
+    private static double distance(Object3D object, double x, double z){
+        return Math.hypot(object.getX() - x, object.getZ() - z);
+    }
+
+    private static int cell(SpatialGrid grid, double coordinate){
+        return (int) Math.floor(coordinate / grid.getCellSize());
+    }
+
+    private static int id(Object3D object){
+        return object instanceof Robot ? ((Robot) object).getId() : ((Rack) object).getId();
+    }
+}
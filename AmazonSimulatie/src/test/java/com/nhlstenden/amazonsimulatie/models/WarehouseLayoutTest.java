@@ -0,0 +1,71 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * elk rekslot van een layout ligt naast een vak waar robots rijden en zit dus in de graaf
+ */
+public class WarehouseLayoutTest {
+
+    @Test
+    public void everyRackSlotIsNextToALane(){
+        for (int spacing = 2; spacing <= 3; spacing++){
+            for (int depth = 1; depth <= 12; depth++){
+                WarehouseLayout layout = new WarehouseLayout(20, depth, spacing, 4 + depth % 3, 10);
+                for (int x = 0; x < layout.getSizeX(); x++){
+                    for (int z = 0; z < layout.getSizeZ(); z++){
+                        if (layout.isRackSlot(x, z)){
+                            assertTrue("slot " + x + "," + z + " is niet bereikbaar", hasLane(layout, x, z));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void everyRackSlotIsInTheGraph(){
+        WarehouseLayout layout = new WarehouseLayout(40, 40, 3, 14, 20);
+        GraphController graph = new GraphController();
+        graph.populateGraph(layout);
+        NodeWeighted[][] nodes = graph.getNodeArray();
+        int slots = 0;
+        for (int x = 0; x < layout.getSizeX(); x++){
+            for (int z = 0; z < layout.getSizeZ(); z++){
+                if (layout.isRackSlot(x, z)){
+                    assertTrue(nodes[x][z].getId() >= 0);
+                    assertTrue(!nodes[x][z].getEdges().isEmpty());
+                    slots++;
+                }
+            }
+        }
+        assertTrue(slots > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wideAislesAreRejected(){
+        new WarehouseLayout(20, 20, 4, 14, 10);
+    }
+
+    @Test
+    public void defaultLayoutHasTheOriginalSize(){
+        WarehouseLayout layout = WarehouseLayout.defaultLayout();
+        assertEquals(30, layout.getSizeX());
+        assertEquals(30, layout.getSizeZ());
+    }
+
+    private static boolean hasLane(WarehouseLayout layout, int x, int z){
+        int[][] neighbours = {{x - 1, z}, {x + 1, z}, {x, z - 1}, {x, z + 1}};
+        for (int[] other : neighbours){
+            if (layout.isConnected(x, z, other[0], other[1])){
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * een wereld die uit een checkpoint hersteld is, geeft hetzelfde checkpoint en tickt verder. de drukte
+ * op de edges zit niet in het checkpoint, daarom wordt niet verwacht dat hij daarna precies hetzelfde
+ * doet als de oorspronkelijke wereld
+ */
+public class WorldCheckpointTest {
+
+    @Test
+    public void restoredWorldGivesTheSameCheckpoint() throws IOException{
+        World world = new World(10, 5);
+        world.deliverPackages(10);
+        for (int tick = 0; tick < 300; tick++){
+            world.update();
+            world.pickupRack();
+        }
+
+        byte[] checkpoint = WorldCheckpoint.capture(world);
+        World restored = WorldCheckpoint.restore(checkpoint);
+        assertArrayEquals(checkpoint, WorldCheckpoint.capture(restored));
+        assertEquals(world.getRacksDelivered(), restored.getRacksDelivered());
+        assertEquals(world.getTrucksServed(), restored.getTrucksServed());
+        try (WorldSnapshot before = world.acquireSnapshot(); WorldSnapshot after = restored.acquireSnapshot()){
+            assertEquals(before.size(), after.size());
+        }
+    }
+
+    @Test
+    public void restoredWorldKeepsDeliveringRacks() throws IOException{
+        World world = new World(10, 5);
+        world.deliverPackages(20);
+        for (int tick = 0; tick < 100; tick++){
+            world.update();
+            world.pickupRack();
+        }
+
+        World restored = WorldCheckpoint.restore(WorldCheckpoint.capture(world));
+        int delivered = restored.getRacksDelivered();
+        for (int tick = 0; tick < 1000; tick++){
+            restored.update();
+            restored.pickupRack();
+        }
+        assertTrue(restored.getRacksDelivered() > delivered);
+
+        byte[] checkpoint = WorldCheckpoint.capture(restored);
+        assertArrayEquals(checkpoint, WorldCheckpoint.capture(WorldCheckpoint.restore(checkpoint)));
+    }
+
+    @Test
+    public void congestionFallsBackInARestoredWorld() throws IOException{
+        World world = new World(0, 0);
+        NodeWeighted node = world.graph.getNode(0);
+        EdgeWeighted edge = node.getEdges().getFirst();
+        int heavy = 1 + GraphController.MAX_CONGESTION;
+        edge.setWeight(heavy);
+        for (EdgeWeighted back : edge.getDestination().getEdges()){
+            if (back.getDestination() == node){
+                back.setWeight(heavy);
+            }
+        }
+
+        World restored = WorldCheckpoint.restore(WorldCheckpoint.capture(world));
+        EdgeWeighted restoredEdge = restored.graph.getNode(0).getEdges().getFirst();
+        assertEquals(heavy, restoredEdge.getWeight());
+        for (int tick = 0; tick < GraphController.TRAFFIC_WINDOW; tick++){
+            restored.update();
+            restored.pickupRack();
+        }
+        assertEquals(1, restoredEdge.getWeight());
+        assertEquals(0, restored.graph.getCompactGraph().changedWeightCount());
+    }
+}
@@ -0,0 +1,276 @@
+package com.nhlstenden.amazonsimulatie.models;
+
+import com.nhlstenden.amazonsimulatie.controllers.ScenarioRunner;
+
+import org.junit.Test;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * parallel updaten geeft dezelfde berichten als een voor een, alleen objecten die veranderd zijn
+ * worden geupdate en verstuurd, en een snapshot verandert niet zolang hij open is
+ */
+public class WorldTest {
+
+    private static final int TICKS = 300;
+
+    @Test
+    public void parallelUpdateSendsTheSameEventsInTheSameOrder(){
+        Scenario scenario = new Scenario(7, new WarehouseLayout(160, 160, 3, 14, 80), 30, 400, 100, 50);
+        ScenarioRunner serial = new ScenarioRunner(scenario);
+        ScenarioRunner parallel = new ScenarioRunner(scenario);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        parallel.getWorld().setWorkerPool(pool);
+        parallel.getWorld().setParallelUpdate(true);
+
+        serial.run(100);
+        parallel.run(100);
+
+        // er zijn genoeg robots wakker om de updates in meerdere stukken te verdelen
+        assertTrue(parallel.getWorld().getAwakeCount() > World.UPDATE_CHUNK_SIZE);
+        assertTrue(serial.getEvents() > 0);
+        assertEquals(serial.getEvents(), parallel.getEvents());
+        assertEquals(serial.getChecksum(), parallel.getChecksum());
+        pool.shutdown();
+    }
+
+    @Test
+    public void idleWorldSleepsAndSendsNothing(){
+        // zonder rekken hebben de robots niets te doen
+        World world = new World(0, 20);
+        final int[] updates = new int[1];
+        world.addObserver(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                // trucks rijden ook zonder werk heen en weer
+                if (Model.UPDATE_COMMAND.equals(evt.getPropertyName())
+                        && !"truck".equals(((Object3D) evt.getNewValue()).getType())){
+                    updates[0]++;
+                }
+            }
+        });
+        for (int tick = 0; tick < 20; tick++){
+            world.update();
+            world.pickupRack();
+        }
+        assertEquals(0, world.getAwakeCount());
+
+        updates[0] = 0;
+        for (int tick = 0; tick < 20; tick++){
+            world.update();
+            world.pickupRack();
+        }
+        assertEquals(0, updates[0]);
+        assertEquals(0, world.getAwakeCount());
+    }
+
+    @Test
+    public void onlyChangedObjectsAreSent(){
+        World world = new World(new Scenario(3, WarehouseLayout.defaultLayout(), 30, 20, 100, 20));
+        int racks = 0;
+        for (Object3D object : world.getWorldObjectsAsList()){
+            if ("rack".equals(object.getType())){
+                racks++;
+            }
+        }
+        final Map<String, String> sent = new HashMap<>();
+        final Set<String> sentRacks = new HashSet<>();
+        final List<String> unchanged = new ArrayList<>();
+        world.addObserver(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (Model.UPDATE_COMMAND.equals(evt.getPropertyName())){
+                    Object3D object = (Object3D) evt.getNewValue();
+                    String state = state(object);
+                    if (state.equals(sent.put(object.getUUID(), state))){
+                        unchanged.add(object.getType() + " " + state);
+                    }
+                    if ("rack".equals(object.getType())){
+                        sentRacks.add(object.getUUID());
+                    }
+                }
+            }
+        });
+        // de eerste tick gaan alle nieuwe objecten naar de views
+        world.update();
+        world.pickupRack();
+        sentRacks.clear();
+
+        world.deliverPackages(20);
+        for (int tick = 0; tick < TICKS / 10; tick++){
+            world.update();
+            world.pickupRack();
+        }
+        // alleen de rekken die een robot opgepakt heeft zijn verstuurd
+        assertTrue(world.getRacksDelivered() > 0);
+        assertTrue(!sentRacks.isEmpty() && sentRacks.size() < racks);
+
+        for (int tick = TICKS / 10; tick < TICKS; tick++){
+            world.update();
+            world.pickupRack();
+        }
+        assertTrue(unchanged.toString(), unchanged.isEmpty());
+    }
+
+    @Test
+    public void advanceEndsInTheSameStateAsTickingEveryTick(){
+        Scenario scenario = new Scenario(5, WarehouseLayout.defaultLayout(), 10, 10, 0, 0);
+        World ticked = new World(scenario);
+        World advanced = new World(scenario);
+        for (int round = 0; round < 3; round++){
+            ticked.deliverPackages(10);
+            advanced.deliverPackages(10);
+            for (int tick = 0; tick < TICKS * 4; tick++){
+                ticked.update();
+                ticked.pickupRack();
+            }
+            // als alles klaar is springt de klok naar het eind in plaats van elke tick uit te voeren
+            assertTrue(advanced.advance(TICKS * 4) < TICKS * 4);
+
+            assertEquals(ticked.getEvents().now(), advanced.getEvents().now());
+            assertEquals(ticked.getRacksDelivered(), advanced.getRacksDelivered());
+            assertEquals(ticked.getTrucksServed(), advanced.getTrucksServed());
+            assertArrayEquals(WorldCheckpoint.capture(ticked), WorldCheckpoint.capture(advanced));
+        }
+        assertTrue(ticked.getRacksDelivered() > 0);
+    }
+
+    @Test
+    public void snapshotMatchesTheWorldAfterEachTick(){
+        World world = new World(30, 20);
+        world.deliverPackages(20);
+        for (int tick = 0; tick < TICKS; tick++){
+            world.update();
+            world.pickupRack();
+            try (WorldSnapshot snapshot = world.acquireSnapshot()){
+                Map<String, String> states = states(snapshot);
+                assertEquals(snapshot.size(), states.size());
+                assertEquals(world.getRacksDelivered(), snapshot.getRacksDelivered());
+                List<Object3D> objects = world.getNearestObjects(0, 0, Integer.MAX_VALUE);
+                assertEquals(objects.size(), states.size());
+                for (Object3D object : objects){
+                    assertEquals(state(object), states.get(object.getUUID()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void openSnapshotDoesNotChangeWhileTheWorldTicks(){
+        World world = new World(30, 20);
+        world.deliverPackages(20);
+        for (int tick = 0; tick < 50; tick++){
+            world.update();
+            world.pickupRack();
+        }
+
+        WorldSnapshot held = world.acquireSnapshot();
+        long version = held.getVersion();
+        Map<String, String> before = states(held);
+        List<Object3D> copy = held.getObjects();
+        for (int tick = 0; tick < TICKS; tick++){
+            world.update();
+            world.pickupRack();
+        }
+        assertEquals(version, held.getVersion());
+        assertEquals(before, states(held));
+        held.close();
+
+        try (WorldSnapshot latest = world.acquireSnapshot()){
+            assertTrue(latest.getVersion() > version);
+        }
+        // de kopie blijft ook na het sluiten geldig
+        for (Object3D object : copy){
+            assertEquals(before.get(object.getUUID()), state(object));
+        }
+    }
+
+    @Test
+    public void readersSeeWholeTicksWhileTheWorldTicks() throws InterruptedException{
+        final World world = new World(30, 40);
+        world.deliverPackages(20);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long last = 0;
+                while (!stop.get() && failure.get() == null){
+                    try (WorldSnapshot snapshot = world.acquireSnapshot()){
+                        Map<String, String> first = states(snapshot);
+                        Thread.yield();
+                        if (snapshot.getVersion() < last || first.size() != snapshot.size()
+                                || !first.equals(states(snapshot))){
+                            failure.set("snapshot " + snapshot.getVersion() + " veranderde tijdens het lezen");
+                        }
+                        last = snapshot.getVersion();
+                    } catch (RuntimeException e){
+                        failure.set(e.toString());
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int tick = 0; tick < TICKS * 3; tick++){
+            world.update();
+            world.pickupRack();
+        }
+        stop.set(true);
+        reader.join();
+        assertNull(failure.get(), failure.get());
+    }
+
+    @Test
+    public void tickWithoutChangesKeepsTheSnapshot(){
+        World world = new World(30, 0);
+        WorldSnapshot previous = null;
+        boolean kept = false;
+        for (int tick = 0; tick < TICKS && !kept; tick++){
+            world.update();
+            world.pickupRack();
+            try (WorldSnapshot snapshot = world.acquireSnapshot()){
+                kept = snapshot == previous;
+                previous = snapshot;
+            }
+        }
+        assertNotNull(previous);
+        assertTrue(kept);
+        try (WorldSnapshot snapshot = world.acquireSnapshot()){
+            assertSame(previous, snapshot);
+        }
+    }
+
+    private static Map<String, String> states(WorldSnapshot snapshot){
+        Map<String, String> states = new HashMap<>();
+        for (int slot = 0; slot < snapshot.getSlotCount(); slot++){
+            if (snapshot.has(slot)){
+                states.put(snapshot.getUUID(slot), snapshot.getX(slot) + " "
+                        + snapshot.getY(slot) + " " + snapshot.getZ(slot) + " " + snapshot.getRotationX(slot) + " "
+                        + snapshot.getRotationY(slot) + " " + snapshot.getRotationZ(slot));
+            }
+        }
+        return states;
+    }
+
+    private static String state(Object3D object){
+        return object.getX() + " " + object.getY() + " " + object.getZ() + " "
+                + object.getRotationX() + " " + object.getRotationY() + " " + object.getRotationZ();
+    }
+}
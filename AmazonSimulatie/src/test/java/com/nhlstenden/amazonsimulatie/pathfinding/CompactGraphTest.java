@@ -0,0 +1,78 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+import com.nhlstenden.amazonsimulatie.models.EdgeWeighted;
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * de compacte graaf heeft dezelfde nodes, edges, gewichten en bezetting als de graaf met objecten
+ */
+public class CompactGraphTest {
+
+    private GraphController graph;
+    private CompactGraph compact;
+
+    @Before
+    public void setUp(){
+        graph = new GraphController();
+        graph.populateGraph(new WarehouseLayout(40, 40, 3, 14, 20));
+        compact = graph.getCompactGraph();
+    }
+
+    @Test
+    public void edgesMatchTheNodeGraph(){
+        int edges = 0;
+        for (int node = 0; node < compact.nodeCount(); node++){
+            NodeWeighted original = graph.getNode(node);
+            assertEquals(original.getX(), compact.x(node));
+            assertEquals(original.getY(), compact.y(node));
+            assertEquals(original.getEdges().size(), compact.endEdge(node) - compact.firstEdge(node));
+            for (EdgeWeighted edge : original.getEdges()){
+                int index = compact.findEdge(node, edge.getDestination().getId());
+                assertTrue(index >= 0);
+                assertEquals(node, compact.source(index));
+                assertEquals(edge.getWeight(), compact.weight(index));
+            }
+            edges += original.getEdges().size();
+        }
+        assertEquals(edges, compact.edgeCount());
+    }
+
+    @Test
+    public void inEdgesAreTheReverseOfOutEdges(){
+        int inEdges = 0;
+        for (int node = 0; node < compact.nodeCount(); node++){
+            for (int index = compact.firstInEdge(node); index < compact.endInEdge(node); index++){
+                int edge = compact.inEdge(index);
+                assertEquals(node, compact.target(edge));
+                assertEquals(compact.inSource(index), compact.source(edge));
+                inEdges++;
+            }
+        }
+        assertEquals(compact.edgeCount(), inEdges);
+    }
+
+    @Test
+    public void occupationAndWeightsFollowTheNodeGraph(){
+        NodeWeighted node = graph.getNode(compact.nodeCount() / 2);
+        node.toggleOccupation();
+        assertTrue(compact.isOccupied(node.getId()));
+        assertEquals(node.getOccupancyVersion(), compact.occupancyVersion(node.getId()));
+        node.toggleOccupation();
+        assertTrue(!compact.isOccupied(node.getId()));
+
+        EdgeWeighted edge = node.getEdges().getFirst();
+        edge.setWeight(4);
+        assertEquals(4, compact.weight(compact.findEdge(node.getId(), edge.getDestination().getId())));
+        assertEquals(1, compact.changedWeightCount());
+        edge.setWeight(1);
+        assertEquals(0, compact.changedWeightCount());
+    }
+}
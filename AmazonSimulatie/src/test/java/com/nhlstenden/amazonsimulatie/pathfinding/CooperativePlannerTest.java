@@ -0,0 +1,99 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * robots die met de cooperative planner rijden staan nooit op dezelfde node en wisselen nooit over een edge
+ */
+public class CooperativePlannerTest {
+
+    private static final int ROBOTS = 60;
+    private static final int TICKS = 80;
+    private static final int WINDOW = 16;
+
+    private CompactGraph graph;
+    private CooperativePlanner planner;
+    private Random random;
+
+    @Before
+    public void setUp(){
+        GraphController controller = new GraphController();
+        controller.populateGraph(new WarehouseLayout(30, 30, 3, 14, 15));
+        graph = controller.getCompactGraph();
+        planner = new CooperativePlanner(graph, WINDOW);
+        random = new Random(ROBOTS);
+    }
+
+    @Test
+    public void robotsNeverShareANodeOrSwapOverAnEdge(){
+        int[] position = distinctNodes();
+        int[] goal = distinctNodes();
+        for (int robot = 0; robot < ROBOTS; robot++){
+            planner.plan(robot, position[robot], position[robot], 0);
+        }
+
+        int arrivals = 0;
+        for (int tick = 0; tick < TICKS; tick++){
+            for (int robot = 0; robot < ROBOTS; robot++){
+                if (position[robot] == goal[robot]){
+                    arrivals++;
+                    goal[robot] = random.nextInt(graph.nodeCount());
+                }
+                TimedPath plan = planner.getPlan(robot);
+                if (tick - plan.getStartTick() >= WINDOW / 2 || tick == plan.getEndTick()
+                        || (plan.reachesGoal() && plan.nodeAt(plan.getEndTick()) != goal[robot])){
+                    planner.plan(robot, position[robot], goal[robot], tick);
+                }
+            }
+
+            int[] next = new int[ROBOTS];
+            Set<Integer> occupied = new HashSet<>();
+            for (int robot = 0; robot < ROBOTS; robot++){
+                next[robot] = planner.getPlan(robot).nodeAt(tick + 1);
+                assertTrue("twee robots op node " + next[robot] + " op tick " + (tick + 1), occupied.add(next[robot]));
+                assertTrue(next[robot] == position[robot] || graph.findEdge(position[robot], next[robot]) >= 0);
+            }
+            for (int a = 0; a < ROBOTS; a++){
+                for (int b = a + 1; b < ROBOTS; b++){
+                    assertTrue("robots " + a + " en " + b + " wisselen op tick " + tick,
+                            next[a] != position[b] || next[b] != position[a] || next[a] == position[a]);
+                }
+            }
+            position = next;
+        }
+        assertTrue(arrivals > 0);
+    }
+
+    @Test
+    public void releaseDropsTheReservationsOfARobot(){
+        planner.plan(0, 0, graph.nodeCount() - 1, 0);
+        assertTrue(planner.reservationCount() > 0);
+        assertEquals(0, planner.holder(0, 0));
+        planner.release(0);
+        assertEquals(0, planner.reservationCount());
+    }
+
+    private int[] distinctNodes(){
+        Set<Integer> used = new HashSet<>();
+        int[] nodes = new int[ROBOTS];
+        for (int i = 0; i < ROBOTS; i++){
+            int node;
+            do {
+                node = random.nextInt(graph.nodeCount());
+            } while (!used.add(node));
+            nodes[i] = node;
+        }
+        return nodes;
+    }
+}
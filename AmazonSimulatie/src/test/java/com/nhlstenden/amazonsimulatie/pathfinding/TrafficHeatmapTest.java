@@ -0,0 +1,101 @@
+package com.nhlstenden.amazonsimulatie.pathfinding;
+
+import com.nhlstenden.amazonsimulatie.controllers.GraphController;
+import com.nhlstenden.amazonsimulatie.models.EdgeWeighted;
+import com.nhlstenden.amazonsimulatie.models.NodeWeighted;
+import com.nhlstenden.amazonsimulatie.models.WarehouseLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * de heatmap telt per edge wat er in het venster gereden is, en de drukte zakt weer weg uit de gewichten
+ */
+public class TrafficHeatmapTest {
+
+    private static final int WINDOW = 20;
+    private static final int BUCKETS = 4;
+
+    private GraphController controller;
+    private CompactGraph graph;
+
+    @Before
+    public void setUp(){
+        controller = new GraphController();
+        controller.populateGraph(new WarehouseLayout(20, 20, 3, 14, 10));
+        graph = controller.getCompactGraph();
+    }
+
+    @Test
+    public void countsMatchTheTraversalsInTheWindow(){
+        TrafficHeatmap heatmap = new TrafficHeatmap(graph, WINDOW, BUCKETS);
+        Random random = new Random(WINDOW);
+        int ticksPerBucket = WINDOW / BUCKETS;
+        // per rit het vak waarin hij geteld is en de edge, vakken tellen vanaf het begin
+        List<int[]> traversals = new ArrayList<>();
+        int tick = 0;
+        for (int round = 0; round < 200; round++){
+            // een paar drukke edges en wat willekeurige, zodat vakken dezelfde edge vaker tellen
+            for (int i = 0; i < 30; i++){
+                int edge = random.nextInt(4) == 0 ? random.nextInt(graph.edgeCount()) : random.nextInt(10);
+                heatmap.record(edge);
+                traversals.add(new int[]{tick / ticksPerBucket, edge});
+            }
+            int ticks = random.nextInt(10) == 0 ? random.nextInt(3 * WINDOW) : 1;
+            heatmap.tick(ticks);
+            tick += ticks;
+
+            int[] expected = new int[graph.edgeCount()];
+            long total = 0;
+            for (int[] traversal : traversals){
+                if (traversal[0] > tick / ticksPerBucket - BUCKETS){
+                    expected[traversal[1]]++;
+                    total++;
+                }
+            }
+            for (int edge = 0; edge < graph.edgeCount(); edge++){
+                assertEquals(expected[edge], heatmap.count(edge));
+            }
+            assertEquals(total, heatmap.getTraversals());
+        }
+    }
+
+    @Test
+    public void quietAfterTheWindowHasPassed(){
+        TrafficHeatmap heatmap = new TrafficHeatmap(graph, WINDOW, BUCKETS);
+        heatmap.record(0);
+        heatmap.record(0);
+        assertEquals(1, heatmap.takeChanged().length);
+        heatmap.tick(WINDOW);
+        assertEquals(0, heatmap.count(0));
+        assertEquals(1, heatmap.takeChanged().length);
+        assertTrue(heatmap.isQuiet());
+    }
+
+    @Test
+    public void busyEdgeGetsHeavierAndThenFallsBack(){
+        NodeWeighted from = controller.getNode(0);
+        EdgeWeighted edge = from.getEdges().getFirst();
+        for (int i = 0; i < GraphController.TRAVERSALS_PER_WEIGHT * GraphController.MAX_CONGESTION; i++){
+            controller.recordTraversal(from, edge.getDestination());
+        }
+        int ticks = 0;
+        while (edge.getWeight() < 1 + GraphController.MAX_CONGESTION && ticks < GraphController.TRAFFIC_WINDOW){
+            controller.tickTraffic();
+            ticks++;
+        }
+        assertEquals(1 + GraphController.MAX_CONGESTION, edge.getWeight());
+        assertEquals(edge.getWeight(), graph.weight(graph.findEdge(edge.getDestination().getId(), from.getId())));
+
+        controller.tickTraffic(3 * GraphController.TRAFFIC_WINDOW);
+        assertEquals(1, edge.getWeight());
+        assertEquals(0, graph.changedWeightCount());
+    }
+}